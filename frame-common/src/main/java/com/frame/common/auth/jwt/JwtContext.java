@@ -0,0 +1,108 @@
+package com.frame.common.auth.jwt;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.frame.common.base.util.JwtUtil;
+import lombok.Getter;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.servlet.ServletRequest;
+import java.util.Date;
+
+/**
+ * <p>
+ * 解析后的JWT
+ * JwtFilter中只解码一次，通过JwtToken传给JwtRealm，并保存到请求属性中，Controller中用{@link #current()}取得
+ * </p>
+ *
+ * @author ly
+ */
+@Getter
+public class JwtContext {
+
+    private static final String ATTRIBUTE = JwtContext.class.getName();
+
+    /**
+     * token
+     */
+    private final String token;
+
+    /**
+     * 解码结果
+     */
+    private final DecodedJWT decoded;
+
+    /**
+     * 账户
+     */
+    private final String account;
+
+    /**
+     * jwtID
+     */
+    private final String jwtId;
+
+    /**
+     * 终端
+     */
+    private final String terminal;
+
+    /**
+     * 模拟account的账户
+     */
+    private final String runAsAccount;
+
+    /**
+     * 过期时间
+     */
+    private final Date expiresAt;
+
+    private JwtContext(String token, DecodedJWT decoded) {
+        this.token = token;
+        this.decoded = decoded;
+        this.account = decoded.getSubject();
+        this.jwtId = decoded.getId();
+        this.terminal = decoded.getClaim(JwtUtil.CLAIM_TERMINAL).asString();
+        this.runAsAccount = decoded.getIssuer();
+        this.expiresAt = decoded.getExpiresAt();
+    }
+
+    /**
+     * 解码token
+     *
+     * @param token jwt token
+     * @return 不能解码时返回null
+     */
+    public static JwtContext parse(String token) {
+        DecodedJWT decoded = JwtUtil.decode(token);
+        return decoded == null ? null : new JwtContext(token, decoded);
+    }
+
+    /**
+     * 是否过期，没有过期时间时作为过期处理
+     *
+     * @return true:过期   false:没过期
+     */
+    public boolean isExpired() {
+        return expiresAt == null || expiresAt.getTime() < System.currentTimeMillis();
+    }
+
+    /**
+     * 保存到请求属性
+     *
+     * @param request 请求
+     */
+    void bind(ServletRequest request) {
+        request.setAttribute(ATTRIBUTE, this);
+    }
+
+    /**
+     * 取得当前请求的JWT
+     *
+     * @return 没有登录时返回null
+     */
+    public static JwtContext current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes == null ? null : (JwtContext) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+}
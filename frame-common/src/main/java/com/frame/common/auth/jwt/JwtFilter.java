@@ -1,6 +1,7 @@
 package com.frame.common.auth.jwt;
 
 import com.frame.common.auth.constant.WebCommonConstant;
+import com.frame.common.auth.revocation.TokenRevocationService;
 import com.frame.common.base.constant.CacheConstant;
 import com.frame.common.base.exception.AuthExpiredErrorException;
 import com.frame.common.base.exception.AuthTokenErrorException;
@@ -33,6 +34,16 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
      */
     private Cache<String, String> logoutCache;
 
+    /**
+     * 校验通过的token缓存
+     */
+    private JwtVerifiedCache verifiedCache;
+
+    /**
+     * 退出token的判断
+     */
+    private TokenRevocationService revocationService;
+
     /**
      * 设置Cache的key的前缀
      */
@@ -40,6 +51,20 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
         this.logoutCache = cacheManager.getCache(CacheConstant.SHIRO_LOGOUT_TOKEN);
     }
 
+    /**
+     * 设置校验通过的token缓存
+     */
+    public void setVerifiedCache(JwtVerifiedCache verifiedCache) {
+        this.verifiedCache = verifiedCache;
+    }
+
+    /**
+     * 设置退出token的判断，没有设置时使用logoutCache
+     */
+    public void setRevocationService(TokenRevocationService revocationService) {
+        this.revocationService = revocationService;
+    }
+
     /**
      * 判断用户是否想要登入。
      * 检测header里面是否包含Authorization字段即可
@@ -60,27 +85,31 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
         HttpServletResponse httpServletResponse = (HttpServletResponse) response;
         String jwtToken = httpServletRequest.getHeader(JwtUtil.DEFAULT_JWT_PARAM);
         jwtToken = JwtUtil.getJwtToken(jwtToken);
-        if (!JwtUtil.isDecode(jwtToken)) {
+        // 只解码一次，之后的校验和JwtRealm使用解码结果
+        JwtContext context = JwtContext.parse(jwtToken);
+        if (context == null) {
             throw new AuthTokenErrorException(AuthMessageEnum.FORBIDDEN_TOKEN_ERROR);
         }
-        if (JwtUtil.isTokenExpired(jwtToken)) {
+        if (context.isExpired()) {
             throw new ExpiredCredentialsException("token expired");
         }
-        String account = JwtUtil.getAccount(jwtToken);
-        String id = JwtUtil.getId(jwtToken);
+        String account = context.getAccount();
+        String id = context.getJwtId();
         //验证ID是否是已经退出的账户
-        if (StringUtils.isNotBlank(this.logoutCache.get(id))) {
+        if (this.isRevoked(id)) {
             log.error("[{}]:jwtId验证不通过，当前ID已经登出", id);
             throw new AuthExpiredErrorException(AuthMessageEnum.TOKEN_EXPIRED_ERROR);
         }
-        //验证签名
-        if (!JwtUtil.verify(jwtToken, account)) {
+        //验证签名，退出的判断在前，缓存中的token退出后也不能通过
+        boolean verified = verifiedCache != null ? verifiedCache.verify(context) : JwtUtil.verify(context.getDecoded(), account);
+        if (!verified) {
             log.error("[{}]:jwt验证不通过", account);
             throw new AuthTokenErrorException(AuthMessageEnum.FORBIDDEN_ACCOUNT_ERROR);
         }
-        AuthenticationToken token = new JwtToken(jwtToken);
+        AuthenticationToken token = new JwtToken(context);
         // 提交给realm进行登入，如果错误他会抛出异常并被捕获
         SecurityUtils.getSubject().login(token);
+        context.bind(request);
         // 如果没有抛出异常则代表登入成功，返回true
         ///Boolean refreshFlg = JwtUtil.isRefreshToken(jwtToken);
         ///httpServletResponse.setHeader(WebCommonConstant.EXPOSE_HEADERS_REFRESH, refreshFlg.toString());
@@ -89,6 +118,16 @@ public class JwtFilter extends BasicHttpAuthenticationFilter {
     }
 
 
+    /**
+     * jwtID是否已经退出
+     */
+    private boolean isRevoked(String id) {
+        if (revocationService != null) {
+            return revocationService.isRevoked(id);
+        }
+        return StringUtils.isNotBlank(this.logoutCache.get(id));
+    }
+
     /**
      * 这里我们详细说明下为什么最终返回的都是true，即允许访问
      * 例如我们提供一个地址 GET /article
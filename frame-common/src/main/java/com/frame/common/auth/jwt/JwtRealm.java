@@ -1,12 +1,14 @@
 package com.frame.common.auth.jwt;
 
+import com.frame.common.auth.revocation.TokenRevocationService;
 import com.frame.common.auth.service.IAuthService;
 import com.frame.common.base.config.FrameProperties;
 import com.frame.common.base.shiro.ShiroUser;
-import com.frame.common.base.util.JwtUtil;
+import com.frame.common.mybatis.interceptor.data.DataAuthCache;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.SimpleAuthenticationInfo;
@@ -38,6 +40,15 @@ public class JwtRealm extends AuthorizingRealm {
 
     @Autowired
     FrameProperties frameProperties;
+
+    @Autowired(required = false)
+    private JwtVerifiedCache jwtVerifiedCache;
+
+    @Autowired(required = false)
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired(required = false)
+    private DataAuthCache dataAuthCache;
     /**
      * 已退出用户列表
      */
@@ -118,18 +129,18 @@ public class JwtRealm extends AuthorizingRealm {
         }
         JwtToken jwtAuth = (JwtToken) auth;
         String token = (String) jwtAuth.getCredentials();
+        // JwtFilter中已经解码
+        JwtContext context = jwtAuth.getContext();
+        if (context == null) {
+            throw new AuthenticationException("jwt token can not be decoded");
+        }
 
-        String account = JwtUtil.getAccount(token);
-        String id = JwtUtil.getId(token);
-        String terminal = JwtUtil.getTerminal(token);
-
-
-        ShiroUser shiroUser = authService.getShiroUser(account);
-        shiroUser.setTerminal(terminal);
-        shiroUser.setJwtId(id);
+        ShiroUser shiroUser = authService.getShiroUser(context.getAccount());
+        shiroUser.setTerminal(context.getTerminal());
+        shiroUser.setJwtId(context.getJwtId());
 
 
-        String runAsAccount = JwtUtil.getRunAsAccount(token);
+        String runAsAccount = context.getRunAsAccount();
         //处理runas
         if (StringUtils.isNotBlank(runAsAccount)) {
             shiroUser.setRunAsAccount(runAsAccount);
@@ -154,6 +165,27 @@ public class JwtRealm extends AuthorizingRealm {
         authService.removeUserInfoCache(shiroUser.getAccount());
         //设置已经退出的用户
         this.logoutCache.put(shiroUser.getJwtId(), "1");
+        if (tokenRevocationService != null) {
+            tokenRevocationService.revoke(shiroUser.getJwtId(), this.getExpiresAt());
+        }
+        if (jwtVerifiedCache != null) {
+            jwtVerifiedCache.evict(shiroUser.getJwtId());
+        }
+        //重新登录后使用新的数据权限条件
+        if (dataAuthCache != null) {
+            dataAuthCache.evict(shiroUser.getAuthId());
+        }
+    }
+
+    /**
+     * 当前token的过期时间，不能取得时按设置的有效期
+     */
+    private long getExpiresAt() {
+        JwtContext context = JwtContext.current();
+        if (context != null && context.getExpiresAt() != null) {
+            return context.getExpiresAt().getTime();
+        }
+        return System.currentTimeMillis() + frameProperties.getAuth().getJwtExpireTime();
     }
 
     @Override
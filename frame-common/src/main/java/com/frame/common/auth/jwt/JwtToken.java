@@ -1,6 +1,5 @@
 package com.frame.common.auth.jwt;
 
-import com.frame.common.base.util.JwtUtil;
 import lombok.Data;
 import org.apache.shiro.authc.AuthenticationToken;
 
@@ -20,18 +19,47 @@ public class JwtToken implements AuthenticationToken {
      */
     private String account;
 
+    /**
+     * 解析后的token
+     */
+    private JwtContext context;
+
 
     public JwtToken(String token) {
         this.token = token;
     }
 
+    /**
+     * JwtFilter中已经解码的token
+     *
+     * @param context 解析后的token
+     */
+    public JwtToken(JwtContext context) {
+        this.token = context.getToken();
+        this.account = context.getAccount();
+        this.context = context;
+    }
+
+    /**
+     * 取得解析后的token，没有时解码
+     *
+     * @return 不能解码时返回null
+     */
+    public JwtContext getContext() {
+        if (context == null) {
+            context = JwtContext.parse(token);
+        }
+        return context;
+    }
+
     @Override
     public Object getPrincipal() {
-        return JwtUtil.getAccount(token);
+        JwtContext jwtContext = this.getContext();
+        return jwtContext == null ? null : jwtContext.getAccount();
     }
 
     @Override
     public Object getCredentials() {
         return token;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package com.frame.common.auth.jwt;
+
+import com.frame.common.base.util.JwtUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 校验通过的token缓存
+ * 按token的SHA-256摘要保存，同一token再次请求时不再计算HMAC，到token的过期时间后失效；
+ * jwtSecret变更（密码版本变化）时缓存的结果全部失效
+ * </p>
+ * <p>
+ * 只缓存签名的校验结果，退出（logoutCache）的判断由调用方在本缓存之前进行，
+ * 退出时用{@link #evict(String)}清除对应的token
+ * </p>
+ *
+ * @author ly
+ */
+@Slf4j
+public class JwtVerifiedCache {
+
+    /**
+     * 最大缓存数量，0以下时不缓存
+     */
+    private final int maxSize;
+
+    /**
+     * token摘要和校验结果
+     */
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public JwtVerifiedCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 校验token的签名，校验通过过的token直接返回true
+     *
+     * @param context 解析后的token
+     * @return 是否正确
+     */
+    public boolean verify(JwtContext context) {
+        if (maxSize <= 0 || context.getExpiresAt() == null) {
+            return JwtUtil.verify(context.getDecoded(), context.getAccount());
+        }
+        long now = System.currentTimeMillis();
+        int version = JwtUtil.getKeyVersion();
+        String key = DigestUtils.sha256Hex(context.getToken());
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (entry.version == version && entry.expiresAt > now) {
+                return true;
+            }
+            entries.remove(key, entry);
+        }
+        if (!JwtUtil.verify(context.getDecoded(), context.getAccount())) {
+            return false;
+        }
+        if (entries.size() >= maxSize) {
+            this.evictExpired(now);
+        }
+        entries.put(key, new Entry(context.getJwtId(), context.getExpiresAt().getTime(), version));
+        return true;
+    }
+
+    /**
+     * 清除jwtID对应的token
+     *
+     * @param jwtId jwtID
+     */
+    public void evict(String jwtId) {
+        if (jwtId != null) {
+            entries.values().removeIf(entry -> jwtId.equals(entry.jwtId));
+        }
+    }
+
+    /**
+     * 清除全部缓存
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * 清除过期的token，仍然超出时全部清除，只影响性能
+     */
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        if (entries.size() >= maxSize) {
+            log.debug("jwt verified cache is full:[{}]", entries.size());
+            entries.clear();
+        }
+    }
+
+    private static class Entry {
+        private final String jwtId;
+        private final long expiresAt;
+        private final int version;
+
+        private Entry(String jwtId, long expiresAt, int version) {
+            this.jwtId = jwtId;
+            this.expiresAt = expiresAt;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.frame.common.auth.revocation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * 字符串的布隆过滤器
+ * 位数组为AtomicLongArray，设置时CAS不加锁；不能删除，过期的数据通过重新生成清除
+ * </p>
+ *
+ * @author gaoly
+ */
+class BloomFilter {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicLongArray bits;
+
+    private final int bitSize;
+
+    private final int hashCount;
+
+    /**
+     * @param expectedSize      预计件数
+     * @param falsePositiveRate 误判率
+     */
+    BloomFilter(int expectedSize, double falsePositiveRate) {
+        int size = Math.max(1, expectedSize);
+        long bitCount = (long) Math.ceil(-size * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitSize = (int) Math.max(Long.SIZE, Math.min(Integer.MAX_VALUE - Long.SIZE, bitCount));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / size * Math.log(2)));
+        this.bits = new AtomicLongArray((bitSize + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * 添加
+     *
+     * @param value 值
+     */
+    void put(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bitSize;
+            int word = index >>> 6;
+            long mask = 1L << index;
+            while (true) {
+                long current = bits.get(word);
+                if ((current & mask) != 0 || bits.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否可能包含
+     *
+     * @param value 值
+     * @return 返回false时一定不包含
+     */
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            int index = ((hash1 + i * hash2) & Integer.MAX_VALUE) % bitSize;
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64位FNV-1a
+     */
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,206 @@
+package com.frame.common.auth.revocation;
+
+import com.frame.common.auth.service.ITokenRevocationStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * 退出的token（jwtID）判断
+ * 本地保存布隆过滤器和没有过期的退出的jwtID，没有退出的token（大部分请求）只通过布隆过滤器判断，不访问共享保存；
+ * 布隆过滤器判断可能包含但本地没有时（误判）才访问共享保存
+ * </p>
+ * <p>
+ * 有ITokenRevocationStore（如Redis）时退出保存到共享保存并通知其它节点，启动时读取没有过期的全部jwtID；
+ * 发布订阅的通知在断线、重新订阅时会丢失，漏收的jwtID不在布隆过滤器中，所以每隔RECONCILE_INTERVAL重新读取全部jwtID补充，
+ * 漏收通知的节点最多在这个间隔内仍然认为token有效。
+ * 没有ITokenRevocationStore时只在本节点有效。jwtID在token的过期时间后清除，布隆过滤器按本地的jwtID定期重新生成
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class TokenRevocationService {
+
+    /**
+     * 布隆过滤器的误判率
+     */
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * 过期jwtID的清除间隔（毫秒）
+     */
+    private static final long PURGE_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 重新读取共享保存中全部jwtID的间隔（毫秒）
+     */
+    private static final long RECONCILE_INTERVAL = TimeUnit.SECONDS.toMillis(30);
+
+    private final ITokenRevocationStore store;
+
+    private final int expectedSize;
+
+    /**
+     * 没有过期的退出的jwtID和过期时间
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter bloomFilter;
+
+    /**
+     * 布隆过滤器的预计件数，超过时提前重新生成
+     */
+    private volatile int bloomCapacity;
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    private volatile long nextPurgeTime;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param store        共享保存，单节点时为null
+     * @param expectedSize 同时有效的退出的jwtID的预计件数
+     */
+    public TokenRevocationService(ITokenRevocationStore store, int expectedSize) {
+        this.store = store;
+        this.expectedSize = Math.max(expectedSize, 1024);
+        this.bloomFilter = new BloomFilter(this.expectedSize, FALSE_POSITIVE_RATE);
+        this.bloomCapacity = this.expectedSize;
+        this.nextPurgeTime = System.currentTimeMillis() + PURGE_INTERVAL;
+    }
+
+    /**
+     * 读取共享保存中的jwtID，订阅其它节点的通知，定期重新读取补充漏收的通知
+     */
+    public synchronized void start() {
+        if (store == null || executor != null) {
+            return;
+        }
+        store.subscribe(this::add);
+        Map<String, Long> all = store.loadAll();
+        all.forEach(this::add);
+        log.info("token revocation loaded:[{}]", all.size());
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-revocation-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL, RECONCILE_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 重新读取共享保存中没有过期的全部jwtID，补充漏收的通知
+     */
+    void reconcile() {
+        try {
+            Map<String, Long> all = store.loadAll();
+            int before = revoked.size();
+            all.forEach(this::add);
+            if (revoked.size() > before) {
+                log.warn("token revocation reconciled, missed notifications:[{}]", revoked.size() - before);
+            }
+        } catch (RuntimeException e) {
+            log.error("token revocation reconcile error", e);
+        }
+    }
+
+    /**
+     * 停止定期读取
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * 退出
+     *
+     * @param jwtId     jwtID
+     * @param expiresAt token的过期时间（毫秒）
+     */
+    public void revoke(String jwtId, long expiresAt) {
+        if (jwtId == null) {
+            return;
+        }
+        this.add(jwtId, expiresAt);
+        if (store != null) {
+            store.revoke(jwtId, expiresAt);
+        }
+    }
+
+    /**
+     * 是否已经退出
+     *
+     * @param jwtId jwtID
+     * @return 已经退出时返回true
+     */
+    public boolean isRevoked(String jwtId) {
+        if (jwtId == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        this.purgeIfNecessary(now);
+        if (!bloomFilter.mightContain(jwtId)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jwtId);
+        if (expiresAt != null) {
+            return expiresAt > now;
+        }
+        if (store == null) {
+            return false;
+        }
+        boolean result = store.isRevoked(jwtId);
+        if (result) {
+            // 漏收的通知
+            revoked.putIfAbsent(jwtId, now + PURGE_INTERVAL);
+        }
+        return result;
+    }
+
+    private void add(String jwtId, Long expiresAt) {
+        if (expiresAt == null || expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        revoked.merge(jwtId, expiresAt, Math::max);
+        bloomFilter.put(jwtId);
+        if (revoked.size() > bloomCapacity) {
+            nextPurgeTime = 0L;
+        }
+    }
+
+    /**
+     * 清除过期的jwtID并重新生成布隆过滤器
+     */
+    private void purgeIfNecessary(long now) {
+        if (now < nextPurgeTime || !purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            nextPurgeTime = now + PURGE_INTERVAL;
+            boolean removed = revoked.values().removeIf(expiresAt -> expiresAt <= now);
+            if (!removed && revoked.size() <= bloomCapacity) {
+                return;
+            }
+            int capacity = Math.max(expectedSize, revoked.size() * 2);
+            BloomFilter rebuilt = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+            revoked.keySet().forEach(rebuilt::put);
+            bloomFilter = rebuilt;
+            bloomCapacity = capacity;
+            // 生成中添加的jwtID
+            revoked.keySet().forEach(rebuilt::put);
+        } finally {
+            purging.set(false);
+        }
+    }
+}
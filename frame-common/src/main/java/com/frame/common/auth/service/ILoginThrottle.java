@@ -0,0 +1,36 @@
+package com.frame.common.auth.service;
+
+/**
+ * <p>
+ * 登录的限流（滑动窗口），按账户、客户端IP等键分别计数
+ * 判断和计数对全部键原子执行，多节点部署时由实现类（如Redis Lua）在共享保存中一次往返执行
+ * </p>
+ *
+ * @author gaoly
+ */
+public interface ILoginThrottle {
+
+    /**
+     * 全部键在窗口内的次数都小于上限时对全部键计数，有一个超出时不计数
+     *
+     * @param keys         键（如account:xxx、ip:xxx）
+     * @param limits       各键在窗口内的上限，和keys的顺序一致
+     * @param windowMillis 窗口（毫秒）
+     * @return 0:允许 大于0:需要等待的时间（毫秒）
+     */
+    long tryAcquire(String[] keys, int[] limits, long windowMillis);
+
+    /**
+     * 清除键的计数（登录成功时清除账户的计数）
+     *
+     * @param key 键
+     */
+    void reset(String key);
+
+    /**
+     * 撤销键最近的一次计数（登录成功时撤销客户端IP的计数，IP只累计失败的登录）
+     *
+     * @param key 键
+     */
+    void release(String key);
+}
@@ -0,0 +1,24 @@
+package com.frame.common.auth.service;
+
+/**
+ * <p>
+ * 同一账户（账户+终端）的会话登记，超出最大会话数时踢出
+ * 登记和踢出对每个账户原子执行，多节点部署时由实现类（如Redis Lua）在共享保存中执行
+ * </p>
+ *
+ * @author gaoly
+ */
+public interface ISessionRegistry {
+
+    /**
+     * 登记会话，没有登记时加入，超出最大会话数时踢出
+     *
+     * @param key          账户+终端
+     * @param jwtId        会话（jwtID）
+     * @param maxSession   最大会话数
+     * @param kickOutAfter true:踢出之后登录的 false:踢出之前登录的
+     * @param ttlMillis    会话和踢出记录的有效期（毫秒），和token的有效期一致
+     * @return 会话已经被踢出时返回true
+     */
+    boolean register(String key, String jwtId, int maxSession, boolean kickOutAfter, long ttlMillis);
+}
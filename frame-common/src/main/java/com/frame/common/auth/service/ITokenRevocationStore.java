@@ -0,0 +1,45 @@
+package com.frame.common.auth.service;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * <p>
+ * 退出的token（jwtID）的共享保存，多节点部署时由实现类（如Redis）保存并通知其它节点
+ * 各节点在本地保存布隆过滤器和退出的jwtID，只有本地不能判断时才访问共享保存
+ * </p>
+ *
+ * @author gaoly
+ */
+public interface ITokenRevocationStore {
+
+    /**
+     * 保存退出的jwtID并通知其它节点
+     *
+     * @param jwtId     jwtID
+     * @param expiresAt token的过期时间（毫秒），之后自动删除
+     */
+    void revoke(String jwtId, long expiresAt);
+
+    /**
+     * 是否已经退出
+     *
+     * @param jwtId jwtID
+     * @return 退出并且没有过期时返回true
+     */
+    boolean isRevoked(String jwtId);
+
+    /**
+     * 取得没有过期的全部退出的jwtID，启动时读取
+     *
+     * @return jwtID和过期时间
+     */
+    Map<String, Long> loadAll();
+
+    /**
+     * 订阅其它节点的退出通知
+     *
+     * @param listener 收到通知时调用，参数为jwtID和过期时间
+     */
+    void subscribe(BiConsumer<String, Long> listener);
+}
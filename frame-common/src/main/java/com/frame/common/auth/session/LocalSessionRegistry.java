@@ -0,0 +1,117 @@
+package com.frame.common.auth.session;
+
+import com.frame.common.auth.service.ISessionRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * 单节点的会话登记
+ * 每个账户的会话和踢出记录保存为不可变对象，用AtomicReference的CAS更新，不加锁
+ * </p>
+ *
+ * @author gaoly
+ */
+public class LocalSessionRegistry implements ISessionRegistry {
+
+    private final Map<String, AtomicReference<Sessions>> registry = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean register(String key, String jwtId, int maxSession, boolean kickOutAfter, long ttlMillis) {
+        AtomicReference<Sessions> reference = registry.computeIfAbsent(key, k -> new AtomicReference<>(Sessions.EMPTY));
+        while (true) {
+            Sessions current = reference.get();
+            long now = System.currentTimeMillis();
+            if (current.isKicked(jwtId, now)) {
+                return true;
+            }
+            if (current.isActive(jwtId, now) && current.active.size() <= maxSession) {
+                return false;
+            }
+            Sessions next = current.register(jwtId, now, ttlMillis, Math.max(1, maxSession), kickOutAfter);
+            if (reference.compareAndSet(current, next)) {
+                return next.isKicked(jwtId, now);
+            }
+        }
+    }
+
+    /**
+     * 一个账户的会话
+     */
+    private static class Sessions {
+        private static final Sessions EMPTY = new Sessions(Collections.emptyList(), Collections.emptyList());
+
+        /**
+         * 有效的会话，新登录的在前
+         */
+        private final List<Entry> active;
+
+        /**
+         * 踢出的会话
+         */
+        private final List<Entry> kicked;
+
+        private Sessions(List<Entry> active, List<Entry> kicked) {
+            this.active = active;
+            this.kicked = kicked;
+        }
+
+        private boolean isActive(String jwtId, long now) {
+            return find(active, jwtId, now);
+        }
+
+        private boolean isKicked(String jwtId, long now) {
+            return find(kicked, jwtId, now);
+        }
+
+        /**
+         * 清除过期的记录，加入会话，超出最大会话数时踢出
+         */
+        private Sessions register(String jwtId, long now, long ttlMillis, int maxSession, boolean kickOutAfter) {
+            List<Entry> nextActive = new ArrayList<>(active.size() + 1);
+            List<Entry> nextKicked = new ArrayList<>(kicked.size() + 1);
+            if (!find(active, jwtId, now)) {
+                nextActive.add(new Entry(jwtId, now + ttlMillis));
+            }
+            for (Entry entry : active) {
+                if (entry.expiresAt > now) {
+                    nextActive.add(entry);
+                }
+            }
+            for (Entry entry : kicked) {
+                if (entry.expiresAt > now) {
+                    nextKicked.add(entry);
+                }
+            }
+            while (nextActive.size() > maxSession) {
+                Entry kickOut = nextActive.remove(kickOutAfter ? 0 : nextActive.size() - 1);
+                nextKicked.add(kickOut);
+            }
+            return new Sessions(nextActive, nextKicked);
+        }
+
+        private static boolean find(List<Entry> entries, String jwtId, long now) {
+            for (Entry entry : entries) {
+                if (entry.jwtId.equals(jwtId)) {
+                    return entry.expiresAt > now;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class Entry {
+        private final String jwtId;
+        private final long expiresAt;
+
+        private Entry(String jwtId, long expiresAt) {
+            this.jwtId = jwtId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
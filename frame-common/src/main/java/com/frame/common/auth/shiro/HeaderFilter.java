@@ -103,6 +103,8 @@ public class HeaderFilter extends BasicHttpAuthenticationFilter {
             ThreadLocalUtil.removeLocaleLang();
             ThreadLocalUtil.removeLocaleSecret();
         }
+        //读写分离的主库读取按请求清除
+        ThreadLocalUtil.removeLastWriteTime();
 
 
     }
@@ -1,28 +1,33 @@
 package com.frame.common.auth.shiro;
 
-import com.frame.common.base.constant.CacheConstant;
+import com.frame.common.auth.service.ISessionRegistry;
+import com.frame.common.auth.session.LocalSessionRegistry;
 import com.frame.common.base.exception.KickOutErrorException;
 import com.frame.common.base.knowledge.AuthMessageEnum;
 import com.frame.common.base.shiro.ShiroUser;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.shiro.cache.Cache;
-import org.apache.shiro.cache.CacheManager;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.web.filter.authc.BasicHttpAuthenticationFilter;
 
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import java.io.Serializable;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author ly
  * 用户管理ilter，踢出filter
+ * 会话的登记和踢出由ISessionRegistry对每个账户原子执行，
+ * 同一jwtID的判断结果在本地缓存：没有踢出的在checkMillis内不再登记，踢出的在token有效期内直接拒绝
  */
 @Slf4j
 public class KickOutFilter extends BasicHttpAuthenticationFilter {
+    /**
+     * 判断结果的最大缓存数量
+     */
+    private static final int MAX_DECISIONS = 10000;
+
     /**
      * 踢出之前登录的/之后登录的用户 默认踢出之前登录的用户
      */
@@ -33,33 +38,31 @@ public class KickOutFilter extends BasicHttpAuthenticationFilter {
      */
     private int maxSession = 1;
 
-
     /**
-     * 登陆用户列表
+     * 会话和踢出记录的有效期（毫秒），和token的有效期一致
      */
-    private Cache<String, Deque<Serializable>> cache;
+    @Setter
+    private long sessionTtlMillis = 60 * 60 * 1000L;
 
     /**
-     * 已删除用户列表
+     * 没有踢出的判断结果的缓存时间（毫秒）
      */
-    private Cache<Serializable, String> kickedCache;
-
-    public void setMaxSession(int maxSession) {
-        this.maxSession = maxSession;
-    }
-
+    @Setter
+    private long checkMillis = 5000L;
 
     /**
-     * 设置Cache的key的前缀
+     * 会话登记
      */
+    @Setter
+    private ISessionRegistry sessionRegistry = new LocalSessionRegistry();
 
-    public void setCacheManager(CacheManager cacheManager) {
-
-        this.cache = cacheManager.getCache(CacheConstant.SHIRO_KICK_OUT_DEQUE);
-
-        this.kickedCache = cacheManager.getCache(CacheConstant.SHIRO_KICKED_TOKEN);
-
+    /**
+     * jwtID的判断结果
+     */
+    private final Map<String, Decision> decisions = new ConcurrentHashMap<>();
 
+    public void setMaxSession(int maxSession) {
+        this.maxSession = maxSession;
     }
 
     @Override
@@ -76,43 +79,11 @@ public class KickOutFilter extends BasicHttpAuthenticationFilter {
         }
 
         ShiroUser shiroUser = ShiroUser.getCurrentUser();
-        String username = shiroUser.getAccount() + "_" + shiroUser.getTerminal();
         //jwtid
-        Serializable sessionId = shiroUser.getJwtId();
-        //读取缓存 没有就存入
-        Deque<Serializable> deque = cache.get(username);
-
-        if (deque == null) {
-            deque = new LinkedList<>();
-            cache.put(username, deque);
-        }
-
-        //如果队列里没有此sessionId，且用户没有被踢出；放入队列
-        if (!deque.contains(sessionId)) {
-            //将sessionId存入队列
-            deque.push(sessionId);
-            cache.put(username, deque);
-
-        }
-
-        //如果队列里的sessionId数超出最大会话数，开始踢人
-        while (deque.size() > maxSession) {
-            Serializable kickOutSessionId = null;
-            if (kickOutAfter) {
-                //如果踢出后者
-                kickOutSessionId = deque.removeFirst();
-            } else {
-                //否则踢出前者
-                kickOutSessionId = deque.removeLast();
-            }
-            cache.put(username, deque);
-
-            //添加到已经删除的cache
-            kickedCache.put(kickOutSessionId, "1");
-        }
+        String sessionId = shiroUser.getJwtId();
 
         //如果被踢出了，直接退出，重定向到踢出后的地址
-        if (kickedCache.get(sessionId) != null) {
+        if (this.isKicked(shiroUser.getAccount() + "_" + shiroUser.getTerminal(), sessionId)) {
             //会话被踢出了
             try {
                 //退出登录
@@ -126,6 +97,27 @@ public class KickOutFilter extends BasicHttpAuthenticationFilter {
         return true;
     }
 
+    /**
+     * 登记会话并判断是否被踢出，缓存中有有效的判断结果时不登记
+     */
+    private boolean isKicked(String username, String sessionId) {
+        long now = System.currentTimeMillis();
+        Decision decision = decisions.get(sessionId);
+        if (decision != null && decision.validUntil > now) {
+            return decision.kicked;
+        }
+        boolean kicked = sessionRegistry.register(username, sessionId, maxSession, kickOutAfter, sessionTtlMillis);
+        if (decisions.size() >= MAX_DECISIONS) {
+            decisions.values().removeIf(cached -> cached.validUntil <= now);
+            if (decisions.size() >= MAX_DECISIONS) {
+                // 超出时全部清除，只影响性能
+                decisions.clear();
+            }
+        }
+        decisions.put(sessionId, new Decision(kicked, now + (kicked ? sessionTtlMillis : checkMillis)));
+        return kicked;
+    }
+
     @Override
     protected boolean onAccessDenied(ServletRequest request, ServletResponse response) throws Exception {
 
@@ -135,5 +127,14 @@ public class KickOutFilter extends BasicHttpAuthenticationFilter {
 
         return true;
     }
-}
 
+    private static class Decision {
+        private final boolean kicked;
+        private final long validUntil;
+
+        private Decision(boolean kicked, long validUntil) {
+            this.kicked = kicked;
+            this.validUntil = validUntil;
+        }
+    }
+}
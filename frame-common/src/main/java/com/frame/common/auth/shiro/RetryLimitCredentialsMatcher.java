@@ -1,52 +1,121 @@
 package com.frame.common.auth.shiro;
 
-import com.frame.common.base.constant.CacheConstant;
+import com.frame.common.auth.service.ILoginThrottle;
+import com.frame.common.base.util.NetworkUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.shiro.authc.AuthenticationInfo;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.ExcessiveAttemptsException;
 import org.apache.shiro.authc.credential.HashedCredentialsMatcher;
-import org.apache.shiro.cache.Cache;
-import org.apache.shiro.cache.CacheManager;
-
-import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
 /**
+ * <p>
+ * 登录的重试限制，按账户和客户端IP在窗口内限流
+ * ShiroRealm在查询账户之前调用{@link #acquire(AuthenticationToken)}判断并计数，超出时不查询账户、不计算散列，
+ * 不存在的账户同样按客户端IP限流；登录成功时清除账户的计数并撤销客户端IP的这次计数，IP只累计失败的登录
+ * </p>
+ * <p>
+ * 多个realm时认证的异常不会传到调用方，需要等待的时间保存在请求属性中，见{@link #getRetryAfterMillis()}
+ * </p>
+ *
  * @author ly
  */
+@Slf4j
 public class RetryLimitCredentialsMatcher extends HashedCredentialsMatcher {
 
-    private Cache<String, AtomicInteger> passwordRetryCache;
+    /**
+     * 需要等待的时间（毫秒）的请求属性
+     */
+    private static final String RETRY_AFTER_ATTRIBUTE = RetryLimitCredentialsMatcher.class.getName() + ".RETRY_AFTER";
 
-    private int maxRetryCount = 5;
+    private static final String ACCOUNT_KEY_PREFIX = "account:";
 
-    public RetryLimitCredentialsMatcher(CacheManager cacheManager, int maxRetryCount) {
-        passwordRetryCache = cacheManager.getCache(CacheConstant.SHIRO_PASS_RETRY);
-        this.maxRetryCount = maxRetryCount;
+    private static final String IP_KEY_PREFIX = "ip:";
+
+    private final ILoginThrottle loginThrottle;
+
+    private final int maxRetryCount;
+
+    private final int maxIpRetryCount;
+
+    private final long windowMillis;
 
+    /**
+     * @param loginThrottle   限流
+     * @param maxRetryCount   账户在窗口内的登录次数
+     * @param maxIpRetryCount 客户端IP在窗口内的登录次数
+     * @param windowMillis    窗口（毫秒）
+     */
+    public RetryLimitCredentialsMatcher(ILoginThrottle loginThrottle, int maxRetryCount, int maxIpRetryCount, long windowMillis) {
+        this.loginThrottle = loginThrottle;
+        this.maxRetryCount = maxRetryCount;
+        this.maxIpRetryCount = maxIpRetryCount;
+        this.windowMillis = windowMillis;
     }
 
-    @Override
-    public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
-        String username = (String) token.getPrincipal();
-        String keyUserName = "retry_" + username;
-        // retry count + 1
-        AtomicInteger retryCount = passwordRetryCache.get(keyUserName);
-        if (retryCount == null) {
-            retryCount = new AtomicInteger(0);
-            passwordRetryCache.put(keyUserName, retryCount);
+    /**
+     * 判断登录次数并计数，超出时抛出异常
+     *
+     * @param token 登录信息
+     * @throws ExcessiveAttemptsException 超出登录次数
+     */
+    public void acquire(AuthenticationToken token) {
+        String accountKey = ACCOUNT_KEY_PREFIX + token.getPrincipal();
+        String ip = getClientIp();
+        long wait;
+        if (ip == null) {
+            wait = loginThrottle.tryAcquire(new String[]{accountKey}, new int[]{maxRetryCount}, windowMillis);
+        } else {
+            wait = loginThrottle.tryAcquire(new String[]{accountKey, IP_KEY_PREFIX + ip},
+                    new int[]{maxRetryCount, maxIpRetryCount}, windowMillis);
         }
-        if (retryCount.incrementAndGet() > this.maxRetryCount) {
-            // if retry count > 5 throw
+        if (wait > 0L) {
+            log.warn("登录次数超出限制:[{}] [{}] 等待[{}]毫秒", token.getPrincipal(), ip, wait);
+            setRetryAfterMillis(wait);
             throw new ExcessiveAttemptsException();
         }
+    }
 
+    @Override
+    public boolean doCredentialsMatch(AuthenticationToken token, AuthenticationInfo info) {
         boolean matches = super.doCredentialsMatch(token, info);
         if (matches) {
             // clear retry count
-            passwordRetryCache.remove(keyUserName);
-        } else {
-            passwordRetryCache.put(keyUserName, retryCount);
+            loginThrottle.reset(ACCOUNT_KEY_PREFIX + token.getPrincipal());
+            String ip = getClientIp();
+            if (ip != null) {
+                loginThrottle.release(IP_KEY_PREFIX + ip);
+            }
         }
         return matches;
     }
+
+    /**
+     * 取得当前请求登录超出限制时需要等待的时间
+     *
+     * @return 没有超出时返回0
+     */
+    public static long getRetryAfterMillis() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object wait = attributes == null ? null : attributes.getAttribute(RETRY_AFTER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return wait == null ? 0L : (Long) wait;
+    }
+
+    private static void setRetryAfterMillis(long wait) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(RETRY_AFTER_ATTRIBUTE, wait, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private static String getClientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            return NetworkUtil.getIpAddress(((ServletRequestAttributes) attributes).getRequest());
+        }
+        return null;
+    }
 }
@@ -2,6 +2,12 @@ package com.frame.common.auth.shiro;
 
 import com.frame.common.auth.jwt.JwtFilter;
 import com.frame.common.auth.jwt.JwtRealm;
+import com.frame.common.auth.jwt.JwtVerifiedCache;
+import com.frame.common.auth.revocation.TokenRevocationService;
+import com.frame.common.auth.service.ILoginThrottle;
+import com.frame.common.auth.service.ISessionRegistry;
+import com.frame.common.auth.service.ITokenRevocationStore;
+import com.frame.common.auth.throttle.LocalLoginThrottle;
 import com.frame.common.base.config.FrameProperties;
 import com.frame.common.base.constant.CacheConstant;
 import lombok.extern.slf4j.Slf4j;
@@ -54,6 +60,24 @@ public class ShiroConfig {
     @Qualifier("shiroCache")
     private CacheManager shiroCache;
 
+    /**
+     * 退出token的共享保存 根据插件自动注入
+     */
+    @Autowired(required = false)
+    private ITokenRevocationStore tokenRevocationStore;
+
+    /**
+     * 会话登记 根据插件自动注入
+     */
+    @Autowired(required = false)
+    private ISessionRegistry sessionRegistry;
+
+    /**
+     * 登录限流 根据插件自动注入
+     */
+    @Autowired(required = false)
+    private ILoginThrottle loginThrottle;
+
     /**
      * 定义多个realm的认证策略配置,使用FirstSuccessfulStrategy
      * @return
@@ -145,9 +169,12 @@ public class ShiroConfig {
     @Bean
     public KickOutFilter kickOutFilter() {
         KickOutFilter kickOutFilter = new KickOutFilter();
-        //使用cacheManager获取相应的cache来缓存用户登录的会话；用于保存用户—会话之间的关系的；
-        //也可以重新另写一个，重新配置缓存时间之类的自定义缓存属性
-        kickOutFilter.setCacheManager(shiroCache);
+        //会话登记，有ISessionRegistry（如Redis）时多节点共享，没有时在本节点登记
+        if (sessionRegistry != null) {
+            kickOutFilter.setSessionRegistry(sessionRegistry);
+        }
+        kickOutFilter.setSessionTtlMillis(this.frameProperties.getAuth().getJwtExpireTime());
+        kickOutFilter.setCheckMillis(this.frameProperties.getAuth().getKickOutCheckMillis());
         //是否踢出后来登录的，默认是false；即后者登录的用户踢出前者登录的用户；踢出顺序。
         kickOutFilter.setKickOutAfter(this.frameProperties.getAuth().isKickOutAfter());
         //同一个用户最大的会话数，默认1；比如2的意思是同一个用户允许最多同时两个人登录；
@@ -168,9 +195,31 @@ public class ShiroConfig {
         //使用cacheManager获取相应的cache来缓存用户登录的会话；用于保存用户—会话之间的关系的；
         //也可以重新另写一个，重新配置缓存时间之类的自定义缓存属性
         jwtFilter.setCacheManager(shiroCache);
+        jwtFilter.setVerifiedCache(jwtVerifiedCache());
+        jwtFilter.setRevocationService(tokenRevocationService());
         return jwtFilter;
     }
 
+    /**
+     * 退出token的判断，有ITokenRevocationStore时多节点共享
+     *
+     * @return
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public TokenRevocationService tokenRevocationService() {
+        return new TokenRevocationService(tokenRevocationStore, this.frameProperties.getAuth().getRevokedTokenExpectedSize());
+    }
+
+    /**
+     * 校验通过的token缓存，数量见frame.auth.jwt-verified-cache-size
+     *
+     * @return
+     */
+    @Bean
+    public JwtVerifiedCache jwtVerifiedCache() {
+        return new JwtVerifiedCache(this.frameProperties.getAuth().getJwtVerifiedCacheSize());
+    }
+
     @Bean
     public FilterRegistrationBean shiroJwtFilter(JwtFilter filter) {
         FilterRegistrationBean registration = new FilterRegistrationBean(filter);
@@ -244,7 +293,12 @@ public class ShiroConfig {
 
     @Bean
     public HashedCredentialsMatcher hashedCredentialsMatcher(PasswordHash passwordHash) {
-        HashedCredentialsMatcher hashedCredentialsMatcher = new RetryLimitCredentialsMatcher(shiroCache, this.frameProperties.getAuth().getPasswordRetryLimit());
+        //登录限流，有ILoginThrottle（如Redis）时多节点共享，没有时在本节点计数
+        HashedCredentialsMatcher hashedCredentialsMatcher = new RetryLimitCredentialsMatcher(
+                loginThrottle != null ? loginThrottle : new LocalLoginThrottle(),
+                this.frameProperties.getAuth().getPasswordRetryLimit(),
+                this.frameProperties.getAuth().getLoginIpRetryLimit(),
+                this.frameProperties.getAuth().getLoginRetryWindowMillis());
         //散列算法
         hashedCredentialsMatcher.setHashAlgorithmName(passwordHash.getAlgorithmName());
         //散列次数
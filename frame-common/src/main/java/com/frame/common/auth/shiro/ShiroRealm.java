@@ -4,6 +4,7 @@ import com.frame.common.auth.dto.PassDto;
 import com.frame.common.auth.service.IAuthService;
 import com.frame.common.base.knowledge.DataDictKnowledge;
 import com.frame.common.base.shiro.ShiroUser;
+import com.frame.common.mybatis.interceptor.data.DataAuthCache;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shiro.authc.*;
 import org.apache.shiro.authz.AuthorizationInfo;
@@ -26,6 +27,9 @@ public class ShiroRealm extends AuthorizingRealm {
     @Lazy
     private IAuthService authService;
 
+    @Autowired(required = false)
+    private DataAuthCache dataAuthCache;
+
     @Override
     public boolean supports(AuthenticationToken token) {
         return token instanceof UsernamePasswordToken;
@@ -52,6 +56,10 @@ public class ShiroRealm extends AuthorizingRealm {
     protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken authenticationToken)
             throws AuthenticationException {
         UsernamePasswordToken token = (UsernamePasswordToken) authenticationToken;
+        //查询账户之前判断登录次数，不存在的账户同样按客户端IP限流
+        if (getCredentialsMatcher() instanceof RetryLimitCredentialsMatcher) {
+            ((RetryLimitCredentialsMatcher) getCredentialsMatcher()).acquire(token);
+        }
         //查出是否有此用户
 
         PassDto accountDto = authService.getAccountInfo(token.getUsername());
@@ -89,6 +97,10 @@ public class ShiroRealm extends AuthorizingRealm {
         super.clearCachedAuthorizationInfo(principals);
         ShiroUser shiroUser = (ShiroUser) principals.getPrimaryPrincipal();
         removeUserCache(shiroUser.getAccount());
+        //重新登录后使用新的数据权限条件
+        if (dataAuthCache != null) {
+            dataAuthCache.evict(shiroUser.getAuthId());
+        }
     }
 
     /**
@@ -0,0 +1,180 @@
+package com.frame.common.auth.throttle;
+
+import com.frame.common.auth.service.ILoginThrottle;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * 单节点的登录限流
+ * 每个键保存上一个窗口和当前窗口的次数（滑动窗口计数），按上一个窗口剩余的比例加权估算窗口内的次数；
+ * 计数保存为不可变对象，用AtomicReference的CAS更新，不加锁
+ * </p>
+ * <p>
+ * 多个键之间不是原子的，并发时可能多计数一次，只影响限流的精度
+ * </p>
+ *
+ * @author gaoly
+ */
+public class LocalLoginThrottle implements ILoginThrottle {
+
+    /**
+     * 保存的键的最大数量，超出时清除过期的，仍超出时全部清除（只影响限流）
+     */
+    private static final int MAX_KEYS = 100000;
+
+    private final ConcurrentHashMap<String, AtomicReference<Window>> windows = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    @Override
+    public long tryAcquire(String[] keys, int[] limits, long windowMillis) {
+        long now = System.currentTimeMillis();
+        long window = Math.max(1L, windowMillis);
+        this.purgeIfNecessary(now);
+        @SuppressWarnings("unchecked")
+        AtomicReference<Window>[] references = new AtomicReference[keys.length];
+        long wait = 0L;
+        for (int i = 0; i < keys.length; i++) {
+            references[i] = windows.computeIfAbsent(keys[i], k -> new AtomicReference<>(Window.EMPTY));
+            wait = Math.max(wait, references[i].get().roll(now, window).waitMillis(now, window, Math.max(1, limits[i])));
+        }
+        if (wait > 0L) {
+            return wait;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            while (true) {
+                Window current = references[i].get();
+                Window rolled = current.roll(now, window);
+                wait = rolled.waitMillis(now, window, Math.max(1, limits[i]));
+                if (wait > 0L) {
+                    return wait;
+                }
+                if (references[i].compareAndSet(current, rolled.increment(window))) {
+                    break;
+                }
+            }
+        }
+        return 0L;
+    }
+
+    @Override
+    public void reset(String key) {
+        windows.remove(key);
+    }
+
+    @Override
+    public void release(String key) {
+        AtomicReference<Window> reference = windows.get(key);
+        if (reference == null) {
+            return;
+        }
+        while (true) {
+            Window current = reference.get();
+            Window released = current.decrement();
+            if (released == current || reference.compareAndSet(current, released)) {
+                return;
+            }
+        }
+    }
+
+    private void purgeIfNecessary(long now) {
+        if (windows.size() <= MAX_KEYS || !purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            windows.values().removeIf(reference -> reference.get().expiresAt <= now);
+            if (windows.size() > MAX_KEYS) {
+                windows.clear();
+            }
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    /**
+     * 一个键的计数
+     */
+    private static class Window {
+        private static final Window EMPTY = new Window(0L, 0, 0, 0L);
+
+        /**
+         * 当前窗口的开始时间
+         */
+        private final long start;
+
+        /**
+         * 上一个窗口的次数
+         */
+        private final int previous;
+
+        /**
+         * 当前窗口的次数
+         */
+        private final int current;
+
+        /**
+         * 计数不再影响判断的时间
+         */
+        private final long expiresAt;
+
+        private Window(long start, int previous, int current, long expiresAt) {
+            this.start = start;
+            this.previous = previous;
+            this.current = current;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * 移动到当前时间所在的窗口
+         */
+        private Window roll(long now, long window) {
+            long aligned = now - now % window;
+            if (aligned == start) {
+                return this;
+            }
+            return new Window(aligned, aligned == start + window ? current : 0, 0, expiresAt);
+        }
+
+        private Window increment(long window) {
+            return new Window(start, previous, current + 1, start + 2 * window);
+        }
+
+        /**
+         * 撤销一次计数，当前窗口没有时撤销上一个窗口的
+         */
+        private Window decrement() {
+            if (current > 0) {
+                return new Window(start, previous, current - 1, expiresAt);
+            }
+            if (previous > 0) {
+                return new Window(start, previous - 1, current, expiresAt);
+            }
+            return this;
+        }
+
+        /**
+         * 再计数一次超出上限时，估算的次数降到上限以下需要等待的时间
+         */
+        private long waitMillis(long now, long window, int limit) {
+            long elapsed = now - start;
+            double estimate = (double) previous * (window - elapsed) / window + current;
+            if (estimate + 1 <= limit) {
+                return 0L;
+            }
+            long wait;
+            if (current < limit) {
+                // 上一个窗口的加权次数减少到允许的时间
+                double required = window * (1 - (double) (limit - 1 - current) / previous);
+                wait = (long) Math.ceil(required) - elapsed;
+            } else {
+                // 下一个窗口中当前窗口的加权次数减少到允许的时间
+                double required = window * (1 - (double) (limit - 1) / current);
+                wait = window - elapsed + (long) Math.ceil(required);
+            }
+            return Math.max(1L, wait);
+        }
+    }
+}
@@ -6,6 +6,11 @@ import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * @author ly
  */
@@ -30,6 +35,21 @@ public class FrameProperties {
      */
     private Quartz quartz;
 
+    /**
+     * mybatis配置
+     */
+    private Mybatis mybatis = new Mybatis();
+
+    /**
+     * 读写分离配置
+     */
+    private Datasource datasource = new Datasource();
+
+    /**
+     * 逻辑删除数据归档配置
+     */
+    private Archive archive = new Archive();
+
 
     /**
      * 系统模块控制
@@ -100,6 +120,14 @@ public class FrameProperties {
          * 密码重试次数
          */
         private int passwordRetryLimit = 5;
+        /**
+         * 同一客户端IP的登录次数
+         */
+        private int loginIpRetryLimit = 50;
+        /**
+         * 登录次数限制的窗口（毫秒），默认10分钟
+         */
+        private long loginRetryWindowMillis = 10 * 60 * 1000L;
         /**
          * 是否执行kickout
          */
@@ -112,15 +140,27 @@ public class FrameProperties {
          * 同一个帐号最大会话数 默认1
          */
         private int kickOutMaxSession = 1;
+        /**
+         * 没有踢出的会话再次登记的间隔（毫秒），期间其它节点的踢出不生效
+         */
+        private long kickOutCheckMillis = 5000L;
 
         /**
          * 不要权限限制的url
          */
         private String[] ignoreUrl;
         /**
-         * jwt密码信息
+         * jwt密码信息，变更时之前签发的token失效
          */
         private String jwtSecret;
+        /**
+         * 校验通过的token的缓存数量，0以下时不缓存
+         */
+        private int jwtVerifiedCacheSize = 10000;
+        /**
+         * 同时有效的退出token的预计件数，决定本地布隆过滤器的大小
+         */
+        private int revokedTokenExpectedSize = 10000;
         /**
          * 默认60分钟
          */
@@ -152,5 +192,204 @@ public class FrameProperties {
         private String[] excludeJobGroup;
     }
 
+    /**
+     * mybatis配置
+     *
+     * @author ly
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Mybatis {
+
+        /**
+         * 按ID批量查询、删除时每次IN的ID数量，key为数据库类型（oracle/mysql/h2...），没有设置的使用默认值
+         */
+        private Map<String, Integer> inListSize = new HashMap<>();
+
+        /**
+         * 按ID并行查询的线程数
+         */
+        private int parallelReadThreads = 4;
+
+        /**
+         * 慢SQL日志的阈值（毫秒），0以下时不输出
+         */
+        private long slowSqlMillis = 1000L;
+
+        /**
+         * 慢SQL日志的采样率（0～1）
+         */
+        private double slowSqlSampleRate = 1.0;
+
+        /**
+         * 分页COUNT缓存的有效期（秒），缓存在各节点内存中，写表时只清除本节点的缓存，
+         * 其它节点最多在有效期内使用写表前的件数
+         */
+        private long pageCountCacheSeconds = 60L;
+
+        /**
+         * 分页COUNT缓存的最大数量
+         */
+        private int pageCountCacheSize = 1024;
+
+        /**
+         * 数据权限条件缓存的有效期（秒），变更不通知其它节点，其它节点最多在有效期内使用变更前的条件
+         */
+        private long dataAuthCacheSeconds = 300L;
+
+        /**
+         * 主键生成方式，默认为序列（@KeySequence）
+         */
+        private IdGenerator idGenerator = IdGenerator.SEQUENCE;
+
+        /**
+         * hi/lo每次取得的ID数量，和序列的INCREMENT BY一致
+         */
+        private int idBlockSize = 100;
+
+        /**
+         * hi/lo没有@KeySequence的实体使用的序列，为空时不生成
+         */
+        private String idSequence;
+
+        /**
+         * snowflake节点ID，小于0时自动分配
+         */
+        private int workerId = -1;
+
+        /**
+         * 主键生成方式
+         */
+        public enum IdGenerator {
+            /**
+             * 每次插入取得序列
+             */
+            SEQUENCE,
+            /**
+             * 按块取得序列
+             */
+            HILO,
+            /**
+             * 时间顺序的snowflake
+             */
+            SNOWFLAKE
+        }
+    }
+
+    /**
+     * 读写分离配置，主库使用spring.datasource
+     *
+     * @author ly
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Datasource {
+
+        /**
+         * 是否启动读写分离
+         */
+        private boolean enable = false;
+
+        /**
+         * 从库
+         */
+        private List<Replica> replicas = new ArrayList<>();
+
+        /**
+         * 从库选择方式
+         */
+        private LoadBalance loadBalance = LoadBalance.ROUND_ROBIN;
+
+        /**
+         * 写入后同一请求中读取使用主库的时间（毫秒）
+         */
+        private long stickyMillis = 3000L;
+
+        /**
+         * 从库连接信息
+         */
+        @Data
+        @NoArgsConstructor
+        public static class Replica {
+            private String url;
+            private String username;
+            private String password;
+            private String driverClassName;
+        }
+
+        /**
+         * 从库选择方式
+         */
+        public enum LoadBalance {
+            /**
+             * 轮询
+             */
+            ROUND_ROBIN,
+            /**
+             * 使用中连接最少
+             */
+            LEAST_ACTIVE
+        }
+    }
+
+    /**
+     * 逻辑删除数据归档配置
+     * 逻辑删除后超过保留期间的数据按批移动到归档表（表名+后缀），进度记录在checkpointTable中
+     *
+     * @author ly
+     */
+    @Data
+    @NoArgsConstructor
+    public static class Archive {
+
+        /**
+         * 是否启动归档
+         */
+        private boolean enable = false;
+
+        /**
+         * 归档的表
+         */
+        private List<String> tables = new ArrayList<>();
+
+        /**
+         * 归档表名的后缀
+         */
+        private String suffix = "_ARC";
+
+        /**
+         * 逻辑删除后（按删除时更新的UPDATE_DATE）保留的天数
+         */
+        private int retainDays = 90;
+
+        /**
+         * 每批移动的最大件数（Oracle的IN上限为1000）
+         */
+        private int batchSize = 500;
+
+        /**
+         * 每批的目标耗时（毫秒），超过时减少下一批的件数
+         */
+        private long maxBatchMillis = 500L;
+
+        /**
+         * 每批之间的等待时间（毫秒）
+         */
+        private long pauseMillis = 200L;
+
+        /**
+         * 执行间隔（分钟），0以下时不自动执行
+         */
+        private long intervalMinutes = 60L;
+
+        /**
+         * 归档表不存在时按原表结构生成
+         */
+        private boolean createTable = true;
 
+        /**
+         * 进度记录表
+         */
+        private String checkpointTable = "ST_TBL_ARCHIVE_CHECKPOINT";
+    }
 }
@@ -2,8 +2,11 @@ package com.frame.common.base.model;
 
 
 import com.baomidou.mybatisplus.annotation.*;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.ToString;
 
 import java.time.LocalDateTime;
@@ -63,6 +66,16 @@ public class BaseEntity extends Convert {
     @TableField(value = "UPDATE_DATE", fill = FieldFill.INSERT_UPDATE)
     protected LocalDateTime updateDate;
 
+    /**
+     * 查询时的快照，实体有@DirtyTracking时由BaseServiceImpl设置
+     */
+    @TableField(exist = false)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private transient BaseEntity loadedSnapshot;
+
     public static final String ID = "ID";
 
     public static final String VERSION_NUM = "VERSION_NUM";
@@ -81,4 +94,22 @@ public class BaseEntity extends Convert {
 
 
     public static final String ID_FILED = "id";
+
+    /**
+     * 取得查询时的快照
+     *
+     * @return 没有快照时返回null
+     */
+    public BaseEntity loadedSnapshot() {
+        return loadedSnapshot;
+    }
+
+    /**
+     * 设置查询时的快照
+     *
+     * @param snapshot 快照，null时清除
+     */
+    public void loadedSnapshot(BaseEntity snapshot) {
+        this.loadedSnapshot = snapshot;
+    }
 }
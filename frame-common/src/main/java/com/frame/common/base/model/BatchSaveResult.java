@@ -0,0 +1,115 @@
+package com.frame.common.base.model;
+
+import lombok.Data;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 列表数据批量保存结果
+ * 按行返回处理结果，画面可以直接显示版本冲突的数据，不需要再次查询
+ *
+ * @author ly
+ */
+@Data
+@ToString
+public class BatchSaveResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 每行的处理结果，提交数据的顺序在前，删除的数据在后
+     */
+    private List<Row> rows = new ArrayList<>();
+
+    /**
+     * 添加一行结果
+     *
+     * @param id         ID
+     * @param status     处理结果
+     * @param versionNum 处理后的版本号，冲突时为数据库中的版本号
+     * @return 添加的行
+     */
+    public Row add(String id, RowStatus status, Integer versionNum) {
+        Row row = new Row(id, status, versionNum);
+        rows.add(row);
+        return row;
+    }
+
+    /**
+     * 是否有版本冲突的数据
+     *
+     * @return 是否有冲突
+     */
+    public boolean hasConflict() {
+        return rows.stream().anyMatch(row -> row.getStatus() == RowStatus.CONFLICT);
+    }
+
+    /**
+     * 取得版本冲突的数据
+     *
+     * @return 冲突的行
+     */
+    public List<Row> getConflicts() {
+        return rows.stream().filter(row -> row.getStatus() == RowStatus.CONFLICT).collect(Collectors.toList());
+    }
+
+    /**
+     * 指定处理结果的件数
+     *
+     * @param status 处理结果
+     * @return 件数
+     */
+    public long count(RowStatus status) {
+        return rows.stream().filter(row -> row.getStatus() == status).count();
+    }
+
+    /**
+     * 一行的处理结果
+     */
+    @Data
+    @ToString
+    public static class Row implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String id;
+
+        private RowStatus status;
+
+        private Integer versionNum;
+
+        public Row(String id, RowStatus status, Integer versionNum) {
+            this.id = id;
+            this.status = status;
+            this.versionNum = versionNum;
+        }
+    }
+
+    /**
+     * 行处理结果
+     */
+    public enum RowStatus {
+        /**
+         * 新增
+         */
+        INSERTED,
+        /**
+         * 更新了有变化的字段
+         */
+        UPDATED,
+        /**
+         * 没有变化，未更新
+         */
+        UNCHANGED,
+        /**
+         * 删除
+         */
+        DELETED,
+        /**
+         * 版本号不一致，未更新
+         */
+        CONFLICT
+    }
+}
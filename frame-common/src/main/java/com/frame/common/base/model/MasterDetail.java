@@ -0,0 +1,66 @@
+package com.frame.common.base.model;
+
+import com.frame.common.base.service.IBaseService;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * 主子表保存时的子表数据
+ * 子表的service、实体类、指向主表ID的外键属性以及提交的子表数据
+ *
+ * @param <C> 子表实体
+ * @author ly
+ */
+@Getter
+public class MasterDetail<C extends BaseEntity> {
+
+    /**
+     * 子表的service
+     */
+    private final IBaseService<C> service;
+
+    /**
+     * 子表实体类
+     */
+    private final Class<C> entityClass;
+
+    /**
+     * 外键属性名
+     */
+    private final String foreignKey;
+
+    /**
+     * 提交的子表数据，没有的数据删除
+     */
+    private final Collection<C> details;
+
+    private MasterDetail(IBaseService<C> service, Class<C> entityClass, String foreignKey, Collection<C> details) {
+        this.service = service;
+        this.entityClass = entityClass;
+        this.foreignKey = foreignKey;
+        this.details = details == null ? Collections.emptyList() : details;
+    }
+
+    /**
+     * @param service     子表的service
+     * @param entityClass 子表实体类
+     * @param foreignKey  外键属性名
+     * @param details     提交的子表数据
+     * @return 子表数据
+     */
+    public static <C extends BaseEntity> MasterDetail<C> of(IBaseService<C> service, Class<C> entityClass,
+                                                            String foreignKey, Collection<C> details) {
+        return new MasterDetail<>(service, entityClass, foreignKey, details);
+    }
+
+    /**
+     * 同一个表、同一个外键的子表数据合并保存
+     *
+     * @return 分组key
+     */
+    public String groupKey() {
+        return entityClass.getName() + "#" + foreignKey;
+    }
+}
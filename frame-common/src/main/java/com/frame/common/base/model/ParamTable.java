@@ -36,6 +36,15 @@ public class ParamTable<T> extends Param<T> {
     //"是否升序", notes = "默认为TRUE")
     private boolean isAsc;
 
+    //"是否keyset分页", notes = "默认为FALSE，按游标翻页，不使用OFFSET")
+    private boolean keyset;
+
+    //"分页游标", notes = "keyset分页时传入上一页返回的cursor，为空时取第一页")
+    private String cursor;
+
+    //"总数查询方式", notes = "EXACT/CACHE/ESTIMATE/HAS_NEXT，默认为EXACT")
+    private SortPage.CountMode countMode = SortPage.CountMode.EXACT;
+
     /**
      * 是否要把驼峰转成大写下划线格式
      */
@@ -109,12 +118,12 @@ public class ParamTable<T> extends Param<T> {
      */
     public SortPage toSortPageInfo() {
         if (isPage) {
-            return new SortPage<>(
+            return this.sortPageOptions(new SortPage<>(
                     this.getCurrent(),
                     this.getSize(),
                     this.defaultSortString,
                     this.sortString,
-                    this.camelToUnderlineFlg);
+                    this.camelToUnderlineFlg));
         } else {
             return new SortPage<>(
                     this.getCurrent(),
@@ -127,12 +136,12 @@ public class ParamTable<T> extends Param<T> {
 
     public <P> SortPage<P> toSortPageInfo(Class<P> typ) {
         if (isPage) {
-            return new SortPage<>(
+            return this.sortPageOptions(new SortPage<>(
                     this.getCurrent(),
                     this.getSize(),
                     this.defaultSortString,
                     this.sortString,
-                    this.camelToUnderlineFlg);
+                    this.camelToUnderlineFlg));
         } else {
             return new SortPage<>(
                     this.getCurrent(),
@@ -143,6 +152,20 @@ public class ParamTable<T> extends Param<T> {
         }
     }
 
+    /**
+     * 设置keyset分页以及总数查询方式
+     *
+     * @param page 分页对象
+     * @return 分页对象
+     */
+    private <P> SortPage<P> sortPageOptions(SortPage<P> page) {
+        page.setCountMode(countMode);
+        if (keyset) {
+            page.setCursor(cursor);
+        }
+        return page;
+    }
+
     @Deprecated
     public <P> Page<P> toPageInfo(Class<P> typ) {
         if (isPage) {
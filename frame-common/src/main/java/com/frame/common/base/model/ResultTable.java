@@ -32,12 +32,18 @@ public class ResultTable<T> extends Result<List<T>> {
     //"页码大小")
     private long size;
 
+    //"下一页游标", notes = "keyset分页时返回，最后一页为空")
+    private String cursor;
+
     public ResultTable(Page<T> page) {
         super();
         this.total = page.getTotal();
         this.current = page.getCurrent();
         this.size = page.getSize();
         this.pages = page.getPages();
+        if (page instanceof SortPage) {
+            this.cursor = ((SortPage<T>) page).getNextCursor();
+        }
         super.setData(page.getRecords());
     }
 
@@ -47,6 +53,9 @@ public class ResultTable<T> extends Result<List<T>> {
         this.current = page.getCurrent();
         this.size = page.getSize();
         this.pages = page.getPages();
+        if (page instanceof SortPage) {
+            this.cursor = ((SortPage<T>) page).getNextCursor();
+        }
         super.setData(page.getRecords());
     }
 
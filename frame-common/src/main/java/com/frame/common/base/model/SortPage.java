@@ -17,13 +17,19 @@ package com.frame.common.base.model;
 
 import com.baomidou.mybatisplus.core.toolkit.ArrayUtils;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.frame.common.base.util.CursorUtil;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import static org.apache.ibatis.session.RowBounds.NO_ROW_LIMIT;
 
@@ -50,6 +56,27 @@ public class SortPage<T> extends Page<T> implements Serializable {
      */
     private List<SortInfo> orders = new ArrayList<>();
 
+    /**
+     * 是否使用keyset(seek)分页，按上一页最后一行的排序键值定位，不使用OFFSET
+     * 排序字段必须是NOT NULL的字段，查询不能有GROUP BY
+     */
+    private boolean keyset = false;
+
+    /**
+     * 上一页最后一行的排序键值，顺序与{@link #getKeysetOrders()}一致，为空时取第一页
+     */
+    private List<Object> seekValues = new ArrayList<>();
+
+    /**
+     * 总数查询方式，默认精确COUNT
+     */
+    private CountMode countMode = CountMode.EXACT;
+
+    /**
+     * 是否有下一页，HAS_NEXT方式以及keyset分页时由查询结果设置
+     */
+    private boolean hasNext = false;
+
     /**
      * 兼容旧的逻辑
      *
@@ -82,6 +109,122 @@ public class SortPage<T> extends Page<T> implements Serializable {
         return orders;
     }
 
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    public SortPage<T> setKeyset(boolean keyset) {
+        this.keyset = keyset;
+        return this;
+    }
+
+    public List<Object> getSeekValues() {
+        return seekValues;
+    }
+
+    public SortPage<T> setSeekValues(List<Object> seekValues) {
+        this.seekValues = seekValues == null ? new ArrayList<>() : seekValues;
+        return this;
+    }
+
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    public SortPage<T> setCountMode(CountMode countMode) {
+        this.countMode = countMode == null ? CountMode.EXACT : countMode;
+        return this;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    /**
+     * 设置查询结果
+     * HAS_NEXT方式以及keyset分页时多取了一行用来判断是否有下一页，这里去掉多取的一行，HAS_NEXT方式时推算总数
+     *
+     * @param records 查询结果
+     * @return this
+     */
+    @Override
+    public Page<T> setRecords(List<T> records) {
+        if ((countMode == CountMode.HAS_NEXT || keyset) && records != null && this.getSize() > 0) {
+            hasNext = records.size() > this.getSize();
+            List<T> pageRecords = hasNext ? new ArrayList<>(records.subList(0, (int) this.getSize())) : records;
+            if (countMode == CountMode.HAS_NEXT) {
+                this.setTotal(this.offset() + pageRecords.size() + (hasNext ? 1 : 0));
+            }
+            return super.setRecords(pageRecords);
+        }
+        return super.setRecords(records);
+    }
+
+    /**
+     * 设置上一页返回的游标，启用keyset分页
+     *
+     * @param cursor 游标
+     * @return this
+     */
+    public SortPage<T> setCursor(String cursor) {
+        this.keyset = true;
+        this.seekValues = new ArrayList<>(CursorUtil.decode(cursor));
+        return this;
+    }
+
+    /**
+     * 取得keyset分页的排序键
+     * 在排序信息之后追加ID作为稳定的次序，重复的排序字段只保留第一个
+     *
+     * @return 排序键
+     */
+    public List<SortInfo> getKeysetOrders() {
+        Map<String, SortInfo> keys = new LinkedHashMap<>();
+        for (SortInfo sortInfo : this.getOrders()) {
+            keys.putIfAbsent(sortInfo.getProperty().toUpperCase(Locale.US), sortInfo);
+        }
+        keys.putIfAbsent(BaseEntity.ID, new SortInfo(BaseEntity.ID, SortInfo.Direction.ASC, null, false));
+        return new ArrayList<>(keys.values());
+    }
+
+    /**
+     * 取得下一页的游标
+     * 非keyset分页或者已经是最后一页（没有多取到一行）时返回null
+     *
+     * @return 游标
+     */
+    public String getNextCursor() {
+        List<T> records = this.getRecords();
+        if (!keyset || !hasNext || CollectionUtils.isEmpty(records)) {
+            return null;
+        }
+        MetaObject metaObject = SystemMetaObject.forObject(records.get(records.size() - 1));
+        List<Object> values = new ArrayList<>();
+        for (SortInfo sortInfo : this.getKeysetOrders()) {
+            values.add(getSortValue(metaObject, sortInfo.getProperty()));
+        }
+        return CursorUtil.encode(values);
+    }
+
+    /**
+     * 取得行数据中的排序键值，Map结果按列名取值，实体按驼峰属性取值
+     */
+    private static Object getSortValue(MetaObject metaObject, String column) {
+        Object row = metaObject.getOriginalObject();
+        if (row instanceof Map) {
+            Map map = (Map) row;
+            if (map.containsKey(column)) {
+                return map.get(column);
+            }
+            String upperColumn = column.toUpperCase(Locale.US);
+            if (map.containsKey(upperColumn)) {
+                return map.get(upperColumn);
+            }
+            return map.get(com.baomidou.mybatisplus.core.toolkit.StringUtils.underlineToCamel(column));
+        }
+        return metaObject.getValue(com.baomidou.mybatisplus.core.toolkit.StringUtils.underlineToCamel(column));
+    }
+
     /**
      * 构造函数
      *
@@ -126,6 +269,28 @@ public class SortPage<T> extends Page<T> implements Serializable {
         return pg.append(" }").toString();
     }
 
+    /**
+     * 总数查询方式
+     */
+    public enum CountMode {
+        /**
+         * 每次执行COUNT
+         */
+        EXACT,
+        /**
+         * 缓存COUNT结果，表数据变更时失效
+         */
+        CACHE,
+        /**
+         * 使用数据库统计信息估算，不能估算时按CACHE处理
+         */
+        ESTIMATE,
+        /**
+         * 不查询总数，多取一行判断是否有下一页
+         */
+        HAS_NEXT
+    }
+
     /**
      * 取得实例对象
      *
@@ -18,12 +18,16 @@ package com.frame.common.base.service;
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.frame.common.base.model.BaseEntity;
+import com.frame.common.base.model.BatchSaveResult;
 import com.frame.common.base.model.Convert;
+import com.frame.common.base.model.MasterDetail;
+import com.frame.common.mybatis.loader.BatchLoader;
 
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -69,6 +73,20 @@ public interface IBaseService<T extends BaseEntity> {
      */
     boolean saveBatch(Collection<T> entityList, int batchSize);
 
+    /**
+     * <p>
+     * 插入（批量）
+     * 多行插入时按数据库生成 INSERT ... VALUES (...),(...)（MySQL/H2）或 INSERT ALL（Oracle），
+     * 减少语句执行次数，需要事先设置ID
+     * </p>
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  插入批次数量
+     * @param multiRow   是否使用多行插入
+     * @return boolean
+     */
+    boolean saveBatch(Collection<T> entityList, int batchSize, boolean multiRow);
+
     /**
      * <p>
      * 批量修改插入
@@ -93,6 +111,20 @@ public interface IBaseService<T extends BaseEntity> {
      */
     boolean saveOrUpdateBatch(Collection<T> entityList, int batchSize);
 
+    /**
+     * <p>
+     * 批量修改插入
+     * 有ID的数据使用数据库的单语句upsert（Oracle/H2 MERGE，MySQL ON DUPLICATE KEY UPDATE），
+     * 数据不存在时插入，存在时按版本号更新，版本号不一致抛出异常
+     * </p>
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  每次的数量
+     * @param upsert     有ID的数据是否使用单语句upsert
+     * @return boolean
+     */
+    boolean saveOrUpdateBatch(Collection<T> entityList, int batchSize, boolean upsert);
+
     /**
      * <p>
      * 根据 ID 删除,没有删除数据 抛出异常
@@ -310,6 +342,16 @@ public interface IBaseService<T extends BaseEntity> {
      */
     <E extends Convert> E getById(Serializable id, Class<E> cls);
 
+    /**
+     * <p>
+     * 取得当前请求的按ID批量读取
+     * 循环中先对所有ID调用load，再取得结果时合并为一次按ID批量查询，结果在请求中缓存
+     * </p>
+     *
+     * @return BatchLoader
+     */
+    BatchLoader<T> loader();
+
 
     /**
      * <p>
@@ -321,6 +363,17 @@ public interface IBaseService<T extends BaseEntity> {
      */
     Collection<T> listByIds(Collection<? extends Serializable> idList);
 
+    /**
+     * <p>
+     * 查询（根据ID 批量查询），ID数量超过数据库IN的限制时分批查询，结果按传入的ID顺序返回
+     * </p>
+     *
+     * @param idList   主键ID列表
+     * @param parallel 是否并行查询各批次（使用各自的连接，查询不到当前事务中未提交的数据）
+     * @return Collection<T>
+     */
+    Collection<T> listByIds(Collection<? extends Serializable> idList, boolean parallel);
+
 
     /**
      * <p>
@@ -499,6 +552,39 @@ public interface IBaseService<T extends BaseEntity> {
      */
     IPage<Map<String, Object>> pageMaps(IPage<T> page, Wrapper<T> queryWrapper);
 
+    /**
+     * <p>
+     * 流式查询，逐行处理，不把结果集全部加载到内存
+     * </p>
+     *
+     * @param queryWrapper 实体对象封装操作类 {@link com.baomidou.mybatisplus.core.conditions.query.QueryWrapper}
+     * @param consumer     每行数据的处理
+     */
+    void stream(Wrapper<T> queryWrapper, Consumer<T> consumer);
+
+    /**
+     * <p>
+     * 流式查询，逐行转换后处理
+     * </p>
+     *
+     * @param queryWrapper 实体对象封装操作类 {@link com.baomidou.mybatisplus.core.conditions.query.QueryWrapper}
+     * @param cls          转换对象
+     * @param consumer     每行转换后数据的处理
+     * @param <E>          转换类
+     */
+    <E extends Convert> void streamConverted(Wrapper<T> queryWrapper, Class<E> cls, Consumer<E> consumer);
+
+    /**
+     * <p>
+     * 流式查询，按批次处理
+     * </p>
+     *
+     * @param queryWrapper 实体对象封装操作类 {@link com.baomidou.mybatisplus.core.conditions.query.QueryWrapper}
+     * @param chunkSize    每批数量
+     * @param consumer     每批数据的处理
+     */
+    void forEachBatch(Wrapper<T> queryWrapper, int chunkSize, Consumer<List<T>> consumer);
+
     /**
      * 批量保存列表数据，删除要删除的数据，保存新添加和修改的数据
      *
@@ -507,6 +593,27 @@ public interface IBaseService<T extends BaseEntity> {
      */
     void setBatch(Collection<T> entityList, Wrapper<T> queryWrapper);
 
+    /**
+     * 批量保存列表数据，和数据库当前数据比较后只写入有变化的数据
+     * 新增、只更新变化字段、删除分别批量执行，版本号不一致的数据不更新，作为冲突返回
+     *
+     * @param entityList   提交的页面数据
+     * @param queryWrapper 要取得所有操作数据的查询条件
+     * @return 每行的处理结果
+     */
+    BatchSaveResult setBatchDiff(Collection<T> entityList, Wrapper<T> queryWrapper);
+
+    /**
+     * 主子表保存，在一个事务中保存主表和子表
+     * 主表没有ID时新增，有ID时更新；子表设置外键后和数据库当前数据比较（同setBatchDiff），
+     * 同一个表、外键的子表数据合并后按表批量保存，有版本号冲突时抛出异常
+     *
+     * @param master  主表数据
+     * @param details 子表名和子表数据
+     * @return 子表名和每行的处理结果
+     */
+    Map<String, BatchSaveResult> saveMasterDetail(T master, Map<String, MasterDetail<?>> details);
+
 
     /**
      * 批量保存列表数据，删除要删除的数据，
@@ -15,32 +15,70 @@
  */
 package com.frame.common.base.service.impl;
 
+import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.core.conditions.Wrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.config.GlobalConfig;
 import com.baomidou.mybatisplus.core.enums.SqlMethod;
+import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
 import com.baomidou.mybatisplus.core.metadata.TableInfo;
 import com.baomidou.mybatisplus.core.toolkit.*;
+import com.baomidou.mybatisplus.extension.toolkit.JdbcUtils;
 import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
 import com.frame.common.base.component.ApplicationContextComponent;
+import com.frame.common.base.config.FrameProperties;
 import com.frame.common.base.constant.BaseDataConstant;
+import com.frame.common.base.exception.FunctionErrorException;
 import com.frame.common.base.exception.GlobalErrorException;
 import com.frame.common.base.knowledge.FrameMessageEnum;
 import com.frame.common.base.model.BaseEntity;
+import com.frame.common.base.model.BatchSaveResult;
 import com.frame.common.base.model.Convert;
+import com.frame.common.base.model.MasterDetail;
 import com.frame.common.base.service.IBaseService;
 import com.frame.common.base.shiro.ShiroUser;
 import com.frame.common.base.util.BeanConverterUtil;
+import com.frame.common.mybatis.annotation.DirtyTracking;
+import com.frame.common.mybatis.cache.EntityCacheManager;
+import com.frame.common.mybatis.cache.LocalEntityCache;
+import com.frame.common.mybatis.incrementer.IdentifierGenerator;
+import com.frame.common.mybatis.interceptor.page.PageCountCache;
+import com.frame.common.mybatis.loader.BatchLoader;
+import com.frame.common.mybatis.util.BatchSqlUtils;
+import com.frame.common.mybatis.util.MappedStatementUtils;
+import com.frame.common.mybatis.util.ProjectionUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionUtils;
+import org.springframework.beans.factory.BeanNameAware;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -55,7 +93,7 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Transactional(rollbackFor = {Exception.class, Error.class})
-public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> implements IBaseService<T> {
+public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> implements IBaseService<T>, BeanNameAware {
     /**
      * 获取当前登录用户account
      *
@@ -78,6 +116,54 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
     @Autowired
     protected M baseMapper;
 
+    /**
+     * 分页COUNT缓存
+     */
+    @Autowired(required = false)
+    private PageCountCache pageCountCache;
+
+    @Autowired(required = false)
+    private FrameProperties frameProperties;
+
+    /**
+     * 按ID并行查询用线程池
+     */
+    @Autowired(required = false)
+    @Qualifier("batchReadExecutor")
+    private ExecutorService batchReadExecutor;
+
+    /**
+     * 实体缓存
+     */
+    @Autowired(required = false)
+    private EntityCacheManager entityCacheManager;
+
+    /**
+     * 主键生成器，没有配置时为null
+     */
+    @Autowired(required = false)
+    private IdentifierGenerator identifierGenerator;
+
+    /**
+     * 数据库类型，第一次使用时取得
+     */
+    private volatile DbType dbType;
+
+    /**
+     * 实体是否有@DirtyTracking，第一次使用时取得
+     */
+    private volatile Boolean dirtyTracking;
+
+    /**
+     * bean名，取得事务代理用
+     */
+    private String beanName;
+
+    /**
+     * selectPage的翻页参数名
+     */
+    private static final String PAGE = "page";
+
     /**
      * <p>
      * 判断数据库操作是否成功
@@ -126,6 +212,115 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
         return SqlHelper.table(currentModelClass()).getSqlStatement(sqlMethod.getMethod());
     }
 
+    /**
+     * 取得当前实体对应的数据库类型
+     *
+     * @return 数据库类型
+     */
+    protected DbType getDbType() {
+        if (dbType == null) {
+            try (SqlSession sqlSession = sqlSessionBatch()) {
+                dbType = JdbcUtils.getDbType(sqlSession.getConnection().getMetaData().getURL());
+            } catch (SQLException e) {
+                log.error("Error: Cannot get database type. Cause", e);
+                throw new FunctionErrorException(e);
+            }
+        }
+        return dbType;
+    }
+
+    /**
+     * 按ID批量查询、删除时每次IN的ID数量，优先使用frame.mybatis.in-list-size中该数据库的设置
+     *
+     * @return ID数量
+     */
+    protected int inListSize() {
+        DbType type = this.getDbType();
+        if (frameProperties != null) {
+            Integer size = frameProperties.getMybatis().getInListSize().get(type.getDb());
+            if (size != null && size > 0) {
+                return size;
+            }
+        }
+        return BatchSqlUtils.getInListSize(type);
+    }
+
+    /**
+     * 表数据变更后处理，清除分页COUNT缓存、实体缓存以及当前请求的BatchLoader
+     */
+    protected void onTableChanged() {
+        if (pageCountCache != null) {
+            pageCountCache.evictTable(SqlHelper.table(currentModelClass()).getTableName());
+        }
+        if (entityCacheManager != null) {
+            entityCacheManager.evict(currentModelClass());
+        }
+        BatchLoader.evict(currentModelClass());
+    }
+
+    /**
+     * 取得实体缓存
+     *
+     * @return 实体没有启用缓存、当前事务写入过实体（未提交）时返回null
+     */
+    protected LocalEntityCache<T> entityCache() {
+        if (entityCacheManager == null || entityCacheManager.isWritten(currentModelClass())) {
+            return null;
+        }
+        return entityCacheManager.getCache(currentModelClass());
+    }
+
+    /**
+     * 实体是否启用变更追踪
+     *
+     * @return 实体有@DirtyTracking时返回true
+     */
+    protected boolean dirtyTracking() {
+        Boolean tracking = dirtyTracking;
+        if (tracking == null) {
+            tracking = currentModelClass().isAnnotationPresent(DirtyTracking.class);
+            dirtyTracking = tracking;
+        }
+        return tracking;
+    }
+
+    /**
+     * 启用变更追踪时保存查询结果的快照
+     *
+     * @param entity 查询结果
+     * @return 查询结果
+     */
+    private T track(T entity) {
+        if (entity != null && this.dirtyTracking()) {
+            entity.loadedSnapshot(this.copyEntity(entity));
+        }
+        return entity;
+    }
+
+    /**
+     * 启用变更追踪时保存查询结果的快照
+     *
+     * @param entityList 查询结果
+     * @return 查询结果
+     */
+    private <C extends Collection<T>> C trackAll(C entityList) {
+        if (entityList != null && this.dirtyTracking()) {
+            entityList.forEach(this::track);
+        }
+        return entityList;
+    }
+
+    /**
+     * 复制实体，缓存中的对象不直接返回给调用方
+     *
+     * @param entity 实体
+     * @return 复制的实体
+     */
+    @SuppressWarnings("unchecked")
+    private T copyEntity(T entity) {
+        return (T) BeanConverterUtil.convert(entity, entity.getClass());
+    }
+
     /**
      * 插入数据处理
      *
@@ -142,7 +337,9 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
 
     @Override
     public boolean save(T entity) {
-        return this.saveResult(baseMapper.insert(entity));
+        boolean result = this.saveResult(baseMapper.insert(entity));
+        this.onTableChanged();
+        return result;
     }
 
 
@@ -176,6 +373,81 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
             log.error("Error: Cannot execute saveBatch Method. Cause", e);
             throw new GlobalErrorException(FrameMessageEnum.INSERT_ERROR);
         }
+        this.onTableChanged();
+        return true;
+    }
+
+    /**
+     * 批量插入
+     * 配置了主键生成器时先生成ID；多行插入时有ID的数据按数据库生成 INSERT ... VALUES (...),(...) 或 INSERT ALL，
+     * 每条语句的行数不超过批次数量以及数据库的参数个数限制；没有ID的数据以及不支持的数据库按原方式批量插入
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  插入批次数量
+     * @param multiRow   是否使用多行插入
+     * @return
+     */
+    @Override
+    public boolean saveBatch(Collection<T> entityList, int batchSize, boolean multiRow) {
+        if (!multiRow) {
+            return this.saveBatch(entityList, batchSize);
+        }
+        if (CollectionUtils.isEmpty(entityList)) {
+            log.error("Error: saveBatch entityList must not be empty");
+            throw new GlobalErrorException(FrameMessageEnum.INSERT_ERROR);
+        }
+        List<T> keyList = new ArrayList<>();
+        List<T> noKeyList = new ArrayList<>();
+        for (T entity : entityList) {
+            if (StringUtils.isEmpty(entity.getId()) && identifierGenerator != null) {
+                entity.setId(identifierGenerator.nextId(entity.getClass()));
+            }
+            if (StringUtils.isEmpty(entity.getId())) {
+                noKeyList.add(entity);
+            } else {
+                keyList.add(entity);
+            }
+        }
+        if (!noKeyList.isEmpty()) {
+            this.saveBatch(noKeyList, batchSize);
+        }
+        if (keyList.isEmpty()) {
+            return true;
+        }
+        TableInfo tableInfo = SqlHelper.table(currentModelClass());
+        try (SqlSession batchSqlSession = sqlSessionBatch()) {
+            Connection connection = batchSqlSession.getConnection();
+            DbType dbType = this.getDbType();
+            if (!BatchSqlUtils.supportMultiRowInsert(dbType)) {
+                return this.saveBatch(keyList, batchSize);
+            }
+            GlobalConfig globalConfig = GlobalConfigUtils.getGlobalConfig(batchSqlSession.getConfiguration());
+            List<String> properties = BatchSqlUtils.getProperties(tableInfo);
+            int rows = BatchSqlUtils.getMultiRowSize(dbType, properties.size(), batchSize);
+            for (int from = 0; from < keyList.size(); from += rows) {
+                List<T> chunk = keyList.subList(from, Math.min(from + rows, keyList.size()));
+                String sql = BatchSqlUtils.buildMultiRowInsertSql(dbType, tableInfo, chunk.size());
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    int index = 1;
+                    for (T entity : chunk) {
+                        MetaObject metaObject = this.fillInsert(globalConfig, entity);
+                        if (entity.getVersionNum() == null) {
+                            entity.setVersionNum(1);
+                        }
+                        for (String property : properties) {
+                            BatchSqlUtils.setParameter(ps, index++, metaObject.getValue(property), metaObject.getGetterType(property));
+                        }
+                    }
+                    if (ps.executeUpdate() != chunk.size()) {
+                        throw new GlobalErrorException(FrameMessageEnum.INSERT_ERROR);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error: Cannot execute saveBatch Method. Cause", e);
+            throw new GlobalErrorException(FrameMessageEnum.INSERT_ERROR);
+        }
+        this.onTableChanged();
         return true;
     }
 
@@ -205,7 +477,9 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
                     if (versionVal != null && (Integer) versionVal != null) {
                         return this.updateById(entity, throwEx);
                     }
-                    return retBool(baseMapper.updateById(entity)) || save(entity);
+                    boolean updated = retBool(baseMapper.updateById(entity));
+                    this.onTableChanged();
+                    return updated || save(entity);
                 }
             } else {
 
@@ -219,45 +493,248 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
 
     @Override
     public boolean saveOrUpdateBatch(Collection<T> entityList, int batchSize) {
+        return this.saveOrUpdateBatch(entityList, batchSize, false);
+    }
+
+    /**
+     * 批量修改插入
+     * 没有ID的数据作为插入，有ID的数据作为更新（upsert时使用单语句upsert），各自作为一个JDBC批次执行
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  每次的数量
+     * @param upsert     有ID的数据是否使用单语句upsert
+     * @return
+     */
+    @Override
+    public boolean saveOrUpdateBatch(Collection<T> entityList, int batchSize, boolean upsert) {
         if (CollectionUtils.isEmpty(entityList)) {
             throw new GlobalErrorException(FrameMessageEnum.INSERT_ERROR);
         }
-        Class<?> cls = null;
-        TableInfo tableInfo = null;
-        int i = 0;
+        TableInfo tableInfo = SqlHelper.table(currentModelClass());
+        if (StringUtils.isEmpty(tableInfo.getKeyProperty())) {
+            log.error("Error:  Can not execute. Could not find @TableId.");
+            throw new GlobalErrorException(FrameMessageEnum.INSERT_ERROR);
+        }
+        List<T> insertList = new ArrayList<>();
+        List<T> updateList = new ArrayList<>();
+        for (T entity : entityList) {
+            if (StringUtils.isEmpty(entity.getId())) {
+                insertList.add(entity);
+            } else {
+                updateList.add(entity);
+            }
+        }
         try (SqlSession batchSqlSession = sqlSessionBatch()) {
-            for (T anEntityList : entityList) {
-                if (i == 0) {
-                    cls = anEntityList.getClass();
-                    tableInfo = TableInfoHelper.getTableInfo(cls);
+            if (!insertList.isEmpty()) {
+                String sqlStatement = sqlStatement(SqlMethod.INSERT_ONE);
+                int i = 0;
+                for (T entity : insertList) {
+                    batchSqlSession.insert(sqlStatement, entity);
+                    if (++i % batchSize == 0) {
+                        batchSqlSession.flushStatements();
+                    }
                 }
-
-                if (null != tableInfo && StringUtils.isNotEmpty(tableInfo.getKeyProperty())) {
-                    Object idVal = ReflectionKit.getMethodValue(cls, anEntityList, tableInfo.getKeyProperty());
-                    if (StringUtils.checkValNull(idVal)) {
-                        String sqlStatement = sqlStatement(SqlMethod.INSERT_ONE);
-                        batchSqlSession.insert(sqlStatement, anEntityList);
-                    } else {
-                        String sqlStatement = sqlStatement(SqlMethod.UPDATE_BY_ID);
+                batchSqlSession.flushStatements();
+            }
+            if (!updateList.isEmpty()) {
+                if (upsert) {
+                    this.upsertBatch(batchSqlSession, tableInfo, updateList, batchSize);
+                } else {
+                    String sqlStatement = sqlStatement(SqlMethod.UPDATE_BY_ID);
+                    int i = 0;
+                    for (T entity : updateList) {
                         MapperMethod.ParamMap<T> param = new MapperMethod.ParamMap<>();
-                        param.put(Constants.ENTITY, anEntityList);
+                        param.put(Constants.ENTITY, entity);
                         batchSqlSession.update(sqlStatement, param);
-                        //不知道以后会不会有人说更新失败了还要执行插入
-                    }
-                    if (i >= 1 && i % batchSize == 0) {
-                        batchSqlSession.flushStatements();
+                        if (++i % batchSize == 0) {
+                            batchSqlSession.flushStatements();
+                        }
                     }
-                    i++;
-                } else {
-                    throw new GlobalErrorException(FrameMessageEnum.INSERT_ERROR);
+                    batchSqlSession.flushStatements();
                 }
-                batchSqlSession.flushStatements();
             }
         }
+        this.onTableChanged();
         return true;
 
     }
 
+    /**
+     * 单语句upsert批量执行
+     * Oracle/H2 使用MERGE，MySQL 使用ON DUPLICATE KEY UPDATE，其它数据库按ID更新
+     * <p>
+     * 每批执行前加锁查询已存在数据的版本号和逻辑删除标识，版本号不一致或者已删除时不执行；
+     * MySQL的ON DUPLICATE KEY UPDATE在条件不满足时影响行数仍然为1（CLIENT_FOUND_ROWS），不能只用影响行数判断冲突
+     * </p>
+     *
+     * @param batchSqlSession 批量session
+     * @param tableInfo       表信息
+     * @param entityList      有ID的实体对象集合
+     * @param batchSize       每次的数量
+     */
+    private void upsertBatch(SqlSession batchSqlSession, TableInfo tableInfo, List<T> entityList, int batchSize) {
+        Connection connection = batchSqlSession.getConnection();
+        GlobalConfig globalConfig = GlobalConfigUtils.getGlobalConfig(batchSqlSession.getConfiguration());
+        String notDeleteValue = globalConfig.getDbConfig().getLogicNotDeleteValue();
+        List<String> properties = BatchSqlUtils.getProperties(tableInfo);
+        try {
+            DbType dbType = this.getDbType();
+            if (!BatchSqlUtils.supportUpsert(dbType)) {
+                log.error("Error: upsert is not supported by [{}], use updateById", dbType);
+                this.updateBatchById(entityList, batchSize);
+                return;
+            }
+            int chunkSize = Math.max(1, Math.min(batchSize, this.inListSize()));
+            try (PreparedStatement ps = connection.prepareStatement(BatchSqlUtils.buildUpsertSql(dbType, tableInfo, notDeleteValue))) {
+                for (int from = 0; from < entityList.size(); from += chunkSize) {
+                    List<T> chunk = entityList.subList(from, Math.min(from + chunkSize, entityList.size()));
+                    Map<String, Integer> dbVersions = this.lockUpsertVersions(connection, tableInfo, chunk, notDeleteValue);
+                    for (T entity : chunk) {
+                        MetaObject metaObject = this.fillInsert(globalConfig, entity);
+                        for (int j = 0; j < properties.size(); j++) {
+                            String property = properties.get(j);
+                            BatchSqlUtils.setParameter(ps, j + 1, metaObject.getValue(property), metaObject.getGetterType(property));
+                        }
+                        ps.addBatch();
+                    }
+                    this.checkUpsertResult(connection, tableInfo, chunk, dbVersions, ps.executeBatch(), notDeleteValue);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error: Cannot execute upsertBatch Method. Cause", e);
+            throw new GlobalErrorException(FrameMessageEnum.UPDATE_ERROR);
+        }
+    }
+
+    /**
+     * 加锁取得upsert数据中已存在数据的版本号，已逻辑删除或者传入的版本号不一致时抛出异常
+     *
+     * @param connection     连接
+     * @param tableInfo      表信息
+     * @param chunk          一批数据
+     * @param notDeleteValue 逻辑未删除值
+     * @return 已存在数据的ID和版本号
+     * @throws SQLException
+     */
+    private Map<String, Integer> lockUpsertVersions(Connection connection, TableInfo tableInfo, List<T> chunk,
+                                                    String notDeleteValue) throws SQLException {
+        Set<String> deletedIds = new HashSet<>();
+        Map<String, Integer> dbVersions = this.selectVersions(connection, tableInfo, chunk, true, notDeleteValue, deletedIds);
+        if (!deletedIds.isEmpty()) {
+            log.error("Error: upsert deleted rows:{}", deletedIds);
+            throw new GlobalErrorException(FrameMessageEnum.UPDATE_ERROR);
+        }
+        for (T entity : chunk) {
+            if (entity.getVersionNum() != null && dbVersions.containsKey(entity.getId())
+                    && !entity.getVersionNum().equals(dbVersions.get(entity.getId()))) {
+                log.error("Error: upsert version conflict:[{}] [{}] [{}]", entity.getId(), entity.getVersionNum(),
+                        dbVersions.get(entity.getId()));
+                throw new GlobalErrorException(FrameMessageEnum.UPDATE_VERSION_ERROR);
+            }
+        }
+        return dbVersions;
+    }
+
+    /**
+     * 按ID查询数据库中的版本号
+     *
+     * @param connection     连接
+     * @param tableInfo      表信息
+     * @param entityList     数据
+     * @param forUpdate      是否加锁
+     * @param notDeleteValue 逻辑未删除值
+     * @param deletedIds     已逻辑删除的ID
+     * @return 没有删除的数据的ID和版本号
+     * @throws SQLException
+     */
+    private Map<String, Integer> selectVersions(Connection connection, TableInfo tableInfo, List<T> entityList, boolean forUpdate,
+                                                String notDeleteValue, Set<String> deletedIds) throws SQLException {
+        Set<String> ids = new LinkedHashSet<>();
+        for (T entity : entityList) {
+            ids.add(entity.getId());
+        }
+        Map<String, Integer> dbVersions = new HashMap<>(ids.size() * 2);
+        try (PreparedStatement ps = connection.prepareStatement(BatchSqlUtils.buildSelectVersionSql(tableInfo, ids.size(), forUpdate))) {
+            int index = 1;
+            for (String id : ids) {
+                ps.setString(index++, id);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String id = rs.getString(1);
+                    int version = rs.getInt(2);
+                    Integer dbVersion = rs.wasNull() ? null : version;
+                    if (notDeleteValue.equals(rs.getString(3))) {
+                        dbVersions.put(id, dbVersion);
+                    } else {
+                        deletedIds.add(id);
+                    }
+                }
+            }
+        }
+        return dbVersions;
+    }
+
+    /**
+     * 直接JDBC插入前的填充处理，和mybatis-plus插入时一致执行MetaObjectHandler，逻辑删除字段设置为未删除
+     *
+     * @param globalConfig 全局配置
+     * @param entity       实体对象
+     * @return 实体对象的MetaObject
+     */
+    private MetaObject fillInsert(GlobalConfig globalConfig, T entity) {
+        MetaObject metaObject = SystemMetaObject.forObject(entity);
+        MetaObjectHandler metaObjectHandler = globalConfig.getMetaObjectHandler();
+        if (metaObjectHandler != null) {
+            metaObjectHandler.insertFill(metaObject);
+        }
+        if (entity.getDeleteFlag() == null) {
+            entity.setDeleteFlag(globalConfig.getDbConfig().getLogicNotDeleteValue());
+        }
+        return metaObject;
+    }
+
+    /**
+     * upsert影响行数为0时，为版本号冲突
+     * 驱动不返回件数（SUCCESS_NO_INFO）时不作为成功，重新查询确认版本号已经更新、新增的数据已经插入
+     *
+     * @param connection     连接
+     * @param tableInfo      表信息
+     * @param chunk          一批数据
+     * @param dbVersions     执行前数据库中的版本号
+     * @param results        批量执行结果
+     * @param notDeleteValue 逻辑未删除值
+     * @throws SQLException
+     */
+    private void checkUpsertResult(Connection connection, TableInfo tableInfo, List<T> chunk, Map<String, Integer> dbVersions,
+                                   int[] results, String notDeleteValue) throws SQLException {
+        boolean recheck = false;
+        for (int result : results) {
+            if (result == 0) {
+                throw new GlobalErrorException(FrameMessageEnum.UPDATE_VERSION_ERROR);
+            }
+            recheck |= result < 0;
+        }
+        if (!recheck) {
+            return;
+        }
+        Map<String, Integer> current = this.selectVersions(connection, tableInfo, chunk, false, notDeleteValue, new HashSet<>());
+        for (T entity : chunk) {
+            String id = entity.getId();
+            boolean applied;
+            if (dbVersions.containsKey(id)) {
+                Integer dbVersion = dbVersions.get(id);
+                applied = current.containsKey(id) && Objects.equals(current.get(id), dbVersion == null ? null : dbVersion + 1);
+            } else {
+                applied = current.containsKey(id);
+            }
+            if (!applied) {
+                log.error("Error: upsert not applied:[{}]", id);
+                throw new GlobalErrorException(FrameMessageEnum.UPDATE_VERSION_ERROR);
+            }
+        }
+    }
+
     /**
      * 删除据处理
      *
@@ -278,7 +755,9 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
 
     @Override
     public boolean removeById(Serializable id, boolean throwEx) {
-        return this.removeResult(baseMapper.deleteById(id), throwEx);
+        Integer num = baseMapper.deleteById(id);
+        this.onTableChanged();
+        return this.removeResult(num, throwEx);
     }
 
     @Override
@@ -287,7 +766,9 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
             log.error("removeByMap columnMap is empty.");
             throw new GlobalErrorException(FrameMessageEnum.DELETE_ERROR);
         }
-        return this.removeResult(baseMapper.deleteByMap(columnMap), throwEx);
+        Integer num = baseMapper.deleteByMap(columnMap);
+        this.onTableChanged();
+        return this.removeResult(num, throwEx);
     }
 
 
@@ -302,12 +783,64 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
      */
     @Override
     public boolean remove(Wrapper<T> queryWrapper, boolean throwEx) {
-        return this.removeResult(baseMapper.delete(queryWrapper), throwEx);
+        Integer num = baseMapper.delete(queryWrapper);
+        this.onTableChanged();
+        return this.removeResult(num, throwEx);
     }
 
+    /**
+     * 按ID批量删除，超过IN的ID数量时分批作为一个JDBC批次执行（在当前事务内）
+     * <p>
+     * 分批执行时删除件数为各批次件数的合计，驱动不返回件数（SUCCESS_NO_INFO）的批次作为删除了1件计算，
+     * 合计为上限值（删除后重新查询也无法区分本次删除和已经删除、不存在的数据）；
+     * 结果和不分批时一致按SqlHelper.delBool判断，件数不为负数时为true，没有删除数据时也为true
+     * </p>
+     *
+     * @param idList  主键ID列表
+     * @param throwEx 没有删除数据 是否抛出异常
+     * @return 是否执行成功
+     */
     @Override
     public boolean removeByIds(Collection<? extends Serializable> idList, boolean throwEx) {
-        return this.removeResult(baseMapper.deleteBatchIds(idList), throwEx);
+        int chunkSize = this.inListSize();
+        if (CollectionUtils.isEmpty(idList) || idList.size() <= chunkSize) {
+            Integer num = baseMapper.deleteBatchIds(idList);
+            this.onTableChanged();
+            return this.removeResult(num, throwEx);
+        }
+        int num = 0;
+        String sqlStatement = sqlStatement(SqlMethod.DELETE_BATCH_BY_IDS);
+        try (SqlSession batchSqlSession = sqlSessionBatch()) {
+            for (List<? extends Serializable> chunk : this.partition(idList, chunkSize)) {
+                MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+                param.put(Constants.COLLECTION, chunk);
+                batchSqlSession.update(sqlStatement, param);
+            }
+            for (BatchResult batchResult : batchSqlSession.flushStatements()) {
+                for (int count : batchResult.getUpdateCounts()) {
+                    //驱动不返回件数时作为删除了1件，合计为上限值
+                    num += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                }
+            }
+        }
+        this.onTableChanged();
+        return this.removeResult(num, throwEx);
+    }
+
+    /**
+     * 去掉重复ID后按指定数量分组
+     *
+     * @param idList    主键ID列表
+     * @param chunkSize 每组数量
+     * @return 分组后的ID
+     */
+    private <I extends Serializable> List<List<I>> partition(Collection<I> idList, int chunkSize) {
+        List<I> ids = new ArrayList<>(new LinkedHashSet<>(idList));
+        List<List<I>> chunks = new ArrayList<>((ids.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(from + chunkSize, ids.size())));
+        }
+        return chunks;
     }
 
 
@@ -332,8 +865,13 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
 
     @Override
     public boolean updateById(T entity, boolean throwEx) {
+        //有查询时的快照时只更新变化的字段
+        if (entity != null && entity.loadedSnapshot() != null && this.dirtyTracking()) {
+            return this.updateDirtyById(Collections.singletonList(entity), throwEx);
+        }
         //先更新
         boolean result = this.updateResult(baseMapper.updateById(entity), false);
+        this.onTableChanged();
         if (result) {
             return Boolean.TRUE;
         } else {
@@ -376,7 +914,9 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
     public boolean update(T entity, Wrapper<T> updateWrapper, boolean throwEx) {
         //TODO 要解决updateWrapper 不要含有版本号，才能判断，要不查询条件里也有版本号
 
-        return this.updateResult(baseMapper.update(entity, updateWrapper), throwEx);
+        Integer num = baseMapper.update(entity, updateWrapper);
+        this.onTableChanged();
+        return this.updateResult(num, throwEx);
 
 
     }
@@ -388,16 +928,43 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
     }
 
 
+    /**
+     * 批量修改
+     * 启用变更追踪时有查询时快照的数据只更新变化的字段，变化字段相同的数据作为一个JDBC批次执行
+     *
+     * @param entityList 实体对象集合
+     * @param batchSize  更新批次数量
+     * @return
+     */
     @Override
     public boolean updateBatchById(Collection<T> entityList, int batchSize) {
         if (CollectionUtils.isEmpty(entityList)) {
             log.error("Error: updateBatchById entityList must not be empty");
             throw new GlobalErrorException(FrameMessageEnum.UPDATE_ERROR);
         }
+        List<T> updateList = new ArrayList<>(entityList.size());
+        if (this.dirtyTracking()) {
+            List<T> trackedList = new ArrayList<>();
+            for (T entity : entityList) {
+                if (entity.loadedSnapshot() != null) {
+                    trackedList.add(entity);
+                } else {
+                    updateList.add(entity);
+                }
+            }
+            if (!trackedList.isEmpty()) {
+                this.updateDirtyById(trackedList, true);
+            }
+            if (updateList.isEmpty()) {
+                return true;
+            }
+        } else {
+            updateList.addAll(entityList);
+        }
         int i = 0;
         String sqlStatement = sqlStatement(SqlMethod.UPDATE_BY_ID);
         try (SqlSession batchSqlSession = sqlSessionBatch()) {
-            for (T anEntityList : entityList) {
+            for (T anEntityList : updateList) {
                 MapperMethod.ParamMap<T> param = new MapperMethod.ParamMap<>();
                 param.put(Constants.ENTITY, anEntityList);
                 batchSqlSession.update(sqlStatement, param);
@@ -411,12 +978,79 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
             log.error("Error: Cannot execute updateBatchById Method. Cause", e);
             throw new GlobalErrorException(FrameMessageEnum.UPDATE_ERROR);
         }
+        this.onTableChanged();
         return true;
     }
 
+    /**
+     * 按查询时的快照只更新变化的字段，变化字段相同的数据作为一个JDBC批次执行，没有变化的数据不更新
+     * 版本号使用实体的版本号，实体没有时使用快照的版本号
+     *
+     * @param entityList 有快照的实体
+     * @param throwEx    版本号冲突时是否抛出异常
+     * @return 全部更新成功时返回true
+     */
+    @SuppressWarnings("unchecked")
+    private boolean updateDirtyById(List<T> entityList, boolean throwEx) {
+        TableInfo tableInfo = SqlHelper.table(currentModelClass());
+        BatchSaveResult result = new BatchSaveResult();
+        Map<List<String>, Map<T, BatchSaveResult.Row>> dirtyGroups = new LinkedHashMap<>();
+        Map<T, Integer> versions = new IdentityHashMap<>();
+        for (T entity : entityList) {
+            T snapshot = (T) entity.loadedSnapshot();
+            List<String> dirtyProperties = this.getDirtyProperties(tableInfo, entity, snapshot);
+            if (dirtyProperties.isEmpty()) {
+                continue;
+            }
+            versions.put(entity, entity.getVersionNum() != null ? entity.getVersionNum() : snapshot.getVersionNum());
+            dirtyGroups.computeIfAbsent(dirtyProperties, k -> new IdentityHashMap<>())
+                    .put(entity, result.add(entity.getId(), BatchSaveResult.RowStatus.UPDATED, null));
+        }
+        if (dirtyGroups.isEmpty()) {
+            return true;
+        }
+        try (SqlSession batchSqlSession = sqlSessionBatch()) {
+            for (Map.Entry<List<String>, Map<T, BatchSaveResult.Row>> group : dirtyGroups.entrySet()) {
+                this.updateDirtyBatch(batchSqlSession, tableInfo, group.getKey(), group.getValue(), versions);
+            }
+        }
+        this.onTableChanged();
+        if (result.hasConflict()) {
+            log.error("Error: updateById version conflict:{}", result.getConflicts());
+            if (throwEx) {
+                throw new GlobalErrorException(FrameMessageEnum.UPDATE_VERSION_ERROR);
+            }
+            return false;
+        }
+        //更新后的状态作为新的快照
+        versions.keySet().forEach(this::track);
+        return true;
+    }
+
+    /**
+     * 根据 ID 查询，实体启用缓存时先查缓存
+     *
+     * @param id 主键ID
+     * @return T
+     */
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public T getById(Serializable id) {
-        return baseMapper.selectById(id);
+        LocalEntityCache<T> cache = this.entityCache();
+        if (cache == null || id == null) {
+            return this.track(baseMapper.selectById(id));
+        }
+        String key = String.valueOf(id);
+        long generation = cache.generation();
+        T entity = cache.get(key);
+        if (entity != null) {
+            return this.track(this.copyEntity(entity));
+        }
+        entity = baseMapper.selectById(id);
+        if (entity != null) {
+            cache.put(key, this.copyEntity(entity), generation);
+        }
+        return this.track(entity);
     }
 
     /**
@@ -429,6 +1063,7 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
      * @return T
      */
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public <E extends Convert> E getById(Serializable id, Class<E> cls) {
         E entityDto = null;
         T t = (T) getById(id);
@@ -438,9 +1073,129 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
         return entityDto;
     }
 
+    /**
+     * 取得当前请求的按ID批量读取，合并后按listByIds查询
+     * 通过代理调用listByIds，和直接调用一样使用只读事务（读写分离）
+     *
+     * @return BatchLoader
+     */
+    @Override
+    public BatchLoader<T> loader() {
+        IBaseService<T> proxy = this.proxy();
+        return BatchLoader.current(currentModelClass(), proxy::listByIds);
+    }
+
+    @Override
+    public void setBeanName(String name) {
+        this.beanName = name;
+    }
+
+    /**
+     * 取得事务代理，不是Spring管理的bean时返回自身
+     *
+     * @return 事务代理
+     */
+    @SuppressWarnings("unchecked")
+    protected IBaseService<T> proxy() {
+        if (beanName == null || ApplicationContextComponent.getApplicationContext() == null
+                || !ApplicationContextComponent.containsBean(beanName)) {
+            return this;
+        }
+        return (IBaseService<T>) ApplicationContextComponent.getBeanByName(beanName);
+    }
+
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public Collection<T> listByIds(Collection<? extends Serializable> idList) {
-        return baseMapper.selectBatchIds(idList);
+        return this.listByIds(idList, false);
+    }
+
+    /**
+     * <p>
+     * 查询（根据ID 批量查询），超过IN的ID数量时分批查询，结果按传入的ID顺序返回
+     * 并行查询时各批次在线程池中使用各自的连接执行，查询不到当前事务中未提交的数据
+     * </p>
+     *
+     * @param idList   主键ID列表
+     * @param parallel 是否并行查询
+     * @return Collection<T>
+     */
+    @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
+    public Collection<T> listByIds(Collection<? extends Serializable> idList, boolean parallel) {
+        LocalEntityCache<T> cache = this.entityCache();
+        if (cache == null || CollectionUtils.isEmpty(idList)) {
+            return this.trackAll(this.selectBatchIds(idList, parallel));
+        }
+        //实体启用缓存时只查询缓存中没有的数据
+        Set<String> ids = new LinkedHashSet<>(idList.size() * 2);
+        for (Serializable id : idList) {
+            ids.add(String.valueOf(id));
+        }
+        long generation = cache.generation();
+        Map<String, T> cached = cache.getAll(ids);
+        Map<String, T> loaded = new HashMap<>(ids.size() * 2);
+        if (cached.size() < ids.size()) {
+            List<String> missIds = ids.stream().filter(id -> !cached.containsKey(id)).collect(Collectors.toList());
+            for (T entity : this.selectBatchIds(missIds, parallel)) {
+                cache.put(entity.getId(), this.copyEntity(entity), generation);
+                loaded.put(entity.getId(), entity);
+            }
+        }
+        List<T> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            T entity = cached.get(id);
+            if (entity != null) {
+                list.add(this.copyEntity(entity));
+            } else if (loaded.containsKey(id)) {
+                list.add(loaded.get(id));
+            }
+        }
+        return this.trackAll(list);
+    }
+
+    /**
+     * 按ID批量查询，超过IN的ID数量时分批查询，结果按传入的ID顺序返回
+     *
+     * @param idList   主键ID列表
+     * @param parallel 是否并行查询
+     * @return
+     */
+    private List<T> selectBatchIds(Collection<? extends Serializable> idList, boolean parallel) {
+        int chunkSize = this.inListSize();
+        if (CollectionUtils.isEmpty(idList) || idList.size() <= chunkSize) {
+            return baseMapper.selectBatchIds(idList);
+        }
+        List<? extends List<? extends Serializable>> chunks = this.partition(idList, chunkSize);
+        List<T> list = new ArrayList<>(idList.size());
+        if (parallel && batchReadExecutor != null) {
+            List<CompletableFuture<List<T>>> futures = new ArrayList<>(chunks.size());
+            for (List<? extends Serializable> chunk : chunks) {
+                futures.add(CompletableFuture.supplyAsync(() -> baseMapper.selectBatchIds(chunk), batchReadExecutor));
+            }
+            try {
+                for (CompletableFuture<List<T>> future : futures) {
+                    list.addAll(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new FunctionErrorException(e);
+            } catch (ExecutionException e) {
+                log.error("Error: Cannot execute listByIds Method. Cause", e.getCause());
+                throw new FunctionErrorException(e.getCause());
+            }
+        } else {
+            for (List<? extends Serializable> chunk : chunks) {
+                list.addAll(baseMapper.selectBatchIds(chunk));
+            }
+        }
+        //按传入的ID顺序排序
+        Map<String, Integer> order = new HashMap<>(idList.size() * 2);
+        for (Serializable id : idList) {
+            order.putIfAbsent(String.valueOf(id), order.size());
+        }
+        list.sort(Comparator.comparing(entity -> order.getOrDefault(entity.getId(), Integer.MAX_VALUE)));
+        return list;
     }
 
     /**
@@ -453,6 +1208,7 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
      * @return Collection<T>
      */
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public <E extends Convert> Collection<E> listByIds(Collection<? extends Serializable> idList, Class<E> cls) {
 
         List<E> entityDtoList = Collections.emptyList();
@@ -464,16 +1220,18 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public Collection<T> listByMap(Map<String, Object> columnMap) {
-        return baseMapper.selectByMap(columnMap);
+        return this.trackAll(baseMapper.selectByMap(columnMap));
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public T getOne(Wrapper<T> queryWrapper, boolean throwEx) {
         if (throwEx) {
-            return baseMapper.selectOne(queryWrapper);
+            return this.track(baseMapper.selectOne(queryWrapper));
         }
-        return SqlHelper.getObject(baseMapper.selectList(queryWrapper));
+        return this.track(SqlHelper.getObject(baseMapper.selectList(queryWrapper)));
     }
 
     /**
@@ -487,26 +1245,29 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
      * @return
      */
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public <E extends Convert> E getOne(Wrapper<T> queryWrapper, boolean throwEx, Class<E> cls) {
-        E entityDto = null;
-        T t = (T) getOne(queryWrapper, throwEx);
-        if (Objects.nonNull(t)) {
-            entityDto = t.convert(cls);
+        List<E> list = this.selectProjection(SqlMethod.SELECT_LIST, null, queryWrapper, cls);
+        if (throwEx && list.size() > 1) {
+            throw new TooManyResultsException("Expected one result (or null) to be returned by getOne(), but found: " + list.size());
         }
-        return entityDto;
+        return SqlHelper.getObject(list);
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public Map<String, Object> getMap(Wrapper<T> queryWrapper) {
         return SqlHelper.getObject(baseMapper.selectMaps(queryWrapper));
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public Object getObj(Wrapper<T> queryWrapper) {
         return SqlHelper.getObject(baseMapper.selectObjs(queryWrapper));
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public int count(Wrapper<T> queryWrapper) {
         return SqlHelper.retCount(baseMapper.selectCount(queryWrapper));
     }
@@ -521,23 +1282,23 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
      * @return
      */
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public <E extends Convert> List<E> list(Wrapper<T> queryWrapper, Class<E> cls) {
-        List<E> entityDtoList = Collections.emptyList();
-        List<T> list = list(queryWrapper);
-        if (CollectionUtils.isNotEmpty(list)) {
-            entityDtoList = BeanConverterUtil.convert(list, cls);
-        }
-        return entityDtoList;
+        return this.selectProjection(SqlMethod.SELECT_LIST, null, queryWrapper, cls);
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public List<T> list(Wrapper<T> queryWrapper) {
-        return baseMapper.selectList(queryWrapper);
+        return this.trackAll(baseMapper.selectList(queryWrapper));
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public IPage<T> page(IPage<T> page, Wrapper<T> queryWrapper) {
-        return baseMapper.selectPage(page, queryWrapper);
+        IPage<T> result = baseMapper.selectPage(page, queryWrapper);
+        this.trackAll(result.getRecords());
+        return result;
     }
 
     /**
@@ -551,27 +1312,121 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
      * @return
      */
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public <E> IPage<E> page(IPage page, Wrapper queryWrapper, Class<E> cls) {
-        this.page(page, queryWrapper);
-        page.setRecords(BeanConverterUtil.convert(page.getRecords(), cls));
+        page.setRecords(this.selectProjection(SqlMethod.SELECT_PAGE, page, queryWrapper, cls));
         return page;
 
     }
 
+    /**
+     * 按DTO查询，只查询DTO需要的字段，结果直接映射到DTO，不生成实体
+     * 查询条件中已经指定了查询字段时按指定的字段查询
+     *
+     * @param sqlMethod    查询方法
+     * @param page         翻页对象，不翻页时为null
+     * @param queryWrapper 实体对象封装操作类
+     * @param cls          DTO类
+     * @return DTO列表
+     */
+    private <E> List<E> selectProjection(SqlMethod sqlMethod, IPage<?> page, Wrapper<T> queryWrapper, Class<E> cls) {
+        SqlSessionFactory sqlSessionFactory = GlobalConfigUtils.currentSessionFactory(currentModelClass());
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+        Wrapper<T> wrapper = queryWrapper == null ? new QueryWrapper<>() : queryWrapper;
+        if (StringUtils.isEmpty(wrapper.getSqlSelect())) {
+            //不修改调用方的查询条件，查询字段另外指定
+            wrapper = ProjectionUtils.withSqlSelect(wrapper, ProjectionUtils.getSqlSelect(configuration, currentModelClass(), cls));
+        }
+        MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+        param.put(Constants.WRAPPER, wrapper);
+        if (page != null) {
+            param.put(PAGE, page);
+        }
+        SqlSession sqlSession = SqlSessionUtils.getSqlSession(sqlSessionFactory);
+        try {
+            return sqlSession.selectList(MappedStatementUtils.resultTypeStatement(configuration, sqlStatement(sqlMethod), cls), param);
+        } finally {
+            SqlSessionUtils.closeSqlSession(sqlSession, sqlSessionFactory);
+        }
+    }
+
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public List<Map<String, Object>> listMaps(Wrapper<T> queryWrapper) {
         return baseMapper.selectMaps(queryWrapper);
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public List<Object> listObjs(Wrapper<T> queryWrapper) {
         return baseMapper.selectObjs(queryWrapper).stream().filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     @Override
+    @Transactional(readOnly = true, rollbackFor = {Exception.class, Error.class})
     public IPage<Map<String, Object>> pageMaps(IPage<T> page, Wrapper<T> queryWrapper) {
         return baseMapper.selectMapsPage(page, queryWrapper);
     }
+
+    /**
+     * 流式查询的JDBC fetchSize，MySQL需要返回Integer.MIN_VALUE或者连接设置useCursorFetch=true
+     *
+     * @return fetchSize
+     */
+    protected int streamFetchSize() {
+        return 1000;
+    }
+
+    /**
+     * <p>
+     * 流式查询，逐行处理，不把结果集全部加载到内存
+     * 使用当前事务的SqlSession，没有事务时处理完后释放连接
+     * </p>
+     *
+     * @param queryWrapper 实体对象封装操作类 {@link QueryWrapper}
+     * @param consumer     每行数据的处理
+     */
+    @Override
+    public void stream(Wrapper<T> queryWrapper, Consumer<T> consumer) {
+        SqlSessionFactory sqlSessionFactory = GlobalConfigUtils.currentSessionFactory(currentModelClass());
+        SqlSession sqlSession = SqlSessionUtils.getSqlSession(sqlSessionFactory);
+        try {
+            String sqlStatement = MappedStatementUtils.fetchSizeStatement(sqlSessionFactory.getConfiguration(),
+                    sqlStatement(SqlMethod.SELECT_LIST), streamFetchSize());
+            MapperMethod.ParamMap<Object> param = new MapperMethod.ParamMap<>();
+            param.put(Constants.WRAPPER, queryWrapper);
+            try (Cursor<T> cursor = sqlSession.selectCursor(sqlStatement, param)) {
+                for (T entity : cursor) {
+                    consumer.accept(entity);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error: Cannot close cursor. Cause", e);
+            throw new FunctionErrorException(e);
+        } finally {
+            SqlSessionUtils.closeSqlSession(sqlSession, sqlSessionFactory);
+        }
+    }
+
+    @Override
+    public <E extends Convert> void streamConverted(Wrapper<T> queryWrapper, Class<E> cls, Consumer<E> consumer) {
+        this.stream(queryWrapper, entity -> consumer.accept(entity.convert(cls)));
+    }
+
+    @Override
+    public void forEachBatch(Wrapper<T> queryWrapper, int chunkSize, Consumer<List<T>> consumer) {
+        List<T> chunk = new ArrayList<>(chunkSize);
+        this.stream(queryWrapper, entity -> {
+            chunk.add(entity);
+            if (chunk.size() >= chunkSize) {
+                consumer.accept(new ArrayList<>(chunk));
+                chunk.clear();
+            }
+        });
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+    }
     
     /**
      * 批量保存列表数据，删除要删除的数据，保存新添加和修改的数据
@@ -581,11 +1436,339 @@ public class BaseServiceImpl<M extends BaseMapper<T>, T extends BaseEntity> impl
      */
     @Override
     public void setBatch(Collection<T> entityList, Wrapper<T> queryWrapper) {
-        this.setBatchOnlyDelete(entityList, queryWrapper);
-        if (CollectionUtils.isNotEmpty(entityList)) {
-            //更新变化数据
-            this.saveOrUpdateBatch(entityList);
+        BatchSaveResult result = this.setBatchDiff(entityList, queryWrapper);
+        if (result.hasConflict()) {
+            log.error("Error: setBatch version conflict:{}", result.getConflicts());
+            throw new GlobalErrorException(FrameMessageEnum.UPDATE_VERSION_ERROR);
+        }
+    }
+
+    /**
+     * 批量保存列表数据，和数据库当前数据比较后只写入有变化的数据
+     * <p>
+     * 没有ID的数据新增；数据库中有的数据版本号不一致时为冲突，没有变化的不更新，
+     * 有变化的只更新变化的字段，更新字段相同的数据作为一个JDBC批次执行；
+     * 提交数据中没有的数据删除；有ID但不在查询范围内的数据按ID更新
+     * </p>
+     *
+     * @param entityList   提交的页面数据
+     * @param queryWrapper 要取得所有操作数据的查询条件
+     * @return 每行的处理结果
+     */
+    @Override
+    public BatchSaveResult setBatchDiff(Collection<T> entityList, Wrapper<T> queryWrapper) {
+        BatchSaveResult result = new BatchSaveResult();
+        Collection<T> submitList = entityList == null ? Collections.emptyList() : entityList;
+        //先查询数据库当前信息
+        Map<String, T> dbMap = new LinkedHashMap<>();
+        for (T obj : this.list(queryWrapper)) {
+            dbMap.put(obj.getId(), obj);
+        }
+        TableInfo tableInfo = SqlHelper.table(currentModelClass());
+        //新增数据按提交的顺序插入
+        List<T> insertList = new ArrayList<>();
+        List<BatchSaveResult.Row> insertRows = new ArrayList<>();
+        Map<T, BatchSaveResult.Row> updateMap = new IdentityHashMap<>();
+        //更新字段相同的数据作为一组
+        Map<List<String>, Map<T, BatchSaveResult.Row>> dirtyGroups = new LinkedHashMap<>();
+        Map<T, Integer> dbVersions = new IdentityHashMap<>();
+        for (T entity : submitList) {
+            if (StringUtils.isEmpty(entity.getId())) {
+                insertList.add(entity);
+                insertRows.add(result.add(null, BatchSaveResult.RowStatus.INSERTED, null));
+                continue;
+            }
+            T db = dbMap.remove(entity.getId());
+            if (db == null) {
+                updateMap.put(entity, result.add(entity.getId(), BatchSaveResult.RowStatus.UPDATED, null));
+                continue;
+            }
+            if (entity.getVersionNum() != null && !entity.getVersionNum().equals(db.getVersionNum())) {
+                result.add(entity.getId(), BatchSaveResult.RowStatus.CONFLICT, db.getVersionNum());
+                continue;
+            }
+            List<String> dirtyProperties = this.getDirtyProperties(tableInfo, entity, db);
+            if (dirtyProperties.isEmpty()) {
+                entity.setVersionNum(db.getVersionNum());
+                result.add(entity.getId(), BatchSaveResult.RowStatus.UNCHANGED, db.getVersionNum());
+                continue;
+            }
+            dbVersions.put(entity, db.getVersionNum());
+            dirtyGroups.computeIfAbsent(dirtyProperties, k -> new IdentityHashMap<>())
+                    .put(entity, result.add(entity.getId(), BatchSaveResult.RowStatus.UPDATED, null));
+        }
+        //删除数据
+        if (!dbMap.isEmpty()) {
+            this.removeByIds(dbMap.keySet());
+            for (T db : dbMap.values()) {
+                result.add(db.getId(), BatchSaveResult.RowStatus.DELETED, db.getVersionNum());
+            }
+        }
+        if (!insertList.isEmpty()) {
+            this.saveBatch(insertList, 1000);
+            for (int i = 0; i < insertList.size(); i++) {
+                insertRows.get(i).setId(insertList.get(i).getId());
+                insertRows.get(i).setVersionNum(insertList.get(i).getVersionNum());
+            }
+        }
+        if (!dirtyGroups.isEmpty() || !updateMap.isEmpty()) {
+            try (SqlSession batchSqlSession = sqlSessionBatch()) {
+                for (Map.Entry<List<String>, Map<T, BatchSaveResult.Row>> group : dirtyGroups.entrySet()) {
+                    this.updateDirtyBatch(batchSqlSession, tableInfo, group.getKey(), group.getValue(), dbVersions);
+                }
+                if (!updateMap.isEmpty()) {
+                    this.updateByIdBatch(batchSqlSession, tableInfo, updateMap);
+                }
+            }
+            this.onTableChanged();
+        }
+        return result;
+    }
+
+    /**
+     * 主子表保存，在一个事务中保存主表和子表
+     * 子表外键通过缓存的set方法设置，同一个表、外键的子表数据合并为一组，共用一个处理结果
+     *
+     * @param master  主表数据
+     * @param details 子表名和子表数据
+     * @return 子表名和每行的处理结果
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, BatchSaveResult> saveMasterDetail(T master, Map<String, MasterDetail<?>> details) {
+        if (StringUtils.isEmpty(master.getId())) {
+            this.save(master);
+        } else {
+            this.updateById(master, true);
+        }
+        Map<String, BatchSaveResult> results = new LinkedHashMap<>();
+        if (details == null || details.isEmpty()) {
+            return results;
+        }
+        //同一个表、外键的子表数据合并，分开保存时会互相删除
+        Map<String, List<MasterDetail<?>>> groups = new LinkedHashMap<>();
+        Map<String, List<String>> groupNames = new LinkedHashMap<>();
+        details.forEach((name, detail) -> {
+            groups.computeIfAbsent(detail.groupKey(), k -> new ArrayList<>()).add(detail);
+            groupNames.computeIfAbsent(detail.groupKey(), k -> new ArrayList<>()).add(name);
+        });
+        for (Map.Entry<String, List<MasterDetail<?>>> group : groups.entrySet()) {
+            BatchSaveResult result = this.saveDetails(master.getId(), (List) group.getValue());
+            if (result.hasConflict()) {
+                log.error("Error: saveMasterDetail version conflict:{}", result.getConflicts());
+                throw new GlobalErrorException(FrameMessageEnum.UPDATE_VERSION_ERROR);
+            }
+            groupNames.get(group.getKey()).forEach(name -> results.put(name, result));
+        }
+        return results;
+    }
+
+    /**
+     * 保存一个表的子表数据
+     *
+     * @param masterId 主表ID
+     * @param group    同一个表、外键的子表数据
+     * @return 每行的处理结果
+     */
+    private <C extends BaseEntity> BatchSaveResult saveDetails(String masterId, List<MasterDetail<C>> group) {
+        MasterDetail<C> first = group.get(0);
+        List<C> detailList = new ArrayList<>();
+        for (MasterDetail<C> detail : group) {
+            for (C entity : detail.getDetails()) {
+                BeanConverterUtil.setStringProperty(entity, first.getForeignKey(), masterId);
+                detailList.add(entity);
+            }
+        }
+        String column = BatchSqlUtils.getColumn(SqlHelper.table(first.getEntityClass()), first.getForeignKey());
+        return first.getService().setBatchDiff(detailList, new QueryWrapper<C>().eq(column, masterId));
+    }
+
+    /**
+     * 取得和数据库数据相比有变化的属性，提交的值为null时作为没有变化（和updateById一致）
+     *
+     * @param tableInfo 表信息
+     * @param entity    提交的数据
+     * @param db        数据库数据
+     * @return 有变化的属性
+     */
+    private List<String> getDirtyProperties(TableInfo tableInfo, T entity, T db) {
+        MetaObject entityMeta = SystemMetaObject.forObject(entity);
+        MetaObject dbMeta = SystemMetaObject.forObject(db);
+        List<String> properties = new ArrayList<>();
+        for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+            if (!BatchSqlUtils.isDiffColumn(fieldInfo.getColumn())) {
+                continue;
+            }
+            Object value = entityMeta.getValue(fieldInfo.getProperty());
+            if (value == null) {
+                continue;
+            }
+            Object dbValue = dbMeta.getValue(fieldInfo.getProperty());
+            boolean same = value instanceof BigDecimal && dbValue instanceof BigDecimal
+                    ? ((BigDecimal) value).compareTo((BigDecimal) dbValue) == 0 : value.equals(dbValue);
+            if (!same) {
+                properties.add(fieldInfo.getProperty());
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * 更新字段相同的数据作为一个JDBC批次，只更新变化的字段和更新者、更新日期，影响行数为0的数据为冲突
+     * 驱动不返回件数（SUCCESS_NO_INFO）的数据重新查询版本号，版本号没有加1时为冲突
+     *
+     * @param batchSqlSession 批量session
+     * @param tableInfo       表信息
+     * @param dirtyProperties 变化的属性
+     * @param rows            数据以及对应的结果
+     * @param dbVersions      数据库中的版本号
+     */
+    private void updateDirtyBatch(SqlSession batchSqlSession, TableInfo tableInfo, List<String> dirtyProperties,
+                                  Map<T, BatchSaveResult.Row> rows, Map<T, Integer> dbVersions) {
+        GlobalConfig globalConfig = GlobalConfigUtils.getGlobalConfig(batchSqlSession.getConfiguration());
+        MetaObjectHandler metaObjectHandler = globalConfig.getMetaObjectHandler();
+        String notDeleteValue = globalConfig.getDbConfig().getLogicNotDeleteValue();
+        List<String> properties = new ArrayList<>(dirtyProperties);
+        for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+            if (BaseEntity.UPDATE_USER.equalsIgnoreCase(fieldInfo.getColumn())
+                    || BaseEntity.UPDATE_DATE.equalsIgnoreCase(fieldInfo.getColumn())) {
+                properties.add(fieldInfo.getProperty());
+            }
+        }
+        List<T> entityList = new ArrayList<>(rows.keySet());
+        try (PreparedStatement ps = batchSqlSession.getConnection()
+                .prepareStatement(BatchSqlUtils.buildPartialUpdateSql(tableInfo, properties))) {
+            for (T entity : entityList) {
+                MetaObject metaObject = SystemMetaObject.forObject(entity);
+                if (metaObjectHandler != null) {
+                    metaObjectHandler.updateFill(metaObject);
+                }
+                int index = 1;
+                for (String property : properties) {
+                    BatchSqlUtils.setParameter(ps, index++, metaObject.getValue(property), metaObject.getGetterType(property));
+                }
+                Integer dbVersion = dbVersions.get(entity);
+                ps.setString(index++, entity.getId());
+                ps.setInt(index++, dbVersion == null ? 0 : dbVersion);
+                ps.setString(index, notDeleteValue);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            List<T> noInfoList = new ArrayList<>();
+            for (int i = 0; i < entityList.size(); i++) {
+                if (counts[i] < 0) {
+                    noInfoList.add(entityList.get(i));
+                }
+            }
+            Map<String, Integer> currentVersions = noInfoList.isEmpty() ? Collections.emptyMap()
+                    : this.selectVersions(batchSqlSession.getConnection(), tableInfo, noInfoList, false, notDeleteValue, new HashSet<>());
+            for (int i = 0; i < entityList.size(); i++) {
+                T entity = entityList.get(i);
+                BatchSaveResult.Row row = rows.get(entity);
+                Integer dbVersion = dbVersions.get(entity);
+                int nextVersion = (dbVersion == null ? 0 : dbVersion) + 1;
+                boolean conflict = counts[i] < 0
+                        ? !Integer.valueOf(nextVersion).equals(currentVersions.get(entity.getId())) : counts[i] == 0;
+                if (conflict) {
+                    row.setStatus(BatchSaveResult.RowStatus.CONFLICT);
+                    row.setVersionNum(dbVersion);
+                } else {
+                    entity.setVersionNum(nextVersion);
+                    row.setVersionNum(entity.getVersionNum());
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error: Cannot execute updateDirtyBatch Method. Cause", e);
+            throw new GlobalErrorException(FrameMessageEnum.UPDATE_ERROR);
+        }
+    }
+
+    /**
+     * 按ID批量更新，影响行数为0的数据为冲突
+     * 驱动不返回件数（SUCCESS_NO_INFO）时无法从件数判断，执行前加锁取得版本号，
+     * 执行后重新查询，版本号没有加1或者数据已删除时为冲突
+     *
+     * @param batchSqlSession 批量session
+     * @param tableInfo       表信息
+     * @param rows            数据以及对应的结果
+     */
+    private void updateByIdBatch(SqlSession batchSqlSession, TableInfo tableInfo, Map<T, BatchSaveResult.Row> rows) {
+        String notDeleteValue = GlobalConfigUtils.getGlobalConfig(batchSqlSession.getConfiguration()).getDbConfig()
+                .getLogicNotDeleteValue();
+        String sqlStatement = sqlStatement(SqlMethod.UPDATE_BY_ID);
+        List<T> entityList = new ArrayList<>(rows.keySet());
+        try {
+            Map<String, Integer> dbVersions = this.selectVersions(batchSqlSession.getConnection(), tableInfo, entityList, true,
+                    notDeleteValue);
+            //乐观锁插件执行时把实体的版本号改为加1后的值，先保存提交的版本号
+            List<Integer> versions = new ArrayList<>(entityList.size());
+            for (T entity : entityList) {
+                versions.add(entity.getVersionNum());
+                MapperMethod.ParamMap<T> param = new MapperMethod.ParamMap<>();
+                param.put(Constants.ENTITY, entity);
+                batchSqlSession.update(sqlStatement, param);
+            }
+            int[] counts = new int[entityList.size()];
+            int i = 0;
+            for (BatchResult batchResult : batchSqlSession.flushStatements()) {
+                for (int count : batchResult.getUpdateCounts()) {
+                    counts[i++] = count;
+                }
+            }
+            List<T> noInfoList = new ArrayList<>();
+            for (i = 0; i < entityList.size(); i++) {
+                if (counts[i] < 0) {
+                    noInfoList.add(entityList.get(i));
+                }
+            }
+            Map<String, Integer> currentVersions = noInfoList.isEmpty() ? Collections.emptyMap()
+                    : this.selectVersions(batchSqlSession.getConnection(), tableInfo, noInfoList, false, notDeleteValue);
+            for (i = 0; i < entityList.size(); i++) {
+                T entity = entityList.get(i);
+                BatchSaveResult.Row row = rows.get(entity);
+                String id = entity.getId();
+                Integer version = versions.get(i);
+                boolean conflict;
+                if (counts[i] < 0) {
+                    conflict = !dbVersions.containsKey(id) || !currentVersions.containsKey(id)
+                            || version != null && (!version.equals(dbVersions.get(id))
+                            || !Integer.valueOf(version + 1).equals(currentVersions.get(id)));
+                } else {
+                    conflict = counts[i] == 0;
+                }
+                if (conflict) {
+                    row.setStatus(BatchSaveResult.RowStatus.CONFLICT);
+                    row.setVersionNum(dbVersions.get(id));
+                } else {
+                    row.setVersionNum(entity.getVersionNum());
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error: Cannot execute updateByIdBatch Method. Cause", e);
+            throw new GlobalErrorException(FrameMessageEnum.UPDATE_ERROR);
+        }
+    }
+
+    /**
+     * 按IN条件的上限分批查询数据库中没有删除的数据的版本号
+     *
+     * @param connection     连接
+     * @param tableInfo      表信息
+     * @param entityList     数据
+     * @param forUpdate      是否加锁
+     * @param notDeleteValue 逻辑未删除值
+     * @return 没有删除的数据的ID和版本号
+     * @throws SQLException
+     */
+    private Map<String, Integer> selectVersions(Connection connection, TableInfo tableInfo, List<T> entityList, boolean forUpdate,
+                                                String notDeleteValue) throws SQLException {
+        int inListSize = this.inListSize();
+        Map<String, Integer> versions = new HashMap<>(entityList.size() * 2);
+        for (int from = 0; from < entityList.size(); from += inListSize) {
+            List<T> chunk = entityList.subList(from, Math.min(from + inListSize, entityList.size()));
+            versions.putAll(this.selectVersions(connection, tableInfo, chunk, forUpdate, notDeleteValue, new HashSet<>()));
         }
+        return versions;
     }
 
 
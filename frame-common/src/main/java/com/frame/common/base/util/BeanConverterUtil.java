@@ -9,11 +9,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
 
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public class BeanConverterUtil {
@@ -21,6 +24,11 @@ public class BeanConverterUtil {
 
     }
 
+    /**
+     * 类和参数为String的方法
+     */
+    private static final Map<Class<?>, Map<String, Method>> STRING_METHODS = new ConcurrentHashMap<>();
+
     /**
      * 单个对象转换
      */
@@ -64,7 +72,7 @@ public class BeanConverterUtil {
     }
 
     /**
-     * 通过类，方法名去创建实例执行对应的方法，使用对应的参数
+     * 通过方法名执行实体对应的方法，使用对应的参数，方法按类缓存
      * 这里只是为了解决主子表子表外键的set方法的共通设置
      *
      * @param entity
@@ -82,14 +90,46 @@ public class BeanConverterUtil {
         }
 
         try {
-            Object obj = entity.getClass().newInstance();
-            Method m = obj.getClass().getDeclaredMethod(methodName, String.class);
-            m.invoke(entity, param);
-        } catch (Exception e) {
+            getStringMethod(entity.getClass(), methodName).invoke(entity, param);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new FunctionErrorException(e);
+        }
+    }
+
+    /**
+     * 设置String类型的属性，主子表子表外键的设置使用
+     *
+     * @param bean      对象
+     * @param fieldName 属性名
+     * @param value     值
+     */
+    public static void setStringProperty(Object bean, String fieldName, String value) {
+        try {
+            getStringMethod(bean.getClass(), setMethodName(fieldName)).invoke(bean, value);
+        } catch (IllegalAccessException | InvocationTargetException e) {
             throw new FunctionErrorException(e);
         }
     }
 
+    /**
+     * 取得参数为String的方法，按类、方法名缓存
+     */
+    private static Method getStringMethod(Class<?> clazz, String methodName) {
+        return STRING_METHODS.computeIfAbsent(clazz, k -> new ConcurrentHashMap<>()).computeIfAbsent(methodName, name -> {
+            try {
+                return clazz.getMethod(name, String.class);
+            } catch (NoSuchMethodException e) {
+                try {
+                    Method method = clazz.getDeclaredMethod(name, String.class);
+                    method.setAccessible(true);
+                    return method;
+                } catch (NoSuchMethodException ex) {
+                    throw new FunctionErrorException(ex);
+                }
+            }
+        });
+    }
+
     /**
      * Id转换为set方法
      *
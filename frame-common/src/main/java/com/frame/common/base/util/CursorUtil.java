@@ -0,0 +1,131 @@
+package com.frame.common.base.util;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * keyset分页游标编解码
+ * 游标内容为排序键值数组，每个值带类型标识，解码后还原为原类型，保证作为SQL参数时类型正确
+ *
+ * @author ly
+ */
+@Slf4j
+public class CursorUtil {
+    private CursorUtil() {
+
+    }
+
+    private static final String TYPE_STRING = "S";
+    private static final String TYPE_INTEGER = "I";
+    private static final String TYPE_LONG = "L";
+    private static final String TYPE_DECIMAL = "N";
+    private static final String TYPE_BOOLEAN = "B";
+    private static final String TYPE_DATE = "D";
+    private static final String TYPE_DATE_TIME = "T";
+    private static final String TYPE_LOCAL_DATE = "A";
+    private static final String TYPE_NULL = "0";
+
+    /**
+     * 排序键值生成游标
+     *
+     * @param values 排序键值
+     * @return 游标
+     */
+    public static String encode(List<Object> values) {
+        JSONArray array = new JSONArray(values.size());
+        for (Object value : values) {
+            JSONArray item = new JSONArray(2);
+            if (value == null) {
+                item.add(TYPE_NULL);
+                item.add(null);
+            } else if (value instanceof Integer || value instanceof Short) {
+                item.add(TYPE_INTEGER);
+                item.add(value.toString());
+            } else if (value instanceof Long) {
+                item.add(TYPE_LONG);
+                item.add(value.toString());
+            } else if (value instanceof Number) {
+                item.add(TYPE_DECIMAL);
+                item.add(value.toString());
+            } else if (value instanceof Boolean) {
+                item.add(TYPE_BOOLEAN);
+                item.add(value.toString());
+            } else if (value instanceof Date) {
+                item.add(TYPE_DATE);
+                item.add(String.valueOf(((Date) value).getTime()));
+            } else if (value instanceof LocalDateTime) {
+                item.add(TYPE_DATE_TIME);
+                item.add(value.toString());
+            } else if (value instanceof LocalDate) {
+                item.add(TYPE_LOCAL_DATE);
+                item.add(value.toString());
+            } else {
+                item.add(TYPE_STRING);
+                item.add(value.toString());
+            }
+            array.add(item);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(array.toJSONString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 游标还原为排序键值
+     *
+     * @param cursor 游标
+     * @return 排序键值，游标为空时返回空列表
+     */
+    public static List<Object> decode(String cursor) {
+        if (StringUtils.isBlank(cursor)) {
+            return Collections.emptyList();
+        }
+        JSONArray array;
+        try {
+            array = JSON.parseArray(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.error("cursor decode error:[{}]", cursor, e);
+            throw new IllegalArgumentException("Illegal cursor: " + cursor);
+        }
+        List<Object> values = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            JSONArray item = array.getJSONArray(i);
+            values.add(toValue(item.getString(0), item.getString(1)));
+        }
+        return values;
+    }
+
+    private static Object toValue(String type, String value) {
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_INTEGER:
+                return Integer.valueOf(value);
+            case TYPE_LONG:
+                return Long.valueOf(value);
+            case TYPE_DECIMAL:
+                return new BigDecimal(value);
+            case TYPE_BOOLEAN:
+                return Boolean.valueOf(value);
+            case TYPE_DATE:
+                return new Date(Long.parseLong(value));
+            case TYPE_DATE_TIME:
+                return LocalDateTime.parse(value);
+            case TYPE_LOCAL_DATE:
+                return LocalDate.parse(value);
+            default:
+                return value;
+        }
+    }
+}
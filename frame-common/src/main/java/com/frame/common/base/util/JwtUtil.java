@@ -3,7 +3,9 @@ package com.frame.common.base.util;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.AlgorithmMismatchException;
 import com.auth0.jwt.exceptions.JWTDecodeException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.frame.common.base.component.ApplicationContextComponent;
 import com.frame.common.base.config.FrameProperties;
@@ -15,7 +17,10 @@ import org.apache.commons.lang3.StringUtils;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author ly
@@ -52,6 +57,21 @@ public class JwtUtil {
      */
     public static final String CLAIM_TERMINAL = "terminal";
 
+    /**
+     * 缓存签名算法的最大账户数
+     */
+    private static final int MAX_CACHED_ACCOUNTS = 10000;
+
+    /**
+     * 配置，第一次使用时取得
+     */
+    private static volatile FrameProperties frameProperties;
+
+    /**
+     * 当前密码的签名算法
+     */
+    private static volatile KeyRing keyRing;
+
 
     /**
      * 处理jwtToken
@@ -142,7 +162,7 @@ public class JwtUtil {
      */
     private static String sign(String account, String runAS, String jwtId, FrameKnowledge.FrameTerminalEnum terminal, long expireTime) {
         Date date = new Date(System.currentTimeMillis() + expireTime);
-        Algorithm algorithm = Algorithm.HMAC256(generalKey(account).getEncoded());
+        Algorithm algorithm = getAlgorithm(account);
         // 附带username信息
         return JWT.create()
                 .withSubject(account)
@@ -162,9 +182,9 @@ public class JwtUtil {
      */
     public static boolean verify(String jwtToken, String account) {
         try {
-            Algorithm algorithm = Algorithm.HMAC256(generalKey(account).getEncoded());
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .build();
+            KeyRing ring = getKeyRing();
+            Algorithm algorithm = getAlgorithm(ring, account);
+            JWTVerifier verifier = ring.verifiers.computeIfAbsent(account, key -> JWT.require(algorithm).build());
             verifier.verify(jwtToken);
             return true;
         } catch (Exception exception) {
@@ -173,6 +193,47 @@ public class JwtUtil {
         }
     }
 
+    /**
+     * 校验已经解码的token是否正确，不再解码
+     * 和verify(String, String)一样校验算法、签名和过期时间
+     *
+     * @param jwt     解码后的token
+     * @param account 登陆账户
+     * @return 是否正确
+     */
+    public static boolean verify(DecodedJWT jwt, String account) {
+        try {
+            Algorithm algorithm = getAlgorithm(account);
+            if (!algorithm.getName().equals(jwt.getAlgorithm())) {
+                throw new AlgorithmMismatchException("The provided Algorithm doesn't match the one defined in the JWT's Header.");
+            }
+            algorithm.verify(jwt);
+            Date expiresAt = jwt.getExpiresAt();
+            if (expiresAt != null && expiresAt.before(new Date())) {
+                throw new TokenExpiredException("The Token has expired on " + expiresAt + ".");
+            }
+            return true;
+        } catch (Exception exception) {
+            log.error("verify:", exception);
+            return false;
+        }
+    }
+
+    /**
+     * 解码token
+     *
+     * @param jwtToken jwt token
+     * @return 不能解码时返回null
+     */
+    public static DecodedJWT decode(String jwtToken) {
+        try {
+            return JWT.decode(jwtToken);
+        } catch (JWTDecodeException e) {
+            log.error(" decode error：", e);
+            return null;
+        }
+    }
+
     /**
      * 获得jwtToken中包含的用户
      *
@@ -280,17 +341,102 @@ public class JwtUtil {
      * @param account 用户名
      */
     public static SecretKey generalKey(String account) {
-        String secret = JWT_SALT;
-        try {
-            secret = ApplicationContextComponent.getBeanByType(FrameProperties.class).getAuth().getJwtSecret();
-        } catch (Exception e) {
-            log.error("取得配置文件中设置的JWT 密码，如没有设置，则了默认:", e);
-        }
+        return generalKey(getJwtSecret(), account);
+    }
 
+    private static SecretKey generalKey(String secret, String account) {
         byte[] encodedKey = Base64.decodeBase64(secret + account);
         return new SecretKeySpec(encodedKey, 0, encodedKey.length, "AES");
     }
 
+    /**
+     * 取得账户的签名算法
+     * 按账户缓存，jwtSecret变更时重新生成
+     *
+     * @param account 用户名
+     * @return 签名算法
+     */
+    public static Algorithm getAlgorithm(String account) {
+        return getAlgorithm(getKeyRing(), account);
+    }
+
+    private static Algorithm getAlgorithm(KeyRing ring, String account) {
+        Algorithm algorithm = ring.algorithms.get(account);
+        if (algorithm == null) {
+            if (ring.algorithms.size() >= MAX_CACHED_ACCOUNTS) {
+                // 超出时全部清除，只影响性能
+                ring.algorithms.clear();
+                ring.verifiers.clear();
+            }
+            algorithm = ring.algorithms.computeIfAbsent(account,
+                    key -> Algorithm.HMAC256(generalKey(ring.secret, key).getEncoded()));
+        }
+        return algorithm;
+    }
+
+    /**
+     * 当前密码的版本，jwtSecret变更时增加，缓存校验结果时用于判断密码是否变更
+     *
+     * @return 版本
+     */
+    public static int getKeyVersion() {
+        return getKeyRing().version;
+    }
+
+    /**
+     * 取得当前密码的算法缓存，密码变更时重新生成
+     */
+    private static KeyRing getKeyRing() {
+        String secret = getJwtSecret();
+        KeyRing ring = keyRing;
+        if (ring != null && Objects.equals(ring.secret, secret)) {
+            return ring;
+        }
+        synchronized (JwtUtil.class) {
+            ring = keyRing;
+            if (ring == null || !Objects.equals(ring.secret, secret)) {
+                if (ring != null) {
+                    log.info("jwt secret changed, signing keys are regenerated");
+                }
+                ring = new KeyRing(secret, ring == null ? 0 : ring.version + 1);
+                keyRing = ring;
+            }
+            return ring;
+        }
+    }
+
+    /**
+     * 取得配置文件中设置的JWT密码，没有配置文件时使用默认值
+     */
+    private static String getJwtSecret() {
+        FrameProperties properties = frameProperties;
+        if (properties == null) {
+            try {
+                properties = ApplicationContextComponent.getBeanByType(FrameProperties.class);
+                frameProperties = properties;
+            } catch (Exception e) {
+                log.error("取得配置文件中设置的JWT 密码，如没有设置，则了默认:", e);
+                return JWT_SALT;
+            }
+        }
+        return properties.getAuth().getJwtSecret();
+    }
+
+    /**
+     * 一个密码对应的账户签名算法
+     */
+    private static class KeyRing {
+        private final String secret;
+        private final int version;
+        private final Map<String, Algorithm> algorithms = new ConcurrentHashMap<>();
+        private final Map<String, JWTVerifier> verifiers = new ConcurrentHashMap<>();
+
+        private KeyRing(String secret, int version) {
+            this.secret = secret;
+            this.version = version;
+        }
+    }
+
     /**
      * 取得配置文件中设置的超时时间
      */
@@ -22,6 +22,11 @@ public class ThreadLocalUtil {
      */
     private static ThreadLocal<String> localeSecret = new ThreadLocal<>();
 
+    /**
+     * 最后一次写数据库的时间，读写分离时在此之后一定时间内的读取使用主库
+     */
+    private static ThreadLocal<Long> lastWriteTime = new ThreadLocal<>();
+
     public static String getLocaleSecret() {
         return localeSecret.get();
     }
@@ -51,4 +56,17 @@ public class ThreadLocalUtil {
         localeSecret.remove();
     }
 
+    public static long getLastWriteTime() {
+        Long time = lastWriteTime.get();
+        return time == null ? 0L : time;
+    }
+
+    public static void setLastWriteTime(long time) {
+        lastWriteTime.set(time);
+    }
+
+    public static void removeLastWriteTime() {
+        lastWriteTime.remove();
+    }
+
 }
@@ -20,4 +20,12 @@ public @interface DataAuth {
      * @return
      */
     String value() default "";
+
+    /**
+     * 权限条件所属表的别名（没有别名时为表名）
+     * 指定时权限条件加到该表所在查询的WHERE中，没有指定时只对单表查询直接加到WHERE中
+     *
+     * @return
+     */
+    String alias() default "";
 }
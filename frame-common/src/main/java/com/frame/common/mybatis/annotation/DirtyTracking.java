@@ -0,0 +1,17 @@
+package com.frame.common.mybatis.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 启用变更追踪
+ * 加在实体类上，BaseServiceImpl查询时保存快照，updateById、updateBatchById时只更新和快照相比变化的字段
+ *
+ * @author gaoly
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface DirtyTracking {
+}
@@ -0,0 +1,30 @@
+package com.frame.common.mybatis.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 启用实体缓存
+ * 加在实体类上，BaseServiceImpl按ID查询时先查缓存，写入时清除缓存
+ *
+ * @author gaoly
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EntityCache {
+    /**
+     * 最大缓存数量，超过时清除最久没有使用的数据
+     *
+     * @return
+     */
+    int maxSize() default 1000;
+
+    /**
+     * 缓存有效期（秒）
+     *
+     * @return
+     */
+    long ttlSeconds() default 300;
+}
@@ -0,0 +1,39 @@
+package com.frame.common.mybatis.archive;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.Map;
+
+/**
+ * 归档统计 actuator endpoint
+ * GET /actuator/archive 全部表，GET /actuator/archive/{table} 指定表，DELETE 清除统计
+ *
+ * @author gaoly
+ */
+@Endpoint(id = "archive")
+public class ArchiveEndpoint {
+
+    private final ArchiveMetrics archiveMetrics;
+
+    public ArchiveEndpoint(ArchiveMetrics archiveMetrics) {
+        this.archiveMetrics = archiveMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> tables() {
+        return archiveMetrics.snapshot();
+    }
+
+    @ReadOperation
+    public Map<String, Object> table(@Selector String table) {
+        return archiveMetrics.snapshot(table);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        archiveMetrics.reset();
+    }
+}
@@ -0,0 +1,208 @@
+package com.frame.common.mybatis.archive;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 归档统计
+ * 按表保存移动件数、批次、耗时，绑定Micrometer时每个表第一次归档时注册一次指标
+ *
+ * @author gaoly
+ */
+public class ArchiveMetrics implements MeterBinder {
+
+    private static final String TAG_TABLE = "table";
+
+    private final Map<String, TableMetrics> tables = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * 取得表的统计，没有时生成
+     *
+     * @param table 表名
+     * @return 统计
+     */
+    public TableMetrics get(String table) {
+        TableMetrics metrics = tables.get(table);
+        if (metrics != null) {
+            return metrics;
+        }
+        return tables.computeIfAbsent(table, key -> {
+            TableMetrics created = new TableMetrics(key);
+            MeterRegistry registry = meterRegistry;
+            if (registry != null) {
+                register(registry, created);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * 全部表的统计快照
+     *
+     * @return 表名和统计
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        tables.forEach((table, metrics) -> snapshot.put(table, metrics.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * 指定表的统计快照
+     *
+     * @param table 表名
+     * @return 统计，没有时返回null
+     */
+    public Map<String, Object> snapshot(String table) {
+        TableMetrics metrics = tables.get(table);
+        return metrics == null ? null : metrics.snapshot();
+    }
+
+    /**
+     * 清除全部统计
+     */
+    public void reset() {
+        tables.values().forEach(TableMetrics::reset);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        tables.values().forEach(metrics -> register(registry, metrics));
+    }
+
+    private static void register(MeterRegistry registry, TableMetrics metrics) {
+        FunctionTimer.builder("frame.archive.batches", metrics, TableMetrics::getBatches,
+                TableMetrics::getTotalNanos, TimeUnit.NANOSECONDS)
+                .tag(TAG_TABLE, metrics.getTable())
+                .register(registry);
+        FunctionCounter.builder("frame.archive.rows", metrics, TableMetrics::getRows)
+                .tag(TAG_TABLE, metrics.getTable())
+                .register(registry);
+        FunctionCounter.builder("frame.archive.errors", metrics, TableMetrics::getErrors)
+                .tag(TAG_TABLE, metrics.getTable())
+                .register(registry);
+        Gauge.builder("frame.archive.batch.size", metrics, TableMetrics::getBatchSize)
+                .tag(TAG_TABLE, metrics.getTable())
+                .register(registry);
+    }
+
+    /**
+     * 一个表的归档统计
+     */
+    public static class TableMetrics {
+
+        private final String table;
+
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private volatile int batchSize;
+        private volatile long lastRunTime;
+        private volatile long lastCompleteTime;
+
+        TableMetrics(String table) {
+            this.table = table;
+        }
+
+        /**
+         * 记录一批
+         *
+         * @param nanos    耗时（纳秒）
+         * @param rowCount 移动的件数
+         */
+        void recordBatch(long nanos, int rowCount) {
+            batches.increment();
+            totalNanos.add(nanos);
+            rows.add(rowCount);
+        }
+
+        void recordError() {
+            errors.increment();
+        }
+
+        void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        void markRun() {
+            this.lastRunTime = System.currentTimeMillis();
+        }
+
+        /**
+         * 超过保留期间的数据全部移动完成
+         */
+        void markComplete() {
+            this.lastCompleteTime = System.currentTimeMillis();
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getBatches() {
+            return batches.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        /**
+         * 统计快照
+         *
+         * @return 件数、批次、错误、耗时、每秒件数、当前批次件数、最后执行时间
+         */
+        public Map<String, Object> snapshot() {
+            long rowCount = rows.sum();
+            long count = batches.sum();
+            long total = totalNanos.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("rows", rowCount);
+            snapshot.put("batches", count);
+            snapshot.put("errors", errors.sum());
+            snapshot.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(total));
+            snapshot.put("avgBatchMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(total / count));
+            snapshot.put("rowsPerSecond", total == 0 ? 0 : (long) (rowCount * (double) TimeUnit.SECONDS.toNanos(1) / total));
+            snapshot.put("batchSize", batchSize);
+            snapshot.put("lastRunTime", lastRunTime);
+            snapshot.put("lastCompleteTime", lastCompleteTime);
+            return snapshot;
+        }
+
+        /**
+         * 清除统计
+         */
+        public void reset() {
+            rows.reset();
+            batches.reset();
+            errors.reset();
+            totalNanos.reset();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.frame.common.mybatis.archive;
+
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * 包含归档表的查询
+ * 在span中执行的查询，归档对象表改写为原表和归档表的UNION ALL（见ArchiveQueryInterceptor）
+ * </p>
+ * <p>
+ * 归档表中都是逻辑删除的数据，带有逻辑删除条件的查询（mybatis-plus自动生成的查询）即使包含归档表也不会返回归档数据，
+ * 用于不带逻辑删除条件的履历查询等
+ * </p>
+ *
+ * @author gaoly
+ */
+public class ArchiveQuery {
+
+    private static final ThreadLocal<Boolean> SPANNING = new ThreadLocal<>();
+
+    private ArchiveQuery() {
+
+    }
+
+    /**
+     * 包含归档表执行查询
+     *
+     * @param query 查询
+     * @return 查询结果
+     */
+    public static <R> R span(Supplier<R> query) {
+        Boolean previous = SPANNING.get();
+        SPANNING.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                SPANNING.remove();
+            } else {
+                SPANNING.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 当前是否包含归档表
+     *
+     * @return 在span中时返回true
+     */
+    public static boolean isSpanning() {
+        return SPANNING.get() != null;
+    }
+}
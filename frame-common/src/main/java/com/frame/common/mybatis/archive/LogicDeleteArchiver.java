@@ -0,0 +1,384 @@
+package com.frame.common.mybatis.archive;
+
+import com.frame.common.base.config.FrameProperties;
+import com.frame.common.base.model.BaseEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * 逻辑删除数据归档
+ * 逻辑删除后超过保留天数（按UPDATE_DATE，逻辑删除时由LogicDeleteSqlInjector更新为删除时间）的数据按批移动到归档表（表名+后缀），
+ * 每批在一个事务中执行INSERT INTO 归档表 SELECT和DELETE，件数不一致时回滚
+ * </p>
+ * <p>
+ * 每批先锁定进度记录表中的行，多节点同时执行时同一表按顺序处理；
+ * 进度按(UPDATE_DATE, ID)记录，中断后从上次的位置继续，全部移动完成后清除，下次从头开始。
+ * 每批耗时超过maxBatchMillis时下一批件数减半，较快时逐渐恢复，批次之间等待pauseMillis
+ * </p>
+ * <p>
+ * 归档表按SELECT *移动，原表增加字段时归档表也需要增加。
+ * 原表上建议建立(DELETE_FLAG, UPDATE_DATE, ID)的索引
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class LogicDeleteArchiver implements Closeable {
+
+    /**
+     * 每批的最小件数
+     */
+    private static final int MIN_BATCH_SIZE = 10;
+
+    /**
+     * Oracle的IN上限
+     */
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+
+    private final FrameProperties.Archive config;
+
+    private final String deletedValue;
+
+    private final ArchiveMetrics metrics;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param dataSource   数据源
+     * @param config       归档配置
+     * @param deletedValue 逻辑删除值
+     * @param metrics      统计
+     */
+    public LogicDeleteArchiver(DataSource dataSource, FrameProperties.Archive config, String deletedValue,
+                               ArchiveMetrics metrics) {
+        this.dataSource = dataSource;
+        this.config = config;
+        this.deletedValue = deletedValue;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 按intervalMinutes定期执行
+     */
+    public synchronized void start() {
+        if (executor != null || config.getIntervalMinutes() <= 0) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "logic-delete-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::archive, config.getIntervalMinutes(), config.getIntervalMinutes(),
+                TimeUnit.MINUTES);
+        log.info("logic delete archiver started:[{} every {} minutes]", config.getTables(), config.getIntervalMinutes());
+    }
+
+    /**
+     * 归档全部配置的表，正在执行时不处理
+     *
+     * @return 移动的件数
+     */
+    public long archive() {
+        if (!running.compareAndSet(false, true)) {
+            return 0L;
+        }
+        try {
+            long total = 0L;
+            for (String table : config.getTables()) {
+                if (closed) {
+                    break;
+                }
+                total += this.archiveTable(table);
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 归档一个表，出错时记录日志并停止这个表本次的处理
+     *
+     * @param table 表名
+     * @return 移动的件数
+     */
+    private long archiveTable(String table) {
+        ArchiveMetrics.TableMetrics tableMetrics = metrics.get(table);
+        tableMetrics.markRun();
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(config.getRetainDays()));
+        int batchSize = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, config.getBatchSize()));
+        int size = batchSize;
+        long total = 0L;
+        try {
+            this.prepare(table);
+            while (!closed) {
+                tableMetrics.setBatchSize(size);
+                long start = System.nanoTime();
+                BatchResult result = this.moveBatch(table, cutoff, size);
+                long nanos = System.nanoTime() - start;
+                tableMetrics.recordBatch(nanos, result.moved);
+                total += result.moved;
+                if (result.complete) {
+                    tableMetrics.markComplete();
+                    break;
+                }
+                size = this.nextBatchSize(size, batchSize, nanos);
+                Thread.sleep(config.getPauseMillis());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (SQLException | RuntimeException e) {
+            tableMetrics.recordError();
+            log.error("Error: Cannot archive table:[{}]", table, e);
+        }
+        if (total > 0) {
+            log.info("logic delete archived:[{} {} rows]", table, total);
+        }
+        return total;
+    }
+
+    /**
+     * 耗时超过目标时减半，低于目标一半时增加1/4
+     */
+    private int nextBatchSize(int size, int batchSize, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        if (millis > config.getMaxBatchMillis()) {
+            return Math.max(MIN_BATCH_SIZE, size / 2);
+        }
+        if (millis < config.getMaxBatchMillis() / 2) {
+            return Math.min(batchSize, size + size / 4 + 1);
+        }
+        return size;
+    }
+
+    /**
+     * 生成归档表和进度记录
+     */
+    private void prepare(String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            String archiveTable = this.archiveTableName(table);
+            if (config.isCreateTable() && !exists(connection, archiveTable)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE " + archiveTable + " AS SELECT * FROM " + table + " WHERE 1 = 0");
+                }
+                log.info("archive table created:[{}]", archiveTable);
+            }
+            try (PreparedStatement ps = connection.prepareStatement("SELECT TABLE_NAME FROM "
+                    + config.getCheckpointTable() + " WHERE TABLE_NAME = ?")) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return;
+                    }
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + config.getCheckpointTable()
+                    + " (TABLE_NAME, ARCHIVED_ROWS, UPDATE_DATE) VALUES (?, 0, ?)")) {
+                ps.setString(1, table);
+                ps.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                ps.executeUpdate();
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // 其他节点已经生成
+                log.debug("archive checkpoint exists:[{}]", table);
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中移动一批
+     */
+    private BatchResult moveBatch(String table, Timestamp cutoff, int size) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                BatchResult result = this.moveBatch(connection, table, cutoff, size);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private BatchResult moveBatch(Connection connection, String table, Timestamp cutoff, int size) throws SQLException {
+        Row checkpoint = this.lockCheckpoint(connection, table);
+        List<Row> rows = this.selectRows(connection, table, cutoff, checkpoint, size);
+        if (rows.isEmpty()) {
+            if (checkpoint != null) {
+                this.updateCheckpoint(connection, table, null, 0);
+            }
+            return new BatchResult(0, true);
+        }
+        String in = StringUtils.join(Collections.nCopies(rows.size(), "?"), ", ");
+        String condition = " WHERE " + BaseEntity.ID + " IN (" + in + ") AND " + BaseEntity.DELETE_FLAG + " = ?";
+        int inserted = this.executeUpdate(connection, "INSERT INTO " + this.archiveTableName(table)
+                + " SELECT * FROM " + table + condition, rows);
+        int deleted = this.executeUpdate(connection, "DELETE FROM " + table + condition, rows);
+        if (inserted != deleted) {
+            // 移动中有数据被恢复，回滚后下次重新处理
+            throw new SQLException("archive row count mismatch: " + table + " inserted " + inserted + ", deleted " + deleted);
+        }
+        boolean complete = rows.size() < size;
+        this.updateCheckpoint(connection, table, complete ? null : rows.get(rows.size() - 1), deleted);
+        return new BatchResult(deleted, complete);
+    }
+
+    /**
+     * 锁定进度记录，取得上次的位置
+     *
+     * @return 没有进度时返回null
+     */
+    private Row lockCheckpoint(Connection connection, String table) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT LAST_UPDATE_DATE, LAST_ID FROM "
+                + config.getCheckpointTable() + " WHERE TABLE_NAME = ? FOR UPDATE")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getTimestamp(1) == null) {
+                    return null;
+                }
+                return new Row(rs.getString(2), rs.getTimestamp(1));
+            }
+        }
+    }
+
+    /**
+     * 按(UPDATE_DATE, ID)的顺序取得上次位置之后的一批
+     */
+    private List<Row> selectRows(Connection connection, String table, Timestamp cutoff, Row checkpoint, int size)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ").append(BaseEntity.ID).append(", ").append(BaseEntity.UPDATE_DATE)
+                .append(" FROM ").append(table)
+                .append(" WHERE ").append(BaseEntity.DELETE_FLAG).append(" = ? AND ")
+                .append(BaseEntity.UPDATE_DATE).append(" < ?");
+        if (checkpoint != null) {
+            sql.append(" AND (").append(BaseEntity.UPDATE_DATE).append(" > ? OR (")
+                    .append(BaseEntity.UPDATE_DATE).append(" = ? AND ").append(BaseEntity.ID).append(" > ?))");
+        }
+        sql.append(" ORDER BY ").append(BaseEntity.UPDATE_DATE).append(", ").append(BaseEntity.ID);
+        try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            ps.setMaxRows(size);
+            ps.setString(1, deletedValue);
+            ps.setTimestamp(2, cutoff);
+            if (checkpoint != null) {
+                ps.setTimestamp(3, checkpoint.updateDate);
+                ps.setTimestamp(4, checkpoint.updateDate);
+                ps.setString(5, checkpoint.id);
+            }
+            List<Row> rows = new ArrayList<>(size);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && rows.size() < size) {
+                    rows.add(new Row(rs.getString(1), rs.getTimestamp(2)));
+                }
+            }
+            return rows;
+        }
+    }
+
+    private int executeUpdate(Connection connection, String sql, List<Row> rows) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (Row row : rows) {
+                ps.setString(index++, row.id);
+            }
+            ps.setString(index, deletedValue);
+            return ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 更新进度
+     *
+     * @param last  最后移动的行，全部完成时为null
+     * @param moved 移动的件数
+     */
+    private void updateCheckpoint(Connection connection, String table, Row last, int moved) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE " + config.getCheckpointTable()
+                + " SET LAST_UPDATE_DATE = ?, LAST_ID = ?, ARCHIVED_ROWS = ARCHIVED_ROWS + ?, UPDATE_DATE = ?"
+                + " WHERE TABLE_NAME = ?")) {
+            ps.setTimestamp(1, last == null ? null : last.updateDate);
+            ps.setString(2, last == null ? null : last.id);
+            ps.setLong(3, moved);
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            ps.setString(5, table);
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * 归档表名
+     */
+    private String archiveTableName(String table) {
+        return table + config.getSuffix();
+    }
+
+    /**
+     * 表是否存在，按原样、大写、小写查找
+     */
+    private static boolean exists(Connection connection, String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (String name : new String[]{table, table.toUpperCase(Locale.ROOT), table.toLowerCase(Locale.ROOT)}) {
+            try (ResultSet rs = metaData.getTables(connection.getCatalog(), null, name, new String[]{"TABLE"})) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * 移动对象的位置
+     */
+    private static class Row {
+        private final String id;
+        private final Timestamp updateDate;
+
+        private Row(String id, Timestamp updateDate) {
+            this.id = id;
+            this.updateDate = updateDate;
+        }
+    }
+
+    private static class BatchResult {
+        private final int moved;
+        private final boolean complete;
+
+        private BatchResult(int moved, boolean complete) {
+            this.moved = moved;
+            this.complete = complete;
+        }
+    }
+}
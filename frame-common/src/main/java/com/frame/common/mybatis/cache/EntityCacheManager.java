@@ -0,0 +1,171 @@
+package com.frame.common.mybatis.cache;
+
+import com.frame.common.mybatis.annotation.EntityCache;
+import com.frame.common.mybatis.service.IEntityCacheNotifier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 实体缓存管理
+ * 只对有{@link EntityCache}注解的实体生成缓存，写入时清除本节点的缓存并通知其它节点
+ * 在事务中写入时，事务提交后再清除和通知；提交之前当前事务不使用该实体的缓存，未提交的数据不会放入缓存
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class EntityCacheManager {
+
+    /**
+     * 本节点ID
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 实体类对应的缓存，没有注解的实体为空
+     */
+    private final Map<Class<?>, Optional<LocalEntityCache<?>>> caches = new ConcurrentHashMap<>();
+
+    @Autowired(required = false)
+    private IEntityCacheNotifier entityCacheNotifier;
+
+    /**
+     * 取得实体的缓存
+     *
+     * @param entityClass 实体类
+     * @return 缓存，实体没有启用缓存时返回null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> LocalEntityCache<T> getCache(Class<T> entityClass) {
+        return (LocalEntityCache<T>) caches.computeIfAbsent(entityClass, cls -> {
+            EntityCache entityCache = cls.getAnnotation(EntityCache.class);
+            if (entityCache == null) {
+                return Optional.empty();
+            }
+            return Optional.of(new LocalEntityCache<>(entityCache.maxSize(), entityCache.ttlSeconds()));
+        }).orElse(null);
+    }
+
+    /**
+     * 实体写入后清除缓存并通知其它节点
+     * 在事务中时只记录写入的实体，事务提交后清除和通知；提交之前其它线程读到的是提交前的数据，
+     * 提交后的清除使代数加1，提交前开始的查询不会把旧数据放入缓存
+     *
+     * @param entityClass 实体类
+     */
+    public void evict(Class<?> entityClass) {
+        LocalEntityCache<?> cache = this.getCache(entityClass);
+        if (cache == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            EvictSynchronization synchronization = this.currentSynchronization();
+            if (synchronization == null) {
+                synchronization = new EvictSynchronization();
+                TransactionSynchronizationManager.registerSynchronization(synchronization);
+            }
+            synchronization.entityClasses.add(entityClass);
+        } else {
+            cache.clear();
+            this.publish(entityClass);
+        }
+    }
+
+    /**
+     * 当前事务是否写入过实体，写入过时当前事务不读写该实体的缓存
+     *
+     * @param entityClass 实体类
+     * @return 写入过时返回true
+     */
+    public boolean isWritten(Class<?> entityClass) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return false;
+        }
+        EvictSynchronization synchronization = this.currentSynchronization();
+        return synchronization != null && synchronization.entityClasses.contains(entityClass);
+    }
+
+    /**
+     * 当前事务的清除处理，嵌套的新事务有各自的处理
+     */
+    private EvictSynchronization currentSynchronization() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof EvictSynchronization && ((EvictSynchronization) synchronization).owner() == this) {
+                return (EvictSynchronization) synchronization;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 收到其它节点的清除通知
+     *
+     * @param fromNodeId 发送节点ID
+     * @param entityName 实体类名
+     */
+    public void onRemoteEvict(String fromNodeId, String entityName) {
+        if (nodeId.equals(fromNodeId)) {
+            return;
+        }
+        caches.forEach((cls, cache) -> {
+            if (cls.getName().equals(entityName)) {
+                cache.ifPresent(LocalEntityCache::clear);
+            }
+        });
+    }
+
+    /**
+     * 各实体缓存的统计
+     *
+     * @return 实体类名和size/hits/misses/evictions
+     */
+    public Map<String, Map<String, Long>> getStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        caches.forEach((cls, cache) -> cache.ifPresent(c -> stats.put(cls.getName(), c.getStats())));
+        return stats;
+    }
+
+    /**
+     * 事务提交后清除写入的实体的缓存并通知其它节点，回滚时缓存中没有未提交的数据，不需要清除
+     */
+    private class EvictSynchronization extends TransactionSynchronizationAdapter {
+        private final Set<Class<?>> entityClasses = new LinkedHashSet<>();
+
+        private EntityCacheManager owner() {
+            return EntityCacheManager.this;
+        }
+
+        @Override
+        public void afterCommit() {
+            for (Class<?> entityClass : entityClasses) {
+                LocalEntityCache<?> cache = getCache(entityClass);
+                if (cache != null) {
+                    cache.clear();
+                }
+                publish(entityClass);
+            }
+        }
+    }
+
+    private void publish(Class<?> entityClass) {
+        if (entityCacheNotifier == null) {
+            return;
+        }
+        try {
+            entityCacheNotifier.publish(nodeId, entityClass.getName());
+        } catch (Exception e) {
+            // 通知失败时其它节点的缓存到有效期后失效
+            log.error("entity cache evict notify error:[{}]", entityClass.getName(), e);
+        }
+    }
+}
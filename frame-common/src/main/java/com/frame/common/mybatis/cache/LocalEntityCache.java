@@ -0,0 +1,171 @@
+package com.frame.common.mybatis.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 实体缓存，按最近使用顺序（LRU）和有效期（TTL）清除
+ * 清除时代数加1，查询数据库之前取得的代数和当前不一致时不放入缓存，防止清除之前读到的旧数据在清除之后放入缓存
+ *
+ * @param <T> 实体
+ * @author gaoly
+ */
+public class LocalEntityCache<T> {
+
+    /**
+     * 最大缓存数量
+     */
+    private final int maxSize;
+
+    /**
+     * 缓存有效期（毫秒）
+     */
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final LinkedHashMap<String, Entry<T>> cache;
+
+    /**
+     * 代数，清除时加1
+     */
+    private long generation;
+
+    public LocalEntityCache(int maxSize, long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.cache = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+                if (size() > LocalEntityCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取得缓存数据
+     *
+     * @param id ID
+     * @return 数据，没有或者已过期时返回null
+     */
+    public T get(String id) {
+        T value = this.getValue(id);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * 批量取得缓存数据
+     *
+     * @param ids ID
+     * @return 缓存中有的数据
+     */
+    public Map<String, T> getAll(Collection<String> ids) {
+        Map<String, T> values = new HashMap<>(ids.size() * 2);
+        for (String id : ids) {
+            T value = this.get(id);
+            if (value != null) {
+                values.put(id, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 取得当前的代数，查询数据库之前取得，放入缓存时传入
+     *
+     * @return 代数
+     */
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 缓存数据，查询之后缓存被清除过时不放入
+     *
+     * @param id         ID
+     * @param value      数据
+     * @param generation 查询数据库之前取得的代数
+     * @return 放入缓存时返回true
+     */
+    public synchronized boolean put(String id, T value, long generation) {
+        if (generation != this.generation) {
+            return false;
+        }
+        cache.put(id, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        return true;
+    }
+
+    /**
+     * 清除缓存数据
+     *
+     * @param id ID
+     */
+    public synchronized void evict(String id) {
+        generation++;
+        if (cache.remove(id) != null) {
+            evictions.increment();
+        }
+    }
+
+    /**
+     * 清除全部缓存
+     */
+    public synchronized void clear() {
+        generation++;
+        evictions.add(cache.size());
+        cache.clear();
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @return size/hits/misses/evictions
+     */
+    public synchronized Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("size", (long) cache.size());
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private synchronized T getValue(String id) {
+        Entry<T> entry = cache.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            cache.remove(id);
+            evictions.increment();
+            return null;
+        }
+        return entry.value;
+    }
+
+    private static class Entry<T> {
+        private final T value;
+        private final long expireAt;
+
+        private Entry(T value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
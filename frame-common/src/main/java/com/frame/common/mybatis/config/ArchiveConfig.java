@@ -0,0 +1,69 @@
+package com.frame.common.mybatis.config;
+
+import com.baomidou.mybatisplus.core.toolkit.GlobalConfigUtils;
+import com.frame.common.base.config.FrameProperties;
+import com.frame.common.mybatis.archive.ArchiveEndpoint;
+import com.frame.common.mybatis.archive.ArchiveMetrics;
+import com.frame.common.mybatis.archive.LogicDeleteArchiver;
+import com.frame.common.mybatis.interceptor.archive.ArchiveQueryInterceptor;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 逻辑删除数据归档，frame.archive.enable=true时使用
+ * 归档对象表为frame.archive.tables，进度记录表见frame.sql
+ *
+ * @author gaoly
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "frame.archive", name = "enable", havingValue = "true")
+public class ArchiveConfig {
+
+    /**
+     * 归档统计，actuator endpoint为archive，同时绑定到micrometer
+     *
+     * @return
+     */
+    @Bean
+    public ArchiveMetrics archiveMetrics() {
+        return new ArchiveMetrics();
+    }
+
+    @Bean
+    public ArchiveEndpoint archiveEndpoint() {
+        return new ArchiveEndpoint(archiveMetrics());
+    }
+
+    /**
+     * 归档，按frame.archive.interval-minutes定期执行
+     *
+     * @param dataSource        数据源
+     * @param sqlSessionFactory 取得逻辑删除值
+     * @param frameProperties   配置
+     * @return
+     */
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public LogicDeleteArchiver logicDeleteArchiver(DataSource dataSource, SqlSessionFactory sqlSessionFactory,
+                                                   FrameProperties frameProperties) {
+        String deletedValue = GlobalConfigUtils.getGlobalConfig(sqlSessionFactory.getConfiguration())
+                .getDbConfig().getLogicDeleteValue();
+        return new LogicDeleteArchiver(dataSource, frameProperties.getArchive(), deletedValue, archiveMetrics());
+    }
+
+    /**
+     * ArchiveQuery.span中的查询包含归档表
+     * 在分页拦截器（@Order最先注册）之前执行，分页的COUNT也按改写后的SQL
+     *
+     * @param frameProperties 配置
+     * @return
+     */
+    @Bean(name = "archiveQueryInterceptor")
+    public ArchiveQueryInterceptor archiveQueryInterceptor(FrameProperties frameProperties) {
+        FrameProperties.Archive archive = frameProperties.getArchive();
+        return new ArchiveQueryInterceptor(archive.getTables(), archive.getSuffix());
+    }
+}
@@ -10,25 +10,50 @@ import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
 import com.baomidou.mybatisplus.core.incrementer.IKeyGenerator;
 import com.baomidou.mybatisplus.core.injector.ISqlInjector;
 import com.baomidou.mybatisplus.extension.incrementer.OracleKeyGenerator;
-import com.baomidou.mybatisplus.extension.injector.LogicSqlInjector;
 import com.baomidou.mybatisplus.extension.plugins.OptimisticLockerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.PerformanceInterceptor;
 import com.baomidou.mybatisplus.extension.spring.MybatisMapperRefresh;
 import com.baomidou.mybatisplus.extension.spring.MybatisSqlSessionFactoryBean;
+import com.frame.common.base.config.FrameProperties;
+import com.frame.common.mybatis.cache.EntityCacheManager;
 import com.frame.common.mybatis.handler.SysMetaObjectHandler;
+import com.frame.common.mybatis.incrementer.HiLoIdentifierGenerator;
+import com.frame.common.mybatis.incrementer.IdentifierGenerator;
+import com.frame.common.mybatis.incrementer.IdentifierKeyGenerator;
+import com.frame.common.mybatis.incrementer.SnowflakeIdentifierGenerator;
+import com.frame.common.mybatis.injector.LogicDeleteSqlInjector;
+import com.frame.common.mybatis.interceptor.data.DataAuthCache;
 import com.frame.common.mybatis.interceptor.data.DataAuthInterceptor;
+import com.frame.common.mybatis.interceptor.metrics.SqlMetrics;
+import com.frame.common.mybatis.interceptor.metrics.SqlMetricsEndpoint;
+import com.frame.common.mybatis.interceptor.metrics.SqlMetricsInterceptor;
+import com.frame.common.mybatis.interceptor.page.PageCountCache;
 import com.frame.common.mybatis.interceptor.page.SortPaginationInterceptor;
+import com.frame.common.mybatis.service.IWorkerIdAssigner;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
 
+import javax.sql.DataSource;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @Configuration
@@ -37,18 +62,64 @@ import java.io.IOException;
 public class MybatisPlusConfig {
     /**
      * 分页
+     * 最先注册（最内层，在其他StatementHandler拦截器之后执行），数据权限、归档表等改写后的SQL再COUNT和分页
      *
+     * @param pageCountCache 分页COUNT缓存
      * @return
      */
     @Bean(name = "paginationInterceptor")
-    public PaginationInterceptor paginationInterceptor() {
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public PaginationInterceptor paginationInterceptor(PageCountCache pageCountCache) {
         SortPaginationInterceptor page = new SortPaginationInterceptor();
-        page.setDialectType("oracle");
+        //不指定方言，按数据源自动识别（Oracle/MySQL/H2），识别结果按数据源缓存
         page.setOverflow(true);
+        //SortPage.CountMode为CACHE/ESTIMATE时使用
+        page.setCountCache(pageCountCache);
         //分页count优化，需要的话请自行指定
         return page;
     }
 
+    /**
+     * 分页COUNT缓存，有效期为frame.mybatis.page-count-cache-seconds，最多frame.mybatis.page-count-cache-size条
+     * 缓存在节点内存中，写表时的清除不通知其它节点
+     *
+     * @param frameProperties 配置
+     * @return
+     */
+    @Bean
+    public PageCountCache pageCountCache(FrameProperties frameProperties) {
+        return new PageCountCache(frameProperties.getMybatis().getPageCountCacheSeconds(),
+                frameProperties.getMybatis().getPageCountCacheSize());
+    }
+
+    /**
+     * 实体缓存，实体类有@EntityCache注解时使用
+     *
+     * @return
+     */
+    @Bean
+    public EntityCacheManager entityCacheManager() {
+        return new EntityCacheManager();
+    }
+
+    /**
+     * 按ID并行查询用线程池，线程数和队列有上限，队列满时由调用线程执行
+     *
+     * @param frameProperties 配置
+     * @return
+     */
+    @Bean(name = "batchReadExecutor", destroyMethod = "shutdown")
+    public ExecutorService batchReadExecutor(FrameProperties frameProperties) {
+        int threads = Math.max(1, frameProperties.getMybatis().getParallelReadThreads());
+        AtomicInteger index = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads * 16),
+                r -> {
+                    Thread thread = new Thread(r, "batch-read-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
     /**
      * 乐观锁
      *
@@ -75,6 +146,33 @@ public class MybatisPlusConfig {
         return new MybatisMapperRefresh(loader.getResources("classpath*:mapper/**/*Mapper.xml"), sessionFactory, true);
     }
 
+    /**
+     * SQL执行统计，actuator endpoint为sqlmetrics，同时绑定到micrometer
+     *
+     * @return
+     */
+    @Bean
+    public SqlMetrics sqlMetrics() {
+        return new SqlMetrics();
+    }
+
+    /**
+     * SQL执行统计拦截器，线上使用，慢SQL阈值和采样率见frame.mybatis.slow-sql-*
+     *
+     * @param frameProperties 配置
+     * @return
+     */
+    @Bean(name = "sqlMetricsInterceptor")
+    public SqlMetricsInterceptor sqlMetricsInterceptor(FrameProperties frameProperties) {
+        FrameProperties.Mybatis mybatis = frameProperties.getMybatis();
+        return new SqlMetricsInterceptor(sqlMetrics(), mybatis.getSlowSqlMillis(), mybatis.getSlowSqlSampleRate());
+    }
+
+    @Bean
+    public SqlMetricsEndpoint sqlMetricsEndpoint() {
+        return new SqlMetricsEndpoint(sqlMetrics());
+    }
+
     /**
      * SQL 执行性能分析，开发环境使用，线上不推荐。
      * 设置 dev test 环境开启
@@ -104,6 +202,18 @@ public class MybatisPlusConfig {
     }
 
 
+    /**
+     * 数据权限条件缓存，有效期为frame.mybatis.data-auth-cache-seconds，最多4096条
+     * 用户退出时清除该用户的条件，角色、权限设置变更时调用evict/clear清除
+     *
+     * @param frameProperties 配置
+     * @return
+     */
+    @Bean
+    public DataAuthCache dataAuthCache(FrameProperties frameProperties) {
+        return new DataAuthCache(frameProperties.getMybatis().getDataAuthCacheSeconds(), 4096);
+    }
+
     /**
      * 自定义填充策略接口实现
      *
@@ -115,13 +225,13 @@ public class MybatisPlusConfig {
     }
 
     /**
-     * 逻辑删除配置
+     * 逻辑删除配置，删除时同时更新UPDATE_DATE（归档按删除时间计算保留天数）
      *
      * @return
      */
     @Bean(name = "sqlInjector")
     public ISqlInjector logicSqlInjector() {
-        return new LogicSqlInjector();
+        return new LogicDeleteSqlInjector();
     }
 
     /**
@@ -134,5 +244,77 @@ public class MybatisPlusConfig {
         return new OracleKeyGenerator();
     }
 
+    /**
+     * 按块取得序列的主键生成器，frame.mybatis.id-generator=hilo时使用
+     *
+     * @param dataSource      数据源
+     * @param frameProperties 配置
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "frame.mybatis", name = "id-generator", havingValue = "hilo")
+    public IdentifierGenerator hiLoIdentifierGenerator(DataSource dataSource, FrameProperties frameProperties) {
+        FrameProperties.Mybatis mybatis = frameProperties.getMybatis();
+        return new HiLoIdentifierGenerator(dataSource, keyGenerator(), mybatis.getIdBlockSize(), mybatis.getIdSequence());
+    }
+
+    /**
+     * snowflake主键生成器，frame.mybatis.id-generator=snowflake时使用
+     * 节点ID按frame.mybatis.worker-id、IWorkerIdAssigner、本机IP的顺序取得
+     *
+     * @param frameProperties  配置
+     * @param workerIdAssigner 节点ID分配
+     * @return
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "frame.mybatis", name = "id-generator", havingValue = "snowflake")
+    public IdentifierGenerator snowflakeIdentifierGenerator(FrameProperties frameProperties,
+                                                            ObjectProvider<IWorkerIdAssigner> workerIdAssigner) {
+        int workerId = frameProperties.getMybatis().getWorkerId();
+        if (workerId >= 0) {
+            return new SnowflakeIdentifierGenerator(workerId);
+        }
+        IWorkerIdAssigner assigner = workerIdAssigner.getIfAvailable();
+        if (assigner == null) {
+            return new SnowflakeIdentifierGenerator(localWorkerId());
+        }
+        //租约失效时不生成ID
+        return new SnowflakeIdentifierGenerator(assigner.assign(SnowflakeIdentifierGenerator.MAX_WORKER_ID), assigner::isValid);
+    }
+
+    /**
+     * 按本机IP的低10位生成节点ID，低10位相同的节点会重复，多节点部署时请设置worker-id或使用IWorkerIdAssigner
+     */
+    private static int localWorkerId() {
+        try {
+            byte[] address = InetAddress.getLocalHost().getAddress();
+            int workerId = ((address[address.length - 2] & 0xFF) << 8 | (address[address.length - 1] & 0xFF))
+                    & SnowflakeIdentifierGenerator.MAX_WORKER_ID;
+            log.warn("snowflake worker id is generated from local address:[{}]", workerId);
+            return workerId;
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("snowflake worker id can not be generated, set frame.mybatis.worker-id", e);
+        }
+    }
+
+    /**
+     * 配置了主键生成器时，替换INSERT statement的序列取得
+     *
+     * @param identifierGenerator 主键生成器
+     * @param sqlSessionFactory   SqlSessionFactory
+     * @return
+     */
+    @Bean
+    public SmartInitializingSingleton identifierKeyGeneratorInstaller(ObjectProvider<IdentifierGenerator> identifierGenerator,
+                                                                      ObjectProvider<SqlSessionFactory> sqlSessionFactory) {
+        return () -> {
+            IdentifierGenerator generator = identifierGenerator.getIfAvailable();
+            SqlSessionFactory factory = sqlSessionFactory.getIfAvailable();
+            if (generator != null && factory != null) {
+                IdentifierKeyGenerator.install(factory.getConfiguration(), generator);
+            }
+        };
+    }
+
 
 }
\ No newline at end of file
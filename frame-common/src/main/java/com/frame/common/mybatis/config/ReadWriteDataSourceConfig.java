@@ -0,0 +1,68 @@
+package com.frame.common.mybatis.config;
+
+import com.frame.common.base.config.FrameProperties;
+import com.frame.common.mybatis.datasource.ReadWriteRoutingDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离数据源，frame.datasource.enable=true时使用
+ * 主库使用spring.datasource，从库使用frame.datasource.replicas
+ *
+ * @author gaoly
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(prefix = "frame.datasource", name = "enable", havingValue = "true")
+public class ReadWriteDataSourceConfig {
+
+    /**
+     * 主从路由
+     *
+     * @param dataSourceProperties spring.datasource
+     * @param frameProperties      配置
+     * @return
+     */
+    @Bean(destroyMethod = "close")
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties dataSourceProperties,
+                                                                 FrameProperties frameProperties) {
+        FrameProperties.Datasource config = frameProperties.getDatasource();
+        DataSource primary = dataSourceProperties.initializeDataSourceBuilder().build();
+        List<DataSource> replicas = new ArrayList<>();
+        for (FrameProperties.Datasource.Replica replica : config.getReplicas()) {
+            DataSourceBuilder<?> builder = DataSourceBuilder.create()
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword());
+            if (StringUtils.isNotBlank(replica.getDriverClassName())) {
+                builder.driverClassName(replica.getDriverClassName());
+            }
+            replicas.add(builder.build());
+        }
+        log.info("read write routing datasource:[{} replicas, {}]", replicas.size(), config.getLoadBalance());
+        return new ReadWriteRoutingDataSource(primary, replicas, config);
+    }
+
+    /**
+     * 执行SQL时才取得连接，事务是否只读确定后再选择主从
+     *
+     * @param readWriteRoutingDataSource 主从路由
+     * @return
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+}
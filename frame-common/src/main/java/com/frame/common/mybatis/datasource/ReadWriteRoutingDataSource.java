@@ -0,0 +1,165 @@
+package com.frame.common.mybatis.datasource;
+
+import com.frame.common.base.config.FrameProperties;
+import com.frame.common.base.util.ThreadLocalUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * 读写分离数据源
+ * 只读事务使用从库，读写事务以及事务外的执行使用主库；
+ * 读写事务取得连接后记录写入时间，同一请求中此后stickyMillis以内的只读事务也使用主库
+ * </p>
+ * <p>
+ * 事务开始时还不能判断是否只读，需要用LazyConnectionDataSourceProxy包装，在执行SQL时取得连接。
+ * 从库取得连接失败时依次使用其他从库，全部失败时使用主库
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final FrameProperties.Datasource.LoadBalance loadBalance;
+
+    private final long stickyMillis;
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    /**
+     * @param primary  主库
+     * @param replicas 从库
+     * @param config   读写分离配置
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, FrameProperties.Datasource config) {
+        this.primary = primary;
+        for (DataSource replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        this.loadBalance = config.getLoadBalance();
+        this.stickyMillis = config.getStickyMillis();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return this.getConnection(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            return open(primary, username, password);
+        }
+        long now = System.currentTimeMillis();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            ThreadLocalUtil.setLastWriteTime(now);
+            return open(primary, username, password);
+        }
+        if (now - ThreadLocalUtil.getLastWriteTime() < stickyMillis) {
+            return open(primary, username, password);
+        }
+        int start = this.select();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            try {
+                return replica.open(username, password);
+            } catch (SQLException e) {
+                log.warn("replica connection error, try next:[{}]", e.getMessage());
+            }
+        }
+        log.warn("all replicas are unavailable, use primary");
+        return open(primary, username, password);
+    }
+
+    /**
+     * 选择从库
+     *
+     * @return 从库的index
+     */
+    private int select() {
+        int next = (counter.getAndIncrement() & Integer.MAX_VALUE) % replicas.size();
+        if (loadBalance != FrameProperties.Datasource.LoadBalance.LEAST_ACTIVE) {
+            return next;
+        }
+        // 使用中连接相同时按轮询顺序
+        int selected = next;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (next + i) % replicas.size();
+            int active = replicas.get(index).active.get();
+            if (active < min) {
+                min = active;
+                selected = index;
+            }
+        }
+        return selected;
+    }
+
+    private static Connection open(DataSource dataSource, String username, String password) throws SQLException {
+        return username == null ? dataSource.getConnection() : dataSource.getConnection(username, password);
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(primary);
+        for (Replica replica : replicas) {
+            close(replica.dataSource);
+        }
+    }
+
+    private static void close(DataSource dataSource) throws IOException {
+        if (dataSource instanceof Closeable) {
+            ((Closeable) dataSource).close();
+        }
+    }
+
+    /**
+     * 从库，记录使用中的连接数
+     */
+    private class Replica {
+        private final DataSource dataSource;
+        private final AtomicInteger active = new AtomicInteger();
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private Connection open(String username, String password) throws SQLException {
+            Connection connection = ReadWriteRoutingDataSource.open(dataSource, username, password);
+            if (loadBalance != FrameProperties.Datasource.LoadBalance.LEAST_ACTIVE) {
+                return connection;
+            }
+            active.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                            active.decrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.frame.common.mybatis.incrementer;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.annotation.KeySequence;
+import com.baomidou.mybatisplus.core.incrementer.IKeyGenerator;
+import com.baomidou.mybatisplus.extension.toolkit.JdbcUtils;
+import com.frame.common.base.exception.FunctionErrorException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>
+ * 按块取得序列的主键生成器（pooled hi/lo）
+ * 序列需要设置 INCREMENT BY 为blockSize，每次取得的序列值v保留[v, v + blockSize)的ID，
+ * 和直接使用序列的其它程序不会重复。序列名使用实体类的@KeySequence，没有时使用默认序列
+ * </p>
+ * <p>
+ * 序列第一次使用时（默认序列在创建时）检查INCREMENT BY是否为blockSize，不一致时各节点的块会重叠，抛出异常不生成ID。
+ * Oracle、H2按数据字典检查，其它数据库连续取得两次序列值按差值检查
+ * </p>
+ * <p>
+ * 块内的ID用CAS分配不加锁；块用完时取得新块的线程用CAS替换，替换失败的块放入备用队列之后使用
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class HiLoIdentifierGenerator implements IdentifierGenerator {
+
+    private static final String NO_SEQUENCE = "";
+
+    /**
+     * 各数据库取得序列INCREMENT BY的SQL
+     */
+    private static final Map<DbType, String> INCREMENT_SQL = new EnumMap<>(DbType.class);
+
+    static {
+        INCREMENT_SQL.put(DbType.ORACLE, "SELECT INCREMENT_BY FROM USER_SEQUENCES WHERE SEQUENCE_NAME = ?");
+        INCREMENT_SQL.put(DbType.H2, "SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?");
+    }
+
+    private final DataSource dataSource;
+
+    private final IKeyGenerator keyGenerator;
+
+    private final int blockSize;
+
+    private final String defaultSequence;
+
+    /**
+     * 实体类的序列名
+     */
+    private final Map<Class<?>, String> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * 序列名和ID块
+     */
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * @param dataSource      数据源，取得序列时使用独立的连接
+     * @param keyGenerator    取得序列值的SQL
+     * @param blockSize       每块的ID数量，和序列的INCREMENT BY一致
+     * @param defaultSequence 没有@KeySequence时使用的序列，为空时不生成
+     */
+    public HiLoIdentifierGenerator(DataSource dataSource, IKeyGenerator keyGenerator, int blockSize, String defaultSequence) {
+        this.dataSource = dataSource;
+        this.keyGenerator = keyGenerator;
+        this.blockSize = Math.max(1, blockSize);
+        this.defaultSequence = StringUtils.defaultString(defaultSequence);
+        if (!NO_SEQUENCE.equals(this.defaultSequence)) {
+            pools.computeIfAbsent(this.defaultSequence, Pool::new);
+        }
+    }
+
+    @Override
+    public String nextId(Class<?> entityClass) {
+        String sequence = sequences.computeIfAbsent(entityClass, this::getSequence);
+        if (NO_SEQUENCE.equals(sequence)) {
+            return null;
+        }
+        return String.valueOf(pools.computeIfAbsent(sequence, Pool::new).next());
+    }
+
+    private String getSequence(Class<?> entityClass) {
+        KeySequence keySequence = entityClass.getAnnotation(KeySequence.class);
+        return keySequence != null && StringUtils.isNotEmpty(keySequence.value()) ? keySequence.value() : defaultSequence;
+    }
+
+    /**
+     * 取得序列值
+     */
+    private long fetch(String sequence) {
+        String sql = keyGenerator.executeSql(sequence);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("sequence returned no value: " + sequence);
+            }
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            log.error("Error: Cannot fetch sequence:[{}]", sequence, e);
+            throw new FunctionErrorException(e);
+        }
+    }
+
+    /**
+     * 检查序列的INCREMENT BY和blockSize一致
+     *
+     * @throws IllegalStateException 不一致时
+     */
+    private void validate(String sequence) {
+        long increment;
+        try (Connection connection = dataSource.getConnection()) {
+            String sql = INCREMENT_SQL.get(JdbcUtils.getDbType(connection.getMetaData().getURL()));
+            if (sql == null) {
+                // 没有数据字典时按连续两次的差值，其它节点同时取得时差值为INCREMENT BY的倍数
+                long first = fetch(sequence);
+                long difference = fetch(sequence) - first;
+                increment = difference > 0 && difference % blockSize == 0 ? blockSize : difference;
+            } else {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    ps.setString(1, StringUtils.substringAfterLast("." + sequence, ".").toUpperCase(Locale.US));
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new IllegalStateException("sequence not found: " + sequence);
+                        }
+                        increment = rs.getLong(1);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Error: Cannot validate sequence:[{}]", sequence, e);
+            throw new FunctionErrorException(e);
+        }
+        if (increment != blockSize) {
+            throw new IllegalStateException("sequence " + sequence + " must be INCREMENT BY " + blockSize
+                    + " (frame.mybatis.id-block-size), but is " + increment);
+        }
+    }
+
+    /**
+     * 一个序列的ID块
+     */
+    private class Pool {
+        private final String sequence;
+        private final AtomicReference<Block> current = new AtomicReference<>();
+        private final Queue<Block> spare = new ConcurrentLinkedQueue<>();
+
+        private Pool(String sequence) {
+            validate(sequence);
+            this.sequence = sequence;
+        }
+
+        private long next() {
+            while (true) {
+                Block block = current.get();
+                if (block != null) {
+                    int index = block.next.getAndIncrement();
+                    if (index < blockSize) {
+                        return block.start + index;
+                    }
+                }
+                Block fresh = spare.poll();
+                if (fresh == null) {
+                    fresh = new Block(fetch(sequence));
+                }
+                if (!current.compareAndSet(block, fresh)) {
+                    spare.offer(fresh);
+                }
+            }
+        }
+    }
+
+    private static class Block {
+        private final long start;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private Block(long start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.frame.common.mybatis.incrementer;
+
+/**
+ * <p>
+ * 主键生成器，插入时ID为空的实体在本地生成ID，不再每次插入都取得序列
+ * 实现类需要支持多线程并发调用
+ * </p>
+ *
+ * @author gaoly
+ */
+public interface IdentifierGenerator {
+
+    /**
+     * 生成ID
+     *
+     * @param entityClass 实体类
+     * @return ID，不能生成时返回null，按原方式处理
+     */
+    String nextId(Class<?> entityClass);
+}
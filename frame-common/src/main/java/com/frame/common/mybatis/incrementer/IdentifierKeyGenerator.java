@@ -0,0 +1,84 @@
+package com.frame.common.mybatis.incrementer;
+
+import com.frame.common.base.model.BaseEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.keygen.SelectKeyGenerator;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+
+import java.sql.Statement;
+
+/**
+ * <p>
+ * 插入前用IdentifierGenerator设置ID
+ * 替换INSERT statement的序列（@KeySequence）取得，实体ID为空时在本地生成，
+ * 生成器不能生成ID时按原来的KeyGenerator处理
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class IdentifierKeyGenerator implements KeyGenerator {
+
+    private static final String KEY_GENERATOR = "keyGenerator";
+
+    private final IdentifierGenerator identifierGenerator;
+
+    private final KeyGenerator delegate;
+
+    private IdentifierKeyGenerator(IdentifierGenerator identifierGenerator, KeyGenerator delegate) {
+        this.identifierGenerator = identifierGenerator;
+        this.delegate = delegate;
+    }
+
+    /**
+     * 替换Configuration中INSERT statement的KeyGenerator
+     * 只替换序列和没有KeyGenerator的statement，自增主键（Jdbc3KeyGenerator）不处理
+     *
+     * @param configuration       Configuration
+     * @param identifierGenerator 主键生成器
+     */
+    public static void install(Configuration configuration, IdentifierGenerator identifierGenerator) {
+        int count = 0;
+        for (Object object : configuration.getMappedStatements()) {
+            // 短名重复时getMappedStatements中包含Ambiguity，同一statement也会以全名和短名出现两次
+            if (!(object instanceof MappedStatement)) {
+                continue;
+            }
+            MappedStatement ms = (MappedStatement) object;
+            KeyGenerator keyGenerator = ms.getKeyGenerator();
+            if (ms.getSqlCommandType() != SqlCommandType.INSERT || keyGenerator instanceof IdentifierKeyGenerator
+                    || !(keyGenerator instanceof SelectKeyGenerator || keyGenerator instanceof NoKeyGenerator)) {
+                continue;
+            }
+            SystemMetaObject.forObject(ms).setValue(KEY_GENERATOR, new IdentifierKeyGenerator(identifierGenerator, keyGenerator));
+            count++;
+        }
+        log.info("identifier key generator installed:[{} statements]", count);
+    }
+
+    @Override
+    public void processBefore(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        if (parameter instanceof BaseEntity) {
+            BaseEntity entity = (BaseEntity) parameter;
+            if (StringUtils.isEmpty(entity.getId())) {
+                entity.setId(identifierGenerator.nextId(entity.getClass()));
+            }
+            if (StringUtils.isNotEmpty(entity.getId())) {
+                return;
+            }
+        }
+        delegate.processBefore(executor, ms, stmt, parameter);
+    }
+
+    @Override
+    public void processAfter(Executor executor, MappedStatement ms, Statement stmt, Object parameter) {
+        delegate.processAfter(executor, ms, stmt, parameter);
+    }
+}
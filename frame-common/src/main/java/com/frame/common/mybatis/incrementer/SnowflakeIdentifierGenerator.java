@@ -0,0 +1,115 @@
+package com.frame.common.mybatis.incrementer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * <p>
+ * Snowflake主键生成器
+ * 41位时间（毫秒，从2020-01-01开始）+ 10位节点ID + 12位序号，转成13位定长的36进制字符串，按生成顺序递增
+ * </p>
+ * <p>
+ * 时间和序号保存在一个AtomicLong中用CAS更新不加锁；同一毫秒序号用完或者时钟回拨时
+ * 在上次的时间上继续递增，不等待时钟
+ * </p>
+ * <p>
+ * 节点ID按租约分配时，每次生成前检查租约，失效时抛出异常不生成ID（其他节点可能已经使用同一节点ID）
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class SnowflakeIdentifierGenerator implements IdentifierGenerator {
+
+    /**
+     * 2020-01-01 00:00:00 UTC
+     */
+    private static final long EPOCH = 1577836800000L;
+
+    private static final int WORKER_BITS = 10;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    /**
+     * 节点ID的最大值
+     */
+    public static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int ID_LENGTH = 13;
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+
+    private final long workerBits;
+
+    /**
+     * 节点ID是否有效
+     */
+    private final BooleanSupplier workerIdValid;
+
+    /**
+     * 时间 << SEQUENCE_BITS | 序号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    /**
+     * @param workerId 节点ID（0～1023）
+     */
+    public SnowflakeIdentifierGenerator(int workerId) {
+        this(workerId, () -> true);
+    }
+
+    /**
+     * @param workerId      节点ID（0～1023）
+     * @param workerIdValid 节点ID是否有效（如租约没有过期）
+     */
+    public SnowflakeIdentifierGenerator(int workerId, BooleanSupplier workerIdValid) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("worker id must be between 0 and " + MAX_WORKER_ID + ": " + workerId);
+        }
+        this.workerBits = (long) workerId << SEQUENCE_BITS;
+        this.workerIdValid = workerIdValid;
+        log.info("snowflake identifier generator worker id:[{}]", workerId);
+    }
+
+    @Override
+    public String nextId(Class<?> entityClass) {
+        return format(this.next());
+    }
+
+    /**
+     * 生成数值ID
+     *
+     * @return ID
+     */
+    public long next() {
+        if (!workerIdValid.getAsBoolean()) {
+            throw new IllegalStateException("snowflake worker id lease is lost, id can not be generated");
+        }
+        while (true) {
+            long last = state.get();
+            long now = System.currentTimeMillis() - EPOCH;
+            // 序号用完时进位到下一毫秒
+            long next = now > (last >>> SEQUENCE_BITS) ? now << SEQUENCE_BITS : last + 1;
+            if (state.compareAndSet(last, next)) {
+                return (next >>> SEQUENCE_BITS) << (WORKER_BITS + SEQUENCE_BITS) | workerBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 转成定长36进制字符串，字符串顺序和数值顺序一致
+     */
+    static String format(long id) {
+        char[] chars = new char[ID_LENGTH];
+        long value = id;
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            chars[i] = DIGITS[(int) (value % DIGITS.length)];
+            value /= DIGITS.length;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,76 @@
+package com.frame.common.mybatis.injector;
+
+import com.baomidou.mybatisplus.core.injector.AbstractMethod;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.extension.injector.LogicSqlInjector;
+import com.baomidou.mybatisplus.extension.injector.methods.LogicDelete;
+import com.baomidou.mybatisplus.extension.injector.methods.LogicDeleteBatchByIds;
+import com.baomidou.mybatisplus.extension.injector.methods.LogicDeleteById;
+import com.baomidou.mybatisplus.extension.injector.methods.LogicDeleteByMap;
+import com.frame.common.base.model.BaseEntity;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * 逻辑删除，删除时同时把UPDATE_DATE更新为删除时间
+ * 逻辑删除的UPDATE不经过自动填充，不更新时UPDATE_DATE为最后一次修改的时间，归档按UPDATE_DATE计算保留天数时会提前归档
+ * </p>
+ *
+ * @author gaoly
+ */
+public class LogicDeleteSqlInjector extends LogicSqlInjector {
+
+    @Override
+    public List<AbstractMethod> getMethodList() {
+        return super.getMethodList().stream().map(method -> {
+            if (method instanceof LogicDeleteById) {
+                return new LogicDeleteById() {
+                    @Override
+                    protected String sqlLogicSet(TableInfo table) {
+                        return logicSetWithDate(table);
+                    }
+                };
+            }
+            if (method instanceof LogicDeleteBatchByIds) {
+                return new LogicDeleteBatchByIds() {
+                    @Override
+                    protected String sqlLogicSet(TableInfo table) {
+                        return logicSetWithDate(table);
+                    }
+                };
+            }
+            if (method instanceof LogicDeleteByMap) {
+                return new LogicDeleteByMap() {
+                    @Override
+                    protected String sqlLogicSet(TableInfo table) {
+                        return logicSetWithDate(table);
+                    }
+                };
+            }
+            if (method instanceof LogicDelete) {
+                return new LogicDelete() {
+                    @Override
+                    protected String sqlLogicSet(TableInfo table) {
+                        return logicSetWithDate(table);
+                    }
+                };
+            }
+            return method;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * 逻辑删除的SET，有UPDATE_DATE字段时同时更新为当前时间
+     *
+     * @param table 表信息
+     * @return SET句
+     */
+    static String logicSetWithDate(TableInfo table) {
+        String set = "SET " + table.getLogicDeleteSql(false, true);
+        boolean hasUpdateDate = table.getFieldList().stream()
+                .anyMatch(field -> BaseEntity.UPDATE_DATE.equalsIgnoreCase(field.getColumn()));
+        return hasUpdateDate ? set + ", " + BaseEntity.UPDATE_DATE + " = CURRENT_TIMESTAMP" : set;
+    }
+}
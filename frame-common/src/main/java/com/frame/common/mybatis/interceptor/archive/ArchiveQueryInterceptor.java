@@ -0,0 +1,197 @@
+package com.frame.common.mybatis.interceptor.archive;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.frame.common.mybatis.archive.ArchiveQuery;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.*;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.ibatis.executor.statement.RoutingStatementHandler;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * 包含归档表的查询拦截器
+ * 在{@link ArchiveQuery#span}中执行的查询，把FROM、JOIN中的归档对象表改写为
+ * (SELECT * FROM 表 UNION ALL SELECT * FROM 归档表) 别名，不在span中时不解析SQL
+ * 分页拦截器按@Order最先注册（最内层），本拦截器先执行，COUNT也包含归档表
+ * </p>
+ * <p>
+ * WHERE中的子查询不改写；不能解析的SQL按原SQL执行
+ * </p>
+ *
+ * @author gaoly
+ */
+@Intercepts({@Signature(
+        type = StatementHandler.class,
+        method = "prepare",
+        args = {Connection.class, Integer.class}
+)})
+@Slf4j
+public class ArchiveQueryInterceptor implements Interceptor {
+
+    /**
+     * 最大缓存数量
+     */
+    private static final int MAX_SIZE = 1024;
+
+    /**
+     * 归档对象表（大写）
+     */
+    private final Set<String> tables = new HashSet<>();
+
+    private final String suffix;
+
+    /**
+     * 原SQL和改写后的SQL
+     */
+    private final Map<String, String> rewritten = new ConcurrentHashMap<>();
+
+    /**
+     * @param tables 归档对象表
+     * @param suffix 归档表名的后缀
+     */
+    public ArchiveQueryInterceptor(Collection<String> tables, String suffix) {
+        for (String table : tables) {
+            this.tables.add(table.toUpperCase(Locale.ROOT));
+        }
+        this.suffix = suffix;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!ArchiveQuery.isSpanning() || tables.isEmpty()) {
+            return invocation.proceed();
+        }
+        RoutingStatementHandler statementHandler = (RoutingStatementHandler) PluginUtils.realTarget(invocation.getTarget());
+        MetaObject metaObject = SystemMetaObject.forObject(statementHandler);
+        MappedStatement mappedStatement = (MappedStatement) metaObject.getValue("delegate.mappedStatement");
+        if (mappedStatement.getSqlCommandType() != SqlCommandType.SELECT) {
+            return invocation.proceed();
+        }
+        String sql = (String) metaObject.getValue("delegate.boundSql.sql");
+        String spanned = rewritten.get(sql);
+        if (spanned == null) {
+            spanned = this.rewrite(sql);
+            if (rewritten.size() >= MAX_SIZE) {
+                // 超出时全部清除，只影响性能
+                rewritten.clear();
+            }
+            rewritten.put(sql, spanned);
+        }
+        metaObject.setValue("delegate.boundSql.sql", spanned);
+        return invocation.proceed();
+    }
+
+    /**
+     * 改写归档对象表
+     *
+     * @param sql 原SQL
+     * @return 改写后的SQL，没有归档对象表或不能解析时返回原SQL
+     */
+    private String rewrite(String sql) {
+        try {
+            Statement statement = CCJSqlParserUtil.parse(sql);
+            if (!(statement instanceof Select)) {
+                return sql;
+            }
+            Select select = (Select) statement;
+            if (select.getWithItemsList() != null) {
+                for (WithItem withItem : select.getWithItemsList()) {
+                    this.rewrite(withItem.getSelectBody());
+                }
+            }
+            return this.rewrite(select.getSelectBody()) ? select.toString() : sql;
+        } catch (JSQLParserException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("archive query sql can not be parsed:[{}]", sql, e);
+            }
+            return sql;
+        }
+    }
+
+    /**
+     * @return 改写了时返回true
+     */
+    private boolean rewrite(SelectBody selectBody) throws JSQLParserException {
+        if (selectBody instanceof SetOperationList) {
+            boolean changed = false;
+            for (SelectBody body : ((SetOperationList) selectBody).getSelects()) {
+                changed |= this.rewrite(body);
+            }
+            return changed;
+        }
+        if (!(selectBody instanceof PlainSelect)) {
+            return false;
+        }
+        PlainSelect plainSelect = (PlainSelect) selectBody;
+        boolean changed = false;
+        FromItem fromItem = this.span(plainSelect.getFromItem());
+        if (fromItem != null) {
+            plainSelect.setFromItem(fromItem);
+            changed = true;
+        } else if (plainSelect.getFromItem() instanceof SubSelect) {
+            changed = this.rewrite(((SubSelect) plainSelect.getFromItem()).getSelectBody());
+        }
+        if (plainSelect.getJoins() != null) {
+            for (Join join : plainSelect.getJoins()) {
+                FromItem rightItem = this.span(join.getRightItem());
+                if (rightItem != null) {
+                    join.setRightItem(rightItem);
+                    changed = true;
+                } else if (join.getRightItem() instanceof SubSelect) {
+                    changed |= this.rewrite(((SubSelect) join.getRightItem()).getSelectBody());
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 归档对象表改写为UNION ALL的子查询
+     *
+     * @return 不是归档对象表时返回null
+     */
+    private FromItem span(FromItem fromItem) throws JSQLParserException {
+        if (!(fromItem instanceof Table)) {
+            return null;
+        }
+        Table table = (Table) fromItem;
+        String name = StringUtils.strip(table.getName(), "`\"");
+        if (!tables.contains(name.toUpperCase(Locale.ROOT))) {
+            return null;
+        }
+        String fullName = table.getSchemaName() == null ? name : table.getSchemaName() + "." + name;
+        Select union = (Select) CCJSqlParserUtil.parse("SELECT * FROM " + fullName
+                + " UNION ALL SELECT * FROM " + fullName + suffix);
+        SubSelect subSelect = new SubSelect();
+        subSelect.setSelectBody(union.getSelectBody());
+        subSelect.setAlias(table.getAlias() != null ? table.getAlias() : new Alias(name, false));
+        return subSelect;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof StatementHandler ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        if (log.isDebugEnabled()) {
+            log.debug("setProperties");
+        }
+    }
+}
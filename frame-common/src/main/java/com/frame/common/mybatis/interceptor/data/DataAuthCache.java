@@ -0,0 +1,131 @@
+package com.frame.common.mybatis.interceptor.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * <p>
+ * 数据权限条件缓存
+ * 以(authId, 模块代码)为key缓存IDataAuthService取得的权限条件，没有权限条件时也缓存；
+ * 用户退出时由Realm清除该用户的条件（重新登录后使用新的条件）；
+ * 用户的角色、权限设置变更时调用{@link #evict(String)}或者{@link #clear()}清除，
+ * 只清除本节点，其它节点按有效期（frame.mybatis.data-auth-cache-seconds）失效
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class DataAuthCache {
+
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    /**
+     * 缓存有效期（毫秒）
+     */
+    private final long ttlMillis;
+
+    /**
+     * 最大缓存数量
+     */
+    private final int maxSize;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param ttlSeconds 缓存有效期（秒）
+     * @param maxSize    最大缓存数量
+     */
+    public DataAuthCache(long ttlSeconds, int maxSize) {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 取得权限条件，没有缓存时通过loader取得后缓存
+     *
+     * @param authId     用户ID
+     * @param moduleCode 模块代码
+     * @param loader     取得权限条件
+     * @return 权限条件
+     */
+    public String get(String authId, String moduleCode, BiFunction<String, String, String> loader) {
+        String key = authId + KEY_SEPARATOR + moduleCode;
+        Entry entry = cache.get(key);
+        if (entry != null && entry.expireAt >= System.currentTimeMillis()) {
+            hits.increment();
+            return entry.authSql;
+        }
+        misses.increment();
+        String authSql = loader.apply(authId, moduleCode);
+        if (cache.size() >= maxSize) {
+            // 超出时全部清除，只影响性能
+            cache.clear();
+        }
+        cache.put(key, new Entry(authSql, System.currentTimeMillis() + ttlMillis));
+        return authSql;
+    }
+
+    /**
+     * 清除用户的全部权限条件
+     *
+     * @param authId 用户ID
+     */
+    public void evict(String authId) {
+        String prefix = authId + KEY_SEPARATOR;
+        cache.keySet().removeIf(key -> key.startsWith(prefix));
+        if (log.isDebugEnabled()) {
+            log.debug("evict data auth cache:[{}]", authId);
+        }
+    }
+
+    /**
+     * 清除用户指定模块的权限条件
+     *
+     * @param authId     用户ID
+     * @param moduleCode 模块代码
+     */
+    public void evict(String authId, String moduleCode) {
+        cache.remove(authId + KEY_SEPARATOR + moduleCode);
+    }
+
+    /**
+     * 清除全部缓存，角色的权限设置变更时使用
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * 缓存统计
+     *
+     * @return size/hits/misses/hitRate(%)
+     */
+    public Map<String, Long> getStats() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("size", (long) cache.size());
+        stats.put("hits", hit);
+        stats.put("misses", miss);
+        stats.put("hitRate", hit + miss == 0 ? 0L : hit * 100 / (hit + miss));
+        return stats;
+    }
+
+    private static class Entry {
+        private final String authSql;
+        private final long expireAt;
+
+        private Entry(String authSql, long expireAt) {
+            this.authSql = authSql;
+            this.expireAt = expireAt;
+        }
+    }
+}
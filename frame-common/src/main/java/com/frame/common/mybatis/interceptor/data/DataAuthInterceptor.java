@@ -17,8 +17,10 @@ import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.*;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.shiro.SecurityUtils;
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.sql.Connection;
@@ -39,11 +41,34 @@ import java.util.Properties;
         args = {Connection.class, Integer.class}
 )})
 @Slf4j
-public class DataAuthInterceptor extends AbstractSqlParserHandler implements Interceptor {
+public class DataAuthInterceptor extends AbstractSqlParserHandler implements Interceptor, SmartInitializingSingleton {
 
     @Autowired
     BeanFactory beanFactory;
 
+    /**
+     * 权限条件改写
+     */
+    private final DataAuthSqlParser dataAuthSqlParser = new DataAuthSqlParser(2048);
+
+    /**
+     * 启动后取得，执行SQL时不再查找bean
+     */
+    private FrameProperties frameProperties;
+    private volatile IDataAuthService dataAuthService;
+    private DataAuthCache dataAuthCache;
+
+    /**
+     * 启动后生成数据权限注解对应表，执行SQL时不再反射查找mapper
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        DataAuthUtils.register(beanFactory.getBean(SqlSessionFactory.class).getConfiguration());
+        this.frameProperties = beanFactory.getBean(FrameProperties.class);
+        this.dataAuthService = beanFactory.getBeanProvider(IDataAuthService.class).getIfAvailable();
+        this.dataAuthCache = beanFactory.getBeanProvider(DataAuthCache.class).getIfAvailable();
+    }
+
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
         RoutingStatementHandler statementHandler = (RoutingStatementHandler) PluginUtils.realTarget(invocation.getTarget());
@@ -71,7 +96,7 @@ public class DataAuthInterceptor extends AbstractSqlParserHandler implements Int
         }
         // 设置新的sql
         BoundSql boundSql = (BoundSql) metaObject.getValue("delegate.boundSql");
-        metaObject.setValue("delegate.boundSql.sql", getSql(boundSql.getSql(), dataAuth.value()));
+        metaObject.setValue("delegate.boundSql.sql", getSql(mappedStatement.getId(), boundSql.getSql(), dataAuth));
 
         return invocation.proceed();
     }
@@ -82,7 +107,6 @@ public class DataAuthInterceptor extends AbstractSqlParserHandler implements Int
      * @return
      */
     private boolean isSuperAdmin() {
-        FrameProperties frameProperties = beanFactory.getBean(FrameProperties.class);
         String adminAccount = StringUtils.trimToEmpty(frameProperties.getAuth().getAdminAccount());
         if (adminAccount.equals(ShiroUser.getCurrentUser().getAccount())) {
             return true;
@@ -93,24 +117,27 @@ public class DataAuthInterceptor extends AbstractSqlParserHandler implements Int
 
     /**
      * 权利控制代码拼装
+     * 权限条件直接加到目标表所在查询的WHERE中，不能改写时把原SQL包装成子查询
      *
-     * @param sql
-     * @param dataAuth
+     * @param statementId MappedStatement ID
+     * @param sql         原SQL
+     * @param dataAuth    数据权限注解
      * @return
-     * @throws Exception
      */
-    private String getSql(String sql, String dataAuth) throws Exception {
-        String authSql = this.getAuthSql(dataAuth);
-
-        StringBuilder sbSql = new StringBuilder("SELECT * FROM (")
-                .append(sql)
-                .append(" ) TBL  ");
-        if (StringUtils.isNotBlank(authSql)) {
-
-            sbSql.append(" WHERE ").append(authSql);
+    private String getSql(String statementId, String sql, DataAuth dataAuth) {
+        String authSql = this.getAuthSql(dataAuth.value());
+        if (StringUtils.isBlank(authSql)) {
+            return sql;
         }
-        return sbSql.toString();
-
+        String rewritten = dataAuthSqlParser.rewrite(statementId, dataAuth.value(), dataAuth.alias(), sql, authSql);
+        if (rewritten != null) {
+            return rewritten;
+        }
+        return new StringBuilder("SELECT * FROM (")
+                .append(sql)
+                .append(" ) TBL  ")
+                .append(" WHERE ").append(authSql)
+                .toString();
     }
 
     /**
@@ -123,10 +150,13 @@ public class DataAuthInterceptor extends AbstractSqlParserHandler implements Int
         // 获取登录id
         String staffId = ShiroUser.getCurrentUser().getAuthId();
         // 获取数据权限sql数据
-        IDataAuthService dataAuthService = beanFactory.getBean(IDataAuthService.class);
-
-        return dataAuthService.getDataAuth(staffId, dataAuth);
-
+        if (dataAuthService == null) {
+            dataAuthService = beanFactory.getBean(IDataAuthService.class);
+        }
+        if (dataAuthCache == null) {
+            return dataAuthService.getDataAuth(staffId, dataAuth);
+        }
+        return dataAuthCache.get(staffId, dataAuth, dataAuthService::getDataAuth);
     }
 
 
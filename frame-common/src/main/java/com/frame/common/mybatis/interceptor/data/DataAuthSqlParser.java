@@ -0,0 +1,279 @@
+package com.frame.common.mybatis.interceptor.data;
+
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.ExpressionVisitorAdapter;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.*;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * 数据权限SQL改写
+ * 把权限条件直接加到目标表所在查询的WHERE中，不再把整个SQL包装成子查询，
+ * 分页、COUNT的外层包装查询向内查找到实际查询表的查询；UNION的各个查询分别加条件。
+ * 改写结果以权限条件为占位符作为模板，按(statement, 模块代码, SQL)缓存
+ * </p>
+ * <p>
+ * 以下情况不能改写，返回null由调用方包装成子查询：
+ * 不能解析的SQL、WITH、GROUP BY、找不到目标表、没有指定别名时的多表查询以及查询字段有别名的单表查询
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class DataAuthSqlParser {
+
+    private static final String PLACEHOLDER_PREFIX = "__DATA_AUTH_";
+    private static final String PLACEHOLDER_SUFFIX = "__";
+    private static final Pattern PLACEHOLDER = Pattern.compile(PLACEHOLDER_PREFIX + "(\\d+)" + PLACEHOLDER_SUFFIX);
+    private static final Pattern GROUP_BY = Pattern.compile("\\bGROUP\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    /**
+     * 最大缓存数量
+     */
+    private final int maxSize;
+
+    /**
+     * 改写模板
+     */
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    /**
+     * 加上表别名的权限条件
+     */
+    private final Map<String, String> conditions = new ConcurrentHashMap<>();
+
+    public DataAuthSqlParser(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 把权限条件加到SQL中
+     *
+     * @param statementId MappedStatement ID
+     * @param moduleCode  模块代码
+     * @param alias       权限条件所属表的别名
+     * @param sql         原SQL
+     * @param authSql     权限条件
+     * @return 改写后的SQL，不能改写时返回null
+     */
+    public String rewrite(String statementId, String moduleCode, String alias, String sql, String authSql) {
+        String key = statementId + KEY_SEPARATOR + moduleCode + KEY_SEPARATOR + sql;
+        Template template = templates.get(key);
+        if (template == null) {
+            template = this.build(sql, alias);
+            put(templates, key, template);
+        }
+        if (template.parts == null) {
+            return null;
+        }
+        StringBuilder rewritten = new StringBuilder(template.parts[0]);
+        for (int i = 0; i < template.aliases.length; i++) {
+            String condition = this.qualify(authSql, template.aliases[i]);
+            if (condition == null) {
+                return null;
+            }
+            rewritten.append('(').append(condition).append(')').append(template.parts[i + 1]);
+        }
+        return rewritten.toString();
+    }
+
+    /**
+     * 清除缓存
+     */
+    public void clear() {
+        templates.clear();
+        conditions.clear();
+    }
+
+    private Template build(String sql, String alias) {
+        try {
+            Statement statement = CCJSqlParserUtil.parse(sql);
+            if (!(statement instanceof Select)) {
+                return Template.FALLBACK;
+            }
+            Select select = (Select) statement;
+            if (select.getWithItemsList() != null && !select.getWithItemsList().isEmpty()) {
+                return Template.FALLBACK;
+            }
+            List<String> aliases = new ArrayList<>();
+            if (!this.inject(select.getSelectBody(), alias, aliases) || aliases.isEmpty()) {
+                return Template.FALLBACK;
+            }
+            return Template.of(select.toString(), aliases);
+        } catch (JSQLParserException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("data auth sql can not be parsed, use subquery:[{}]", sql, e);
+            }
+            return Template.FALLBACK;
+        }
+    }
+
+    /**
+     * 在目标查询的WHERE中加入占位符
+     *
+     * @return 不能改写时返回false
+     */
+    private boolean inject(SelectBody selectBody, String alias, List<String> aliases) {
+        if (selectBody instanceof SetOperationList) {
+            for (SelectBody body : ((SetOperationList) selectBody).getSelects()) {
+                if (!this.inject(body, alias, aliases)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (!(selectBody instanceof PlainSelect)) {
+            return false;
+        }
+        PlainSelect plainSelect = (PlainSelect) selectBody;
+        FromItem fromItem = plainSelect.getFromItem();
+        boolean noJoin = plainSelect.getJoins() == null || plainSelect.getJoins().isEmpty();
+        if (fromItem instanceof SubSelect && noJoin) {
+            // 分页、COUNT等外层包装，向内查找
+            return this.inject(((SubSelect) fromItem).getSelectBody(), alias, aliases);
+        }
+        if (!(fromItem instanceof Table) || GROUP_BY.matcher(plainSelect.toString()).find()) {
+            return false;
+        }
+        String target = this.findTarget(plainSelect, alias, noJoin);
+        if (target == null) {
+            return false;
+        }
+        Column placeholder = new Column(PLACEHOLDER_PREFIX + aliases.size() + PLACEHOLDER_SUFFIX);
+        Expression where = plainSelect.getWhere();
+        plainSelect.setWhere(where == null ? placeholder : new AndExpression(new Parenthesis(where), placeholder));
+        aliases.add(target);
+        return true;
+    }
+
+    /**
+     * 取得权限条件所属表的别名
+     *
+     * @return 找不到时返回null
+     */
+    private String findTarget(PlainSelect plainSelect, String alias, boolean noJoin) {
+        if (StringUtils.isBlank(alias)) {
+            if (!noJoin || this.hasRenamedColumn(plainSelect)) {
+                return null;
+            }
+            return getName((Table) plainSelect.getFromItem());
+        }
+        List<FromItem> fromItems = new ArrayList<>();
+        fromItems.add(plainSelect.getFromItem());
+        if (!noJoin) {
+            for (Join join : plainSelect.getJoins()) {
+                fromItems.add(join.getRightItem());
+            }
+        }
+        for (FromItem fromItem : fromItems) {
+            if (fromItem instanceof Table && alias.equalsIgnoreCase(getName((Table) fromItem))) {
+                return getName((Table) fromItem);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查询字段是否有和字段名不同的别名，有时权限条件的字段可能是别名，不能加到WHERE中
+     */
+    private boolean hasRenamedColumn(PlainSelect plainSelect) {
+        for (SelectItem selectItem : plainSelect.getSelectItems()) {
+            if (selectItem instanceof SelectExpressionItem) {
+                SelectExpressionItem item = (SelectExpressionItem) selectItem;
+                if (item.getAlias() != null && !(item.getExpression() instanceof Column
+                        && ((Column) item.getExpression()).getColumnName().equalsIgnoreCase(item.getAlias().getName()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 权限条件中没有表名的字段加上表别名
+     *
+     * @return 不能解析时返回null
+     */
+    private String qualify(String authSql, String alias) {
+        String key = alias + KEY_SEPARATOR + authSql;
+        String condition = conditions.get(key);
+        if (condition != null) {
+            return condition;
+        }
+        try {
+            Expression expression = CCJSqlParserUtil.parseCondExpression(authSql);
+            // 不处理子查询中的字段
+            expression.accept(new ExpressionVisitorAdapter() {
+                @Override
+                public void visit(Column column) {
+                    if (column.getTable() == null || StringUtils.isBlank(column.getTable().getName())) {
+                        column.setTable(new Table(alias));
+                    }
+                }
+            });
+            condition = expression.toString();
+        } catch (JSQLParserException e) {
+            log.error("data auth condition can not be parsed:[{}]", authSql, e);
+            return null;
+        }
+        put(conditions, key, condition);
+        return condition;
+    }
+
+    private <V> void put(Map<String, V> cache, String key, V value) {
+        if (cache.size() >= maxSize) {
+            // 超出时全部清除，只影响性能
+            cache.clear();
+        }
+        cache.put(key, value);
+    }
+
+    private static String getName(Table table) {
+        return table.getAlias() != null ? table.getAlias().getName() : table.getName();
+    }
+
+    /**
+     * 改写模板，SQL按占位符分割，aliases为各占位符对应的表别名
+     */
+    private static class Template {
+        private static final Template FALLBACK = new Template(null, null);
+
+        private final String[] parts;
+        private final String[] aliases;
+
+        private Template(String[] parts, String[] aliases) {
+            this.parts = parts;
+            this.aliases = aliases;
+        }
+
+        private static Template of(String sql, List<String> injected) {
+            List<String> parts = new ArrayList<>();
+            List<String> aliases = new ArrayList<>();
+            Matcher matcher = PLACEHOLDER.matcher(sql);
+            int start = 0;
+            while (matcher.find()) {
+                parts.add(sql.substring(start, matcher.start()));
+                aliases.add(injected.get(Integer.parseInt(matcher.group(1))));
+                start = matcher.end();
+            }
+            parts.add(sql.substring(start));
+            return new Template(parts.toArray(new String[0]), aliases.toArray(new String[0]));
+        }
+    }
+}
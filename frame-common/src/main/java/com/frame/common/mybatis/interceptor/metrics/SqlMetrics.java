@@ -0,0 +1,99 @@
+package com.frame.common.mybatis.interceptor.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL执行统计
+ * 按MappedStatement ID保存统计，绑定Micrometer时每个statement第一次执行时注册一次指标，执行时不经过MeterRegistry
+ *
+ * @author gaoly
+ */
+public class SqlMetrics implements MeterBinder {
+
+    private static final String TAG_STATEMENT = "statement";
+
+    private final Map<String, SqlStatementMetrics> statements = new ConcurrentHashMap<>();
+
+    private volatile MeterRegistry meterRegistry;
+
+    /**
+     * 取得statement的统计，没有时生成
+     *
+     * @param id MappedStatement ID
+     * @return 统计
+     */
+    public SqlStatementMetrics get(String id) {
+        SqlStatementMetrics metrics = statements.get(id);
+        if (metrics != null) {
+            return metrics;
+        }
+        return statements.computeIfAbsent(id, key -> {
+            SqlStatementMetrics created = new SqlStatementMetrics(key);
+            MeterRegistry registry = meterRegistry;
+            if (registry != null) {
+                register(registry, created);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * 全部statement的统计快照
+     *
+     * @return statement ID和统计
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+        statements.forEach((id, metrics) -> snapshot.put(id, metrics.snapshot()));
+        return snapshot;
+    }
+
+    /**
+     * 指定statement的统计快照
+     *
+     * @param id MappedStatement ID
+     * @return 统计，没有时返回null
+     */
+    public Map<String, Object> snapshot(String id) {
+        SqlStatementMetrics metrics = statements.get(id);
+        return metrics == null ? null : metrics.snapshot();
+    }
+
+    /**
+     * 清除全部统计
+     */
+    public void reset() {
+        statements.values().forEach(SqlStatementMetrics::reset);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        statements.values().forEach(metrics -> register(registry, metrics));
+    }
+
+    private static void register(MeterRegistry registry, SqlStatementMetrics metrics) {
+        FunctionTimer.builder("frame.sql.execution", metrics, SqlStatementMetrics::getCalls,
+                SqlStatementMetrics::getTotalNanos, TimeUnit.NANOSECONDS)
+                .tag(TAG_STATEMENT, metrics.getId())
+                .register(registry);
+        TimeGauge.builder("frame.sql.execution.max", metrics, TimeUnit.NANOSECONDS, SqlStatementMetrics::getMaxNanos)
+                .tag(TAG_STATEMENT, metrics.getId())
+                .register(registry);
+        FunctionCounter.builder("frame.sql.errors", metrics, SqlStatementMetrics::getErrors)
+                .tag(TAG_STATEMENT, metrics.getId())
+                .register(registry);
+        FunctionCounter.builder("frame.sql.rows", metrics, SqlStatementMetrics::getRows)
+                .tag(TAG_STATEMENT, metrics.getId())
+                .register(registry);
+    }
+}
@@ -0,0 +1,39 @@
+package com.frame.common.mybatis.interceptor.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.Map;
+
+/**
+ * SQL执行统计 actuator endpoint
+ * GET /actuator/sqlmetrics 全部statement，GET /actuator/sqlmetrics/{id} 指定statement，DELETE 清除统计
+ *
+ * @author gaoly
+ */
+@Endpoint(id = "sqlmetrics")
+public class SqlMetricsEndpoint {
+
+    private final SqlMetrics sqlMetrics;
+
+    public SqlMetricsEndpoint(SqlMetrics sqlMetrics) {
+        this.sqlMetrics = sqlMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> statements() {
+        return sqlMetrics.snapshot();
+    }
+
+    @ReadOperation
+    public Map<String, Object> statement(@Selector String id) {
+        return sqlMetrics.snapshot(id);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        sqlMetrics.reset();
+    }
+}
@@ -0,0 +1,176 @@
+package com.frame.common.mybatis.interceptor.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * SQL执行统计拦截器
+ * 按MappedStatement记录执行次数、耗时分布、行数、批量执行数以及错误数；
+ * 超过阈值的SQL按采样率输出日志（包含参数值）
+ * </p>
+ *
+ * @author gaoly
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {})
+})
+@Slf4j
+public class SqlMetricsInterceptor implements Interceptor {
+
+    private static final String FLUSH_STATEMENTS = "flushStatements";
+
+    private final SqlMetrics sqlMetrics;
+
+    /**
+     * 慢SQL阈值（纳秒），0以下时不输出日志
+     */
+    private final long slowNanos;
+
+    /**
+     * 慢SQL日志采样率
+     */
+    private final double sampleRate;
+
+    /**
+     * @param sqlMetrics    统计
+     * @param slowSqlMillis 慢SQL阈值（毫秒）
+     * @param sampleRate    慢SQL日志采样率（0～1）
+     */
+    public SqlMetricsInterceptor(SqlMetrics sqlMetrics, long slowSqlMillis, double sampleRate) {
+        this.sqlMetrics = sqlMetrics;
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowSqlMillis);
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (FLUSH_STATEMENTS.equals(invocation.getMethod().getName())) {
+            return this.flushStatements(invocation);
+        }
+        Object[] args = invocation.getArgs();
+        MappedStatement mappedStatement = (MappedStatement) args[0];
+        long start = System.nanoTime();
+        Object result = null;
+        boolean error = true;
+        try {
+            result = invocation.proceed();
+            error = false;
+            return result;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            sqlMetrics.get(mappedStatement.getId()).record(nanos, rowCount(result), error);
+            if (slowNanos > 0 && nanos >= slowNanos && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+                this.logSlowSql(mappedStatement, args, nanos);
+            }
+        }
+    }
+
+    private Object flushStatements(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (result instanceof List) {
+            for (Object item : (List<?>) result) {
+                if (item instanceof BatchResult) {
+                    BatchResult batchResult = (BatchResult) item;
+                    long rows = 0;
+                    for (int count : batchResult.getUpdateCounts()) {
+                        if (count > 0) {
+                            rows += count;
+                        }
+                    }
+                    sqlMetrics.get(batchResult.getMappedStatement().getId())
+                            .recordBatch(batchResult.getUpdateCounts().length, rows);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 返回或影响的行数，批量执行时update返回的是负数
+     */
+    private static long rowCount(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Integer) {
+            return (Integer) result;
+        }
+        return -1;
+    }
+
+    private void logSlowSql(MappedStatement mappedStatement, Object[] args, long nanos) {
+        try {
+            Object parameter = args[1];
+            BoundSql boundSql = args.length == 6 ? (BoundSql) args[5] : mappedStatement.getBoundSql(parameter);
+            log.warn("slow sql:[{}] {}ms sql:[{}] parameters:{}", mappedStatement.getId(),
+                    TimeUnit.NANOSECONDS.toMillis(nanos), boundSql.getSql().replaceAll("\\s+", " "),
+                    getParameterValues(mappedStatement.getConfiguration(), boundSql, parameter));
+        } catch (Exception e) {
+            log.error("slow sql log error:[{}]", mappedStatement.getId(), e);
+        }
+    }
+
+    /**
+     * 和DefaultParameterHandler一样取得参数值
+     */
+    private static List<Object> getParameterValues(Configuration configuration, BoundSql boundSql, Object parameter) {
+        List<Object> values = new ArrayList<>();
+        MetaObject metaObject = null;
+        for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+            if (parameterMapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = parameterMapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameter == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameter.getClass())) {
+                value = parameter;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameter);
+                }
+                value = metaObject.getValue(property);
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    @Override
+    public Object plugin(Object target) {
+        return target instanceof Executor ? Plugin.wrap(target, this) : target;
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+        if (log.isDebugEnabled()) {
+            log.debug("setProperties");
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.frame.common.mybatis.interceptor.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个MappedStatement的执行统计
+ * 使用LongAdder分段计数，执行时不加锁
+ *
+ * @author gaoly
+ */
+public class SqlStatementMetrics {
+
+    /**
+     * 耗时分布的上限（毫秒），超过最后一个的计入最后一格
+     */
+    static final long[] BUCKET_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private static final long[] BUCKET_NANOS = new long[BUCKET_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            BUCKET_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BUCKET_MILLIS[i]);
+        }
+    }
+
+    private final String id;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0L);
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchRows = new LongAdder();
+    private final LongAdder[] histogram = new LongAdder[BUCKET_MILLIS.length + 1];
+
+    public SqlStatementMetrics(String id) {
+        this.id = id;
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次执行
+     *
+     * @param nanos    耗时（纳秒）
+     * @param rowCount 返回或影响的行数，不明时为负数
+     * @param error    是否出错
+     */
+    public void record(long nanos, long rowCount, boolean error) {
+        calls.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        if (error) {
+            errors.increment();
+        }
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+        int bucket = 0;
+        while (bucket < BUCKET_NANOS.length && nanos > BUCKET_NANOS[bucket]) {
+            bucket++;
+        }
+        histogram[bucket].increment();
+    }
+
+    /**
+     * 记录一次JDBC批量执行
+     *
+     * @param size     批次中的语句数
+     * @param rowCount 影响的行数
+     */
+    public void recordBatch(int size, long rowCount) {
+        batches.increment();
+        batchRows.add(size);
+        if (rowCount > 0) {
+            rows.add(rowCount);
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * 统计快照
+     *
+     * @return 执行次数、错误次数、行数、耗时、批量执行、耗时分布
+     */
+    public Map<String, Object> snapshot() {
+        long count = calls.sum();
+        long total = totalNanos.sum();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("calls", count);
+        snapshot.put("errors", errors.sum());
+        snapshot.put("rows", rows.sum());
+        snapshot.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(total));
+        snapshot.put("avgMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(total / count));
+        snapshot.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        snapshot.put("batches", batches.sum());
+        snapshot.put("batchRows", batchRows.sum());
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+            buckets.put("le" + BUCKET_MILLIS[i] + "ms", histogram[i].sum());
+        }
+        buckets.put("gt" + BUCKET_MILLIS[BUCKET_MILLIS.length - 1] + "ms", histogram[BUCKET_MILLIS.length].sum());
+        snapshot.put("histogram", buckets);
+        return snapshot;
+    }
+
+    /**
+     * 清除统计
+     */
+    public void reset() {
+        calls.reset();
+        errors.reset();
+        rows.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        batches.reset();
+        batchRows.reset();
+        for (LongAdder adder : histogram) {
+            adder.reset();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.frame.common.mybatis.interceptor.page;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 分页COUNT结果缓存
+ * 以规范化后的COUNT SQL和参数值为key，短时间内相同条件翻页不再重复COUNT；
+ * BaseServiceImpl写表时按表名清除相关的缓存
+ * 缓存在节点内存中，清除只对本节点有效，其它节点写表后最多在有效期内返回写表前的件数
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class PageCountCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * 缓存有效期（毫秒）
+     */
+    private final long ttlMillis;
+
+    /**
+     * 最大缓存数量
+     */
+    private final int maxSize;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttlSeconds 缓存有效期（秒）
+     * @param maxSize    最大缓存数量
+     */
+    public PageCountCache(long ttlSeconds, int maxSize) {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 生成缓存key
+     *
+     * @param countSql COUNT SQL
+     * @param params   参数值
+     * @return key
+     */
+    public String key(String countSql, Object[] params) {
+        StringBuilder key = new StringBuilder(WHITESPACE.matcher(countSql.trim()).replaceAll(" "));
+        for (Object param : params) {
+            key.append('|').append(param);
+        }
+        return key.toString();
+    }
+
+    /**
+     * 取得缓存的总数
+     *
+     * @param key 缓存key
+     * @return 总数，没有或者已过期时返回null
+     */
+    public Long get(String key) {
+        Entry entry = cache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            cache.remove(key, entry);
+            return null;
+        }
+        return entry.total;
+    }
+
+    /**
+     * 缓存总数
+     *
+     * @param key   缓存key
+     * @param total 总数
+     */
+    public void put(String key, long total) {
+        if (cache.size() >= maxSize) {
+            this.evictExpired();
+            if (cache.size() >= maxSize) {
+                // 仍然超出时全部清除，COUNT缓存丢失只影响性能
+                cache.clear();
+            }
+        }
+        cache.put(key, new Entry(total, System.currentTimeMillis() + ttlMillis,
+                key.toUpperCase(Locale.US)));
+    }
+
+    /**
+     * 清除引用了该表的缓存
+     *
+     * @param tableName 表名
+     */
+    public void evictTable(String tableName) {
+        if (StringUtils.isBlank(tableName) || cache.isEmpty()) {
+            return;
+        }
+        Pattern table = Pattern.compile("\\b" + Pattern.quote(tableName.toUpperCase(Locale.US)) + "\\b");
+        cache.entrySet().removeIf(e -> table.matcher(e.getValue().upperSql).find());
+        if (log.isDebugEnabled()) {
+            log.debug("evict page count cache:[{}]", tableName);
+        }
+    }
+
+    /**
+     * 清除全部缓存
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expireAt < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long total;
+        private final long expireAt;
+        private final String upperSql;
+
+        private Entry(long total, long expireAt, String upperSql) {
+            this.total = total;
+            this.expireAt = expireAt;
+            this.upperSql = upperSql;
+        }
+    }
+}
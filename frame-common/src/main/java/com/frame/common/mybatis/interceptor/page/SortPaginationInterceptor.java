@@ -4,29 +4,55 @@ import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.core.parser.ISqlParser;
 import com.baomidou.mybatisplus.core.parser.SqlInfo;
+import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
 import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.pagination.DialectFactory;
+import com.baomidou.mybatisplus.extension.plugins.pagination.DialectModel;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.toolkit.JdbcUtils;
 import com.baomidou.mybatisplus.extension.toolkit.SqlParserUtils;
+import com.frame.common.base.model.SortInfo;
 import com.frame.common.base.model.SortPage;
 import com.frame.common.mybatis.util.SortSqlUtils;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.plugin.*;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.RowBounds;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 import static org.apache.ibatis.session.RowBounds.NO_ROW_LIMIT;
 
@@ -40,6 +66,33 @@ import static org.apache.ibatis.session.RowBounds.NO_ROW_LIMIT;
 @Accessors(chain = true)
 @Intercepts({@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class})})
 public class SortPaginationInterceptor extends PaginationInterceptor implements Interceptor {
+    /**
+     * keyset定位条件的参数名前缀
+     */
+    private static final String KEYSET_PARAM = "keyset_param_";
+    /**
+     * keyset分页SQL的最大缓存数量
+     */
+    private static final int KEYSET_CACHE_SIZE = 1024;
+    private static final String KEY_SEPARATOR = "\u0000";
+    /**
+     * 只有逻辑删除条件的WHERE
+     */
+    private static final Pattern LOGIC_DELETE_WHERE = Pattern.compile("\\s*\\(?\\s*DELETE_FLAG\\s*=\\s*'?0'?\\s*\\)?\\s*",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern GROUP_BY = Pattern.compile("\\bGROUP\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+    /**
+     * 各数据库取得表统计行数的SQL
+     */
+    private static final Map<DbType, String> ESTIMATE_SQL = new EnumMap<>(DbType.class);
+
+    static {
+        ESTIMATE_SQL.put(DbType.ORACLE, "SELECT NUM_ROWS FROM USER_TABLES WHERE TABLE_NAME = ?");
+        ESTIMATE_SQL.put(DbType.MYSQL, "SELECT TABLE_ROWS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?");
+        ESTIMATE_SQL.put(DbType.MARIADB, "SELECT TABLE_ROWS FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?");
+        ESTIMATE_SQL.put(DbType.H2, "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = ?");
+    }
+
     /**
      * COUNT SQL 解析
      */
@@ -57,6 +110,20 @@ public class SortPaginationInterceptor extends PaginationInterceptor implements
      */
     private String dialectClazz;
 
+    /**
+     * 数据源对应的数据库类型缓存，避免每次查询都读取连接元数据
+     */
+    private final Map<DataSource, DbType> dbTypeCache = new ConcurrentHashMap<>();
+
+    /**
+     * keyset分页改写后的SQL
+     */
+    private final Map<String, String> keysetSqls = new ConcurrentHashMap<>();
+
+    /**
+     * COUNT结果缓存，CACHE/ESTIMATE方式使用，为空时每次COUNT
+     */
+    private PageCountCache countCache;
 
     /**
      * Physical Pagination Interceptor for all the queries with parameter
@@ -81,13 +148,13 @@ public class SortPaginationInterceptor extends PaginationInterceptor implements
         Object paramObj = boundSql.getParameterObject();
 
         // 判断参数里是否有page对象
-        IPage page = null;
+        IPage<?> page = null;
         if (paramObj instanceof IPage) {
-            page = (IPage) paramObj;
+            page = (IPage<?>) paramObj;
         } else if (paramObj instanceof Map) {
-            for (Object arg : ((Map) paramObj).values()) {
+            for (Object arg : ((Map<?, ?>) paramObj).values()) {
                 if (arg instanceof IPage) {
-                    page = (IPage) arg;
+                    page = (IPage<?>) arg;
                     break;
                 }
             }
@@ -107,34 +174,61 @@ public class SortPaginationInterceptor extends PaginationInterceptor implements
         String originalSql = boundSql.getSql();
         Connection connection = (Connection) invocation.getArgs()[0];
 
-        DbType dbType = StringUtils.isNotEmpty(dialectType) ? DbType.getDbType(dialectType)
-                : JdbcUtils.getDbType(connection.getMetaData().getURL());
+        DbType dbType = this.getDbType(mappedStatement, connection);
 
 
+        SortPage<?> sortPage = page instanceof SortPage ? (SortPage<?>) page : null;
+        SortPage.CountMode countMode = sortPage != null ? sortPage.getCountMode() : SortPage.CountMode.EXACT;
+        boolean keyset = sortPage != null && sortPage.isKeyset();
         boolean orderBy = true;
-        if (page.getTotal() == 0) {
+        // keyset分页只在第一页查询总数，之后的页不再COUNT；HAS_NEXT方式不查询总数
+        if (countMode != SortPage.CountMode.HAS_NEXT && page.getTotal() == 0
+                && (!keyset || CollectionUtils.isEmpty(sortPage.getSeekValues()))) {
             SqlInfo sqlInfo = SqlParserUtils.getOptimizeCountSql(page.optimizeCountSql(), sqlParser, originalSql);
             orderBy = sqlInfo.isOrderBy();
-            this.queryTotal(overflow, sqlInfo.getSql(), mappedStatement, boundSql, page, connection);
-            if (page.getTotal() <= 0) {
+            boolean exact = this.count(countMode, originalSql, sqlInfo.getSql(), mappedStatement, boundSql, page, connection, dbType);
+            // 缓存或者估算的总数可能过期，为0时仍按分页查询，不能查询全部数据
+            if (exact && page.getTotal() <= 0) {
                 return invocation.proceed();
             }
         }
+        Configuration configuration = mappedStatement.getConfiguration();
+        List<ParameterMapping> mappings = new ArrayList<>(boundSql.getParameterMappings());
+
         String buildSql = "";
-        if (page instanceof SortPage) {
-            SortPage rowBounds = (SortPage) page;
-            buildSql = SortSqlUtils.concatOrderBy(originalSql, rowBounds, orderBy);
+        IPage<?> dialectPage = page;
+        if (keyset) {
+            List<SortInfo> keys = sortPage.getKeysetOrders();
+            boolean seek = CollectionUtils.isNotEmpty(sortPage.getSeekValues());
+            buildSql = this.keysetSql(originalSql, keys, seek, connection);
+            if (seek) {
+                this.keysetConsumers(SortSqlUtils.getKeysetParams(keys, sortPage.getSeekValues()), mappings, configuration, boundSql);
+            }
+            // 定位条件已经跳过了之前的数据，不再需要OFFSET；多取一行用来判断是否有下一页（是否返回游标）
+            dialectPage = new LimitPage(0, page.getSize() + 1);
+        } else if (sortPage != null) {
+            buildSql = SortSqlUtils.concatOrderBy(originalSql, sortPage, orderBy);
         } else {
             buildSql = concatOrderBy(originalSql, page, orderBy);
         }
+        if (!keyset && countMode == SortPage.CountMode.HAS_NEXT) {
+            // 多取一行用来判断是否有下一页
+            dialectPage = new LimitPage(page.offset(), page.getSize() + 1);
+        }
 
-//        originalSql = DialectFactory.buildPaginationSql(page, buildSql, dbType, dialectClazz);
+        // 物理分页，按方言拼接 LIMIT/OFFSET 或 ROWNUM，分页参数以 ? 占位符追加
+        DialectModel model = DialectFactory.buildPaginationSql(dialectPage, buildSql, dbType, dialectClazz);
+        // 分页参数放入BoundSql的附加参数
+        Map<String, Object> pageParameters = new HashMap<>(4);
+        model.consumers(mappings, configuration, pageParameters);
+        pageParameters.forEach(boundSql::setAdditionalParameter);
 
         /*
          * <p> 禁用内存分页 </p>
          * <p> 内存分页会查询所有结果出来处理（这个很吓人的），如果结果变化频繁这个数据还会不准。</p>
          */
-        metaObject.setValue("delegate.boundSql.sql", originalSql);
+        metaObject.setValue("delegate.boundSql.sql", model.getDialectSql());
+        metaObject.setValue("delegate.boundSql.parameterMappings", mappings);
         metaObject.setValue("delegate.rowBounds.offset", RowBounds.NO_ROW_OFFSET);
         metaObject.setValue("delegate.rowBounds.limit", RowBounds.NO_ROW_LIMIT);
         return invocation.proceed();
@@ -142,6 +236,276 @@ public class SortPaginationInterceptor extends PaginationInterceptor implements
     }
 
 
+    /**
+     * 按总数查询方式取得总数
+     *
+     * @param countMode       总数查询方式
+     * @param originalSql     原SQL
+     * @param countSql        COUNT SQL
+     * @param mappedStatement MappedStatement
+     * @param boundSql        BoundSql
+     * @param page            分页对象
+     * @param connection      当前连接
+     * @param dbType          数据库类型
+     * @return 总数是本次COUNT的结果时返回true，缓存或者估算的总数时返回false
+     */
+    private boolean count(SortPage.CountMode countMode, String originalSql, String countSql, MappedStatement mappedStatement,
+                       BoundSql boundSql, IPage<?> page, Connection connection, DbType dbType) {
+        if (countMode == SortPage.CountMode.ESTIMATE) {
+            Long estimated = this.estimateTotal(originalSql, dbType, connection);
+            if (estimated != null) {
+                this.setTotal(page, estimated);
+                return false;
+            }
+        }
+        if (countCache == null || countMode == SortPage.CountMode.EXACT) {
+            this.queryTotal(overflow, countSql, mappedStatement, boundSql, page, connection);
+            return true;
+        }
+        String key = countCache.key(countSql, this.getParameterValues(mappedStatement.getConfiguration(), boundSql));
+        Long total = countCache.get(key);
+        if (total != null) {
+            this.setTotal(page, total);
+            return false;
+        }
+        this.queryTotal(overflow, countSql, mappedStatement, boundSql, page, connection);
+        countCache.put(key, page.getTotal());
+        return true;
+    }
+
+    /**
+     * 设置总数，溢出总页数时设置第一页
+     */
+    private void setTotal(IPage<?> page, long total) {
+        page.setTotal(total);
+        if (overflow && page.getCurrent() > page.getPages()) {
+            page.setCurrent(1);
+        }
+    }
+
+    /**
+     * 根据数据库统计信息估算总数
+     * 只处理单表且没有查询条件（逻辑删除条件除外）的查询，其它情况返回null
+     *
+     * @param originalSql 原SQL
+     * @param dbType      数据库类型
+     * @param connection  当前连接
+     * @return 估算的总数
+     */
+    private Long estimateTotal(String originalSql, DbType dbType, Connection connection) {
+        String statsSql = ESTIMATE_SQL.get(dbType);
+        if (statsSql == null) {
+            return null;
+        }
+        String tableName = this.getSingleTableName(originalSql);
+        if (tableName == null) {
+            return null;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(statsSql)) {
+            statement.setString(1, DbType.MYSQL == dbType || DbType.MARIADB == dbType ? tableName : tableName.toUpperCase(Locale.US));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    long total = resultSet.getLong(1);
+                    return resultSet.wasNull() || total <= 0 ? null : total;
+                }
+            }
+        } catch (SQLException e) {
+            log.error("estimate total error:[{}]", tableName, e);
+        }
+        return null;
+    }
+
+    /**
+     * 取得单表查询的表名
+     *
+     * @param originalSql 原SQL
+     * @return 表名，不是单表查询或者有查询条件时返回null
+     */
+    private String getSingleTableName(String originalSql) {
+        try {
+            Statement statement = CCJSqlParserUtil.parse(originalSql);
+            if (!(statement instanceof Select) || !(((Select) statement).getSelectBody() instanceof PlainSelect)) {
+                return null;
+            }
+            PlainSelect plainSelect = (PlainSelect) ((Select) statement).getSelectBody();
+            if (!(plainSelect.getFromItem() instanceof Table) || CollectionUtils.isNotEmpty(plainSelect.getJoins())
+                    || plainSelect.getDistinct() != null || GROUP_BY.matcher(plainSelect.toString()).find()) {
+                return null;
+            }
+            if (plainSelect.getWhere() != null && !LOGIC_DELETE_WHERE.matcher(plainSelect.getWhere().toString()).matches()) {
+                return null;
+            }
+            return ((Table) plainSelect.getFromItem()).getName().replace("\"", "").replace("`", "");
+        } catch (JSQLParserException e) {
+            log.error("parse sql error:[{}]", originalSql, e);
+            return null;
+        }
+    }
+
+    /**
+     * 取得SQL参数值，和DefaultParameterHandler的取值方式一致
+     *
+     * @param configuration Configuration
+     * @param boundSql      BoundSql
+     * @return 参数值
+     */
+    private Object[] getParameterValues(Configuration configuration, BoundSql boundSql) {
+        List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+        Object parameterObject = boundSql.getParameterObject();
+        Object[] values = new Object[parameterMappings.size()];
+        MetaObject parameterMeta = null;
+        for (int i = 0; i < parameterMappings.size(); i++) {
+            String property = parameterMappings.get(i).getProperty();
+            if (boundSql.hasAdditionalParameter(property)) {
+                values[i] = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                values[i] = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                values[i] = parameterObject;
+            } else {
+                if (parameterMeta == null) {
+                    parameterMeta = configuration.newMetaObject(parameterObject);
+                }
+                values[i] = parameterMeta.getValue(property);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 取得keyset分页SQL，按(原SQL, 排序键, 是否有定位条件)缓存，第一次改写时检查排序键是否为NOT NULL字段
+     *
+     * @param originalSql 原SQL
+     * @param keys        排序键
+     * @param seek        是否有定位条件
+     * @param connection  当前连接
+     * @return SQL
+     */
+    private String keysetSql(String originalSql, List<SortInfo> keys, boolean seek, Connection connection) throws SQLException {
+        StringBuilder key = new StringBuilder(originalSql).append(KEY_SEPARATOR).append(seek);
+        for (SortInfo sortInfo : keys) {
+            key.append(KEY_SEPARATOR).append(sortInfo.getProperty()).append(' ').append(sortInfo.getDirection());
+        }
+        String sql = keysetSqls.get(key.toString());
+        if (sql == null) {
+            this.checkKeysetColumns(originalSql, keys, connection);
+            sql = SortSqlUtils.concatKeyset(originalSql, keys, seek);
+            if (keysetSqls.size() >= KEYSET_CACHE_SIZE) {
+                // 超出时全部清除，只影响性能
+                keysetSqls.clear();
+            }
+            keysetSqls.put(key.toString(), sql);
+        }
+        return sql;
+    }
+
+    /**
+     * 检查keyset排序键是否为NOT NULL的字段
+     * NULL不能用比较条件定位，可能为NULL的字段以及找不到所属表的字段（表达式、子查询的字段）不能作为排序键
+     *
+     * @param originalSql 原SQL
+     * @param keys        排序键
+     * @param connection  当前连接
+     * @throws IllegalArgumentException 排序键可能为NULL时
+     */
+    private void checkKeysetColumns(String originalSql, List<SortInfo> keys, Connection connection) throws SQLException {
+        Map<String, String> tables = SortSqlUtils.getKeysetTables(originalSql);
+        DatabaseMetaData metaData = connection.getMetaData();
+        for (SortInfo sortInfo : keys) {
+            String property = sortInfo.getProperty();
+            int dot = property.lastIndexOf('.');
+            String column = property.substring(dot + 1);
+            Collection<String> candidates = dot < 0 ? tables.values()
+                    : Collections.singletonList(tables.get(property.substring(0, dot).toUpperCase(Locale.US)));
+            boolean notNull = false;
+            for (String table : candidates) {
+                if (table != null && this.isNotNullColumn(metaData, connection.getCatalog(), table, column)) {
+                    notNull = true;
+                    break;
+                }
+            }
+            if (!notNull) {
+                throw new IllegalArgumentException("keyset sort column must be a NOT NULL column: " + property);
+            }
+        }
+    }
+
+    /**
+     * 字段是否为NOT NULL，表名、字段名按原样、大写、小写查找
+     */
+    private boolean isNotNullColumn(DatabaseMetaData metaData, String catalog, String table, String column) throws SQLException {
+        for (String tableName : new String[]{table, table.toUpperCase(Locale.US), table.toLowerCase(Locale.US)}) {
+            for (String columnName : new String[]{column, column.toUpperCase(Locale.US), column.toLowerCase(Locale.US)}) {
+                try (ResultSet resultSet = metaData.getColumns(catalog, null, tableName, columnName)) {
+                    if (resultSet.next()) {
+                        return resultSet.getInt("NULLABLE") == DatabaseMetaData.columnNoNulls;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 追加keyset定位条件的参数
+     *
+     * @param seekParams    定位条件的参数值
+     * @param mappings      参数映射
+     * @param configuration Configuration
+     * @param boundSql      BoundSql，参数值作为附加参数
+     */
+    private void keysetConsumers(List<Object> seekParams, List<ParameterMapping> mappings, Configuration configuration,
+                                 BoundSql boundSql) {
+        for (int i = 0; i < seekParams.size(); i++) {
+            Object value = seekParams.get(i);
+            String property = KEYSET_PARAM + i;
+            mappings.add(new ParameterMapping.Builder(configuration, property,
+                    value == null ? Object.class : value.getClass()).build());
+            boundSql.setAdditionalParameter(property, value);
+        }
+    }
+
+    /**
+     * 取得数据库类型
+     * 优先使用配置的方言，未配置时按数据源缓存连接URL解析出的类型
+     *
+     * @param mappedStatement MappedStatement
+     * @param connection      当前连接
+     * @return 数据库类型
+     */
+    private DbType getDbType(MappedStatement mappedStatement, Connection connection) throws SQLException {
+        if (StringUtils.isNotEmpty(dialectType)) {
+            return DbType.getDbType(dialectType);
+        }
+        DataSource dataSource = mappedStatement.getConfiguration().getEnvironment().getDataSource();
+        DbType dbType = dbTypeCache.get(dataSource);
+        if (dbType == null) {
+            dbType = JdbcUtils.getDbType(connection.getMetaData().getURL());
+            dbTypeCache.putIfAbsent(dataSource, dbType);
+        }
+        return dbType;
+    }
+
+    /**
+     * 指定偏移量和行数的分页对象，用于keyset以及HAS_NEXT方式拼接方言SQL
+     */
+    private static class LimitPage extends Page<Object> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long offset;
+
+        private LimitPage(long offset, long limit) {
+            super(1, limit);
+            this.offset = offset;
+        }
+
+        @Override
+        public long offset() {
+            return offset;
+        }
+    }
+
     @Override
     public Object plugin(Object target) {
         if (target instanceof StatementHandler) {
@@ -0,0 +1,220 @@
+package com.frame.common.mybatis.loader;
+
+import com.frame.common.base.model.BaseEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * <p>
+ * 按ID批量读取，解决循环中按ID查询的N+1问题
+ * load(id)只登录ID并返回future，dispatch()时把登录的ID合并为一次按ID批量查询；
+ * load返回的future以及由它派生的future（thenApply、thenCompose等）调用get()/join()时，
+ * 自动dispatch本实例和当前请求中全部BatchLoader登录的ID，所以先对所有ID调用load再取得结果即可合并为一次查询
+ * </p>
+ * <p>
+ * CompletableFuture.allOf生成的future不会自动dispatch，需要使用{@link #allOf(CompletableFuture[])}；
+ * loadMany登录后立即dispatch，返回的future可以直接用于CompletableFuture.allOf
+ * </p>
+ * <p>
+ * 同一请求中按实体类共用一个实例（请求属性），查询结果在请求中缓存；
+ * 请求外使用时每次生成新的实例，不缓存。表数据变更时通过{@link #evict(Class)}清除
+ * </p>
+ *
+ * @param <T> 实体
+ * @author gaoly
+ */
+@Slf4j
+public class BatchLoader<T extends BaseEntity> {
+
+    private static final String ATTRIBUTE_PREFIX = BatchLoader.class.getName() + ".";
+
+    private final Function<Collection<String>, Collection<T>> batchFunction;
+
+    /**
+     * ID和查询结果
+     */
+    private final Map<String, DispatchingFuture<T>> futures = new HashMap<>();
+
+    /**
+     * 还没有查询的ID
+     */
+    private List<String> pending = new ArrayList<>();
+
+    /**
+     * @param batchFunction 按ID批量查询
+     */
+    public BatchLoader(Function<Collection<String>, Collection<T>> batchFunction) {
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * 取得当前请求中实体类的BatchLoader，没有时生成
+     *
+     * @param entityClass   实体类
+     * @param batchFunction 按ID批量查询
+     * @return BatchLoader
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends BaseEntity> BatchLoader<T> current(Class<T> entityClass,
+                                                               Function<Collection<String>, Collection<T>> batchFunction) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return new BatchLoader<>(batchFunction);
+        }
+        String name = ATTRIBUTE_PREFIX + entityClass.getName();
+        BatchLoader<T> loader = (BatchLoader<T>) attributes.getAttribute(name, RequestAttributes.SCOPE_REQUEST);
+        if (loader == null) {
+            loader = new BatchLoader<>(batchFunction);
+            attributes.setAttribute(name, loader, RequestAttributes.SCOPE_REQUEST);
+        }
+        return loader;
+    }
+
+    /**
+     * 清除当前请求中实体类的查询结果
+     *
+     * @param entityClass 实体类
+     */
+    public static void evict(Class<?> entityClass) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            BatchLoader<?> loader = (BatchLoader<?>) attributes.getAttribute(ATTRIBUTE_PREFIX + entityClass.getName(),
+                    RequestAttributes.SCOPE_REQUEST);
+            if (loader != null) {
+                loader.clear();
+            }
+        }
+    }
+
+    /**
+     * 登录要查询的ID
+     *
+     * @param id ID
+     * @return 查询结果，没有数据时为null
+     */
+    public synchronized CompletableFuture<T> load(String id) {
+        DispatchingFuture<T> future = futures.get(id);
+        if (future == null) {
+            future = new DispatchingFuture<>(this);
+            futures.put(id, future);
+            pending.add(id);
+        }
+        return future;
+    }
+
+    /**
+     * 登录要查询的ID，和之前登录的ID合并为一次查询后返回
+     *
+     * @param ids ID列表
+     * @return 查询结果，和ID的顺序一致
+     */
+    public List<CompletableFuture<T>> loadMany(Collection<String> ids) {
+        List<CompletableFuture<T>> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            list.add(this.load(id));
+        }
+        this.dispatch();
+        return list;
+    }
+
+    /**
+     * 全部完成时完成的future，get()/join()时和load返回的future一样先dispatch
+     *
+     * @param futures load返回的future
+     * @return 全部完成时完成的future
+     */
+    public static CompletableFuture<Void> allOf(CompletableFuture<?>... futures) {
+        BatchLoader<?> loader = null;
+        for (CompletableFuture<?> future : futures) {
+            if (future instanceof DispatchingFuture) {
+                loader = ((DispatchingFuture<?>) future).loader();
+                break;
+            }
+        }
+        return new DispatchingFuture<Void>(loader).wrap(CompletableFuture.allOf(futures));
+    }
+
+    /**
+     * 等待的future完成之前，dispatch指定的以及当前请求中的全部BatchLoader
+     * future的结果依赖其它BatchLoader（thenCompose等）时，完成的回调中登录的ID也在这里查询
+     *
+     * @param loader 登录ID的BatchLoader，可以为null
+     * @param future 等待的future
+     */
+    static void dispatchUntilDone(BatchLoader<?> loader, CompletableFuture<?> future) {
+        boolean dispatched = true;
+        while (!future.isDone() && dispatched) {
+            dispatched = loader != null && loader.dispatch();
+            for (BatchLoader<?> requestLoader : requestLoaders()) {
+                dispatched |= requestLoader.dispatch();
+            }
+        }
+    }
+
+    /**
+     * 当前请求中的全部BatchLoader
+     */
+    private static List<BatchLoader<?>> requestLoaders() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Collections.emptyList();
+        }
+        List<BatchLoader<?>> loaders = new ArrayList<>();
+        for (String name : attributes.getAttributeNames(RequestAttributes.SCOPE_REQUEST)) {
+            if (name.startsWith(ATTRIBUTE_PREFIX)) {
+                loaders.add((BatchLoader<?>) attributes.getAttribute(name, RequestAttributes.SCOPE_REQUEST));
+            }
+        }
+        return loaders;
+    }
+
+    /**
+     * 把登录的ID合并为一次查询，完成对应的future
+     *
+     * @return 有登录的ID并执行了查询时返回true
+     */
+    public boolean dispatch() {
+        List<String> ids;
+        Map<String, DispatchingFuture<T>> batch = new HashMap<>();
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return false;
+            }
+            ids = pending;
+            pending = new ArrayList<>();
+            for (String id : ids) {
+                batch.put(id, futures.get(id));
+            }
+        }
+        try {
+            for (T entity : batchFunction.apply(ids)) {
+                DispatchingFuture<T> future = batch.remove(entity.getId());
+                if (future != null) {
+                    future.complete(entity);
+                }
+            }
+            // 没有数据的ID
+            batch.values().forEach(future -> future.complete(null));
+        } catch (RuntimeException e) {
+            log.error("Error: Cannot execute BatchLoader dispatch. Cause", e);
+            batch.values().forEach(future -> future.completeExceptionally(e));
+            synchronized (this) {
+                // 出错的ID下次重新查询
+                batch.keySet().forEach(futures::remove);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 清除已经完成的查询结果，之后load时重新查询
+     */
+    public synchronized void clear() {
+        futures.values().removeIf(CompletableFuture::isDone);
+    }
+}
@@ -0,0 +1,20 @@
+package com.frame.common.mybatis.service;
+
+/**
+ * <p>
+ * 实体缓存清除通知，多节点部署时由实现类（如Redis发布订阅）通知其它节点清除缓存
+ * 收到其它节点的通知时调用 EntityCacheManager.onRemoteEvict
+ * </p>
+ *
+ * @author gaoly
+ */
+public interface IEntityCacheNotifier {
+    /**
+     * 通知其它节点清除实体缓存
+     *
+     * @param nodeId     发送节点ID，收到自己发送的通知时不处理
+     * @param entityName 实体类名
+     */
+    void publish(String nodeId, String entityName);
+
+}
@@ -0,0 +1,29 @@
+package com.frame.common.mybatis.service;
+
+/**
+ * <p>
+ * Snowflake主键生成器的节点ID分配，多节点部署时由实现类（如Redis）保证各节点的ID不重复
+ * 没有实现类并且没有设置frame.mybatis.worker-id时按本机IP生成
+ * </p>
+ *
+ * @author gaoly
+ */
+public interface IWorkerIdAssigner {
+    /**
+     * 分配节点ID
+     *
+     * @param maxWorkerId 节点ID的最大值
+     * @return 节点ID（0～maxWorkerId）
+     */
+    int assign(int maxWorkerId);
+
+    /**
+     * 分配的节点ID是否仍然有效（租约没有过期、没有被其他节点取得），无效时主键生成器不生成ID
+     *
+     * @return 有效时返回true
+     */
+    default boolean isValid() {
+        return true;
+    }
+
+}
@@ -0,0 +1,431 @@
+package com.frame.common.mybatis.util;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.metadata.TableFieldInfo;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.ReflectionKit;
+import com.frame.common.base.model.BaseEntity;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * 批量写入SQL工具类
+ * 直接生成JDBC批量执行的SQL，参数顺序由调用方按返回的属性列表设置
+ *
+ * @author gaoly
+ */
+public class BatchSqlUtils {
+    private BatchSqlUtils() {
+
+    }
+
+    /**
+     * 各数据库一条语句的最大参数个数
+     * Oracle INSERT ALL 的目标字段合计不能超过1000（ORA-24335）
+     */
+    private static final Map<DbType, Integer> MAX_PARAMETERS = new EnumMap<>(DbType.class);
+
+    static {
+        MAX_PARAMETERS.put(DbType.ORACLE, 999);
+        MAX_PARAMETERS.put(DbType.MYSQL, 65535);
+        MAX_PARAMETERS.put(DbType.MARIADB, 65535);
+        MAX_PARAMETERS.put(DbType.H2, 65535);
+    }
+
+    /**
+     * 各数据库按ID批量查询、删除时每次IN的ID数量，Oracle的IN最多1000个
+     */
+    private static final Map<DbType, Integer> IN_LIST_SIZE = new EnumMap<>(DbType.class);
+
+    static {
+        IN_LIST_SIZE.put(DbType.ORACLE, 1000);
+        IN_LIST_SIZE.put(DbType.MYSQL, 5000);
+        IN_LIST_SIZE.put(DbType.MARIADB, 5000);
+        IN_LIST_SIZE.put(DbType.H2, 5000);
+    }
+
+    /**
+     * 默认的每次IN的ID数量
+     *
+     * @param dbType 数据库类型
+     * @return ID数量
+     */
+    public static int getInListSize(DbType dbType) {
+        return IN_LIST_SIZE.getOrDefault(dbType, 1000);
+    }
+
+    /**
+     * 取得表的全部属性，主键在第一个
+     *
+     * @param tableInfo 表信息
+     * @return 属性名
+     */
+    public static List<String> getProperties(TableInfo tableInfo) {
+        List<String> properties = new ArrayList<>();
+        properties.add(tableInfo.getKeyProperty());
+        for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+            properties.add(fieldInfo.getProperty());
+        }
+        return properties;
+    }
+
+    /**
+     * 取得表的全部字段，主键在第一个，顺序与{@link #getProperties(TableInfo)}一致
+     *
+     * @param tableInfo 表信息
+     * @return 字段名
+     */
+    public static List<String> getColumns(TableInfo tableInfo) {
+        List<String> columns = new ArrayList<>();
+        columns.add(tableInfo.getKeyColumn());
+        for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+            columns.add(fieldInfo.getColumn());
+        }
+        return columns;
+    }
+
+    /**
+     * 取得表的全部属性类型，顺序与{@link #getProperties(TableInfo)}一致
+     *
+     * @param tableInfo 表信息
+     * @return 属性类型
+     */
+    public static List<Class<?>> getJavaTypes(TableInfo tableInfo) {
+        List<Class<?>> javaTypes = new ArrayList<>();
+        Field keyField = ReflectionKit.getFieldMap(tableInfo.getClazz()).get(tableInfo.getKeyProperty());
+        javaTypes.add(keyField == null ? null : keyField.getType());
+        for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+            javaTypes.add(fieldInfo.getPropertyType());
+        }
+        return javaTypes;
+    }
+
+    /**
+     * 是否支持单语句upsert
+     *
+     * @param dbType 数据库类型
+     * @return 是否支持
+     */
+    public static boolean supportUpsert(DbType dbType) {
+        return dbType == DbType.ORACLE || dbType == DbType.MYSQL || dbType == DbType.MARIADB || dbType == DbType.H2;
+    }
+
+    /**
+     * 是否支持多行插入
+     *
+     * @param dbType 数据库类型
+     * @return 是否支持
+     */
+    public static boolean supportMultiRowInsert(DbType dbType) {
+        return MAX_PARAMETERS.containsKey(dbType);
+    }
+
+    /**
+     * 一条多行插入语句的行数，不超过批次数量以及数据库的参数个数限制
+     *
+     * @param dbType      数据库类型
+     * @param columnCount 每行字段数
+     * @param batchSize   批次数量
+     * @return 行数
+     */
+    public static int getMultiRowSize(DbType dbType, int columnCount, int batchSize) {
+        int maxParameters = MAX_PARAMETERS.getOrDefault(dbType, 2000);
+        return Math.max(1, Math.min(batchSize, maxParameters / columnCount));
+    }
+
+    /**
+     * 生成多行插入SQL，参数按行依次排列，每行顺序与{@link #getProperties(TableInfo)}一致
+     * MySQL/H2: INSERT INTO ... VALUES (...),(...)，Oracle: INSERT ALL INTO ... SELECT 1 FROM DUAL
+     *
+     * @param dbType    数据库类型
+     * @param tableInfo 表信息
+     * @param rows      行数
+     * @return SQL
+     */
+    public static String buildMultiRowInsertSql(DbType dbType, TableInfo tableInfo, int rows) {
+        List<String> columns = getColumns(tableInfo);
+        StringJoiner placeholders = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < columns.size(); i++) {
+            placeholders.add("?");
+        }
+        String into = tableInfo.getTableName() + " (" + String.join(", ", columns) + ") VALUES ";
+        StringBuilder sql = new StringBuilder();
+        if (dbType == DbType.ORACLE) {
+            sql.append("INSERT ALL");
+            for (int i = 0; i < rows; i++) {
+                sql.append(" INTO ").append(into).append(placeholders);
+            }
+            return sql.append(" SELECT 1 FROM DUAL").toString();
+        }
+        sql.append("INSERT INTO ").append(into);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(placeholders);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 生成单语句upsert SQL，一行数据一组参数，参数顺序与{@link #getProperties(TableInfo)}一致
+     * <p>
+     * 已存在的数据只在版本号一致（或者没有传入版本号）并且没有逻辑删除时更新，版本号加1；
+     * 传入的null值不覆盖数据库中的值，创建者、创建日期和逻辑删除标识不更新。
+     * MySQL不满足条件时影响行数仍可能为1（CLIENT_FOUND_ROWS），冲突由调用方执行前加锁查询判断
+     * </p>
+     *
+     * @param dbType         数据库类型 Oracle: MERGE，MySQL: ON DUPLICATE KEY UPDATE，H2: MERGE USING
+     * @param tableInfo      表信息
+     * @param notDeleteValue 逻辑未删除值
+     * @return SQL
+     */
+    public static String buildUpsertSql(DbType dbType, TableInfo tableInfo, String notDeleteValue) {
+        List<String> columns = getColumns(tableInfo);
+        String keyColumn = tableInfo.getKeyColumn();
+        String notDeleted = toLiteral(notDeleteValue);
+        if (dbType == DbType.MYSQL || dbType == DbType.MARIADB) {
+            return buildMysqlUpsertSql(tableInfo.getTableName(), keyColumn, columns, notDeleted);
+        }
+        return buildMergeSql(dbType, tableInfo, columns, notDeleted);
+    }
+
+    /**
+     * 生成按ID查询版本号和逻辑删除标识的SQL，参数为ID，结果依次为主键、版本号、逻辑删除标识
+     *
+     * @param tableInfo 表信息
+     * @param size      ID数量
+     * @param forUpdate 是否加锁
+     * @return SQL
+     */
+    public static String buildSelectVersionSql(TableInfo tableInfo, int size, boolean forUpdate) {
+        StringJoiner placeholders = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < size; i++) {
+            placeholders.add("?");
+        }
+        String sql = "SELECT " + tableInfo.getKeyColumn() + ", " + BaseEntity.VERSION_NUM + ", " + BaseEntity.DELETE_FLAG
+                + " FROM " + tableInfo.getTableName() + " WHERE " + tableInfo.getKeyColumn() + " IN " + placeholders;
+        return forUpdate ? sql + " FOR UPDATE" : sql;
+    }
+
+    /**
+     * H2的USING子查询中参数没有类型时不能解析，按属性类型CAST
+     */
+    private static String buildMergeSql(DbType dbType, TableInfo tableInfo, List<String> columns, String notDeleted) {
+        String tableName = tableInfo.getTableName();
+        String keyColumn = tableInfo.getKeyColumn();
+        List<Class<?>> javaTypes = getJavaTypes(tableInfo);
+        StringJoiner source = new StringJoiner(", ");
+        StringJoiner update = new StringJoiner(", ");
+        StringJoiner insertColumns = new StringJoiner(", ");
+        StringJoiner insertValues = new StringJoiner(", ");
+        for (int i = 0; i < columns.size(); i++) {
+            String column = columns.get(i);
+            if (dbType == DbType.H2) {
+                source.add("CAST(? AS " + getCastType(javaTypes.get(i)) + ") AS " + column);
+            } else {
+                source.add("? AS " + column);
+            }
+            insertColumns.add(column);
+            insertValues.add("S." + column);
+            if (isUpdatable(column, keyColumn)) {
+                update.add("T." + column + " = COALESCE(S." + column + ", T." + column + ")");
+            }
+        }
+        update.add("T." + BaseEntity.VERSION_NUM + " = T." + BaseEntity.VERSION_NUM + " + 1");
+        String versionMatch = "(S." + BaseEntity.VERSION_NUM + " IS NULL OR T." + BaseEntity.VERSION_NUM
+                + " = S." + BaseEntity.VERSION_NUM + ") AND T." + BaseEntity.DELETE_FLAG + " = " + notDeleted;
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(tableName)
+                .append(" T USING (SELECT ").append(source).append(" FROM DUAL) S ON (T.")
+                .append(keyColumn).append(" = S.").append(keyColumn).append(')');
+        if (dbType == DbType.H2) {
+            sql.append(" WHEN MATCHED AND ").append(versionMatch).append(" THEN UPDATE SET ").append(update);
+        } else {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ").append(update).append(" WHERE ").append(versionMatch);
+        }
+        return sql.append(" WHEN NOT MATCHED THEN INSERT (").append(insertColumns)
+                .append(") VALUES (").append(insertValues).append(')').toString();
+    }
+
+    private static String buildMysqlUpsertSql(String tableName, String keyColumn, List<String> columns, String notDeleted) {
+        StringJoiner insertColumns = new StringJoiner(", ");
+        StringJoiner insertValues = new StringJoiner(", ");
+        StringJoiner update = new StringJoiner(", ");
+        String versionMatch = "((VALUES(" + BaseEntity.VERSION_NUM + ") IS NULL OR " + BaseEntity.VERSION_NUM
+                + " = VALUES(" + BaseEntity.VERSION_NUM + ")) AND " + BaseEntity.DELETE_FLAG + " = " + notDeleted + ")";
+        for (String column : columns) {
+            insertColumns.add(column);
+            insertValues.add("?");
+            if (isUpdatable(column, keyColumn)) {
+                update.add(column + " = IF(" + versionMatch + ", COALESCE(VALUES(" + column + "), " + column + "), " + column + ")");
+            }
+        }
+        // 版本号最后更新，之前的字段比较的都是更新前的版本号
+        update.add(BaseEntity.VERSION_NUM + " = IF(" + versionMatch + ", " + BaseEntity.VERSION_NUM + " + 1, "
+                + BaseEntity.VERSION_NUM + ")");
+        return "INSERT INTO " + tableName + " (" + insertColumns + ") VALUES (" + insertValues
+                + ") ON DUPLICATE KEY UPDATE " + update;
+    }
+
+    /**
+     * 生成只更新指定字段的SQL，一行数据一组参数
+     * 参数顺序为：指定属性的值，主键，数据库中的版本号（null时为0），逻辑未删除值。
+     * 版本号不一致时影响行数为0，由调用方判断为版本冲突
+     *
+     * @param tableInfo  表信息
+     * @param properties 要更新的属性
+     * @return SQL
+     */
+    public static String buildPartialUpdateSql(TableInfo tableInfo, List<String> properties) {
+        StringJoiner update = new StringJoiner(", ");
+        for (String property : properties) {
+            update.add(getColumn(tableInfo, property) + " = ?");
+        }
+        update.add(BaseEntity.VERSION_NUM + " = COALESCE(" + BaseEntity.VERSION_NUM + ", 0) + 1");
+        return "UPDATE " + tableInfo.getTableName() + " SET " + update + " WHERE " + tableInfo.getKeyColumn()
+                + " = ? AND COALESCE(" + BaseEntity.VERSION_NUM + ", 0) = ? AND " + BaseEntity.DELETE_FLAG + " = ?";
+    }
+
+    /**
+     * 属性对应的字段
+     *
+     * @param tableInfo 表信息
+     * @param property  属性名
+     * @return 字段名
+     */
+    public static String getColumn(TableInfo tableInfo, String property) {
+        if (property.equals(tableInfo.getKeyProperty())) {
+            return tableInfo.getKeyColumn();
+        }
+        for (TableFieldInfo fieldInfo : tableInfo.getFieldList()) {
+            if (fieldInfo.getProperty().equals(property)) {
+                return fieldInfo.getColumn();
+            }
+        }
+        throw new IllegalArgumentException("Unknown property: " + property);
+    }
+
+    /**
+     * 比较差异时的对象字段，排除版本号、逻辑删除标识以及创建、更新的审计字段
+     *
+     * @param column 字段名
+     * @return 是否比较
+     */
+    public static boolean isDiffColumn(String column) {
+        return !BaseEntity.VERSION_NUM.equalsIgnoreCase(column)
+                && !BaseEntity.DELETE_FLAG.equalsIgnoreCase(column)
+                && !BaseEntity.CREATE_USER.equalsIgnoreCase(column)
+                && !BaseEntity.CREATE_DATE.equalsIgnoreCase(column)
+                && !BaseEntity.UPDATE_USER.equalsIgnoreCase(column)
+                && !BaseEntity.UPDATE_DATE.equalsIgnoreCase(column);
+    }
+
+    /**
+     * 更新时要设置的字段，排除主键、版本号、逻辑删除标识、创建者、创建日期
+     */
+    private static boolean isUpdatable(String column, String keyColumn) {
+        return !column.equalsIgnoreCase(keyColumn)
+                && !BaseEntity.VERSION_NUM.equalsIgnoreCase(column)
+                && !BaseEntity.DELETE_FLAG.equalsIgnoreCase(column)
+                && !BaseEntity.CREATE_USER.equalsIgnoreCase(column)
+                && !BaseEntity.CREATE_DATE.equalsIgnoreCase(column);
+    }
+
+    /**
+     * 字符串常量
+     */
+    private static String toLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * 设置JDBC参数，java.time类型转换为java.sql类型，null值按属性类型设置SQL类型
+     *
+     * @param ps       PreparedStatement
+     * @param index    参数位置
+     * @param value    参数值
+     * @param javaType 属性类型
+     * @throws SQLException
+     */
+    public static void setParameter(PreparedStatement ps, int index, Object value, Class<?> javaType) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, getSqlType(javaType));
+        } else if (value instanceof LocalDateTime) {
+            ps.setTimestamp(index, Timestamp.valueOf((LocalDateTime) value));
+        } else if (value instanceof LocalDate) {
+            ps.setDate(index, java.sql.Date.valueOf((LocalDate) value));
+        } else if (value instanceof LocalTime) {
+            ps.setTime(index, java.sql.Time.valueOf((LocalTime) value));
+        } else if (value instanceof Date && !(value instanceof java.sql.Date) && !(value instanceof Timestamp)) {
+            ps.setTimestamp(index, new Timestamp(((Date) value).getTime()));
+        } else if (value instanceof Enum) {
+            ps.setString(index, ((Enum) value).name());
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    /**
+     * 属性类型对应的CAST类型名
+     */
+    private static String getCastType(Class<?> javaType) {
+        switch (getSqlType(javaType)) {
+            case Types.INTEGER:
+                return "INT";
+            case Types.BIGINT:
+                return "BIGINT";
+            case Types.DECIMAL:
+                return "DECIMAL";
+            case Types.DATE:
+                return "DATE";
+            case Types.TIMESTAMP:
+                return "TIMESTAMP";
+            case Types.BOOLEAN:
+                return "BOOLEAN";
+            default:
+                return "VARCHAR";
+        }
+    }
+
+    /**
+     * 属性类型对应的SQL类型
+     */
+    private static int getSqlType(Class<?> javaType) {
+        if (javaType == null || String.class.equals(javaType) || Enum.class.isAssignableFrom(javaType)) {
+            return Types.VARCHAR;
+        }
+        if (Integer.class.equals(javaType) || Short.class.equals(javaType)) {
+            return Types.INTEGER;
+        }
+        if (Long.class.equals(javaType)) {
+            return Types.BIGINT;
+        }
+        if (BigDecimal.class.equals(javaType) || Number.class.isAssignableFrom(javaType)) {
+            return Types.DECIMAL;
+        }
+        if (LocalDate.class.equals(javaType) || java.sql.Date.class.equals(javaType)) {
+            return Types.DATE;
+        }
+        if (Date.class.isAssignableFrom(javaType) || LocalDateTime.class.equals(javaType)) {
+            return Types.TIMESTAMP;
+        }
+        if (Boolean.class.equals(javaType)) {
+            return Types.BOOLEAN;
+        }
+        return Types.VARCHAR;
+    }
+}
@@ -3,8 +3,12 @@ package com.frame.common.mybatis.util;
 import com.frame.common.mybatis.annotation.DataAuth;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
 
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author gaoly
@@ -15,26 +19,83 @@ public class DataAuthUtils {
 
     }
 
+    /**
+     * MappedStatement ID对应的数据权限注解，没有注解的为空
+     */
+    private static final Map<String, Optional<DataAuth>> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * 启动时按所有mapper的方法生成注解对应表
+     *
+     * @param configuration Configuration
+     */
+    public static void register(Configuration configuration) {
+        for (Class<?> mapper : configuration.getMapperRegistry().getMappers()) {
+            Map<String, DataAuth> annotations = getDataAuthAnnotations(mapper);
+            for (Method method : mapper.getMethods()) {
+                String id = mapper.getName() + "." + method.getName();
+                REGISTRY.put(id, Optional.ofNullable(annotations.get(method.getName())));
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("data auth registry size:[{}]", REGISTRY.size());
+        }
+    }
+
+    /**
+     * 取得MappedStatement的数据权限注解
+     * 启动时没有登录的statement（如派生的statement）第一次使用时查找后缓存
+     *
+     * @param mappedStatement MappedStatement
+     * @return 没有注解时返回null
+     */
     public static DataAuth getDataAuthAnnotation(MappedStatement mappedStatement) {
-        DataAuth dataAuth = null;
+        return getDataAuthAnnotation(mappedStatement.getId());
+    }
+
+    private static DataAuth getDataAuthAnnotation(String id) {
+        Optional<DataAuth> dataAuth = REGISTRY.get(id);
+        if (dataAuth == null) {
+            dataAuth = findDataAuthAnnotation(id);
+            REGISTRY.putIfAbsent(id, dataAuth);
+        }
+        return dataAuth.orElse(null);
+    }
+
+    private static Optional<DataAuth> findDataAuthAnnotation(String statementId) {
+        // 派生的statement使用原statement的注解
+        String id = MappedStatementUtils.getSourceStatementId(statementId);
+        if (!id.equals(statementId)) {
+            return Optional.ofNullable(getDataAuthAnnotation(id));
+        }
+        int index = id.lastIndexOf('.');
+        if (index < 0) {
+            return Optional.empty();
+        }
         try {
-            String id = mappedStatement.getId();
             // 获取mapper类名
-            String className = id.substring(0, id.lastIndexOf('.'));
+            String className = id.substring(0, index);
             // 获取mapper的方法名
-            String methodName = id.substring(id.lastIndexOf('.') + 1, id.length());
-            final Class cls = Class.forName(className);
-            final Method[] method = cls.getMethods();
-            for (Method me : method) {
-                if (me.getName().equals(methodName) && me.isAnnotationPresent(DataAuth.class)) {
-                    dataAuth = me.getAnnotation(DataAuth.class);
-                }
-            }
+            String methodName = id.substring(index + 1);
+            return Optional.ofNullable(getDataAuthAnnotations(Class.forName(className)).get(methodName));
         } catch (ClassNotFoundException e) {
             if (log.isErrorEnabled()) {
-                log.error(mappedStatement.getId() + " class not found.");
+                log.error(id + " class not found.");
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * mapper中有数据权限注解的方法
+     */
+    private static Map<String, DataAuth> getDataAuthAnnotations(Class<?> mapper) {
+        Map<String, DataAuth> annotations = new ConcurrentHashMap<>();
+        for (Method method : mapper.getMethods()) {
+            if (method.isAnnotationPresent(DataAuth.class)) {
+                annotations.put(method.getName(), method.getAnnotation(DataAuth.class));
             }
         }
-        return dataAuth;
+        return annotations;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package com.frame.common.mybatis.util;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+/**
+ * MappedStatement派生工具类
+ *
+ * @author gaoly
+ */
+public class MappedStatementUtils {
+    private MappedStatementUtils() {
+
+    }
+
+    /**
+     * 流式查询用statement的后缀
+     */
+    private static final String STREAM_SUFFIX = "_stream_";
+
+    /**
+     * 指定结果类型的statement的后缀
+     */
+    private static final String RESULT_TYPE_SUFFIX = "_result_";
+
+    /**
+     * 取得指定fetchSize的流式查询statement
+     * 复制原statement，设置fetchSize、FORWARD_ONLY并关闭二级缓存，第一次使用时注册到Configuration
+     *
+     * @param configuration Configuration
+     * @param statementId   原statement
+     * @param fetchSize     JDBC fetchSize
+     * @return 流式查询statement
+     */
+    public static String fetchSizeStatement(Configuration configuration, String statementId, int fetchSize) {
+        String streamId = statementId + STREAM_SUFFIX + (fetchSize < 0 ? "m" + (-(long) fetchSize) : fetchSize);
+        if (configuration.hasStatement(streamId, false)) {
+            return streamId;
+        }
+        synchronized (configuration) {
+            if (!configuration.hasStatement(streamId, false)) {
+                MappedStatement ms = configuration.getMappedStatement(statementId);
+                MappedStatement.Builder builder = new MappedStatement.Builder(configuration, streamId,
+                        ms.getSqlSource(), ms.getSqlCommandType())
+                        .resource(ms.getResource())
+                        .fetchSize(fetchSize)
+                        .timeout(ms.getTimeout())
+                        .statementType(ms.getStatementType())
+                        .resultSetType(ResultSetType.FORWARD_ONLY)
+                        .parameterMap(ms.getParameterMap())
+                        .resultMaps(ms.getResultMaps())
+                        .keyGenerator(ms.getKeyGenerator())
+                        .databaseId(ms.getDatabaseId())
+                        .lang(ms.getLang())
+                        .resultOrdered(ms.isResultOrdered())
+                        .flushCacheRequired(false)
+                        .useCache(false);
+                configuration.addMappedStatement(builder.build());
+            }
+        }
+        return streamId;
+    }
+
+    /**
+     * 取得结果映射为指定类型的statement
+     * 复制原statement，结果按字段名自动映射到resultType，第一次使用时注册到Configuration
+     *
+     * @param configuration Configuration
+     * @param statementId   原statement
+     * @param resultType    结果类型
+     * @return 指定结果类型的statement
+     */
+    public static String resultTypeStatement(Configuration configuration, String statementId, Class<?> resultType) {
+        String resultId = statementId + RESULT_TYPE_SUFFIX + resultType.getName().replace('.', '_');
+        if (configuration.hasStatement(resultId, false)) {
+            return resultId;
+        }
+        synchronized (configuration) {
+            if (!configuration.hasStatement(resultId, false)) {
+                MappedStatement ms = configuration.getMappedStatement(statementId);
+                ResultMap resultMap = new ResultMap.Builder(configuration, resultId + "-Inline", resultType,
+                        new ArrayList<>(), null).build();
+                MappedStatement.Builder builder = new MappedStatement.Builder(configuration, resultId,
+                        ms.getSqlSource(), ms.getSqlCommandType())
+                        .resource(ms.getResource())
+                        .fetchSize(ms.getFetchSize())
+                        .timeout(ms.getTimeout())
+                        .statementType(ms.getStatementType())
+                        .resultSetType(ms.getResultSetType())
+                        .parameterMap(ms.getParameterMap())
+                        .resultMaps(Collections.singletonList(resultMap))
+                        .keyGenerator(ms.getKeyGenerator())
+                        .databaseId(ms.getDatabaseId())
+                        .lang(ms.getLang())
+                        .resultOrdered(ms.isResultOrdered())
+                        .flushCacheRequired(ms.isFlushCacheRequired())
+                        .useCache(false);
+                configuration.addMappedStatement(builder.build());
+            }
+        }
+        return resultId;
+    }
+
+    /**
+     * 取得派生statement的原statement
+     *
+     * @param statementId statement
+     * @return 派生的statement时返回原statement，否则原样返回
+     */
+    public static String getSourceStatementId(String statementId) {
+        for (String suffix : new String[]{STREAM_SUFFIX, RESULT_TYPE_SUFFIX}) {
+            int index = statementId.indexOf(suffix);
+            if (index > 0) {
+                return statementId.substring(0, index);
+            }
+        }
+        return statementId;
+    }
+}
@@ -0,0 +1,117 @@
+package com.frame.common.mybatis.util;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.conditions.segments.MergeSegments;
+import com.baomidou.mybatisplus.core.metadata.TableInfo;
+import com.baomidou.mybatisplus.core.toolkit.TableInfoHelper;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * DTO查询字段工具类
+ * 按DTO的属性取得实体中对应的字段，按(实体, DTO)缓存
+ *
+ * @author gaoly
+ */
+public class ProjectionUtils {
+    private ProjectionUtils() {
+
+    }
+
+    /**
+     * 实体类、DTO类和查询字段
+     */
+    private static final Map<Class<?>, Map<Class<?>, String>> SQL_SELECTS = new ConcurrentHashMap<>();
+
+    /**
+     * 取得DTO需要的查询字段，主键总是包含在内
+     * 字段名和属性名不对应时和实体查询一样加别名
+     *
+     * @param configuration Configuration
+     * @param entityClass   实体类
+     * @param dtoClass      DTO类
+     * @return 查询字段
+     */
+    public static String getSqlSelect(Configuration configuration, Class<?> entityClass, Class<?> dtoClass) {
+        return SQL_SELECTS.computeIfAbsent(entityClass, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(dtoClass, k -> buildSqlSelect(configuration, entityClass, dtoClass));
+    }
+
+    /**
+     * 指定查询字段的查询条件，其它部分使用原查询条件，不修改调用方的查询条件
+     *
+     * @param wrapper   原查询条件
+     * @param sqlSelect 查询字段
+     * @return 查询条件
+     */
+    public static <T> Wrapper<T> withSqlSelect(Wrapper<T> wrapper, String sqlSelect) {
+        return new SelectWrapper<>(wrapper, sqlSelect);
+    }
+
+    private static String buildSqlSelect(Configuration configuration, Class<?> entityClass, Class<?> dtoClass) {
+        TableInfo tableInfo = TableInfoHelper.getTableInfo(entityClass);
+        Set<String> properties = new HashSet<>(Arrays.asList(
+                configuration.getReflectorFactory().findForClass(dtoClass).getSetablePropertyNames()));
+        return tableInfo.chooseSelect(fieldInfo -> fieldInfo.isSelect() && properties.contains(fieldInfo.getProperty()));
+    }
+
+    /**
+     * 只替换查询字段的查询条件，条件、参数等委托给原查询条件
+     */
+    private static class SelectWrapper<T> extends Wrapper<T> {
+        private final Wrapper<T> delegate;
+        private final String sqlSelect;
+
+        private SelectWrapper(Wrapper<T> delegate, String sqlSelect) {
+            this.delegate = delegate;
+            this.sqlSelect = sqlSelect;
+        }
+
+        @Override
+        public String getSqlSelect() {
+            return sqlSelect;
+        }
+
+        @Override
+        public String getSqlSet() {
+            return delegate.getSqlSet();
+        }
+
+        @Override
+        public T getEntity() {
+            return delegate.getEntity();
+        }
+
+        @Override
+        public MergeSegments getExpression() {
+            return delegate.getExpression();
+        }
+
+        @Override
+        public String getCustomSqlSegment() {
+            return delegate.getCustomSqlSegment();
+        }
+
+        @Override
+        public String getSqlSegment() {
+            return delegate.getSqlSegment();
+        }
+
+        /**
+         * 条件中的参数，SQL中按ew.paramNameValuePairs取得
+         */
+        public Map<String, Object> getParamNameValuePairs() {
+            if (delegate instanceof AbstractWrapper) {
+                return ((AbstractWrapper<?, ?, ?>) delegate).getParamNameValuePairs();
+            }
+            return Collections.emptyMap();
+        }
+    }
+}
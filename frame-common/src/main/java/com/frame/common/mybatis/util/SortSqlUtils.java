@@ -21,8 +21,26 @@ import com.baomidou.mybatisplus.core.toolkit.StringPool;
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
 import com.frame.common.base.model.SortInfo;
 import com.frame.common.base.model.SortPage;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Parenthesis;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.Join;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
 import java.util.stream.Collectors;
 
 /**
@@ -47,7 +65,7 @@ public class SortSqlUtils {
      * @param orderBy     是否需要拼接Order By
      * @return SQL
      */
-    public static String concatOrderBy(String originalSql, SortPage page, boolean orderBy) {
+    public static String concatOrderBy(String originalSql, SortPage<?> page, boolean orderBy) {
         if (orderBy && CollectionUtils.isNotEmpty(page.getOrders())) {
             StringBuilder buildSql = new StringBuilder(originalSql);
             String orderStr = concatOrderBuilder(page.getOrders());
@@ -60,6 +78,137 @@ public class SortSqlUtils {
         return originalSql;
     }
 
+    /**
+     * keyset(seek)分页SQL拼接
+     * 定位条件 (k1 &gt; ?) OR (k1 = ? AND k2 &gt; ?) ... 直接加到原SQL的WHERE中，排序替换为排序键的ORDER BY，
+     * 不包装成子查询，数据库可以使用排序键上的索引定位；降序字段使用 &lt; 比较，可以兼容不支持行值比较的数据库以及混合升降序。
+     * 排序键必须是NOT NULL的字段（由调用方检查），定位条件的参数由{@link #getKeysetParams(List, List)}取得
+     *
+     * @param originalSql 需要拼接的SQL，只支持没有GROUP BY的单个SELECT
+     * @param keys        排序键，最后一个为ID
+     * @param seek        是否拼接定位条件，取第一页时为false
+     * @return SQL
+     */
+    public static String concatKeyset(String originalSql, List<SortInfo> keys, boolean seek) {
+        Select select = parseKeysetSelect(originalSql);
+        PlainSelect plainSelect = (PlainSelect) select.getSelectBody();
+        if (seek) {
+            StringJoiner conditions = new StringJoiner(" OR ");
+            for (int i = 0; i < keys.size(); i++) {
+                StringBuilder condition = new StringBuilder("(");
+                for (int j = 0; j < i; j++) {
+                    condition.append(keysetColumn(keys.get(j))).append(" = ? AND ");
+                }
+                condition.append(keysetColumn(keys.get(i)))
+                        .append(keys.get(i).getDirection() == SortInfo.Direction.DESC ? " < ?" : " > ?");
+                conditions.add(condition.append(')'));
+            }
+            Expression seekCondition;
+            try {
+                seekCondition = new Parenthesis(CCJSqlParserUtil.parseCondExpression(conditions.toString()));
+            } catch (JSQLParserException e) {
+                throw new IllegalArgumentException("keyset condition can not be parsed: " + conditions, e);
+            }
+            Expression where = plainSelect.getWhere();
+            plainSelect.setWhere(where == null ? seekCondition : new AndExpression(new Parenthesis(where), seekCondition));
+        }
+        List<OrderByElement> orderBy = new ArrayList<>();
+        for (SortInfo key : keys) {
+            OrderByElement element = new OrderByElement();
+            element.setExpression(new Column(keysetColumn(key)));
+            element.setAsc(key.getDirection() != SortInfo.Direction.DESC);
+            orderBy.add(element);
+        }
+        plainSelect.setOrderByElements(orderBy);
+        return select.toString();
+    }
+
+    /**
+     * keyset定位条件的参数值，顺序与{@link #concatKeyset(String, List, boolean)}拼接的?一致
+     *
+     * @param keys       排序键
+     * @param seekValues 上一页最后一行的排序键值
+     * @return 参数值
+     * @throws IllegalArgumentException 排序键值和排序键不一致或者有NULL时
+     */
+    public static List<Object> getKeysetParams(List<SortInfo> keys, List<Object> seekValues) {
+        if (seekValues.size() != keys.size()) {
+            throw new IllegalArgumentException("keyset cursor does not match sort keys: " + keys.size());
+        }
+        if (seekValues.contains(null)) {
+            throw new IllegalArgumentException("keyset cursor must not contain null");
+        }
+        List<Object> params = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            params.addAll(seekValues.subList(0, i + 1));
+        }
+        return params;
+    }
+
+    /**
+     * 取得keyset分页SQL中FROM、JOIN的表
+     *
+     * @param originalSql 原SQL
+     * @return 大写的别名（没有别名时为表名）和表名
+     */
+    public static Map<String, String> getKeysetTables(String originalSql) {
+        PlainSelect plainSelect = (PlainSelect) parseKeysetSelect(originalSql).getSelectBody();
+        List<FromItem> fromItems = new ArrayList<>();
+        fromItems.add(plainSelect.getFromItem());
+        if (plainSelect.getJoins() != null) {
+            for (Join join : plainSelect.getJoins()) {
+                fromItems.add(join.getRightItem());
+            }
+        }
+        Map<String, String> tables = new LinkedHashMap<>();
+        for (FromItem fromItem : fromItems) {
+            if (fromItem instanceof Table) {
+                Table table = (Table) fromItem;
+                String name = unquote(table.getName());
+                String alias = table.getAlias() == null ? name : unquote(table.getAlias().getName());
+                tables.put(alias.toUpperCase(Locale.US), name);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 解析keyset分页的SQL
+     *
+     * @throws IllegalArgumentException 不能解析、不是单个SELECT或者有GROUP BY时
+     */
+    private static Select parseKeysetSelect(String originalSql) {
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(originalSql);
+        } catch (JSQLParserException e) {
+            throw new IllegalArgumentException("keyset pagination sql can not be parsed: " + originalSql, e);
+        }
+        if (!(statement instanceof Select) || !(((Select) statement).getSelectBody() instanceof PlainSelect)) {
+            throw new IllegalArgumentException("keyset pagination requires a single SELECT: " + originalSql);
+        }
+        PlainSelect plainSelect = (PlainSelect) ((Select) statement).getSelectBody();
+        if (plainSelect.getGroupBy() != null || plainSelect.getHaving() != null) {
+            throw new IllegalArgumentException("keyset pagination does not support GROUP BY: " + originalSql);
+        }
+        return (Select) statement;
+    }
+
+    private static String unquote(String name) {
+        return name.replace("\"", "").replace("`", "");
+    }
+
+    /**
+     * keyset定位条件的字段
+     */
+    private static String keysetColumn(SortInfo sortInfo) {
+        String column = sortInfo.getProperty();
+        if (SortInfo.isSQLInjection(column)) {
+            throw new IllegalArgumentException("SQLInjection property: " + column);
+        }
+        return column;
+    }
+
     /**
      * 拼接多个排序方法
      *
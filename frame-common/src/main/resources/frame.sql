@@ -60,4 +60,16 @@ CREATE TABLE `frame_roles_permissions` (
   PRIMARY KEY (`role_id`,`permission_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8;
 
+-- 逻辑删除数据归档的进度记录（frame.archive.checkpoint-table）
+-- 归档对象表建议建立索引：CREATE INDEX IDX_表名_ARC ON 表名 (DELETE_FLAG, UPDATE_DATE, ID);
+DROP TABLE IF EXISTS `ST_TBL_ARCHIVE_CHECKPOINT`;
+CREATE TABLE `ST_TBL_ARCHIVE_CHECKPOINT` (
+  `TABLE_NAME` varchar(64) NOT NULL,
+  `LAST_UPDATE_DATE` TIMESTAMP NULL DEFAULT NULL,
+  `LAST_ID` varchar(64) DEFAULT NULL,
+  `ARCHIVED_ROWS` bigint(20) DEFAULT 0,
+  `UPDATE_DATE` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`TABLE_NAME`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
 INSERT INTO frame_users(name,account,password,role_id,salt) VALUES ('admin','admin','8c7904789282730e283fd614a6a41f3a',1,'k2oB4E')
@@ -0,0 +1,120 @@
+package com.frame.common.auth.jwt;
+
+import com.frame.common.base.util.JwtUtil;
+import com.frame.common.base.util.JwtUtilTests;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ * JwtFilter、JwtRealm中每次请求的token处理耗时比较
+ * 以前为按字符串调用JwtUtil（每次解码），现在为JwtContext解码一次后使用解码结果
+ * 类名不是*Tests，mvn test不执行，需要时单独执行：mvn test -Dtest=JwtDecodeBenchmark
+ * </p>
+ * <p>
+ * 不包含Shiro的login和取得用户，只比较token的解码、过期判断、签名校验和取得claim
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class JwtDecodeBenchmark {
+
+    private static final int REQUESTS = 50000;
+
+    private static final int WARMUP = 3;
+
+    private static final int ROUNDS = 5;
+
+    private static final String ACCOUNT = "admin";
+
+    @BeforeClass
+    public static void bindProperties() {
+        JwtUtilTests.bind("ZnJhbWVUZXN0U2VjcmV0");
+    }
+
+    @AfterClass
+    public static void unbindProperties() {
+        JwtUtilTests.unbindProperties();
+    }
+
+    @Test
+    public void decodePerCallVersusDecodeOnce() {
+        String token = JwtUtil.getRunAsAccessToken(ACCOUNT, "staff", "PC");
+        for (int i = 0; i < WARMUP; i++) {
+            perCall(token);
+            once(token);
+        }
+        long perCall = 0L;
+        long once = 0L;
+        for (int i = 0; i < ROUNDS; i++) {
+            perCall += perCall(token);
+            once += once(token);
+        }
+        log.info("{} requests: decode per call {} ns/request, decode once {} ns/request", REQUESTS,
+                perCall / ROUNDS / REQUESTS, once / ROUNDS / REQUESTS);
+    }
+
+    /**
+     * 以前的JwtFilter.executeLogin和JwtRealm.doGetAuthenticationInfo
+     *
+     * @return 耗时（纳秒）
+     */
+    private static long perCall(String token) {
+        int valid = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            if (!JwtUtil.isDecode(token) || JwtUtil.isTokenExpired(token)) {
+                continue;
+            }
+            String account = JwtUtil.getAccount(token);
+            JwtUtil.getId(token);
+            if (!JwtUtil.verify(token, account)) {
+                continue;
+            }
+            // JwtRealm
+            String user = JwtUtil.getAccount(token);
+            JwtUtil.getId(token);
+            JwtUtil.getTerminal(token);
+            if (!JwtUtil.getRunAsAccount(token).isEmpty() && user != null) {
+                valid++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(REQUESTS, valid);
+        return nanos;
+    }
+
+    /**
+     * 现在的JwtFilter.executeLogin和JwtRealm.doGetAuthenticationInfo
+     *
+     * @return 耗时（纳秒）
+     */
+    private static long once(String token) {
+        int valid = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            JwtContext context = JwtContext.parse(token);
+            if (context == null || context.isExpired()) {
+                continue;
+            }
+            if (!JwtUtil.verify(context.getDecoded(), context.getAccount())) {
+                continue;
+            }
+            // JwtRealm
+            JwtContext realmContext = new JwtToken(context).getContext();
+            realmContext.getJwtId();
+            realmContext.getTerminal();
+            if (!realmContext.getRunAsAccount().isEmpty() && realmContext.getAccount() != null) {
+                valid++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(REQUESTS, valid);
+        return nanos;
+    }
+}
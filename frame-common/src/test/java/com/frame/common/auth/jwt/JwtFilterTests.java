@@ -0,0 +1,211 @@
+package com.frame.common.auth.jwt;
+
+import com.auth0.jwt.JWT;
+import com.frame.common.auth.dto.PassDto;
+import com.frame.common.auth.service.IAuthService;
+import com.frame.common.base.constant.CacheConstant;
+import com.frame.common.base.exception.AuthExpiredErrorException;
+import com.frame.common.base.exception.AuthTokenErrorException;
+import com.frame.common.base.model.UserInfoDto;
+import com.frame.common.base.shiro.ShiroUser;
+import com.frame.common.base.util.JwtUtil;
+import com.frame.common.base.util.JwtUtilTests;
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.ExpiredCredentialsException;
+import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.cache.MemoryConstrainedCacheManager;
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.util.ThreadContext;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JwtFilterTests {
+
+    private static final String ACCOUNT = "admin";
+
+    private final CacheManager cacheManager = new MemoryConstrainedCacheManager();
+
+    private final List<JwtContext> realmContexts = new ArrayList<>();
+
+    private JwtFilter filter;
+
+    private MockHttpServletRequest request;
+
+    /**
+     * 记录realm收到的解析结果
+     */
+    private class RecordingRealm extends JwtRealm {
+        @Override
+        protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken auth) {
+            realmContexts.add(((JwtToken) auth).getContext());
+            return super.doGetAuthenticationInfo(auth);
+        }
+    }
+
+    @BeforeClass
+    public static void bindProperties() {
+        JwtUtilTests.bind("ZnJhbWVUZXN0U2VjcmV0");
+    }
+
+    @AfterClass
+    public static void unbindProperties() {
+        JwtUtilTests.unbindProperties();
+    }
+
+    @Before
+    public void setUp() {
+        JwtRealm realm = new RecordingRealm();
+        realm.setCacheManager(cacheManager);
+        ReflectionTestUtils.setField(realm, "authService", new StubAuthService());
+        realm.init();
+        ThreadContext.bind(new DefaultSecurityManager(realm));
+
+        filter = new JwtFilter();
+        filter.setCacheManager(cacheManager);
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        ThreadContext.unbindSubject();
+        ThreadContext.unbindSecurityManager();
+    }
+
+    @Test
+    public void filterAndRealmShareOneDecodedToken() {
+        String token = JwtUtil.getAccessToken(ACCOUNT, "APP");
+
+        assertTrue(this.access(token));
+
+        JwtContext context = JwtContext.current();
+        assertNotNull(context);
+        assertEquals(token, context.getToken());
+        assertEquals(1, realmContexts.size());
+        assertSame(context, realmContexts.get(0));
+        ShiroUser shiroUser = (ShiroUser) SecurityUtils.getSubject().getPrincipal();
+        assertEquals(ACCOUNT, shiroUser.getAccount());
+        assertEquals(JWT.decode(token).getId(), shiroUser.getJwtId());
+        assertEquals("APP", shiroUser.getTerminal());
+    }
+
+    @Test
+    public void runAsAccountIsReadFromContext() {
+        String token = JwtUtil.getRunAsAccessToken(ACCOUNT, "staff", "PC");
+
+        assertTrue(this.access(token));
+
+        ShiroUser shiroUser = (ShiroUser) SecurityUtils.getSubject().getPrincipal();
+        assertEquals("staff", shiroUser.getRunAsAccount());
+    }
+
+    @Test
+    public void rejectedTokensNeverReachRealm() {
+        String token = JwtUtil.getAccessToken(ACCOUNT, "PC");
+        String other = JwtUtil.getAccessToken("other", "PC");
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + other.substring(other.lastIndexOf('.') + 1);
+        String expired = JWT.create().withSubject(ACCOUNT).withJWTId("expired")
+                .withExpiresAt(new Date(System.currentTimeMillis() - 1000L)).sign(JwtUtil.getAlgorithm(ACCOUNT));
+
+        this.assertRejected("not.a.jwt", AuthTokenErrorException.class);
+        this.assertRejected(tampered, AuthTokenErrorException.class);
+        this.assertRejected(expired, ExpiredCredentialsException.class);
+        cacheManager.getCache(CacheConstant.SHIRO_LOGOUT_TOKEN).put(JWT.decode(token).getId(), "1");
+        this.assertRejected(token, AuthExpiredErrorException.class);
+
+        assertTrue(realmContexts.isEmpty());
+        assertNull(JwtContext.current());
+    }
+
+    @Test
+    public void loggedOutTokenIsRejected() {
+        String token = JwtUtil.getAccessToken(ACCOUNT, "PC");
+        assertTrue(this.access(token));
+
+        SecurityUtils.getSubject().logout();
+
+        this.assertRejected(token, AuthExpiredErrorException.class);
+    }
+
+    @Test
+    public void stringTokenIsDecodedOnceInRealm() {
+        // 登录Controller、websocket直接用token登录
+        String token = JwtUtil.getAccessToken(ACCOUNT, "PC");
+        JwtToken jwtToken = new JwtToken(token);
+
+        SecurityUtils.getSubject().login(jwtToken);
+
+        assertEquals(ACCOUNT, ((ShiroUser) SecurityUtils.getSubject().getPrincipal()).getAccount());
+        assertSame(jwtToken.getContext(), realmContexts.get(0));
+        assertNull(new JwtToken("abc").getContext());
+    }
+
+    private boolean access(String token) {
+        request.addHeader(JwtUtil.DEFAULT_JWT_PARAM, "Bearer " + token);
+        return filter.isAccessAllowed(request, new MockHttpServletResponse(), null);
+    }
+
+    private void assertRejected(String token, Class<? extends Exception> expected) {
+        request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            this.access(token);
+            fail(expected.getSimpleName() + " expected");
+        } catch (Exception e) {
+            assertEquals(expected, e.getClass());
+        }
+    }
+
+    private static class StubAuthService implements IAuthService {
+        @Override
+        public ShiroUser getShiroUser(String account) {
+            ShiroUser shiroUser = new ShiroUser();
+            shiroUser.setAccount(account);
+            return shiroUser;
+        }
+
+        @Override
+        public PassDto getAccountInfo(String account) {
+            return null;
+        }
+
+        @Override
+        public Set<String> listPermissions(String account) {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public UserInfoDto getUserAndMenu(String account, String runAsAccount) {
+            return null;
+        }
+
+        @Override
+        public void removeUserInfoCache(String account) {
+            // 没有缓存
+        }
+    }
+}
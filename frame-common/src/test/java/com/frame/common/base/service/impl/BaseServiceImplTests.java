@@ -0,0 +1,367 @@
+package com.frame.common.base.service.impl;
+
+import com.baomidou.mybatisplus.annotation.DbType;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.toolkit.SqlHelper;
+import com.frame.common.base.exception.GlobalErrorException;
+import com.frame.common.base.knowledge.FrameMessageEnum;
+import com.frame.common.base.model.BatchSaveResult;
+import com.frame.common.mybatis.h2.H2TestConfig;
+import com.frame.common.mybatis.h2.NoInfoBatch;
+import com.frame.common.mybatis.h2.TestItem;
+import com.frame.common.mybatis.h2.TestItemService;
+import com.frame.common.mybatis.incrementer.SnowflakeIdentifierGenerator;
+import com.frame.common.mybatis.util.BatchSqlUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class BaseServiceImplTests {
+
+    @Autowired
+    private TestItemService testItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        insert("ID01", "one", 1, "0");
+        insert("ID02", "two", 2, "0");
+        insert("ID03", "three", 3, "1");
+        insert("ID04", "four", 4, "0");
+    }
+
+    @Test
+    public void upsertUpdatesAndInserts() {
+        TestItem update = item("ID01", "one changed", 1);
+        TestItem insert = item("ID10", "ten", null);
+        TestItem noId = item(null, "sequence", null);
+        testItemService.saveOrUpdateBatch(Arrays.asList(update, insert, noId), 100, true);
+
+        Map<String, Object> one = row("ID01");
+        assertEquals("one changed", one.get("NAME"));
+        assertEquals(2, one.get("VERSION_NUM"));
+        assertEquals("ten", row("ID10").get("NAME"));
+        assertEquals("0", row("ID10").get("DELETE_FLAG"));
+        assertNotNull(noId.getId());
+        assertEquals("sequence", row(noId.getId()).get("NAME"));
+    }
+
+    @Test
+    public void upsertKeepsColumnsPassedAsNull() {
+        TestItem update = item("ID01", null, 1).setSortNo(9);
+        testItemService.saveOrUpdateBatch(Collections.singletonList(update), 100, true);
+
+        Map<String, Object> one = row("ID01");
+        assertEquals("one", one.get("NAME"));
+        assertEquals(9, one.get("SORT_NO"));
+    }
+
+    @Test
+    public void upsertWithoutVersionSkipsVersionCheck() {
+        testItemService.saveOrUpdateBatch(Collections.singletonList(item("ID02", "two changed", null)), 100, true);
+
+        Map<String, Object> two = row("ID02");
+        assertEquals("two changed", two.get("NAME"));
+        assertEquals(2, two.get("VERSION_NUM"));
+    }
+
+    @Test
+    public void upsertVersionConflictWritesNothing() {
+        TestItem stale = item("ID01", "stale", 0);
+        TestItem insert = item("ID11", "eleven", null);
+        try {
+            testItemService.saveOrUpdateBatch(Arrays.asList(insert, stale), 100, true);
+            fail("version conflict expected");
+        } catch (GlobalErrorException e) {
+            assertEquals(FrameMessageEnum.UPDATE_VERSION_ERROR.getId(), e.getId());
+        }
+        Map<String, Object> one = row("ID01");
+        assertEquals("one", one.get("NAME"));
+        assertEquals(1, one.get("VERSION_NUM"));
+        assertEquals(0, count("ID11"));
+    }
+
+    @Test
+    public void upsertDoesNotReviveDeletedRow() {
+        try {
+            testItemService.saveOrUpdateBatch(Collections.singletonList(item("ID03", "revived", 1)), 100, true);
+            fail("deleted row expected");
+        } catch (GlobalErrorException e) {
+            assertEquals(FrameMessageEnum.UPDATE_ERROR.getId(), e.getId());
+        }
+        Map<String, Object> three = row("ID03");
+        assertEquals("1", three.get("DELETE_FLAG"));
+        assertEquals("three", three.get("NAME"));
+    }
+
+    @Test
+    public void setBatchDiffWritesOnlyChangedRows() {
+        TestItem unchanged = item("ID01", "one", 1).setSortNo(1);
+        TestItem changed = item("ID02", "two changed", 1);
+        TestItem first = item(null, "first", null);
+        TestItem second = item(null, "second", null);
+        BatchSaveResult result = testItemService.setBatchDiff(Arrays.asList(first, unchanged, changed, second),
+                new QueryWrapper<>());
+
+        assertFalse(result.hasConflict());
+        List<BatchSaveResult.Row> rows = result.getRows();
+        assertEquals(5, rows.size());
+        assertRow(rows.get(0), first.getId(), BatchSaveResult.RowStatus.INSERTED);
+        assertRow(rows.get(1), "ID01", BatchSaveResult.RowStatus.UNCHANGED);
+        assertRow(rows.get(2), "ID02", BatchSaveResult.RowStatus.UPDATED);
+        assertRow(rows.get(3), second.getId(), BatchSaveResult.RowStatus.INSERTED);
+        assertRow(rows.get(4), "ID04", BatchSaveResult.RowStatus.DELETED);
+
+        // 没有变化的数据不更新
+        assertEquals(1, row("ID01").get("VERSION_NUM"));
+        assertEquals(1, rows.get(1).getVersionNum().intValue());
+        // 只更新变化的字段
+        Map<String, Object> two = row("ID02");
+        assertEquals("two changed", two.get("NAME"));
+        assertEquals(2, two.get("SORT_NO"));
+        assertEquals(2, two.get("VERSION_NUM"));
+        assertEquals(2, rows.get(2).getVersionNum().intValue());
+        assertEquals(2, changed.getVersionNum().intValue());
+        assertEquals("1", row("ID04").get("DELETE_FLAG"));
+        // 新增数据按提交的顺序插入
+        assertNotNull(first.getId());
+        assertTrue(Long.parseLong(first.getId()) < Long.parseLong(second.getId()));
+        assertEquals("first", row(first.getId()).get("NAME"));
+        assertEquals("second", row(second.getId()).get("NAME"));
+    }
+
+    @Test
+    public void setBatchDiffReportsConflictsPerRow() {
+        TestItem stale = item("ID01", "stale", 0);
+        TestItem changed = item("ID02", "two changed", 1);
+        BatchSaveResult result = testItemService.setBatchDiff(Arrays.asList(stale, changed, item("ID04", "four", 1)),
+                new QueryWrapper<>());
+
+        assertTrue(result.hasConflict());
+        assertEquals(1, result.getConflicts().size());
+        assertRow(result.getConflicts().get(0), "ID01", BatchSaveResult.RowStatus.CONFLICT);
+        // 冲突时返回数据库中的版本号
+        assertEquals(1, result.getConflicts().get(0).getVersionNum().intValue());
+        assertEquals(1, result.count(BatchSaveResult.RowStatus.UPDATED));
+        assertEquals(1, result.count(BatchSaveResult.RowStatus.UNCHANGED));
+        assertEquals("one", row("ID01").get("NAME"));
+        assertEquals("two changed", row("ID02").get("NAME"));
+    }
+
+    @Test
+    public void setBatchDiffUpdatesOutsideQueryById() {
+        assertOutsideQueryResult(this.setBatchDiffOutsideQuery());
+    }
+
+    @Test
+    public void setBatchDiffWithoutUpdateCountsChecksVersions() {
+        NoInfoBatch.enable(true);
+        BatchSaveResult result;
+        try {
+            result = this.setBatchDiffOutsideQuery();
+        } finally {
+            NoInfoBatch.enable(false);
+        }
+        // 件数不明时和返回件数时的结果一致
+        assertOutsideQueryResult(result);
+    }
+
+    @Test
+    public void chunkedRemoveDeletesEveryChunk() {
+        List<String> ids = missingIds(BatchSqlUtils.getInListSize(DbType.H2));
+        ids.add("ID04");
+        assertTrue(testItemService.removeByIds(ids, false));
+        assertEquals("1", row("ID04").get("DELETE_FLAG"));
+        // 和不分批时一致，没有删除数据时也为true
+        assertEquals(testItemService.removeByIds(missingIds(1), true),
+                testItemService.removeByIds(missingIds(BatchSqlUtils.getInListSize(DbType.H2) + 1), true));
+    }
+
+    @Test
+    public void chunkedRemoveWithoutUpdateCountsSucceeds() {
+        List<String> ids = missingIds(BatchSqlUtils.getInListSize(DbType.H2));
+        ids.add("ID04");
+        NoInfoBatch.enable(true);
+        try {
+            // 件数不明的批次作为删除了1件，合计不为负数
+            assertTrue(testItemService.removeByIds(ids, true));
+            assertEquals("1", row("ID04").get("DELETE_FLAG"));
+        } finally {
+            NoInfoBatch.enable(false);
+        }
+    }
+
+    @Test
+    public void setBatchConflictRollsBack() {
+        TestItem stale = item("ID01", "stale", 0);
+        TestItem changed = item("ID02", "two changed", 1);
+        try {
+            testItemService.setBatch(Arrays.asList(stale, changed), new QueryWrapper<>());
+            fail("version conflict expected");
+        } catch (GlobalErrorException e) {
+            assertEquals(FrameMessageEnum.UPDATE_VERSION_ERROR.getId(), e.getId());
+        }
+        assertEquals("two", row("ID02").get("NAME"));
+        assertEquals(1, row("ID02").get("VERSION_NUM"));
+        assertEquals("0", row("ID04").get("DELETE_FLAG"));
+    }
+
+    @Test
+    public void multiRowSaveInsertsEveryRow() {
+        List<TestItem> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(item(String.format("M%02d", i), "multi" + i, null));
+        }
+        assertTrue(testItemService.saveBatch(items, 4, true));
+
+        assertEquals(10, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEST_ITEM WHERE ID LIKE 'M%'", Integer.class));
+        Map<String, Object> row = row("M09");
+        assertEquals("multi9", row.get("NAME"));
+        assertEquals(1, row.get("VERSION_NUM"));
+        assertEquals("0", row.get("DELETE_FLAG"));
+    }
+
+    @Test
+    public void multiRowSaveGeneratesIds() {
+        TestItemService target = AopTestUtils.getTargetObject(testItemService);
+        ReflectionTestUtils.setField(target, "identifierGenerator", new SnowflakeIdentifierGenerator(1));
+        try {
+            List<TestItem> items = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                items.add(item(null, "generated" + i, null));
+            }
+            testItemService.saveBatch(items, 100, true);
+
+            Set<String> ids = new HashSet<>();
+            String last = "";
+            for (TestItem item : items) {
+                assertNotNull(item.getId());
+                assertTrue(item.getId().compareTo(last) > 0);
+                last = item.getId();
+                ids.add(item.getId());
+                assertEquals(item.getName(), row(item.getId()).get("NAME"));
+            }
+            assertEquals(20, ids.size());
+        } finally {
+            ReflectionTestUtils.setField(target, "identifierGenerator", null);
+        }
+    }
+
+    @Test
+    public void multiRowSaveWithoutGeneratorUsesSequence() {
+        TestItem keyed = item("ID10", "keyed", null);
+        TestItem noId = item(null, "sequence", null);
+        testItemService.saveBatch(Arrays.asList(keyed, noId), 100, true);
+
+        assertNotNull(noId.getId());
+        assertEquals("sequence", row(noId.getId()).get("NAME"));
+        assertEquals("keyed", row("ID10").get("NAME"));
+    }
+
+    @Test
+    public void multiRowSaveSplitsAtParameterLimit() {
+        // H2每条语句最多65535个参数，TEST_ITEM每行9个字段
+        int columns = BatchSqlUtils.getProperties(SqlHelper.table(TestItem.class)).size();
+        int rowsPerStatement = BatchSqlUtils.getMultiRowSize(DbType.H2, columns, Integer.MAX_VALUE);
+        assertEquals(65535 / columns, rowsPerStatement);
+        // Oracle INSERT ALL合计不超过999个字段
+        int oracleRows = BatchSqlUtils.getMultiRowSize(DbType.ORACLE, columns, 500);
+        String oracleSql = BatchSqlUtils.buildMultiRowInsertSql(DbType.ORACLE, SqlHelper.table(TestItem.class), oracleRows);
+        assertTrue(oracleSql.chars().filter(c -> c == '?').count() <= 999);
+        assertTrue(oracleSql.chars().filter(c -> c == '?').count() + columns > 999);
+        for (int size : new int[]{rowsPerStatement, rowsPerStatement + 1}) {
+            jdbcTemplate.update("DELETE FROM TEST_ITEM");
+            List<TestItem> items = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                items.add(item("B" + i, "bulk", null));
+            }
+            testItemService.saveBatch(items, Integer.MAX_VALUE, true);
+            assertEquals(size, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEST_ITEM", Integer.class));
+            assertEquals(1, count("B" + (size - 1)));
+        }
+    }
+
+    /**
+     * ID04在查询范围内，只更新变化的字段；ID01、ID02、ID03不在查询范围内，按ID更新
+     * ID02的版本号比数据库小1，更新后的版本号和数据库中的版本号相同，只比较执行后的版本号时无法判断冲突
+     */
+    private BatchSaveResult setBatchDiffOutsideQuery() {
+        return testItemService.setBatchDiff(Arrays.asList(item("ID04", "four changed", 1), item("ID01", "one changed", 1),
+                item("ID02", "stale", 0), item("ID03", "deleted", 1)), new QueryWrapper<TestItem>().eq("ID", "ID04"));
+    }
+
+    private void assertOutsideQueryResult(BatchSaveResult result) {
+        List<BatchSaveResult.Row> rows = result.getRows();
+        assertEquals(4, rows.size());
+        assertRow(rows.get(0), "ID04", BatchSaveResult.RowStatus.UPDATED);
+        assertEquals(2, rows.get(0).getVersionNum().intValue());
+        assertRow(rows.get(1), "ID01", BatchSaveResult.RowStatus.UPDATED);
+        assertEquals(2, rows.get(1).getVersionNum().intValue());
+        assertRow(rows.get(2), "ID02", BatchSaveResult.RowStatus.CONFLICT);
+        assertEquals(1, rows.get(2).getVersionNum().intValue());
+        assertRow(rows.get(3), "ID03", BatchSaveResult.RowStatus.CONFLICT);
+        assertEquals("four changed", row("ID04").get("NAME"));
+        assertEquals("one changed", row("ID01").get("NAME"));
+        assertEquals(2, row("ID01").get("VERSION_NUM"));
+        assertEquals("two", row("ID02").get("NAME"));
+        assertEquals("three", row("ID03").get("NAME"));
+    }
+
+    private static List<String> missingIds(int size) {
+        List<String> ids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            ids.add("X" + i);
+        }
+        return ids;
+    }
+
+    private static void assertRow(BatchSaveResult.Row row, String id, BatchSaveResult.RowStatus status) {
+        assertEquals(id, row.getId());
+        assertEquals(status, row.getStatus());
+    }
+
+    private void insert(String id, String name, int sortNo, String deleteFlag) {
+        jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, SORT_NO, VERSION_NUM, DELETE_FLAG) VALUES (?, ?, ?, 1, ?)",
+                id, name, sortNo, deleteFlag);
+    }
+
+    private static TestItem item(String id, String name, Integer versionNum) {
+        TestItem item = new TestItem().setName(name);
+        item.setId(id);
+        item.setVersionNum(versionNum);
+        return item;
+    }
+
+    private Map<String, Object> row(String id) {
+        return jdbcTemplate.queryForMap("SELECT * FROM TEST_ITEM WHERE ID = ?", id);
+    }
+
+    private int count(String id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEST_ITEM WHERE ID = ?", Integer.class, id);
+    }
+}
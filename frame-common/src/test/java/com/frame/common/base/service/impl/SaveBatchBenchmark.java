@@ -0,0 +1,85 @@
+package com.frame.common.base.service.impl;
+
+import com.frame.common.mybatis.h2.H2TestConfig;
+import com.frame.common.mybatis.h2.TestItem;
+import com.frame.common.mybatis.h2.TestItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ * saveBatch的多行插入和JDBC批量插入的耗时比较
+ * 类名不是*Tests，mvn test不执行，需要时单独执行：mvn test -Dtest=SaveBatchBenchmark
+ * </p>
+ * <p>
+ * H2内存数据库没有网络往返，差异主要是语句解析和执行次数，实际数据库上多行插入的效果更大
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class SaveBatchBenchmark {
+
+    private static final int ROWS = 20000;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int WARMUP = 3;
+
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private TestItemService testItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void multiRowVersusJdbcBatch() {
+        for (int i = 0; i < WARMUP; i++) {
+            this.run(false);
+            this.run(true);
+        }
+        long jdbcBatch = 0L;
+        long multiRow = 0L;
+        for (int i = 0; i < ROUNDS; i++) {
+            jdbcBatch += this.run(false);
+            multiRow += this.run(true);
+        }
+        log.info("saveBatch {} rows, batch size {}: jdbc batch {} ms, multi-row {} ms", ROWS, BATCH_SIZE,
+                TimeUnit.NANOSECONDS.toMillis(jdbcBatch / ROUNDS), TimeUnit.NANOSECONDS.toMillis(multiRow / ROUNDS));
+    }
+
+    /**
+     * 插入ROWS行
+     *
+     * @return 耗时（纳秒）
+     */
+    private long run(boolean multiRow) {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        List<TestItem> items = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            TestItem item = new TestItem().setName("bench" + i).setSortNo(i);
+            item.setId(String.valueOf(i));
+            items.add(item);
+        }
+        long start = System.nanoTime();
+        testItemService.saveBatch(items, BATCH_SIZE, multiRow);
+        long nanos = System.nanoTime() - start;
+        assertEquals(ROWS, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEST_ITEM", Integer.class));
+        return nanos;
+    }
+}
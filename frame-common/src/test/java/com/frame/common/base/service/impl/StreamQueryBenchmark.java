@@ -0,0 +1,153 @@
+package com.frame.common.base.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.frame.common.mybatis.h2.H2TestConfig;
+import com.frame.common.mybatis.h2.TestItem;
+import com.frame.common.mybatis.h2.TestItemService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ * list和stream、forEachBatch的耗时、保持的堆内存比较
+ * 类名不是*Tests，mvn test不执行，需要时单独执行：mvn test -Dtest=StreamQueryBenchmark
+ * </p>
+ * <p>
+ * 堆内存为和查询前GC后的使用量之差，list为返回结果时，stream为处理最后一行时；
+ * H2内存数据库的结果集在同一个JVM中（超过MAX_MEMORY_ROWS时写入临时文件），实际数据库上stream的差异更大
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class StreamQueryBenchmark {
+
+    private static final int ROWS = 100000;
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final int WARMUP = 3;
+
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private TestItemService testItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        List<Object[]> args = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            args.add(new Object[]{String.valueOf(i), "bench" + i, i});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO TEST_ITEM (ID, NAME, SORT_NO, VERSION_NUM) VALUES (?, ?, ?, 1)", args);
+    }
+
+    @Test
+    public void listVersusStream() {
+        for (int i = 0; i < WARMUP; i++) {
+            this.list();
+            this.stream();
+            this.forEachBatch();
+        }
+        long list = 0L;
+        long stream = 0L;
+        long batch = 0L;
+        for (int i = 0; i < ROUNDS; i++) {
+            list += this.list();
+            stream += this.stream();
+            batch += this.forEachBatch();
+        }
+        log.info("{} rows: list {} ms, stream {} ms, forEachBatch({}) {} ms", ROWS,
+                TimeUnit.NANOSECONDS.toMillis(list / ROUNDS), TimeUnit.NANOSECONDS.toMillis(stream / ROUNDS), CHUNK_SIZE,
+                TimeUnit.NANOSECONDS.toMillis(batch / ROUNDS));
+
+        long base = usedHeap();
+        List<TestItem> all = testItemService.list(new QueryWrapper<>());
+        long listHeap = usedHeap() - base;
+        assertEquals(ROWS, all.size());
+        all = null;
+        long[] streamHeap = new long[1];
+        int[] count = new int[1];
+        testItemService.stream(new QueryWrapper<>(), item -> {
+            if (++count[0] == ROWS) {
+                streamHeap[0] = usedHeap() - base;
+            }
+        });
+        log.info("{} rows retained heap: list {} KB, stream {} KB", ROWS, listHeap / 1024, streamHeap[0] / 1024);
+    }
+
+    /**
+     * @return 耗时（纳秒）
+     */
+    private long list() {
+        long start = System.nanoTime();
+        int size = testItemService.list(new QueryWrapper<>()).size();
+        long nanos = System.nanoTime() - start;
+        assertEquals(ROWS, size);
+        return nanos;
+    }
+
+    /**
+     * @return 耗时（纳秒）
+     */
+    private long stream() {
+        int[] count = new int[1];
+        long start = System.nanoTime();
+        testItemService.stream(new QueryWrapper<>(), item -> count[0]++);
+        long nanos = System.nanoTime() - start;
+        assertEquals(ROWS, count[0]);
+        return nanos;
+    }
+
+    /**
+     * @return 耗时（纳秒）
+     */
+    private long forEachBatch() {
+        int[] count = new int[1];
+        long start = System.nanoTime();
+        testItemService.forEachBatch(new QueryWrapper<>(), CHUNK_SIZE, chunk -> count[0] += chunk.size());
+        long nanos = System.nanoTime() - start;
+        assertEquals(ROWS, count[0]);
+        return nanos;
+    }
+
+    /**
+     * 多次GC到使用量稳定后的堆使用量
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+}
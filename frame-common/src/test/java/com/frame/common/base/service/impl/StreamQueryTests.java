@@ -0,0 +1,143 @@
+package com.frame.common.base.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.frame.common.mybatis.h2.H2TestConfig;
+import com.frame.common.mybatis.h2.TestItem;
+import com.frame.common.mybatis.h2.TestItemMapper;
+import com.frame.common.mybatis.h2.TestItemService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class StreamQueryTests {
+
+    private static final int ROWS = 25;
+
+    @Autowired
+    private TestItemService testItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        for (int i = 1; i <= ROWS; i++) {
+            // 每5行一个逻辑删除
+            jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, SORT_NO, VERSION_NUM, DELETE_FLAG) VALUES (?, ?, ?, 1, ?)",
+                    String.format("ID%02d", i), "name" + i, i, i % 5 == 0 ? "1" : "0");
+        }
+    }
+
+    @Test
+    public void streamReturnsSameRowsAsList() {
+        QueryWrapper<TestItem> wrapper = new QueryWrapper<TestItem>().gt("SORT_NO", 3).orderByDesc("ID");
+        List<String> streamed = new ArrayList<>();
+        testItemService.stream(wrapper, item -> streamed.add(item.getId()));
+
+        assertEquals(ids(testItemService.list(wrapper)), streamed);
+        // SORT_NO为4～25的22行中，逻辑删除的5行不返回
+        assertEquals(17, streamed.size());
+        assertFalse(streamed.contains("ID05"));
+    }
+
+    @Test
+    public void streamUsesForwardOnlyFetchSizeStatement() {
+        testItemService.stream(new QueryWrapper<>(), item -> {
+        });
+        String statementId = TestItemMapper.class.getName() + ".selectList_stream_1000";
+        MappedStatement ms = sqlSessionFactory.getConfiguration().getMappedStatement(statementId, false);
+        assertEquals(Integer.valueOf(1000), ms.getFetchSize());
+        assertEquals(ResultSetType.FORWARD_ONLY, ms.getResultSetType());
+        assertFalse(ms.isUseCache());
+    }
+
+    @Test
+    public void forEachBatchSplitsIntoChunks() {
+        List<List<String>> chunks = new ArrayList<>();
+        testItemService.forEachBatch(new QueryWrapper<TestItem>().orderByAsc("ID"), 8,
+                chunk -> chunks.add(ids(chunk)));
+
+        // 20行按8件分为8、8、4
+        assertEquals(Arrays.asList(8, 8, 4), chunks.stream().map(List::size).collect(Collectors.toList()));
+        assertEquals("ID01", chunks.get(0).get(0));
+        assertEquals("ID09", chunks.get(0).get(7));
+        assertEquals("ID24", chunks.get(2).get(3));
+    }
+
+    @Test
+    public void forEachBatchKeepsDeliveredChunks() {
+        List<List<TestItem>> chunks = new ArrayList<>();
+        testItemService.forEachBatch(new QueryWrapper<TestItem>().orderByAsc("ID"), 5, chunks::add);
+
+        // 已经交给consumer的批次不会被后面的数据覆盖，件数正好整除时没有空批次
+        assertEquals(4, chunks.size());
+        List<String> all = new ArrayList<>();
+        chunks.forEach(chunk -> all.addAll(ids(chunk)));
+        assertEquals(ids(testItemService.list(new QueryWrapper<TestItem>().orderByAsc("ID"))), all);
+    }
+
+    @Test
+    public void streamInTransactionSeesUncommittedRows() {
+        List<String> streamed = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, VERSION_NUM) VALUES ('NEW', 'new', 1)");
+            List<String> ids = new ArrayList<>();
+            testItemService.stream(new QueryWrapper<TestItem>().eq("ID", "NEW"), item -> ids.add(item.getId()));
+            status.setRollbackOnly();
+            return ids;
+        });
+        assertEquals(Arrays.asList("NEW"), streamed);
+        assertEquals(0, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEST_ITEM WHERE ID = 'NEW'", Integer.class));
+    }
+
+    @Test
+    public void streamReleasesConnectionWhenConsumerFails() throws SQLException {
+        try {
+            testItemService.stream(new QueryWrapper<>(), item -> {
+                throw new IllegalStateException("stop");
+            });
+            fail("consumer exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals("stop", e.getMessage());
+        }
+        assertEquals(0, dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean().getActiveConnections());
+        // 连接释放后仍然可以查询
+        assertTrue(testItemService.count(new QueryWrapper<>()) > 0);
+    }
+
+    private static List<String> ids(List<TestItem> records) {
+        return records.stream().map(TestItem::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,95 @@
+package com.frame.common.base.util;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.frame.common.base.component.ApplicationContextComponent;
+import com.frame.common.base.config.FrameProperties;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JwtUtilTests {
+
+    private static final String ACCOUNT = "admin";
+
+    @BeforeClass
+    public static void bindProperties() {
+        bind("ZnJhbWVUZXN0U2VjcmV0");
+    }
+
+    @AfterClass
+    public static void unbindProperties() {
+        new ApplicationContextComponent().setApplicationContext(null);
+        ReflectionTestUtils.setField(JwtUtil.class, "frameProperties", null);
+    }
+
+    /**
+     * JwtUtil从ApplicationContextComponent取得jwtSecret、jwtExpireTime
+     */
+    public static FrameProperties bind(String jwtSecret) {
+        FrameProperties properties = new FrameProperties();
+        properties.setAuth(new FrameProperties.Auth());
+        properties.getAuth().setJwtSecret(jwtSecret);
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean(FrameProperties.class, () -> properties);
+        context.refresh();
+        new ApplicationContextComponent().setApplicationContext(context);
+        ReflectionTestUtils.setField(JwtUtil.class, "frameProperties", null);
+        return properties;
+    }
+
+    @Test
+    public void decodedVerifyMatchesStringVerify() {
+        String token = JwtUtil.getAccessToken(ACCOUNT, "PC");
+        String other = JwtUtil.getAccessToken("other", "PC");
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + other.substring(other.lastIndexOf('.') + 1);
+        String expired = JWT.create().withSubject(ACCOUNT).withExpiresAt(new Date(System.currentTimeMillis() - 1000L))
+                .sign(JwtUtil.getAlgorithm(ACCOUNT));
+        String wrongAlgorithm = JWT.create().withSubject(ACCOUNT).withExpiresAt(new Date(System.currentTimeMillis() + 60000L))
+                .sign(Algorithm.HMAC512(JwtUtil.generalKey(ACCOUNT).getEncoded()));
+
+        assertVerify(true, token, ACCOUNT);
+        assertVerify(false, token, "other");
+        assertVerify(false, tampered, ACCOUNT);
+        assertVerify(false, expired, ACCOUNT);
+        assertVerify(false, wrongAlgorithm, ACCOUNT);
+    }
+
+    @Test
+    public void secretChangeInvalidatesDecodedVerify() {
+        String token = JwtUtil.getAccessToken(ACCOUNT, "PC");
+        DecodedJWT decoded = JwtUtil.decode(token);
+        int version = JwtUtil.getKeyVersion();
+        assertTrue(JwtUtil.verify(decoded, ACCOUNT));
+
+        FrameProperties properties = bind("Y2hhbmdlZFNlY3JldA");
+        try {
+            assertFalse(JwtUtil.verify(decoded, ACCOUNT));
+            assertEquals(version + 1, JwtUtil.getKeyVersion());
+        } finally {
+            properties.getAuth().setJwtSecret("ZnJhbWVUZXN0U2VjcmV0");
+        }
+        assertTrue(JwtUtil.verify(decoded, ACCOUNT));
+    }
+
+    @Test
+    public void undecodableTokenIsNull() {
+        assertNull(JwtUtil.decode("not.a.jwt"));
+        assertNull(JwtUtil.decode("abc"));
+    }
+
+    private static void assertVerify(boolean expected, String token, String account) {
+        assertEquals(token, expected, JwtUtil.verify(token, account));
+        assertEquals(token, expected, JwtUtil.verify(JwtUtil.decode(token), account));
+    }
+}
@@ -0,0 +1,147 @@
+package com.frame.common.mybatis.archive;
+
+import com.frame.common.base.config.FrameProperties;
+import com.frame.common.mybatis.h2.H2TestConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class LogicDeleteArchiverTests {
+
+    private static final String TABLE = "TEST_ITEM";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final FrameProperties.Archive config = new FrameProperties.Archive();
+
+    private final ArchiveMetrics metrics = new ArchiveMetrics();
+
+    private LogicDeleteArchiver archiver;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        jdbcTemplate.update("DELETE FROM ST_TBL_ARCHIVE_CHECKPOINT");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS TEST_ITEM_ARC");
+        config.setTables(Collections.singletonList(TABLE));
+        config.setRetainDays(30);
+        config.setPauseMillis(0L);
+        config.setIntervalMinutes(0L);
+        archiver = new LogicDeleteArchiver(dataSource, config, "1", metrics);
+    }
+
+    @After
+    public void tearDown() {
+        archiver.close();
+    }
+
+    @Test
+    public void expiredDeletedRowsAreMovedAndPurged() {
+        insert("OLD1", "1", 40);
+        insert("OLD2", "1", 31);
+        insert("NEW1", "1", 29);
+        insert("LIVE", "0", 40);
+
+        assertEquals(2L, archiver.archive());
+
+        assertEquals(1, count("TEST_ITEM_ARC WHERE ID = 'OLD1'"));
+        assertEquals(2, count("TEST_ITEM_ARC"));
+        assertEquals(0, count(TABLE + " WHERE ID LIKE 'OLD%'"));
+        // 保留期间内的删除数据和没有删除的数据不移动
+        assertEquals(2, count(TABLE));
+        assertEquals("name-OLD2", jdbcTemplate.queryForObject("SELECT NAME FROM TEST_ITEM_ARC WHERE ID = 'OLD2'", String.class));
+
+        Map<String, Object> checkpoint = checkpoint();
+        assertEquals(2L, checkpoint.get("ARCHIVED_ROWS"));
+        assertNull(checkpoint.get("LAST_ID"));
+        assertEquals(2L, metrics.snapshot(TABLE).get("rows"));
+        assertEquals(0L, metrics.snapshot(TABLE).get("errors"));
+
+        // 再次执行时没有对象
+        assertEquals(0L, archiver.archive());
+        assertEquals(2, count("TEST_ITEM_ARC"));
+    }
+
+    @Test
+    public void movesInBatchesUntilComplete() {
+        config.setBatchSize(10);
+        for (int i = 0; i < 25; i++) {
+            insert(String.format("D%02d", i), "1", 40 + i);
+        }
+
+        assertEquals(25L, archiver.archive());
+
+        assertEquals(0, count(TABLE));
+        assertEquals(25, count("TEST_ITEM_ARC"));
+        assertEquals(3L, metrics.snapshot(TABLE).get("batches"));
+        assertEquals(25L, checkpoint().get("ARCHIVED_ROWS"));
+        assertNull(checkpoint().get("LAST_UPDATE_DATE"));
+    }
+
+    @Test
+    public void resumesAfterCheckpoint() {
+        // D00最旧，上次中断在D02
+        for (int i = 0; i < 5; i++) {
+            insert(String.format("D%02d", i), "1", 50 - i);
+        }
+        jdbcTemplate.update("INSERT INTO ST_TBL_ARCHIVE_CHECKPOINT (TABLE_NAME, LAST_UPDATE_DATE, LAST_ID, ARCHIVED_ROWS)"
+                + " VALUES (?, ?, 'D02', 3)", TABLE, daysAgo(48));
+
+        assertEquals(2L, archiver.archive());
+        assertEquals(3, count(TABLE));
+        assertEquals(0, count(TABLE + " WHERE ID IN ('D03', 'D04')"));
+        assertEquals(5L, checkpoint().get("ARCHIVED_ROWS"));
+        assertNull(checkpoint().get("LAST_ID"));
+
+        // 完成后下次从头开始
+        assertEquals(3L, archiver.archive());
+        assertEquals(0, count(TABLE));
+        assertEquals(5, count("TEST_ITEM_ARC"));
+    }
+
+    @Test
+    public void missingTableIsRecordedAsError() {
+        config.setTables(Collections.singletonList("NO_SUCH_TABLE"));
+        config.setCreateTable(false);
+
+        assertEquals(0L, archiver.archive());
+        assertEquals(1L, metrics.snapshot("NO_SUCH_TABLE").get("errors"));
+    }
+
+    private void insert(String id, String deleteFlag, int days) {
+        jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, VERSION_NUM, DELETE_FLAG, UPDATE_DATE) VALUES (?, ?, 1, ?, ?)",
+                id, "name-" + id, deleteFlag, daysAgo(days));
+    }
+
+    private static Timestamp daysAgo(int days) {
+        return new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days));
+    }
+
+    private Map<String, Object> checkpoint() {
+        return jdbcTemplate.queryForMap("SELECT * FROM ST_TBL_ARCHIVE_CHECKPOINT WHERE TABLE_NAME = ?", TABLE);
+    }
+
+    private int count(String from) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Integer.class);
+    }
+}
@@ -0,0 +1,95 @@
+package com.frame.common.mybatis.datasource;
+
+import com.frame.common.base.config.FrameProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * 读写分离路由取得连接的额外耗时，直接取得连接和经过路由（轮询、使用中连接最少）的比较
+ * 类名不是*Tests，mvn test不执行，需要时单独执行：mvn test -Dtest=ReadWriteRoutingBenchmark
+ * </p>
+ * <p>
+ * 连接为不访问数据库的桩，只测路由本身；读写分离减轻主库负载的效果需要实际的主从数据库，这里无法测定
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class ReadWriteRoutingBenchmark {
+
+    private static final int CONNECTIONS = 1000000;
+
+    private static final int WARMUP = 3;
+
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void routingOverhead() throws SQLException {
+        DataSource primary = stub();
+        FrameProperties.Datasource roundRobin = new FrameProperties.Datasource();
+        FrameProperties.Datasource leastActive = new FrameProperties.Datasource();
+        leastActive.setLoadBalance(FrameProperties.Datasource.LoadBalance.LEAST_ACTIVE);
+        DataSource[] dataSources = {stub(),
+                new ReadWriteRoutingDataSource(primary, Arrays.asList(stub(), stub()), roundRobin),
+                new ReadWriteRoutingDataSource(primary, Arrays.asList(stub(), stub()), leastActive)};
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            for (int i = 0; i < WARMUP; i++) {
+                for (DataSource dataSource : dataSources) {
+                    run(dataSource);
+                }
+            }
+            long[] nanos = new long[dataSources.length];
+            for (int i = 0; i < ROUNDS; i++) {
+                for (int j = 0; j < dataSources.length; j++) {
+                    nanos[j] += run(dataSources[j]);
+                }
+            }
+            log.info("{} connections: direct {} ns, round robin {} ns, least active {} ns", CONNECTIONS,
+                    nanos[0] / ROUNDS / CONNECTIONS, nanos[1] / ROUNDS / CONNECTIONS, nanos[2] / ROUNDS / CONNECTIONS);
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    /**
+     * @return 耗时（纳秒）
+     */
+    private static long run(DataSource dataSource) throws SQLException {
+        long start = System.nanoTime();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            dataSource.getConnection().close();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 返回不访问数据库的连接
+     */
+    private static DataSource stub() {
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> null);
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() {
+                return connection;
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) {
+                return connection;
+            }
+        };
+    }
+}
@@ -0,0 +1,180 @@
+package com.frame.common.mybatis.datasource;
+
+import com.frame.common.base.config.FrameProperties;
+import com.frame.common.base.util.ThreadLocalUtil;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReadWriteRoutingDataSourceTests {
+
+    private final FrameProperties.Datasource config = new FrameProperties.Datasource();
+
+    private ReadWriteRoutingDataSource routing;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readOnly;
+
+    private TransactionTemplate readWrite;
+
+    @Before
+    public void setUp() {
+        ThreadLocalUtil.removeLastWriteTime();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ThreadLocalUtil.removeLastWriteTime();
+        if (routing != null) {
+            routing.close();
+        }
+    }
+
+    @Test
+    public void outsideTransactionUsesPrimary() {
+        this.build(database("replica1"), database("replica2"));
+        assertEquals("primary", this.name());
+        assertEquals("primary", this.name());
+    }
+
+    @Test
+    public void readOnlyTransactionsRoundRobinReplicas() {
+        this.build(database("replica1"), database("replica2"));
+        assertEquals(Arrays.asList("replica1", "replica2", "replica1", "replica2"),
+                Arrays.asList(this.readOnlyName(), this.readOnlyName(), this.readOnlyName(), this.readOnlyName()));
+    }
+
+    @Test
+    public void readsAfterWriteStayOnPrimary() {
+        this.build(database("replica1"));
+        assertEquals("primary", readWrite.execute(status -> this.name()));
+
+        // 同一请求中写入后stickyMillis以内
+        assertEquals("primary", this.readOnlyName());
+        ThreadLocalUtil.setLastWriteTime(System.currentTimeMillis() - config.getStickyMillis() - 1L);
+        assertEquals("replica1", this.readOnlyName());
+        // 请求结束时清除
+        readWrite.execute(status -> this.name());
+        ThreadLocalUtil.removeLastWriteTime();
+        assertEquals("replica1", this.readOnlyName());
+    }
+
+    @Test
+    public void readOnlyInsideReadWriteTransactionUsesPrimary() {
+        this.build(database("replica1"));
+        assertEquals("primary", readWrite.execute(status -> this.readOnlyName()));
+    }
+
+    @Test
+    public void failedReplicaFallsThroughToNextAndPrimary() {
+        this.build(unavailable(), database("replica2"));
+        assertEquals(Arrays.asList("replica2", "replica2"), Arrays.asList(this.readOnlyName(), this.readOnlyName()));
+
+        this.build(unavailable(), unavailable());
+        assertEquals("primary", this.readOnlyName());
+    }
+
+    @Test
+    public void leastActiveSkipsBusyReplica() throws SQLException {
+        config.setLoadBalance(FrameProperties.Datasource.LoadBalance.LEAST_ACTIVE);
+        this.build(database("replica1"), database("replica2"));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try (Connection busy = routing.getConnection()) {
+            assertEquals("replica1", name(busy));
+            try (Connection second = routing.getConnection()) {
+                assertEquals("replica2", name(second));
+            }
+            // 轮询的顺序为replica1，使用中连接少的replica2优先
+            try (Connection third = routing.getConnection()) {
+                assertEquals("replica2", name(third));
+            }
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        // 关闭后使用中连接数减少，恢复轮询顺序
+        this.build(database("replica1"), database("replica2"));
+        assertEquals(Arrays.asList("replica1", "replica2"), Arrays.asList(this.readOnlyName(), this.readOnlyName()));
+    }
+
+    /**
+     * 和ReadWriteDataSourceConfig一样用LazyConnectionDataSourceProxy包装
+     */
+    private void build(DataSource... replicas) {
+        List<DataSource> list = new ArrayList<>(Arrays.asList(replicas));
+        routing = new ReadWriteRoutingDataSource(database("primary"), list, config);
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    private String name() {
+        return jdbcTemplate.queryForObject("SELECT NAME FROM DB_NAME", String.class);
+    }
+
+    private String readOnlyName() {
+        return readOnly.execute(status -> this.name());
+    }
+
+    private static String name(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT NAME FROM DB_NAME")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    /**
+     * 内存数据库，DB_NAME表中保存数据库名
+     */
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:rw_" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS DB_NAME (NAME VARCHAR(32))");
+        jdbcTemplate.update("DELETE FROM DB_NAME");
+        jdbcTemplate.update("INSERT INTO DB_NAME (NAME) VALUES (?)", name);
+        return dataSource;
+    }
+
+    /**
+     * 取得连接失败的从库
+     */
+    private static DataSource unavailable() {
+        return new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("replica down");
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                throw new SQLException("replica down");
+            }
+        };
+    }
+}
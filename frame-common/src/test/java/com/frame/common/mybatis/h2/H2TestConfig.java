@@ -0,0 +1,103 @@
+package com.frame.common.mybatis.h2;
+
+import com.baomidou.mybatisplus.autoconfigure.MybatisPlusAutoConfiguration;
+import com.baomidou.mybatisplus.core.incrementer.IKeyGenerator;
+import com.baomidou.mybatisplus.core.injector.ISqlInjector;
+import com.baomidou.mybatisplus.extension.incrementer.OracleKeyGenerator;
+import com.baomidou.mybatisplus.extension.plugins.OptimisticLockerInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.PaginationInterceptor;
+import com.frame.common.mybatis.injector.LogicDeleteSqlInjector;
+import com.frame.common.mybatis.interceptor.metrics.SqlMetrics;
+import com.frame.common.mybatis.interceptor.metrics.SqlMetricsInterceptor;
+import com.frame.common.mybatis.interceptor.page.PageCountCache;
+import com.frame.common.mybatis.interceptor.page.SortPaginationInterceptor;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * <p>
+ * H2内存数据库的测试配置，只加载数据源、事务和mybatis-plus，
+ * 分页、逻辑删除、乐观锁、主键序列、SQL执行统计和MybatisPlusConfig的设置一致
+ * </p>
+ * <p>
+ * 表结构见db/h2-test.sql，测试类用spring.datasource.schema指定
+ * </p>
+ * <p>
+ * 数据源用NoInfoBatch包装，测试不返回件数的驱动时开启
+ * </p>
+ *
+ * @author gaoly
+ */
+@Configuration
+@ImportAutoConfiguration({DataSourceAutoConfiguration.class, DataSourceTransactionManagerAutoConfiguration.class,
+        TransactionAutoConfiguration.class, JdbcTemplateAutoConfiguration.class, MybatisPlusAutoConfiguration.class})
+@MapperScan("com.frame.common.mybatis.h2")
+public class H2TestConfig {
+
+    /**
+     * 测试用的配置
+     */
+    public static final String SCHEMA = "spring.datasource.schema=classpath:db/h2-test.sql";
+
+    @Bean
+    public static BeanPostProcessor noInfoBatchDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource ? NoInfoBatch.wrap((DataSource) bean) : bean;
+            }
+        };
+    }
+
+    @Bean
+    public PageCountCache pageCountCache() {
+        return new PageCountCache(60, 1024);
+    }
+
+    @Bean
+    public PaginationInterceptor paginationInterceptor(PageCountCache pageCountCache) {
+        SortPaginationInterceptor page = new SortPaginationInterceptor();
+        page.setOverflow(true);
+        page.setCountCache(pageCountCache);
+        return page;
+    }
+
+    @Bean
+    public OptimisticLockerInterceptor optimisticLockerInterceptor() {
+        return new OptimisticLockerInterceptor();
+    }
+
+    @Bean
+    public SqlMetrics sqlMetrics() {
+        return new SqlMetrics();
+    }
+
+    @Bean
+    public SqlMetricsInterceptor sqlMetricsInterceptor(SqlMetrics sqlMetrics) {
+        return new SqlMetricsInterceptor(sqlMetrics, 1000L, 1.0);
+    }
+
+    @Bean
+    public ISqlInjector sqlInjector() {
+        return new LogicDeleteSqlInjector();
+    }
+
+    @Bean
+    public IKeyGenerator keyGenerator() {
+        return new OracleKeyGenerator();
+    }
+
+    @Bean
+    public TestItemService testItemService() {
+        return new TestItemService();
+    }
+}
@@ -0,0 +1,68 @@
+package com.frame.common.mybatis.h2;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import javax.sql.DataSource;
+
+/**
+ * <p>
+ * 模拟批量执行不返回件数的驱动，开启后当前线程的executeBatch结果都为SUCCESS_NO_INFO
+ * </p>
+ * <p>
+ * H2返回实际件数，用H2TestConfig包装的数据源测试件数不明时的处理
+ * </p>
+ *
+ * @author gaoly
+ */
+public final class NoInfoBatch {
+
+    private static final ThreadLocal<Boolean> ENABLED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private NoInfoBatch() {
+    }
+
+    /**
+     * 当前线程开启或关闭
+     *
+     * @param enabled 是否开启
+     */
+    public static void enable(boolean enabled) {
+        ENABLED.set(enabled);
+    }
+
+    /**
+     * 包装数据源，取得的连接创建的Statement的executeBatch结果按开关改写
+     *
+     * @param dataSource 数据源
+     * @return 包装后的数据源
+     */
+    static DataSource wrap(DataSource dataSource) {
+        return (DataSource) proxy(DataSource.class, dataSource);
+    }
+
+    private static Object proxy(Class<?> type, Object target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+            if (result instanceof Connection && method.getReturnType() == Connection.class) {
+                return proxy(Connection.class, result);
+            }
+            if (result instanceof Statement && method.getReturnType().isInterface()) {
+                return proxy(method.getReturnType(), result);
+            }
+            if (result instanceof int[] && "executeBatch".equals(method.getName()) && ENABLED.get()) {
+                Arrays.fill((int[]) result, Statement.SUCCESS_NO_INFO);
+            }
+            return result;
+        };
+        return Proxy.newProxyInstance(NoInfoBatch.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,36 @@
+package com.frame.common.mybatis.h2;
+
+import com.baomidou.mybatisplus.annotation.KeySequence;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.frame.common.base.model.BaseEntity;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+/**
+ * H2测试用实体
+ *
+ * @author gaoly
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@Accessors(chain = true)
+@TableName("TEST_ITEM")
+@KeySequence(value = "TEST_ITEM_SEQ", clazz = String.class)
+public class TestItem extends BaseEntity {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 名称
+     */
+    @TableField("NAME")
+    private String name;
+
+    /**
+     * 排序号，可以为NULL
+     */
+    @TableField("SORT_NO")
+    private Integer sortNo;
+}
@@ -0,0 +1,11 @@
+package com.frame.common.mybatis.h2;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+ * H2测试用 Mapper 接口
+ *
+ * @author gaoly
+ */
+public interface TestItemMapper extends BaseMapper<TestItem> {
+}
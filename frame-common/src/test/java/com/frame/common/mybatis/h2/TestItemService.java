@@ -0,0 +1,11 @@
+package com.frame.common.mybatis.h2;
+
+import com.frame.common.base.service.impl.BaseServiceImpl;
+
+/**
+ * H2测试用服务
+ *
+ * @author gaoly
+ */
+public class TestItemService extends BaseServiceImpl<TestItemMapper, TestItem> {
+}
@@ -0,0 +1,127 @@
+package com.frame.common.mybatis.incrementer;
+
+import com.baomidou.mybatisplus.annotation.KeySequence;
+import com.baomidou.mybatisplus.extension.incrementer.H2KeyGenerator;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HiLoIdentifierGeneratorTests {
+
+    private static final int BLOCK_SIZE = 50;
+
+    private static final int IDS = 5000;
+
+    private DataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @KeySequence("HILO_SEQ")
+    private static class SequenceEntity {
+    }
+
+    @KeySequence("HILO_WRONG_SEQ")
+    private static class WrongSequenceEntity {
+    }
+
+    private static class PlainEntity {
+    }
+
+    @Before
+    public void setUp() {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:hilo;DB_CLOSE_DELAY=-1");
+        dataSource = h2;
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS HILO_SEQ");
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS HILO_WRONG_SEQ");
+        jdbcTemplate.execute("CREATE SEQUENCE HILO_SEQ START WITH 1000 INCREMENT BY " + BLOCK_SIZE);
+        jdbcTemplate.execute("CREATE SEQUENCE HILO_WRONG_SEQ START WITH 1000 INCREMENT BY 1");
+    }
+
+    @Test
+    public void concurrentIdsAreUniqueAndFetchOncePerBlock() throws Exception {
+        HiLoIdentifierGenerator generator = new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), BLOCK_SIZE, null);
+        // 块的切换时CAS失败的块放回备用，ID不保证递增，只保证唯一
+        List<List<Long>> results = SnowflakeIdentifierGeneratorTests.concurrently(() -> {
+            List<Long> ids = new ArrayList<>(IDS);
+            for (int i = 0; i < IDS; i++) {
+                ids.add(Long.valueOf(generator.nextId(SequenceEntity.class)));
+            }
+            return ids;
+        });
+
+        Set<Long> all = new HashSet<>();
+        results.forEach(all::addAll);
+        int total = results.size() * IDS;
+        assertEquals(total, all.size());
+        // 取得的块数：使用的块和各线程最多1个备用块
+        long fetched = (this.currentValue("HILO_SEQ") - 1000L) / BLOCK_SIZE + 1;
+        assertTrue("fetched " + fetched, fetched <= total / BLOCK_SIZE + results.size());
+        for (long id : all) {
+            assertTrue(id >= 1000L && id < 1000L + fetched * BLOCK_SIZE);
+        }
+    }
+
+    @Test
+    public void idsDoNotCollideWithOtherSequenceUsers() {
+        HiLoIdentifierGenerator generator = new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), BLOCK_SIZE, null);
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < BLOCK_SIZE * 5; i++) {
+            assertTrue(ids.add(Long.valueOf(generator.nextId(SequenceEntity.class))));
+            if (i % 7 == 0) {
+                // 其它节点、其它generator直接取得序列时整块为对方所有
+                long start = jdbcTemplate.queryForObject("SELECT HILO_SEQ.NEXTVAL", Long.class);
+                for (long id = start; id < start + BLOCK_SIZE; id++) {
+                    assertTrue(ids.add(id));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void defaultSequenceIsUsedWithoutKeySequence() {
+        HiLoIdentifierGenerator generator = new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), BLOCK_SIZE, "HILO_SEQ");
+        assertEquals("1000", generator.nextId(PlainEntity.class));
+        assertEquals("1001", generator.nextId(SequenceEntity.class));
+
+        HiLoIdentifierGenerator noDefault = new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), BLOCK_SIZE, null);
+        assertNull(noDefault.nextId(PlainEntity.class));
+    }
+
+    @Test
+    public void sequenceIncrementMustMatchBlockSize() {
+        HiLoIdentifierGenerator generator = new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), BLOCK_SIZE, null);
+        try {
+            generator.nextId(WrongSequenceEntity.class);
+            fail("INCREMENT BY 1 must be rejected");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("HILO_WRONG_SEQ"));
+        }
+        try {
+            new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), BLOCK_SIZE, "HILO_WRONG_SEQ");
+            fail("default sequence is validated at startup");
+        } catch (IllegalStateException e) {
+            // 启动时检查
+        }
+        // 检查失败的序列没有取得值
+        assertEquals(999L, this.currentValue("HILO_WRONG_SEQ"));
+    }
+
+    private long currentValue(String sequence) {
+        return jdbcTemplate.queryForObject(
+                "SELECT CURRENT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?", Long.class, sequence);
+    }
+}
@@ -0,0 +1,114 @@
+package com.frame.common.mybatis.incrementer;
+
+import com.baomidou.mybatisplus.annotation.KeySequence;
+import com.baomidou.mybatisplus.extension.incrementer.H2KeyGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ * 每件取得序列（INCREMENT BY 1）、hi/lo（INCREMENT BY 50）、snowflake的每件ID耗时比较，单线程和8线程
+ * 类名不是*Tests，mvn test不执行，需要时单独执行：mvn test -Dtest=IdentifierGeneratorBenchmark
+ * </p>
+ * <p>
+ * H2内存数据库没有网络往返，实际数据库上每件取得序列的耗时更大
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class IdentifierGeneratorBenchmark {
+
+    private static final int IDS = 20000;
+
+    private static final int BLOCK_SIZE = 50;
+
+    private static final int WARMUP = 3;
+
+    private static final int ROUNDS = 5;
+
+    @KeySequence("BENCH_SINGLE_SEQ")
+    private static class SingleEntity {
+    }
+
+    @KeySequence("BENCH_BLOCK_SEQ")
+    private static class BlockEntity {
+    }
+
+    @Test
+    public void sequenceVersusHiLoVersusSnowflake() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:id_bench;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS BENCH_SINGLE_SEQ INCREMENT BY 1");
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS BENCH_BLOCK_SEQ INCREMENT BY " + BLOCK_SIZE);
+        // blockSize为1时每件取得序列，和以前的@KeySequence一样
+        IdentifierGenerator sequence = new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), 1, null);
+        IdentifierGenerator hiLo = new HiLoIdentifierGenerator(dataSource, new H2KeyGenerator(), BLOCK_SIZE, null);
+        IdentifierGenerator snowflake = new SnowflakeIdentifierGenerator(1);
+
+        for (int i = 0; i < WARMUP; i++) {
+            single(sequence, SingleEntity.class);
+            single(hiLo, BlockEntity.class);
+            single(snowflake, Object.class);
+        }
+        long[] single = new long[3];
+        long[] threads = new long[3];
+        for (int i = 0; i < ROUNDS; i++) {
+            single[0] += single(sequence, SingleEntity.class);
+            single[1] += single(hiLo, BlockEntity.class);
+            single[2] += single(snowflake, Object.class);
+            threads[0] += threads(sequence, SingleEntity.class);
+            threads[1] += threads(hiLo, BlockEntity.class);
+            threads[2] += threads(snowflake, Object.class);
+        }
+        log.info("{} ids 1 thread: sequence {} ns/id, hi/lo({}) {} ns/id, snowflake {} ns/id", IDS,
+                single[0] / ROUNDS / IDS, BLOCK_SIZE, single[1] / ROUNDS / IDS, single[2] / ROUNDS / IDS);
+        log.info("{} ids 8 threads: sequence {} ns/id, hi/lo({}) {} ns/id, snowflake {} ns/id", IDS,
+                threads[0] / ROUNDS / IDS, BLOCK_SIZE, threads[1] / ROUNDS / IDS, threads[2] / ROUNDS / IDS);
+    }
+
+    /**
+     * @return 耗时（纳秒）
+     */
+    private static long single(IdentifierGenerator generator, Class<?> entityClass) {
+        Set<String> ids = new HashSet<>(IDS * 2);
+        long start = System.nanoTime();
+        for (int i = 0; i < IDS; i++) {
+            ids.add(generator.nextId(entityClass));
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(IDS, ids.size());
+        return nanos;
+    }
+
+    /**
+     * 8线程合计IDS件
+     *
+     * @return 耗时（纳秒）
+     */
+    private static long threads(IdentifierGenerator generator, Class<?> entityClass) throws Exception {
+        int perThread = IDS / 8;
+        long start = System.nanoTime();
+        List<Set<String>> results = SnowflakeIdentifierGeneratorTests.concurrently(() -> {
+            Set<String> ids = new HashSet<>(perThread * 2);
+            for (int i = 0; i < perThread; i++) {
+                ids.add(generator.nextId(entityClass));
+            }
+            return ids;
+        });
+        long nanos = System.nanoTime() - start;
+        Set<String> all = new HashSet<>(IDS * 2);
+        results.forEach(all::addAll);
+        assertEquals(perThread * 8, all.size());
+        return nanos;
+    }
+}
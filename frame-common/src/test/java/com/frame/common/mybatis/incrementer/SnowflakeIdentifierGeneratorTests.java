@@ -0,0 +1,136 @@
+package com.frame.common.mybatis.incrementer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnowflakeIdentifierGeneratorTests {
+
+    private static final int THREADS = 8;
+
+    private static final int IDS = 20000;
+
+    @Test
+    public void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        SnowflakeIdentifierGenerator generator = new SnowflakeIdentifierGenerator(1);
+        // 每线程20000件，同一毫秒内超过4096件时进位到下一毫秒
+        List<List<String>> results = concurrently(() -> {
+            List<String> ids = new ArrayList<>(IDS);
+            for (int i = 0; i < IDS; i++) {
+                ids.add(generator.nextId(Object.class));
+            }
+            return ids;
+        });
+
+        Set<String> all = new HashSet<>();
+        for (List<String> ids : results) {
+            all.addAll(ids);
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue(ids.get(i - 1) + " < " + ids.get(i), ids.get(i - 1).compareTo(ids.get(i)) < 0);
+            }
+        }
+        assertEquals(THREADS * IDS, all.size());
+    }
+
+    @Test
+    public void differentWorkersNeverCollide() throws Exception {
+        SnowflakeIdentifierGenerator first = new SnowflakeIdentifierGenerator(1);
+        SnowflakeIdentifierGenerator second = new SnowflakeIdentifierGenerator(2);
+        List<List<String>> results = concurrently(() -> {
+            List<String> ids = new ArrayList<>(IDS * 2);
+            for (int i = 0; i < IDS; i++) {
+                ids.add(first.nextId(Object.class));
+                ids.add(second.nextId(Object.class));
+            }
+            return ids;
+        });
+
+        Set<String> all = new HashSet<>();
+        results.forEach(all::addAll);
+        assertEquals(THREADS * IDS * 2, all.size());
+    }
+
+    @Test
+    public void formatKeepsNumericOrder() {
+        Random random = new Random(0L);
+        for (int i = 0; i < 100000; i++) {
+            long a = random.nextLong() >>> 1;
+            long b = random.nextLong() >>> 1;
+            String formatA = SnowflakeIdentifierGenerator.format(a);
+            String formatB = SnowflakeIdentifierGenerator.format(b);
+            assertEquals(13, formatA.length());
+            assertEquals(Long.signum(Long.compare(a, b)), Integer.signum(formatA.compareTo(formatB)));
+        }
+        assertEquals("0000000000000", SnowflakeIdentifierGenerator.format(0L));
+        assertEquals("1Y2P0IJ32E8E7", SnowflakeIdentifierGenerator.format(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void lostLeaseStopsGeneration() {
+        AtomicBoolean valid = new AtomicBoolean(true);
+        SnowflakeIdentifierGenerator generator = new SnowflakeIdentifierGenerator(3, valid::get);
+        generator.nextId(Object.class);
+
+        valid.set(false);
+        try {
+            generator.nextId(Object.class);
+            fail("lost lease must stop generation");
+        } catch (IllegalStateException e) {
+            // 租约失效
+        }
+    }
+
+    @Test
+    public void workerIdMustBeInRange() {
+        new SnowflakeIdentifierGenerator(0);
+        new SnowflakeIdentifierGenerator(SnowflakeIdentifierGenerator.MAX_WORKER_ID);
+        for (int workerId : new int[]{-1, SnowflakeIdentifierGenerator.MAX_WORKER_ID + 1}) {
+            try {
+                new SnowflakeIdentifierGenerator(workerId);
+                fail("worker id out of range: " + workerId);
+            } catch (IllegalArgumentException e) {
+                // 范围外
+            }
+        }
+    }
+
+    /**
+     * THREADS个线程同时开始执行
+     */
+    static <T> List<T> concurrently(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.frame.common.mybatis.interceptor.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * SQL执行统计每次记录的耗时（statement查找和计数），1线程和多线程同时记录同一个statement时的比较
+ * 类名不是*Tests，mvn test不执行，需要时单独执行：mvn test -Dtest=SqlMetricsBenchmark
+ * </p>
+ * <p>
+ * 拦截器在SQL路径上的额外开销就是这里的记录加上两次System.nanoTime()，和JDBC执行的耗时比较可以忽略；
+ * 多线程的结果和CPU数有关，CPU数少于线程数时没有竞争
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class SqlMetricsBenchmark {
+
+    private static final int RECORDS = 1000000;
+
+    private static final int WARMUP = 3;
+
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void recordCost() throws InterruptedException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[]{1, Math.max(2, cpus)}) {
+            for (int i = 0; i < WARMUP; i++) {
+                this.run(threads);
+            }
+            long nanos = 0L;
+            for (int i = 0; i < ROUNDS; i++) {
+                nanos += this.run(threads);
+            }
+            log.info("{} threads ({} cpus) x {} records: {} ns/record (elapsed per thread)", threads, cpus, RECORDS,
+                    nanos / ROUNDS / RECORDS);
+        }
+    }
+
+    /**
+     * 各线程同时记录RECORDS次
+     *
+     * @return 耗时（纳秒）
+     */
+    private long run(int threads) throws InterruptedException {
+        SqlMetrics sqlMetrics = new SqlMetrics();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < RECORDS; i++) {
+                    sqlMetrics.get("bench").record(i & 0xFFFFF, 1, false);
+                }
+            });
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+        long nanos = System.nanoTime() - begin;
+        assertEquals((long) threads * RECORDS, sqlMetrics.get("bench").getCalls());
+        return nanos;
+    }
+}
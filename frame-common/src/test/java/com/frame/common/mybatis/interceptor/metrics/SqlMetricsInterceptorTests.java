@@ -0,0 +1,182 @@
+package com.frame.common.mybatis.interceptor.metrics;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.frame.common.mybatis.h2.H2TestConfig;
+import com.frame.common.mybatis.h2.TestItem;
+import com.frame.common.mybatis.h2.TestItemMapper;
+import com.frame.common.mybatis.h2.TestItemService;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class SqlMetricsInterceptorTests {
+
+    private static final String MAPPER = TestItemMapper.class.getName() + ".";
+
+    @Autowired
+    private TestItemService testItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SqlMetrics sqlMetrics;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        for (int i = 1; i <= 3; i++) {
+            jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, VERSION_NUM) VALUES (?, ?, 1)", "ID0" + i, "name" + i);
+        }
+        sqlMetrics.reset();
+    }
+
+    @Test
+    public void queriesAreRecordedPerStatement() {
+        testItemService.list(new QueryWrapper<>());
+        testItemService.list(new QueryWrapper<TestItem>().eq("ID", "ID01"));
+        testItemService.getById("ID02");
+
+        Map<String, Object> selectList = sqlMetrics.snapshot(MAPPER + "selectList");
+        assertEquals(2L, selectList.get("calls"));
+        assertEquals(4L, selectList.get("rows"));
+        assertEquals(0L, selectList.get("errors"));
+        assertEquals(1L, sqlMetrics.snapshot(MAPPER + "selectById").get("calls"));
+        assertEquals(1L, sqlMetrics.snapshot(MAPPER + "selectById").get("rows"));
+        assertEquals(2L, histogramTotal(selectList));
+    }
+
+    @Test
+    public void updateRecordsAffectedRows() {
+        TestItem item = new TestItem().setName("changed");
+        item.setId("ID01");
+        item.setVersionNum(1);
+        testItemService.updateById(item);
+        testItemService.remove(new QueryWrapper<TestItem>().ne("ID", "ID01"));
+
+        assertEquals(1L, sqlMetrics.snapshot(MAPPER + "updateById").get("rows"));
+        assertEquals(2L, sqlMetrics.snapshot(MAPPER + "delete").get("rows"));
+    }
+
+    @Test
+    public void jdbcBatchRecordsEveryFlush() {
+        List<TestItem> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            TestItem item = new TestItem().setName("batch" + i);
+            item.setId("B" + i);
+            items.add(item);
+        }
+        // 每2件flush：第3件、第5件插入后
+        testItemService.saveBatch(items, 2);
+
+        Map<String, Object> insert = sqlMetrics.snapshot(MAPPER + "insert");
+        assertEquals(5L, insert.get("calls"));
+        assertEquals(2L, insert.get("batches"));
+        assertEquals(5L, insert.get("batchRows"));
+        assertEquals(5L, insert.get("rows"));
+    }
+
+    @Test
+    public void errorsAreCounted() {
+        try {
+            // NAME为NOT NULL
+            testItemService.save(new TestItem());
+            fail("not null violation expected");
+        } catch (RuntimeException e) {
+            // 执行出错
+        }
+        assertEquals(1L, sqlMetrics.snapshot(MAPPER + "insert").get("errors"));
+        assertEquals(1L, sqlMetrics.snapshot(MAPPER + "insert").get("calls"));
+    }
+
+    @Test
+    public void cursorQueryIsRecordedWithoutRows() {
+        int[] count = new int[1];
+        testItemService.stream(new QueryWrapper<>(), item -> count[0]++);
+
+        assertEquals(3, count[0]);
+        Map<String, Object> stream = sqlMetrics.snapshot(MAPPER + "selectList_stream_1000");
+        assertEquals(1L, stream.get("calls"));
+        assertEquals(0L, stream.get("rows"));
+        assertNull(sqlMetrics.snapshot(MAPPER + "noSuchStatement"));
+    }
+
+    @Test
+    public void boundRegistryReadsStatementMetrics() {
+        SqlMetrics metrics = new SqlMetrics();
+        metrics.get("before").record(TimeUnit.MILLISECONDS.toNanos(3), 1, false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+        // 绑定后第一次执行的statement也注册
+        metrics.get("after").record(TimeUnit.MILLISECONDS.toNanos(5), 2, true);
+        metrics.get("after").record(TimeUnit.MILLISECONDS.toNanos(7), 2, false);
+
+        FunctionTimer before = registry.get("frame.sql.execution").tag("statement", "before").functionTimer();
+        assertEquals(1.0, before.count(), 0.0);
+        FunctionTimer after = registry.get("frame.sql.execution").tag("statement", "after").functionTimer();
+        assertEquals(2.0, after.count(), 0.0);
+        assertEquals(12.0, after.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1.0, registry.get("frame.sql.errors").tag("statement", "after").functionCounter().count(), 0.0);
+        assertEquals(4.0, registry.get("frame.sql.rows").tag("statement", "after").functionCounter().count(), 0.0);
+        assertEquals(7.0, registry.get("frame.sql.execution.max").tag("statement", "after").timeGauge()
+                .value(TimeUnit.MILLISECONDS), 0.001);
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        SqlStatementMetrics metrics = new SqlStatementMetrics("concurrent");
+        int threads = 8;
+        int records = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < records; i++) {
+                    metrics.record(TimeUnit.MICROSECONDS.toNanos(i % 3000), 1, i % 100 == 0);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Map<String, Object> snapshot = metrics.snapshot();
+        assertEquals((long) threads * records, snapshot.get("calls"));
+        assertEquals((long) threads * records, snapshot.get("rows"));
+        assertEquals((long) threads * records / 100, snapshot.get("errors"));
+        assertEquals((long) threads * records, histogramTotal(snapshot));
+        assertEquals(2L, snapshot.get("maxMillis"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long histogramTotal(Map<String, Object> snapshot) {
+        return ((Map<String, Long>) snapshot.get("histogram")).values().stream().mapToLong(Long::longValue).sum();
+    }
+}
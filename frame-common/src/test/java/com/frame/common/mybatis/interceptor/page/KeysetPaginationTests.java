@@ -0,0 +1,198 @@
+package com.frame.common.mybatis.interceptor.page;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.frame.common.base.model.SortInfo;
+import com.frame.common.base.model.SortPage;
+import com.frame.common.mybatis.h2.H2TestConfig;
+import com.frame.common.mybatis.h2.TestItem;
+import com.frame.common.mybatis.h2.TestItemService;
+import com.frame.common.mybatis.util.SortSqlUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class KeysetPaginationTests {
+
+    private static final int ROWS = 25;
+
+    @Autowired
+    private TestItemService testItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * ID和NAME（NOT NULL，4种值重复），SORT_NO每7行一个NULL
+     */
+    private final Map<String, String> rows = new LinkedHashMap<>();
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        rows.clear();
+        for (int i = 1; i <= ROWS; i++) {
+            String id = String.format("ID%02d", i);
+            String name = "name" + i % 4;
+            rows.put(id, name);
+            jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, SORT_NO, VERSION_NUM) VALUES (?, ?, ?, 1)",
+                    id, name, i % 7 == 0 ? null : i % 5);
+        }
+    }
+
+    @Test
+    public void seekConditionIsAddedToOriginalQuery() {
+        List<SortInfo> keys = Arrays.asList(new SortInfo("name", SortInfo.Direction.DESC),
+                new SortInfo("ID", SortInfo.Direction.ASC, null, false));
+        String sql = SortSqlUtils.concatKeyset("SELECT ID, NAME FROM TEST_ITEM WHERE DELETE_FLAG = '0' ORDER BY SORT_NO",
+                keys, true);
+        assertEquals("SELECT ID, NAME FROM TEST_ITEM WHERE (DELETE_FLAG = '0') AND ((name < ?) OR (name = ? AND ID > ?))"
+                + " ORDER BY name DESC, ID", sql);
+        assertEquals(Arrays.asList("b", "b", "ID03"), SortSqlUtils.getKeysetParams(keys, Arrays.asList("b", "ID03")));
+    }
+
+    @Test
+    public void walksAllRowsOnce() {
+        List<String> expected = rows.keySet().stream()
+                .sorted(Comparator.comparing((String id) -> rows.get(id)).thenComparing(Comparator.naturalOrder()))
+                .collect(Collectors.toList());
+        assertEquals(expected, walk(new SortInfo("name", SortInfo.Direction.ASC), new QueryWrapper<>(), 4));
+    }
+
+    @Test
+    public void descendingReplacesOriginalOrder() {
+        List<String> expected = rows.keySet().stream()
+                .sorted(Comparator.comparing((String id) -> rows.get(id), Comparator.reverseOrder())
+                        .thenComparing(Comparator.naturalOrder()))
+                .collect(Collectors.toList());
+        QueryWrapper<TestItem> wrapper = new QueryWrapper<TestItem>().orderByDesc("ID");
+        assertEquals(expected, walk(new SortInfo("name", SortInfo.Direction.DESC), wrapper, 3));
+    }
+
+    @Test
+    public void cursorSeeksAfterLastRow() {
+        // name1: ID01 ID05 ID09 ID13 ID17 ID21 ID25，上一页最后一行为(name1, ID17)
+        SortPage<TestItem> page = keysetPage(new SortInfo("name", SortInfo.Direction.ASC), 4);
+        page.setSeekValues(new ArrayList<>(Arrays.asList("name1", "ID17")));
+        testItemService.page(page, new QueryWrapper<>());
+        assertEquals(Arrays.asList("ID21", "ID25", "ID02", "ID06"), ids(page.getRecords()));
+        assertTrue(page.isHasNext());
+    }
+
+    @Test
+    public void nullableSortColumnIsRejected() {
+        assertRejected(keysetPage(new SortInfo("sortNo", SortInfo.Direction.ASC), 10));
+    }
+
+    @Test
+    public void cursorWithNullIsRejected() {
+        SortPage<TestItem> page = keysetPage(new SortInfo("name", SortInfo.Direction.ASC), 10);
+        List<Object> seekValues = new ArrayList<>();
+        seekValues.add(null);
+        seekValues.add("ID07");
+        page.setSeekValues(seekValues);
+        assertRejected(page);
+    }
+
+    @Test
+    public void exactlyFullLastPageHasNoCursor() {
+        QueryWrapper<TestItem> wrapper = new QueryWrapper<TestItem>().le("ID", "ID20");
+        SortPage<TestItem> page = null;
+        String cursor = null;
+        for (int i = 0; i < 4; i++) {
+            page = keysetPage(new SortInfo("id", SortInfo.Direction.ASC), 5);
+            if (cursor != null) {
+                page.setCursor(cursor);
+            }
+            testItemService.page(page, wrapper);
+            assertEquals(5, page.getRecords().size());
+            cursor = page.getNextCursor();
+            if (i < 3) {
+                assertTrue(page.isHasNext());
+                assertNotNull(cursor);
+            }
+        }
+        assertEquals("ID20", page.getRecords().get(4).getId());
+        assertFalse(page.isHasNext());
+        assertNull(cursor);
+    }
+
+    @Test
+    public void onlyFirstPageIsCounted() {
+        SortPage<TestItem> first = keysetPage(new SortInfo("name", SortInfo.Direction.ASC), 10);
+        testItemService.page(first, new QueryWrapper<>());
+        assertEquals(ROWS, first.getTotal());
+
+        SortPage<TestItem> second = keysetPage(new SortInfo("name", SortInfo.Direction.ASC), 10);
+        second.setCursor(first.getNextCursor());
+        testItemService.page(second, new QueryWrapper<>());
+        assertEquals(0, second.getTotal());
+        assertEquals(10, second.getRecords().size());
+    }
+
+    private void assertRejected(SortPage<TestItem> page) {
+        try {
+            testItemService.page(page, new QueryWrapper<>());
+            fail("keyset page expected to be rejected");
+        } catch (RuntimeException e) {
+            Throwable cause = e;
+            while (cause.getCause() != null && !(cause instanceof IllegalArgumentException)) {
+                cause = cause.getCause();
+            }
+            assertTrue(String.valueOf(cause), cause instanceof IllegalArgumentException
+                    && cause.getMessage().startsWith("keyset"));
+        }
+    }
+
+    /**
+     * 按游标取得全部页
+     */
+    private List<String> walk(SortInfo order, QueryWrapper<TestItem> wrapper, int size) {
+        List<String> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            SortPage<TestItem> page = keysetPage(order, size);
+            if (cursor != null) {
+                page.setCursor(cursor);
+            }
+            testItemService.page(page, wrapper);
+            ids.addAll(ids(page.getRecords()));
+            cursor = page.getNextCursor();
+            assertTrue("cursor does not advance", ++pages <= ROWS);
+        } while (cursor != null);
+        assertEquals((ROWS + size - 1) / size, pages);
+        return ids;
+    }
+
+    private static SortPage<TestItem> keysetPage(SortInfo order, int size) {
+        SortPage<TestItem> page = new SortPage<>(1, size);
+        page.getOrders().add(order);
+        page.setKeyset(true);
+        return page;
+    }
+
+    private static List<String> ids(List<TestItem> records) {
+        return records.stream().map(TestItem::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,191 @@
+package com.frame.common.mybatis.interceptor.page;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.frame.common.base.model.SortInfo;
+import com.frame.common.base.model.SortPage;
+import com.frame.common.mybatis.h2.H2TestConfig;
+import com.frame.common.mybatis.h2.TestItem;
+import com.frame.common.mybatis.h2.TestItemService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = H2TestConfig.class, properties = H2TestConfig.SCHEMA)
+public class SortPaginationInterceptorTests {
+
+    private static final int ROWS = 25;
+
+    @Autowired
+    private TestItemService testItemService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PageCountCache pageCountCache;
+
+    @Before
+    public void setUp() {
+        jdbcTemplate.update("DELETE FROM TEST_ITEM");
+        pageCountCache.clear();
+        for (int i = 1; i <= ROWS; i++) {
+            insert(String.format("ID%02d", i), i % 5);
+        }
+    }
+
+    @Test
+    public void pageIsLimitedInSql() {
+        IPage<TestItem> page = testItemService.page(new SortPage<>(2, 10), new QueryWrapper<TestItem>().orderByAsc("ID"));
+        assertEquals(ROWS, page.getTotal());
+        assertEquals(3, page.getPages());
+        assertEquals(ids(11, 20), idsOf(page.getRecords()));
+
+        IPage<TestItem> last = testItemService.page(new SortPage<>(3, 10), new QueryWrapper<TestItem>().orderByAsc("ID"));
+        assertEquals(ids(21, 25), idsOf(last.getRecords()));
+    }
+
+    @Test
+    public void sortPageOrdersArePushedDown() {
+        SortPage<TestItem> sortPage = new SortPage<>(1, 5);
+        sortPage.getOrders().add(new SortInfo("sortNo", SortInfo.Direction.DESC));
+        sortPage.getOrders().add(new SortInfo("id", SortInfo.Direction.ASC));
+        IPage<TestItem> page = testItemService.page(sortPage, new QueryWrapper<>());
+        // SORT_NO = 4 : ID04 ID09 ID14 ID19 ID24
+        List<String> expected = new ArrayList<>();
+        for (int i = 4; i <= ROWS; i += 5) {
+            expected.add(String.format("ID%02d", i));
+        }
+        assertEquals(expected, idsOf(page.getRecords()));
+        assertEquals(ROWS, page.getTotal());
+    }
+
+    @Test
+    public void overflowReturnsFirstPage() {
+        IPage<TestItem> page = testItemService.page(new SortPage<>(9, 10), new QueryWrapper<TestItem>().orderByAsc("ID"));
+        assertEquals(1, page.getCurrent());
+        assertEquals(ids(1, 10), idsOf(page.getRecords()));
+    }
+
+    @Test
+    public void deletedRowsAreNotCounted() {
+        testItemService.removeById("ID01");
+        IPage<TestItem> page = testItemService.page(new SortPage<>(1, 10), new QueryWrapper<TestItem>().orderByAsc("ID"));
+        assertEquals(ROWS - 1, page.getTotal());
+        assertEquals(ids(2, 11), idsOf(page.getRecords()));
+    }
+
+    @Test
+    public void exactCountsEveryTime() {
+        assertEquals(ROWS, countPage(SortPage.CountMode.EXACT).getTotal());
+        insert("ID99", 0);
+        assertEquals(ROWS + 1, countPage(SortPage.CountMode.EXACT).getTotal());
+    }
+
+    @Test
+    public void cachedCountIsEvictedByServiceWrites() {
+        assertEquals(ROWS, countPage(SortPage.CountMode.CACHE).getTotal());
+        // 不经过服务的写入不清除缓存
+        insert("ID98", 0);
+        assertEquals(ROWS, countPage(SortPage.CountMode.CACHE).getTotal());
+        assertEquals(ROWS + 1, countPage(SortPage.CountMode.EXACT).getTotal());
+
+        testItemService.save(new TestItem().setName("saved").setSortNo(0));
+        assertEquals(ROWS + 2, countPage(SortPage.CountMode.CACHE).getTotal());
+    }
+
+    @Test
+    public void estimateWithConditionCountsExactly() {
+        SortPage<TestItem> page = new SortPage<TestItem>(1, 10).setCountMode(SortPage.CountMode.ESTIMATE);
+        testItemService.page(page, new QueryWrapper<TestItem>().eq("SORT_NO", 1).orderByAsc("ID"));
+        assertEquals(5, page.getTotal());
+        assertEquals(Arrays.asList("ID01", "ID06", "ID11", "ID16", "ID21"), idsOf(page.getRecords()));
+    }
+
+    @Test
+    public void estimateWithoutConditionStillPages() {
+        SortPage<TestItem> page = new SortPage<TestItem>(1, 10).setCountMode(SortPage.CountMode.ESTIMATE);
+        testItemService.page(page, new QueryWrapper<TestItem>().orderByAsc("ID"));
+        assertTrue(page.getTotal() > 0);
+        assertEquals(ids(1, 10), idsOf(page.getRecords()));
+    }
+
+    @Test
+    public void exactZeroCountSkipsPaging() {
+        SortPage<TestItem> page = new SortPage<>(1, 10);
+        testItemService.page(page, new QueryWrapper<TestItem>().eq("NAME", "none"));
+        assertEquals(0, page.getTotal());
+        assertTrue(page.getRecords().isEmpty());
+    }
+
+    @Test
+    public void staleCachedZeroStillPages() {
+        QueryWrapper<TestItem> wrapper = new QueryWrapper<TestItem>().eq("NAME", "later").orderByAsc("ID");
+        SortPage<TestItem> first = new SortPage<TestItem>(1, 10).setCountMode(SortPage.CountMode.CACHE);
+        testItemService.page(first, wrapper);
+        assertEquals(0, first.getTotal());
+
+        // 缓存的0已经过期，仍然只取一页
+        for (int i = 50; i < 65; i++) {
+            jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, SORT_NO, VERSION_NUM) VALUES (?, 'later', 0, 1)", "ID" + i);
+        }
+        SortPage<TestItem> second = new SortPage<TestItem>(1, 10).setCountMode(SortPage.CountMode.CACHE);
+        testItemService.page(second, new QueryWrapper<TestItem>().eq("NAME", "later").orderByAsc("ID"));
+        assertEquals(0, second.getTotal());
+        assertEquals(10, second.getRecords().size());
+    }
+
+    @Test
+    public void hasNextSkipsCount() {
+        SortPage<TestItem> first = new SortPage<TestItem>(1, 10).setCountMode(SortPage.CountMode.HAS_NEXT);
+        testItemService.page(first, new QueryWrapper<TestItem>().orderByAsc("ID"));
+        assertEquals(ids(1, 10), idsOf(first.getRecords()));
+        assertTrue(first.isHasNext());
+        assertEquals(11, first.getTotal());
+
+        SortPage<TestItem> last = new SortPage<TestItem>(3, 10).setCountMode(SortPage.CountMode.HAS_NEXT);
+        testItemService.page(last, new QueryWrapper<TestItem>().orderByAsc("ID"));
+        assertEquals(ids(21, 25), idsOf(last.getRecords()));
+        assertFalse(last.isHasNext());
+        assertEquals(ROWS, last.getTotal());
+    }
+
+    private IPage<TestItem> countPage(SortPage.CountMode countMode) {
+        SortPage<TestItem> page = new SortPage<TestItem>(1, 10).setCountMode(countMode);
+        return testItemService.page(page, new QueryWrapper<>());
+    }
+
+    private void insert(String id, Integer sortNo) {
+        jdbcTemplate.update("INSERT INTO TEST_ITEM (ID, NAME, SORT_NO, VERSION_NUM) VALUES (?, ?, ?, 1)",
+                id, "name" + id, sortNo);
+    }
+
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            ids.add(String.format("ID%02d", i));
+        }
+        return ids;
+    }
+
+    private static List<String> idsOf(List<TestItem> records) {
+        List<String> ids = new ArrayList<>();
+        for (TestItem record : records) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,125 @@
+package com.frame.common.mybatis.loader;
+
+import com.frame.common.base.model.BaseEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BatchLoaderTests {
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    private final Function<Collection<String>, Collection<TestEntity>> batchFunction = ids -> {
+        queries.incrementAndGet();
+        List<TestEntity> list = new ArrayList<>();
+        for (String id : ids) {
+            if (!id.startsWith("missing")) {
+                list.add(new TestEntity(id));
+            }
+        }
+        return list;
+    };
+
+    @Before
+    public void setUp() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void hundredLookupsOneQuery() {
+        BatchLoader<TestEntity> loader = BatchLoader.current(TestEntity.class, batchFunction);
+        List<CompletableFuture<TestEntity>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(loader.load("id" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("id" + i, futures.get(i).join().getId());
+        }
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void derivedFuturesDispatch() {
+        BatchLoader<TestEntity> loader = BatchLoader.current(TestEntity.class, batchFunction);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(loader.load("id" + i).thenApply(TestEntity::getId));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals("id" + i, futures.get(i).join());
+        }
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void composeAcrossLoaders() {
+        BatchLoader<TestEntity> loader = BatchLoader.current(TestEntity.class, batchFunction);
+        BatchLoader<OtherEntity> other = BatchLoader.current(OtherEntity.class, ids -> {
+            queries.incrementAndGet();
+            List<OtherEntity> list = new ArrayList<>();
+            ids.forEach(id -> list.add(new OtherEntity(id)));
+            return list;
+        });
+        CompletableFuture<OtherEntity> future = loader.load("id1").thenCompose(entity -> other.load(entity.getId()));
+        assertEquals("id1", future.join().getId());
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void allOfDispatch() {
+        BatchLoader<TestEntity> loader = BatchLoader.current(TestEntity.class, batchFunction);
+        List<CompletableFuture<TestEntity>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(loader.load("id" + i));
+        }
+        BatchLoader.allOf(futures.toArray(new CompletableFuture[0])).join();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add("id" + (i + 100));
+        }
+        CompletableFuture.allOf(loader.loadMany(ids).toArray(new CompletableFuture[0])).join();
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void missingAndCached() {
+        BatchLoader<TestEntity> loader = BatchLoader.current(TestEntity.class, batchFunction);
+        assertNull(loader.load("missing1").join());
+        assertEquals("id1", loader.load("id1").join().getId());
+        assertEquals("id1", loader.load("id1").join().getId());
+        assertEquals(2, queries.get());
+        BatchLoader.evict(TestEntity.class);
+        assertEquals("id1", loader.load("id1").join().getId());
+        assertEquals(3, queries.get());
+    }
+
+    private static class TestEntity extends BaseEntity {
+        private TestEntity(String id) {
+            this.setId(id);
+        }
+    }
+
+    private static class OtherEntity extends BaseEntity {
+        private OtherEntity(String id) {
+            this.setId(id);
+        }
+    }
+}
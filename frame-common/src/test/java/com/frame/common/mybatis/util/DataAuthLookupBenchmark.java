@@ -0,0 +1,120 @@
+package com.frame.common.mybatis.util;
+
+import com.frame.common.mybatis.annotation.DataAuth;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>
+ * 数据权限注解的对应表查找和每次反射查找（Class.forName、getMethods）的耗时比较
+ * 类名不是*Tests，mvn test不执行，需要时单独执行：mvn test -Dtest=DataAuthLookupBenchmark
+ * </p>
+ *
+ * @author gaoly
+ */
+@Slf4j
+public class DataAuthLookupBenchmark {
+
+    private static final int LOOKUPS = 200000;
+
+    private static final int WARMUP = 3;
+
+    private static final int ROUNDS = 5;
+
+    public interface BenchMapper {
+
+        @DataAuth("bench")
+        List<Object> selectByAuth();
+
+        List<Object> selectAll();
+
+        List<Object> selectList();
+
+        int insert();
+
+        int updateById();
+
+        int deleteById();
+    }
+
+    @Test
+    public void registryVersusReflection() throws ClassNotFoundException {
+        Configuration configuration = new Configuration();
+        configuration.addMapper(BenchMapper.class);
+        DataAuthUtils.register(configuration);
+        MappedStatement[] statements = new MappedStatement[BenchMapper.class.getMethods().length];
+        int i = 0;
+        for (Method method : BenchMapper.class.getMethods()) {
+            statements[i++] = new MappedStatement.Builder(configuration, BenchMapper.class.getName() + "." + method.getName(),
+                    new StaticSqlSource(configuration, "SELECT 1"), SqlCommandType.SELECT).build();
+        }
+        int expected = 0;
+        for (i = 0; i < LOOKUPS; i++) {
+            if (statements[i % statements.length].getId().endsWith(".selectByAuth")) {
+                expected++;
+            }
+        }
+        for (i = 0; i < WARMUP; i++) {
+            this.registry(statements, expected);
+            this.reflection(statements, expected);
+        }
+        long registry = 0L;
+        long reflection = 0L;
+        for (i = 0; i < ROUNDS; i++) {
+            registry += this.registry(statements, expected);
+            reflection += this.reflection(statements, expected);
+        }
+        log.info("{} lookups: registry {} ms, reflection {} ms", LOOKUPS,
+                TimeUnit.NANOSECONDS.toMillis(registry / ROUNDS), TimeUnit.NANOSECONDS.toMillis(reflection / ROUNDS));
+    }
+
+    /**
+     * @return 耗时（纳秒）
+     */
+    private long registry(MappedStatement[] statements, int expected) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (DataAuthUtils.getDataAuthAnnotation(statements[i % statements.length]) != null) {
+                found++;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(expected, found);
+        return nanos;
+    }
+
+    /**
+     * 对应表以前的查找方式，每次按statement ID反射mapper的方法
+     *
+     * @return 耗时（纳秒）
+     */
+    private long reflection(MappedStatement[] statements, int expected) throws ClassNotFoundException {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            String id = statements[i % statements.length].getId();
+            int index = id.lastIndexOf('.');
+            String methodName = id.substring(index + 1);
+            for (Method method : Class.forName(id.substring(0, index)).getMethods()) {
+                if (method.getName().equals(methodName) && method.isAnnotationPresent(DataAuth.class)) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        assertEquals(expected, found);
+        return nanos;
+    }
+}
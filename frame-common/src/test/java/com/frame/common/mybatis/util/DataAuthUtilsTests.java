@@ -0,0 +1,118 @@
+package com.frame.common.mybatis.util;
+
+import com.frame.common.mybatis.annotation.DataAuth;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DataAuthUtilsTests {
+
+    private static final Configuration CONFIGURATION = new Configuration();
+
+    /**
+     * 启动时登录的mapper
+     */
+    public interface AuthMapper {
+
+        @DataAuth(value = "staff", alias = "S")
+        List<Object> selectByAuth();
+
+        List<Object> selectAll();
+    }
+
+    /**
+     * 启动时没有登录的mapper
+     */
+    public interface LateMapper {
+
+        @DataAuth("late")
+        List<Object> selectLate();
+
+        List<Object> selectAll();
+    }
+
+    @BeforeClass
+    public static void register() {
+        CONFIGURATION.addMapper(AuthMapper.class);
+        DataAuthUtils.register(CONFIGURATION);
+    }
+
+    @Test
+    public void registeredStatementsAreResolvedAtStartup() throws NoSuchMethodException {
+        String byAuth = AuthMapper.class.getName() + ".selectByAuth";
+        String all = AuthMapper.class.getName() + ".selectAll";
+        assertTrue(registry().containsKey(byAuth));
+        assertTrue(registry().containsKey(all));
+
+        DataAuth dataAuth = DataAuthUtils.getDataAuthAnnotation(statement(byAuth));
+        assertSame(AuthMapper.class.getMethod("selectByAuth").getAnnotation(DataAuth.class), dataAuth);
+        assertEquals("S", dataAuth.alias());
+        // 没有注解的方法也登录，为空
+        assertEquals(Optional.empty(), registry().get(all));
+        assertNull(DataAuthUtils.getDataAuthAnnotation(statement(all)));
+    }
+
+    @Test
+    public void derivedStatementUsesSourceAnnotation() {
+        String source = AuthMapper.class.getName() + ".selectByAuth";
+        String stream = MappedStatementUtils.fetchSizeStatement(CONFIGURATION, this.addStatement(source), 1000);
+
+        assertEquals("staff", DataAuthUtils.getDataAuthAnnotation(CONFIGURATION.getMappedStatement(stream)).value());
+        assertTrue(registry().containsKey(stream));
+    }
+
+    @Test
+    public void unregisteredMapperIsResolvedOnceAndCached() {
+        String late = LateMapper.class.getName() + ".selectLate";
+        String all = LateMapper.class.getName() + ".selectAll";
+        assertFalse(registry().containsKey(late));
+
+        assertEquals("late", DataAuthUtils.getDataAuthAnnotation(statement(late)).value());
+        assertNull(DataAuthUtils.getDataAuthAnnotation(statement(all)));
+        // 没有注解的结果也缓存，第二次不再查找
+        assertEquals(Optional.empty(), registry().get(all));
+        Optional<DataAuth> cached = registry().get(late);
+        DataAuthUtils.getDataAuthAnnotation(statement(late));
+        assertSame(cached, registry().get(late));
+    }
+
+    @Test
+    public void unknownMapperIsCachedAsEmpty() {
+        String id = "com.frame.common.mybatis.util.NoSuchMapper.select";
+
+        assertNull(DataAuthUtils.getDataAuthAnnotation(statement(id)));
+        assertEquals(Optional.empty(), registry().get(id));
+        assertNull(DataAuthUtils.getDataAuthAnnotation(statement(id)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Optional<DataAuth>> registry() {
+        return (Map<String, Optional<DataAuth>>) ReflectionTestUtils.getField(DataAuthUtils.class, "REGISTRY");
+    }
+
+    private static MappedStatement statement(String id) {
+        return new MappedStatement.Builder(CONFIGURATION, id, new StaticSqlSource(CONFIGURATION, "SELECT 1"),
+                SqlCommandType.SELECT).build();
+    }
+
+    private String addStatement(String id) {
+        if (!CONFIGURATION.hasStatement(id, false)) {
+            CONFIGURATION.addMappedStatement(statement(id));
+        }
+        return id;
+    }
+}
@@ -0,0 +1,27 @@
+DROP TABLE IF EXISTS TEST_ITEM;
+DROP SEQUENCE IF EXISTS TEST_ITEM_SEQ;
+
+CREATE SEQUENCE TEST_ITEM_SEQ START WITH 1000 INCREMENT BY 1;
+
+CREATE TABLE TEST_ITEM (
+  ID          VARCHAR(32) NOT NULL PRIMARY KEY,
+  NAME        VARCHAR(64) NOT NULL,
+  SORT_NO     INT,
+  VERSION_NUM INT,
+  DELETE_FLAG CHAR(1) DEFAULT '0' NOT NULL,
+  CREATE_USER VARCHAR(32),
+  CREATE_DATE TIMESTAMP,
+  UPDATE_USER VARCHAR(32),
+  UPDATE_DATE TIMESTAMP
+);
+
+DROP TABLE IF EXISTS TEST_ITEM_ARC;
+DROP TABLE IF EXISTS ST_TBL_ARCHIVE_CHECKPOINT;
+
+CREATE TABLE ST_TBL_ARCHIVE_CHECKPOINT (
+  TABLE_NAME       VARCHAR(64) NOT NULL PRIMARY KEY,
+  LAST_UPDATE_DATE TIMESTAMP,
+  LAST_ID          VARCHAR(64),
+  ARCHIVED_ROWS    BIGINT DEFAULT 0,
+  UPDATE_DATE      TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,63 @@
+package com.frame.redis;
+
+import com.frame.common.mybatis.cache.EntityCacheManager;
+import com.frame.common.mybatis.service.IEntityCacheNotifier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 实体缓存清除通知，通过Redis发布订阅通知其它节点
+ *
+ * @author gaoly
+ */
+@Component
+public class RedisEntityCacheNotifier implements IEntityCacheNotifier, MessageListener {
+
+    /**
+     * 通知频道
+     */
+    public static final String CHANNEL = "frame:entity-cache:evict";
+
+    /**
+     * 消息中节点ID和实体类名的分隔符
+     */
+    private static final String SEPARATOR = "|";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Lazy
+    @Autowired
+    private EntityCacheManager entityCacheManager;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public void publish(String nodeId, String entityName) {
+        stringRedisTemplate.convertAndSend(CHANNEL, nodeId + SEPARATOR + entityName);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(SEPARATOR);
+        if (index > 0) {
+            entityCacheManager.onRemoteEvict(body.substring(0, index), body.substring(index + 1));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.frame.redis;
+
+import com.frame.common.auth.service.ILoginThrottle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 登录限流，每个键的登录时间保存在Redis的有序集合中（滑动窗口日志），判断和计数在一个Lua脚本中原子执行，一次往返
+ *
+ * @author gaoly
+ */
+@Component
+public class RedisLoginThrottle implements ILoginThrottle {
+
+    /**
+     * 账户和IP的键使用同一hash tag，集群时在同一slot，可以在一个脚本中执行
+     */
+    private static final String KEY_PREFIX = "{frame:login}:";
+
+    /**
+     * KEYS:各键
+     * ARGV[1]:当前时间 ARGV[2]:窗口 ARGV[3]:本次登录的成员 ARGV[4..]:各键的上限
+     * 返回0时允许并计数，大于0时为需要等待的时间（毫秒）
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local now = tonumber(ARGV[1]) "
+                    + "local window = tonumber(ARGV[2]) "
+                    + "local wait = 0 "
+                    + "for i, key in ipairs(KEYS) do "
+                    + "  redis.call('zremrangebyscore', key, '-inf', now - window) "
+                    + "  local limit = tonumber(ARGV[i + 3]) "
+                    + "  local count = redis.call('zcard', key) "
+                    + "  if count >= limit then "
+                    + "    local oldest = redis.call('zrange', key, count - limit, count - limit, 'WITHSCORES') "
+                    + "    wait = math.max(wait, tonumber(oldest[2]) + window - now, 1) "
+                    + "  end "
+                    + "end "
+                    + "if wait > 0 then return wait end "
+                    + "for _, key in ipairs(KEYS) do "
+                    + "  redis.call('zadd', key, now, ARGV[3]) "
+                    + "  redis.call('pexpire', key, window) "
+                    + "end "
+                    + "return 0",
+            Long.class);
+
+    /**
+     * 删除最近的一次登录，KEYS[1]:键
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local latest = redis.call('zrevrange', KEYS[1], 0, 0) "
+                    + "if latest[1] then return redis.call('zrem', KEYS[1], latest[1]) end "
+                    + "return 0",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public long tryAcquire(String[] keys, int[] limits, long windowMillis) {
+        List<String> redisKeys = new ArrayList<>(keys.length);
+        Object[] args = new Object[keys.length + 3];
+        args[0] = String.valueOf(System.currentTimeMillis());
+        args[1] = String.valueOf(Math.max(1L, windowMillis));
+        args[2] = UUID.randomUUID().toString();
+        for (int i = 0; i < keys.length; i++) {
+            redisKeys.add(KEY_PREFIX + keys[i]);
+            args[i + 3] = String.valueOf(Math.max(1, limits[i]));
+        }
+        Long wait = stringRedisTemplate.execute(ACQUIRE_SCRIPT, redisKeys, args);
+        return wait == null ? 0L : wait;
+    }
+
+    @Override
+    public void reset(String key) {
+        stringRedisTemplate.delete(KEY_PREFIX + key);
+    }
+
+    @Override
+    public void release(String key) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(KEY_PREFIX + key));
+    }
+}
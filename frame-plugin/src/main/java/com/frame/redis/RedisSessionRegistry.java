@@ -0,0 +1,67 @@
+package com.frame.redis;
+
+import com.frame.common.auth.service.ISessionRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * 会话登记，账户的会话和踢出的会话保存在Redis的有序集合中，登记和踢出在一个Lua脚本中原子执行
+ *
+ * @author gaoly
+ */
+@Component
+public class RedisSessionRegistry implements ISessionRegistry {
+
+    private static final String SESSION_KEY_PREFIX = "frame:session:";
+
+    /**
+     * 账户的踢出的会话（分数为过期时间），和会话使用同一hash tag，集群时在同一slot
+     */
+    private static final String KICKED_KEY_SUFFIX = ":kicked";
+
+    /**
+     * KEYS[1]:账户的会话 KEYS[2]:踢出的会话
+     * ARGV[1]:jwtID ARGV[2]:当前时间 ARGV[3]:有效期 ARGV[4]:最大会话数 ARGV[5]:1时踢出之后登录的
+     * 返回1时会话已经被踢出
+     */
+    private static final RedisScript<Long> REGISTER_SCRIPT = new DefaultRedisScript<>(
+            "local now = tonumber(ARGV[2]) "
+                    + "local ttl = tonumber(ARGV[3]) "
+                    + "local kicked = redis.call('zscore', KEYS[2], ARGV[1]) "
+                    + "if kicked and tonumber(kicked) > now then return 1 end "
+                    + "redis.call('zremrangebyscore', KEYS[1], '-inf', now - ttl) "
+                    + "if not redis.call('zscore', KEYS[1], ARGV[1]) then redis.call('zadd', KEYS[1], now, ARGV[1]) end "
+                    + "local result = 0 "
+                    + "local size = redis.call('zcard', KEYS[1]) "
+                    + "while size > tonumber(ARGV[4]) do "
+                    + "  local victim "
+                    + "  if ARGV[5] == '1' then victim = redis.call('zrevrange', KEYS[1], 0, 0)[1] "
+                    + "  else victim = redis.call('zrange', KEYS[1], 0, 0)[1] end "
+                    + "  redis.call('zrem', KEYS[1], victim) "
+                    + "  redis.call('zadd', KEYS[2], now + ttl, victim) "
+                    + "  if victim == ARGV[1] then result = 1 end "
+                    + "  size = size - 1 "
+                    + "end "
+                    + "redis.call('pexpire', KEYS[1], ttl) "
+                    + "redis.call('pexpire', KEYS[2], ttl) "
+                    + "redis.call('zremrangebyscore', KEYS[2], '-inf', now) "
+                    + "return result",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Override
+    public boolean register(String key, String jwtId, int maxSession, boolean kickOutAfter, long ttlMillis) {
+        String sessionKey = SESSION_KEY_PREFIX + "{" + key + "}";
+        Long result = stringRedisTemplate.execute(REGISTER_SCRIPT, Arrays.asList(sessionKey, sessionKey + KICKED_KEY_SUFFIX),
+                jwtId, String.valueOf(System.currentTimeMillis()), String.valueOf(ttlMillis),
+                String.valueOf(Math.max(1, maxSession)), kickOutAfter ? "1" : "0");
+        return result != null && result == 1L;
+    }
+}
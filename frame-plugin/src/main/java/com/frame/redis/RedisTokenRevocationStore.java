@@ -0,0 +1,99 @@
+package com.frame.redis;
+
+import com.frame.common.auth.service.ITokenRevocationStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 退出的token保存，jwtID保存在Redis的有序集合中（分数为过期时间），退出时通过发布订阅通知其它节点
+ *
+ * @author gaoly
+ */
+@Slf4j
+@Component
+public class RedisTokenRevocationStore implements ITokenRevocationStore {
+
+    private static final String KEY = "frame:jwt:revoked";
+
+    /**
+     * 通知频道
+     */
+    public static final String CHANNEL = "frame:jwt:revoked:notify";
+
+    /**
+     * 消息中jwtID和过期时间的分隔符
+     */
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 清除过期的jwtID，保存并通知，一次往返
+     */
+    private static final RedisScript<Long> REVOKE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', ARGV[3]) "
+                    + "redis.call('zadd', KEYS[1], ARGV[2], ARGV[1]) "
+                    + "return redis.call('publish', ARGV[4], ARGV[1] .. '" + SEPARATOR + "' .. ARGV[2])",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Override
+    public void revoke(String jwtId, long expiresAt) {
+        stringRedisTemplate.execute(REVOKE_SCRIPT, Collections.singletonList(KEY), jwtId,
+                String.valueOf(expiresAt), String.valueOf(System.currentTimeMillis()), CHANNEL);
+    }
+
+    @Override
+    public boolean isRevoked(String jwtId) {
+        Double expiresAt = stringRedisTemplate.opsForZSet().score(KEY, jwtId);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    @Override
+    public Map<String, Long> loadAll() {
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(KEY, System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+        Map<String, Long> revoked = new HashMap<>();
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                if (tuple.getValue() != null && tuple.getScore() != null) {
+                    revoked.put(tuple.getValue(), tuple.getScore().longValue());
+                }
+            }
+        }
+        return revoked;
+    }
+
+    @Override
+    public void subscribe(BiConsumer<String, Long> listener) {
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int index = body.lastIndexOf(SEPARATOR);
+            if (index <= 0) {
+                return;
+            }
+            try {
+                listener.accept(body.substring(0, index), Long.valueOf(body.substring(index + 1)));
+            } catch (NumberFormatException e) {
+                log.error("invalid token revocation message:[{}]", body, e);
+            }
+        }, new ChannelTopic(CHANNEL));
+    }
+}
@@ -0,0 +1,143 @@
+package com.frame.redis;
+
+import com.frame.common.mybatis.service.IWorkerIdAssigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snowflake节点ID分配，在Redis中按节点ID加有效期的锁，定期延长有效期，停止时释放
+ * 延长失败时重新取得同一节点ID的锁，被其他节点取得时立即失效；延长成功后的有效期（本机时间，留出余量）过后也失效，
+ * 失效期间{@link #isValid()}返回false，主键生成器不生成ID
+ *
+ * @author gaoly
+ */
+@Slf4j
+@Component
+public class RedisWorkerIdAssigner implements IWorkerIdAssigner {
+
+    private static final String KEY_PREFIX = "frame:id:worker:";
+
+    /**
+     * 锁的有效期（秒）
+     */
+    private static final long LEASE_SECONDS = 60L;
+
+    /**
+     * 本机判断有效期时的余量（秒），Redis和本机时钟的误差
+     */
+    private static final long LEASE_MARGIN_SECONDS = 10L;
+
+    /**
+     * 是自己的锁时延长有效期
+     */
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+
+    /**
+     * 是自己的锁时删除
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private volatile String key;
+
+    /**
+     * 租约在本机的有效期限（System.nanoTime）
+     */
+    private volatile long leaseDeadline;
+
+    private ScheduledExecutorService renewExecutor;
+
+    @Override
+    public synchronized int assign(int maxWorkerId) {
+        int size = maxWorkerId + 1;
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int workerId = (start + i) % size;
+            String workerKey = KEY_PREFIX + workerId;
+            long acquiredAt = System.nanoTime();
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(workerKey, nodeId, LEASE_SECONDS, TimeUnit.SECONDS))) {
+                this.extendLease(acquiredAt);
+                this.key = workerKey;
+                this.startRenew();
+                log.info("snowflake worker id assigned:[{}]", workerId);
+                return workerId;
+            }
+        }
+        throw new IllegalStateException("no snowflake worker id is available");
+    }
+
+    private void startRenew() {
+        if (renewExecutor != null) {
+            return;
+        }
+        renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "worker-id-renew");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renewExecutor.scheduleWithFixedDelay(this::renew, LEASE_SECONDS / 3, LEASE_SECONDS / 3, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public boolean isValid() {
+        return key != null && System.nanoTime() - leaseDeadline < 0;
+    }
+
+    private void renew() {
+        long renewAt = System.nanoTime();
+        try {
+            Long result = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                    nodeId, String.valueOf(LEASE_SECONDS));
+            if (result != null && result != 0) {
+                this.extendLease(renewAt);
+                return;
+            }
+            // 锁已过期时重新取得同一节点ID
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, nodeId, LEASE_SECONDS, TimeUnit.SECONDS))) {
+                this.extendLease(renewAt);
+                log.warn("snowflake worker id lease is re-acquired:[{}]", key);
+                return;
+            }
+            // 其他节点已经使用同一节点ID，不再生成ID，需要重启取得新的节点ID
+            leaseDeadline = renewAt;
+            log.error("snowflake worker id lease is lost:[{}]", key);
+        } catch (Exception e) {
+            // 有效期过后不再生成ID
+            log.error("snowflake worker id lease renew error:[{}]", key, e);
+        }
+    }
+
+    private void extendLease(long from) {
+        leaseDeadline = from + TimeUnit.SECONDS.toNanos(LEASE_SECONDS - LEASE_MARGIN_SECONDS);
+    }
+
+    @PreDestroy
+    public void release() {
+        if (renewExecutor != null) {
+            renewExecutor.shutdownNow();
+        }
+        if (key != null) {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(key), nodeId);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.frame.common.auth.revocation;
+
+import com.frame.redis.RedisConfig;
+import com.frame.redis.RedisTokenRevocationStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 多个节点的TokenRevocationService共用Redis保存
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {RedisConfig.class, RedisTokenRevocationStore.class})
+@ImportAutoConfiguration(RedisAutoConfiguration.class)
+public class TokenRevocationServiceTests {
+
+    private static final String KEY = "frame:jwt:revoked";
+
+    private static final long TTL = 60000L;
+
+    @Autowired
+    private RedisTokenRevocationStore redisTokenRevocationStore;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final List<TokenRevocationService> nodes = new ArrayList<>();
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        prefix = "test-" + UUID.randomUUID() + "-";
+    }
+
+    @After
+    public void tearDown() {
+        nodes.forEach(TokenRevocationService::close);
+        nodes.clear();
+    }
+
+    @Test
+    public void storeKeepsUnexpiredTokens() {
+        long expiresAt = System.currentTimeMillis() + TTL;
+        redisTokenRevocationStore.revoke(prefix + "live", expiresAt);
+        redisTokenRevocationStore.revoke(prefix + "expired", System.currentTimeMillis() - 1L);
+
+        assertTrue(redisTokenRevocationStore.isRevoked(prefix + "live"));
+        assertFalse(redisTokenRevocationStore.isRevoked(prefix + "expired"));
+        assertFalse(redisTokenRevocationStore.isRevoked(prefix + "unknown"));
+        Map<String, Long> all = redisTokenRevocationStore.loadAll();
+        assertEquals(Long.valueOf(expiresAt), all.get(prefix + "live"));
+        assertFalse(all.containsKey(prefix + "expired"));
+    }
+
+    @Test
+    public void startLoadsRevokedTokens() {
+        redisTokenRevocationStore.revoke(prefix + "before", System.currentTimeMillis() + TTL);
+        TokenRevocationService node = node();
+        assertTrue(node.isRevoked(prefix + "before"));
+        assertFalse(node.isRevoked(prefix + "other"));
+    }
+
+    @Test
+    public void revocationReachesEveryNode() throws InterruptedException {
+        int tokens = 100;
+        List<TokenRevocationService> cluster = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            cluster.add(node());
+        }
+        // 等待订阅生效
+        Thread.sleep(500L);
+        long expiresAt = System.currentTimeMillis() + TTL;
+        for (int i = 0; i < tokens; i++) {
+            cluster.get(i % cluster.size()).revoke(prefix + i, expiresAt);
+        }
+        for (TokenRevocationService node : cluster) {
+            for (int i = 0; i < tokens; i++) {
+                assertTrue(awaitRevoked(node, prefix + i));
+            }
+            assertFalse(node.isRevoked(prefix + "other"));
+        }
+    }
+
+    @Test
+    public void reconcileRecoversMissedNotification() {
+        TokenRevocationService node = node();
+        // 不通知直接保存，相当于漏收的通知（布隆过滤器误判时也会查询到）
+        stringRedisTemplate.opsForZSet().add(KEY, prefix + "missed", System.currentTimeMillis() + TTL);
+        node.reconcile();
+        assertTrue(node.isRevoked(prefix + "missed"));
+    }
+
+    private TokenRevocationService node() {
+        TokenRevocationService node = new TokenRevocationService(redisTokenRevocationStore, 1024);
+        node.start();
+        nodes.add(node);
+        return node;
+    }
+
+    private static boolean awaitRevoked(TokenRevocationService node, String jwtId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (!node.isRevoked(jwtId)) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10L);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package com.frame.redis;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {RedisConfig.class, RedisLoginThrottle.class})
+@ImportAutoConfiguration(RedisAutoConfiguration.class)
+public class RedisLoginThrottleTests {
+
+    private static final long WINDOW = 60000L;
+
+    @Autowired
+    private RedisLoginThrottle redisLoginThrottle;
+
+    private String account;
+
+    private String ip;
+
+    @Before
+    public void setUp() {
+        String suffix = UUID.randomUUID().toString();
+        account = "account:test-" + suffix;
+        ip = "ip:test-" + suffix;
+    }
+
+    @Test
+    public void limitsWithinWindow() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, acquire(account, 3));
+        }
+        long wait = acquire(account, 3);
+        assertTrue(wait > 0L && wait <= WINDOW);
+    }
+
+    @Test
+    public void rejectedAttemptIsNotCounted() {
+        String[] keys = {account, ip};
+        int[] limits = {5, 2};
+        assertEquals(0L, redisLoginThrottle.tryAcquire(keys, limits, WINDOW));
+        assertEquals(0L, redisLoginThrottle.tryAcquire(keys, limits, WINDOW));
+        // IP超出时账户也不计数
+        assertTrue(redisLoginThrottle.tryAcquire(keys, limits, WINDOW) > 0L);
+        assertEquals(0L, acquire(account, 3));
+        assertTrue(acquire(account, 3) > 0L);
+    }
+
+    @Test
+    public void releaseUndoesLatestAttempt() {
+        assertEquals(0L, acquire(ip, 2));
+        assertEquals(0L, acquire(ip, 2));
+        assertTrue(acquire(ip, 2) > 0L);
+        redisLoginThrottle.release(ip);
+        assertEquals(0L, acquire(ip, 2));
+        assertTrue(acquire(ip, 2) > 0L);
+    }
+
+    @Test
+    public void resetClearsKey() {
+        assertEquals(0L, acquire(account, 1));
+        assertTrue(acquire(account, 1) > 0L);
+        redisLoginThrottle.reset(account);
+        assertEquals(0L, acquire(account, 1));
+    }
+
+    @Test
+    public void windowSlides() throws InterruptedException {
+        assertEquals(0L, redisLoginThrottle.tryAcquire(new String[]{account}, new int[]{1}, 200L));
+        assertTrue(redisLoginThrottle.tryAcquire(new String[]{account}, new int[]{1}, 200L) > 0L);
+        Thread.sleep(250L);
+        assertEquals(0L, redisLoginThrottle.tryAcquire(new String[]{account}, new int[]{1}, 200L));
+    }
+
+    private long acquire(String key, int limit) {
+        return redisLoginThrottle.tryAcquire(new String[]{key}, new int[]{limit}, WINDOW);
+    }
+}
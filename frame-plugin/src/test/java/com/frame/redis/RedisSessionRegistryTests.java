@@ -0,0 +1,112 @@
+package com.frame.redis;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = {RedisConfig.class, RedisSessionRegistry.class})
+@ImportAutoConfiguration(RedisAutoConfiguration.class)
+public class RedisSessionRegistryTests {
+
+    private static final long TTL = 60000L;
+
+    @Autowired
+    private RedisSessionRegistry redisSessionRegistry;
+
+    private String key;
+
+    @Before
+    public void setUp() {
+        key = "test-" + UUID.randomUUID() + ":pc";
+    }
+
+    @Test
+    public void withinLimitNothingIsKicked() {
+        assertFalse(register("jwt1", 2, false));
+        assertFalse(register("jwt2", 2, false));
+        assertFalse(register("jwt1", 2, false));
+        assertFalse(register("jwt2", 2, false));
+    }
+
+    @Test
+    public void repeatedRegistrationCountsOnce() {
+        for (int i = 0; i < 5; i++) {
+            assertFalse(register("jwt1", 1, false));
+        }
+    }
+
+    @Test
+    public void kicksEarliestSession() throws InterruptedException {
+        assertFalse(register("jwt1", 2, false));
+        Thread.sleep(2L);
+        assertFalse(register("jwt2", 2, false));
+        Thread.sleep(2L);
+        assertFalse(register("jwt3", 2, false));
+        assertTrue(register("jwt1", 2, false));
+        assertFalse(register("jwt2", 2, false));
+        assertFalse(register("jwt3", 2, false));
+    }
+
+    @Test
+    public void kicksLaterSession() throws InterruptedException {
+        assertFalse(register("jwt1", 1, true));
+        Thread.sleep(2L);
+        assertTrue(register("jwt2", 1, true));
+        assertFalse(register("jwt1", 1, true));
+        // 踢出的会话再次登记时仍然是踢出
+        assertTrue(register("jwt2", 1, true));
+    }
+
+    @Test
+    public void concurrentRegistrationKeepsMaxSessions() throws Exception {
+        int sessions = 20;
+        int maxSession = 3;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < sessions; i++) {
+                String jwtId = "jwt" + i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return register(jwtId, maxSession, false);
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        int alive = 0;
+        for (int i = 0; i < sessions; i++) {
+            if (!register("jwt" + i, maxSession, false)) {
+                alive++;
+            }
+        }
+        assertEquals(maxSession, alive);
+    }
+
+    private boolean register(String jwtId, int maxSession, boolean kickOutAfter) {
+        return redisSessionRegistry.register(key, jwtId, maxSession, kickOutAfter, TTL);
+    }
+}
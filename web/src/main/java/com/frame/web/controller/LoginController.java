@@ -3,6 +3,7 @@ package com.frame.web.controller;
 import com.frame.common.auth.dto.AccountDto;
 import com.frame.common.auth.dto.TokenDto;
 import com.frame.common.auth.service.IAuthService;
+import com.frame.common.auth.shiro.RetryLimitCredentialsMatcher;
 import com.frame.common.base.knowledge.AuthMessageEnum;
 import com.frame.common.base.model.Param;
 import com.frame.common.base.model.Result;
@@ -28,6 +29,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
 
 
 /**
@@ -57,7 +59,7 @@ public class LoginController extends BaseController {
             notes = "用户名和密码登陆验证"
     )
     @PostMapping("/login")
-    public Result<TokenDto> login(@RequestBody @Validated Param<AccountDto> qmParam) {
+    public Result<TokenDto> login(@RequestBody @Validated Param<AccountDto> qmParam, HttpServletResponse response) {
 
         Subject currentUser = SecurityUtils.getSubject();
         AccountDto accountDto = qmParam.getData();
@@ -77,6 +79,12 @@ public class LoginController extends BaseController {
             return this.renderSuccess(tokenDto);
         } else {
             token.clear();
+            long retryAfter = RetryLimitCredentialsMatcher.getRetryAfterMillis();
+            if (retryAfter > 0L) {
+                //超出登录次数限制，通知客户端等待的秒数
+                response.setHeader("Retry-After", String.valueOf((retryAfter + 999L) / 1000L));
+                return this.renderError(AuthMessageEnum.ACCOUNT_LIMIT);
+            }
             return this.renderError(AuthMessageEnum.FORBIDDEN_ACCOUNT_ERROR);
         }
     }